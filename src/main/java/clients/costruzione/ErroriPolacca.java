@@ -0,0 +1,36 @@
+package clients.costruzione;
+
+import luppolo.parse.Polish;
+import luppolo.print.BasicPrinter;
+
+import java.text.ParseException;
+import java.util.Scanner;
+
+/**
+ * Classe contenete il client per verificare gli errori della costruzione di un'espressione a
+ * partire dalla notazione polacca.
+ */
+public class ErroriPolacca {
+	/**
+	 * Client per verificare gli errori della costruzione di un'espressione a partire dalla notazione
+	 * polacca.
+	 *
+	 * <p>Legge una sequenza di linee dal flusso di ingresso standard in cui ciascuna linea
+	 * rappresenta un'espressione in notazione polacca. Per ciascuna linea, se l'espressione è valida
+	 * ne emette la rappresentazione linearizzata, altrimenti emette il messaggio d'errore seguito
+	 * dalla posizione dell'errore nella linea, nel flusso d'uscita standard.
+	 *
+	 * @param args non utilizzati.
+	 */
+	public static void main(String[] args) {
+		Scanner s = new Scanner(System.in);
+		BasicPrinter basicPrinter = new BasicPrinter();
+		while (s.hasNextLine()) {
+			try {
+				System.out.println(Polish.parse(s.nextLine()).transform(basicPrinter));
+			} catch (ParseException e) {
+				System.out.println(e.getMessage() + " @" + e.getErrorOffset());
+			}
+		}
+	}
+}
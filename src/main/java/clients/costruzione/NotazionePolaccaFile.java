@@ -0,0 +1,41 @@
+package clients.costruzione;
+
+import luppolo.node.Node;
+import luppolo.parse.PolishBatch;
+import luppolo.print.BasicPrinter;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.text.ParseException;
+
+/**
+ * Classe contenete il client per verificare la costruzione in parallelo delle espressioni di un
+ * file in notazione polacca.
+ */
+public class NotazionePolaccaFile {
+	/**
+	 * Client per verificare la costruzione in parallelo delle espressioni di un file in notazione
+	 * polacca.
+	 *
+	 * <p>Copia il flusso di ingresso standard in un file temporaneo in cui ciascuna linea
+	 * rappresenta un'espressione in notazione polacca, costruisce in parallelo le espressioni di
+	 * tutte le linee del file e ne emette le rappresentazioni linearizzate, una per linea, nel
+	 * flusso d'uscita standard. Il risultato deve coincidere con quello di {@link
+	 * NotazionePolacca}.
+	 *
+	 * @param args non utilizzati.
+	 */
+	public static void main(String[] args) throws ParseException, IOException {
+		Path file = Files.createTempFile("polacca-", ".txt");
+		try {
+			Files.copy(System.in, file, StandardCopyOption.REPLACE_EXISTING);
+			BasicPrinter basicPrinter = new BasicPrinter();
+			for (Node expr : PolishBatch.parse(file))
+				System.out.println(expr.transform(basicPrinter));
+		} finally {
+			Files.delete(file);
+		}
+	}
+}
@@ -0,0 +1,47 @@
+package clients.costruzione;
+
+import luppolo.node.Node;
+import luppolo.parse.Polish;
+import luppolo.parse.StraightLine;
+import luppolo.print.BasicPrinter;
+import luppolo.print.StraightLinePrinter;
+import luppolo.transform.Differentiate;
+
+import java.text.ParseException;
+import java.util.Scanner;
+
+/**
+ * Classe contenete il client per verificare la stampa di un'espressione come programma lineare,
+ * con i sottoalberi uguali condivisi.
+ */
+public class ProgrammaLineareCondiviso {
+	/**
+	 * Client per verificare la stampa di un'espressione come programma lineare in cui i sottoalberi
+	 * uguali sono emessi una sola volta, e la sua rilettura.
+	 *
+	 * <p>Legge una sequenza di linee dal flusso di ingresso standard in cui ciascuna linea
+	 * rappresenta un'espressione in notazione polacca. Per ciascuna linea, costruisce l'espressione
+	 * corrispondente, la <em>deriva</em> rispetto alla variabile specificata come argomento sulla
+	 * linea di comando (se presente), e emette nel flusso d'uscita standard il numero di istruzioni
+	 * del programma lineare che la rappresenta con i sottoalberi uguali condivisi, seguito dalla
+	 * rappresentazione linearizzata dell'espressione costruita rileggendo il programma. Quest'ultima
+	 * deve coincidere con quella dell'espressione stampata.
+	 *
+	 * @param args la variabile rispetto a cui derivare, opzionale.
+	 */
+	public static void main(String[] args) throws ParseException {
+		StraightLinePrinter straightLinePrinter = new StraightLinePrinter(true);
+		BasicPrinter printer = new BasicPrinter();
+
+		Scanner s = new Scanner(System.in);
+		while (s.hasNextLine()) {
+			Node expr = Polish.parse(s.nextLine());
+			if (args.length > 0) expr = expr.transform(new Differentiate(args[0]));
+
+			String[] program = expr.transform(straightLinePrinter).split("\n");
+			StraightLine parser = new StraightLine();
+			for (String line : program) parser.parse(line);
+			System.out.println(program.length + " " + parser.getLast().transform(printer));
+		}
+	}
+}
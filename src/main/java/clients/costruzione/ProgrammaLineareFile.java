@@ -0,0 +1,40 @@
+package clients.costruzione;
+
+import luppolo.node.Node;
+import luppolo.parse.StraightLineBatch;
+import luppolo.print.BasicPrinter;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.text.ParseException;
+import java.util.List;
+
+/**
+ * Classe contenete il client per verificare la costruzione in due fasi di un'espressione a
+ * partire da un file contenente un programma lineare.
+ */
+public class ProgrammaLineareFile {
+	/**
+	 * Client per verificare la costruzione in due fasi di un'espressione a partire da un file
+	 * contenente un programma lineare.
+	 *
+	 * <p>Copia il flusso di ingresso standard, corrispondente ad un programma lineare, in un file
+	 * temporaneo, costruisce l'espressione corrispondente all'ultima linea del file e ne emette la
+	 * rappresentazione linearizzata nel flusso d'uscita standard. Il risultato deve coincidere con
+	 * quello di {@link ProgrammaLineare}.
+	 *
+	 * @param args non utilizzati.
+	 */
+	public static void main(String[] args) throws ParseException, IOException {
+		Path file = Files.createTempFile("programma-", ".txt");
+		try {
+			Files.copy(System.in, file, StandardCopyOption.REPLACE_EXISTING);
+			List<Node> nodes = StraightLineBatch.parse(file);
+			System.out.println(nodes.get(nodes.size() - 1).transform(new BasicPrinter()));
+		} finally {
+			Files.delete(file);
+		}
+	}
+}
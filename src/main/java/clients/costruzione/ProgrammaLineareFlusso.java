@@ -0,0 +1,49 @@
+package clients.costruzione;
+
+import luppolo.parse.StraightLine;
+import luppolo.print.BasicPrinter;
+
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Scanner;
+
+/**
+ * Classe contenete il client per verificare la costruzione in flusso di un'espressione a partire
+ * da un programma lineare.
+ */
+public class ProgrammaLineareFlusso {
+	/**
+	 * Client per verificare la costruzione di un'espressione a partire da un programma lineare,
+	 * rilasciando ciascuna linea dopo il suo ultimo uso.
+	 *
+	 * <p>Legge una sequenza di linee dal flusso di ingresso standard corrispondenti ad un programma
+	 * lineare, calcola l'ultima linea che usa ciascuna linea e costruisce l'espressione
+	 * corrispondente con un parser in modalità flusso. Per ciascuna linea non valida emette nel
+	 * flusso d'uscita standard il numero della linea seguito dal messaggio d'errore, quindi la linea
+	 * è ignorata e le espressioni non sono più rilasciate; al termine emette la rappresentazione
+	 * linearizzata dell'ultima espressione costruita. Per i programmi validi il risultato deve
+	 * coincidere con quello di {@link ProgrammaLineare}.
+	 *
+	 * @param args non utilizzati.
+	 */
+	public static void main(String[] args) {
+		Scanner s = new Scanner(System.in);
+		List<String> lines = new ArrayList<>();
+		while (s.hasNextLine()) {
+			String line = s.nextLine();
+			if (line.isBlank()) break;
+			lines.add(line);
+		}
+
+		StraightLine parser = new StraightLine(StraightLine.lastUses(lines.iterator()));
+		for (int i = 0; i < lines.size(); i++) {
+			try {
+				parser.parse(lines.get(i));
+			} catch (ParseException e) {
+				System.out.println(i + " " + e.getMessage());
+			}
+		}
+		System.out.println(parser.getLast().transform(new BasicPrinter()));
+	}
+}
@@ -0,0 +1,40 @@
+package clients.manipolazione;
+
+import luppolo.node.Node;
+import luppolo.parse.Polish;
+import luppolo.print.BasicPrinter;
+import luppolo.transform.ReverseDifferentiate;
+import luppolo.transform.Simplify;
+
+import java.text.ParseException;
+import java.util.Scanner;
+
+/** Classe contenete il client per verificare la derivazione in modalità inversa delle espressioni. */
+public class DerivazioneInversa {
+	/**
+	 * Client per verificare la derivazione in modalità inversa, seguita da semplificazione, di un'espressione.
+	 *
+	 * <p>Legge una sequenza di linee dal flusso di ingresso standard in cui ciascuna linea
+	 * rappresenta un'espressione in notazione polacca. Per ciascuna linea, costruisce l'espressione
+	 * corrispondente, la <em>deriva</em> rispetto alla variabile specificata come argomento sulla
+	 * linea di comando propagando gli aggiunti dalla radice alle variabili, quindi <em>semplifica</em>
+	 * l'espressione così ottenuta e emette la rappresentazione linearizzata dell'espressione
+	 * semplificata nel flusso d'uscita standard.
+	 *
+	 * @param args non utilizzati.
+	 */
+	public static void main(String[] args) throws ParseException {
+		String variable = args[0];
+
+		BasicPrinter printer = new BasicPrinter();
+		Simplify simplify = new Simplify();
+
+		Scanner s = new Scanner(System.in);
+		while (s.hasNextLine()) {
+			Node expr = Polish.parse(s.nextLine());
+			Node derivative = ReverseDifferentiate.derivative(expr, variable);
+			Node simplified = derivative.transform(simplify);
+			System.out.println(simplified.transform(printer));
+		}
+	}
+}
\ No newline at end of file
@@ -0,0 +1,46 @@
+package clients.manipolazione;
+
+import luppolo.node.Node;
+import luppolo.parse.Polish;
+import luppolo.print.BasicPrinter;
+import luppolo.transform.DerivativeCache;
+
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Scanner;
+
+/** Classe contenete il client per verificare le derivate di ordine superiore e le derivate parziali miste. */
+public class DerivazioneParziale {
+	/**
+	 * Client per verificare le derivate di ordine superiore e le derivate parziali miste di
+	 * un'espressione.
+	 *
+	 * <p>Legge una sequenza di linee dal flusso di ingresso standard in cui ciascuna linea
+	 * rappresenta un'espressione in notazione polacca. Per ciascuna linea, costruisce l'espressione
+	 * corrispondente, la <em>deriva</em> (semplificando ogni derivata intermedia) rispetto alle
+	 * variabili specificate come argomenti sulla linea di comando, nell'ordine in cui sono date e
+	 * poi nell'ordine inverso, ed emette le rappresentazioni linearizzate delle due derivate, una
+	 * per linea, nel flusso d'uscita standard. Poiché l'ordine di derivazione non conta, le due
+	 * derivate devono coincidere con quella ottenuta derivando e semplificando ripetutamente
+	 * rispetto alle variabili in ordine alfabetico.
+	 *
+	 * @param args le variabili, una variabile ripetuta indica una derivata di ordine superiore.
+	 */
+	public static void main(String[] args) throws ParseException {
+		List<String> variables = List.of(args);
+		List<String> reversed = new ArrayList<>(variables);
+		Collections.reverse(reversed);
+
+		BasicPrinter printer = new BasicPrinter();
+		DerivativeCache cache = new DerivativeCache();
+
+		Scanner s = new Scanner(System.in);
+		while (s.hasNextLine()) {
+			Node expr = Polish.parse(s.nextLine());
+			System.out.println(cache.derivative(expr, variables).transform(printer));
+			System.out.println(cache.derivative(expr, reversed).transform(printer));
+		}
+	}
+}
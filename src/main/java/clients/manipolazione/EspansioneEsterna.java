@@ -0,0 +1,37 @@
+package clients.manipolazione;
+
+import luppolo.node.Node;
+import luppolo.parse.Polish;
+import luppolo.print.BasicPrinter;
+import luppolo.transform.ExternalExpand;
+
+import java.text.ParseException;
+import java.util.Scanner;
+
+/** Classe contenete il client per verificare l'espansione su disco delle espressioni. */
+public class EspansioneEsterna {
+	/**
+	 * Client per verificare l'espansione su disco di un'espressione.
+	 *
+	 * <p>Legge una sequenza di linee dal flusso di ingresso standard in cui ciascuna linea
+	 * rappresenta un'espressione in notazione polacca. Per ciascuna linea, costruisce l'espressione
+	 * corrispondente, la <em>espande</em> raccogliendone i termini entro il limite di memoria (in
+	 * byte) specificato come argomento sulla linea di comando, oltre il quale i termini sono
+	 * scritti in file temporanei, e emette la rappresentazione linearizzata dell'espressione così
+	 * ottenuta nel flusso d'uscita standard. Il risultato deve coincidere con quello di {@link
+	 * EspansioneSemplificazione}.
+	 *
+	 * @param args il limite di memoria in byte.
+	 */
+	public static void main(String[] args) throws ParseException {
+		ExternalExpand expand = new ExternalExpand(Long.parseLong(args[0]));
+		BasicPrinter printer = new BasicPrinter();
+
+		Scanner s = new Scanner(System.in);
+		while (s.hasNextLine()) {
+			Node expr = Polish.parse(s.nextLine());
+			Node expanded = expr.transform(expand);
+			System.out.println(expanded.transform(printer));
+		}
+	}
+}
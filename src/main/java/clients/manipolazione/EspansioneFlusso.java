@@ -0,0 +1,34 @@
+package clients.manipolazione;
+
+import luppolo.node.Node;
+import luppolo.parse.Polish;
+import luppolo.print.ExpansionPrinter;
+
+import java.io.IOException;
+import java.text.ParseException;
+import java.util.Scanner;
+
+/** Classe contenete il client per verificare la stampa dell'espansione delle espressioni durante il calcolo. */
+public class EspansioneFlusso {
+	/**
+	 * Client per verificare la stampa dell'espansione di un'espressione durante il calcolo.
+	 *
+	 * <p>Legge una sequenza di linee dal flusso di ingresso standard in cui ciascuna linea
+	 * rappresenta un'espressione in notazione polacca. Per ciascuna linea, costruisce l'espressione
+	 * corrispondente e ne emette la rappresentazione linearizzata dell'<em>espansione</em> nel
+	 * flusso d'uscita standard, un termine alla volta, senza costruire l'espressione espansa. Il
+	 * risultato coincide con quello di {@link Espansione}, a meno dell'ordine degli operandi delle
+	 * somme.
+	 *
+	 * @param args non utilizzati.
+	 */
+	public static void main(String[] args) throws ParseException, IOException {
+		Scanner s = new Scanner(System.in);
+		ExpansionPrinter printer = new ExpansionPrinter();
+		while (s.hasNextLine()) {
+			Node expr = Polish.parse(s.nextLine());
+			printer.print(expr, System.out);
+			System.out.println();
+		}
+	}
+}
@@ -0,0 +1,37 @@
+package clients.manipolazione;
+
+import luppolo.node.Node;
+import luppolo.parse.Polish;
+import luppolo.print.BasicPrinter;
+import luppolo.transform.ModularExpand;
+
+import java.text.ParseException;
+import java.util.Scanner;
+
+/** Classe contenete il client per verificare l'espansione modulare delle espressioni. */
+public class EspansioneModulare {
+	/**
+	 * Client per verificare l'espansione modulare di un'espressione.
+	 *
+	 * <p>Legge una sequenza di linee dal flusso di ingresso standard in cui ciascuna linea
+	 * rappresenta un'espressione in notazione polacca. Per ciascuna linea, costruisce l'espressione
+	 * corrispondente, la <em>espande</em> calcolandone i coefficienti modulo più primi con la
+	 * strategia specificata come argomento sulla linea di comando ({@code PRODUCT} o
+	 * {@code INTERPOLATION}) e emette la rappresentazione linearizzata dell'espressione così
+	 * ottenuta nel flusso d'uscita standard. Il risultato deve coincidere con quello di {@link
+	 * EspansioneSemplificazione}.
+	 *
+	 * @param args la strategia dell'espansione.
+	 */
+	public static void main(String[] args) throws ParseException {
+		ModularExpand expand = new ModularExpand(ModularExpand.Strategy.valueOf(args[0]));
+		BasicPrinter printer = new BasicPrinter();
+
+		Scanner s = new Scanner(System.in);
+		while (s.hasNextLine()) {
+			Node expr = Polish.parse(s.nextLine());
+			Node expanded = expr.transform(expand);
+			System.out.println(expanded.transform(printer));
+		}
+	}
+}
@@ -0,0 +1,40 @@
+package clients.manipolazione;
+
+import luppolo.node.Node;
+import luppolo.node.SumNode;
+import luppolo.parse.Polish;
+import luppolo.print.BasicPrinter;
+import luppolo.transform.ExpandTerms;
+import luppolo.transform.Simplify;
+
+import java.text.ParseException;
+import java.util.List;
+import java.util.Scanner;
+
+/** Classe contenete il client per verificare la generazione dei termini dell'espansione delle espressioni. */
+public class EspansioneTermini {
+	/**
+	 * Client per verificare la generazione dei termini dell'espansione, seguita da semplificazione,
+	 * di un'espressione.
+	 *
+	 * <p>Legge una sequenza di linee dal flusso di ingresso standard in cui ciascuna linea
+	 * rappresenta un'espressione in notazione polacca. Per ciascuna linea, costruisce l'espressione
+	 * corrispondente, ne genera uno alla volta i termini dell'<em>espansione</em>, quindi
+	 * <em>semplifica</em> la somma dei termini così ottenuti e emette la rappresentazione
+	 * linearizzata dell'espressione semplificata nel flusso d'uscita standard. Il risultato deve
+	 * coincidere con quello di {@link EspansioneSemplificazione}.
+	 *
+	 * @param args non utilizzati.
+	 */
+	public static void main(String[] args) throws ParseException {
+		Scanner s = new Scanner(System.in);
+		BasicPrinter printer = new BasicPrinter();
+		while (s.hasNextLine()) {
+			Node expr = Polish.parse(s.nextLine());
+			List<Node> terms = ExpandTerms.stream(expr).toList();
+			Node expanded = terms.size() == 1 ? terms.get(0) : new SumNode(terms);
+			Node simplified = expanded.transform(new Simplify());
+			System.out.println(simplified.transform(printer));
+		}
+	}
+}
@@ -0,0 +1,63 @@
+package clients.manipolazione;
+
+import luppolo.node.Node;
+import luppolo.parse.Polish;
+import luppolo.print.BasicPrinter;
+import luppolo.print.TreePrinter;
+import luppolo.transform.Differentiate;
+import luppolo.transform.Expand;
+import luppolo.transform.ParallelTransform;
+import luppolo.transform.Simplify;
+
+import java.text.ParseException;
+import java.util.Scanner;
+import java.util.concurrent.ForkJoinPool;
+
+/** Classe contenete il client per verificare le trasformazioni parallele delle espressioni. */
+public class TrasformazioneParallela {
+	/**
+	 * Client per verificare che le trasformazioni eseguite in parallelo diano lo stesso risultato di
+	 * quelle sequenziali.
+	 *
+	 * <p>Legge una sequenza di linee dal flusso di ingresso standard in cui ciascuna linea
+	 * rappresenta un'espressione in notazione polacca. Per ciascuna linea, costruisce l'espressione
+	 * corrispondente e la trasforma con l'operazione specificata sulla linea di comando, applicando
+	 * ciascun visitatore con un {@link ParallelTransform} che usa il numero di thread e la soglia
+	 * specificati sulla linea di comando. L'operazione {@code semplificazione} la
+	 * <em>semplifica</em>, {@code espansione} la <em>espande</em>, {@code derivazione} la
+	 * <em>deriva</em> rispetto alla variabile specificata e quindi la <em>semplifica</em>, e per
+	 * queste operazioni emette la rappresentazione linearizzata del risultato; l'operazione {@code
+	 * stampa} emette la rappresentazione linearizzata dell'espressione e l'operazione {@code albero}
+	 * il disegno testuale dell'albero. Il risultato deve coincidere con quello rispettivamente di
+	 * {@link Semplificazione}, {@link Espansione}, {@link DerivazioneSemplificazione}, {@link
+	 * clients.costruzione.NotazionePolacca} e {@link clients.rappresentazione.Albero}.
+	 *
+	 * @param args il numero di thread, la soglia, l'operazione e, per la derivazione, la variabile.
+	 */
+	public static void main(String[] args) throws ParseException {
+		ForkJoinPool pool = new ForkJoinPool(Integer.parseInt(args[0]));
+		try {
+			ParallelTransform parallel = new ParallelTransform(pool, Long.parseLong(args[1]));
+			String operation = args[2];
+
+			BasicPrinter printer = new BasicPrinter();
+			TreePrinter treePrinter = new TreePrinter();
+			Simplify simplify = new Simplify();
+
+			Scanner s = new Scanner(System.in);
+			while (s.hasNextLine()) {
+				Node expr = Polish.parse(s.nextLine());
+				Node transformed = switch (operation) {
+					case "semplificazione" -> parallel.apply(expr, simplify);
+					case "espansione" -> parallel.apply(expr, new Expand());
+					case "derivazione" -> parallel.apply(parallel.apply(expr, new Differentiate(args[3])), simplify);
+					case "stampa", "albero" -> expr;
+					default -> throw new IllegalArgumentException("Operazione sconosciuta: " + operation);
+				};
+				System.out.println(parallel.apply(transformed, operation.equals("albero") ? treePrinter : printer));
+			}
+		} finally {
+			pool.shutdown();
+		}
+	}
+}
@@ -0,0 +1,43 @@
+package clients.rappresentazione;
+
+import luppolo.node.Node;
+import luppolo.parse.Polish;
+import luppolo.print.BasicPrinter;
+import luppolo.print.PrintLimits;
+import luppolo.print.TreePrinter;
+
+import java.io.IOException;
+import java.text.ParseException;
+import java.util.Scanner;
+
+/** Classe contenete il client per verificare la rappresentazione limitata delle espressioni. */
+public class Limitata {
+	/**
+	 * Client per verificare la rappresentazione di un'espressione entro dei limiti di profondità,
+	 * di operandi e di caratteri.
+	 *
+	 * <p>Legge una sequenza di linee dal flusso di ingresso standard in cui ciascuna linea
+	 * rappresenta un'espressione in notazione polacca. Per ciascuna linea, costruisce l'espressione
+	 * corrispondente e ne emette la rappresentazione linearizzata e il disegno testuale dell'albero,
+	 * entrambi limitati, nel flusso d'uscita standard.
+	 *
+	 * @param args la profondità massima, il numero massimo di operandi e il numero massimo di
+	 *     caratteri.
+	 */
+	public static void main(String[] args) throws ParseException, IOException {
+		PrintLimits limits =
+				new PrintLimits(Integer.parseInt(args[0]), Integer.parseInt(args[1]), Long.parseLong(args[2]));
+
+		BasicPrinter basicPrinter = new BasicPrinter();
+		TreePrinter treePrinter = new TreePrinter();
+
+		Scanner s = new Scanner(System.in);
+		while (s.hasNextLine()) {
+			Node expr = Polish.parse(s.nextLine());
+			basicPrinter.print(expr, System.out, limits);
+			System.out.println();
+			treePrinter.print(expr, System.out, limits);
+			System.out.println();
+		}
+	}
+}
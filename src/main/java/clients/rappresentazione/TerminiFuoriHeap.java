@@ -0,0 +1,63 @@
+package clients.rappresentazione;
+
+import luppolo.math.Monomial;
+import luppolo.math.OffHeapTermStore;
+import luppolo.math.Rational;
+import luppolo.math.TermCollector;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Scanner;
+import java.util.TreeMap;
+
+/** Classe contenete il client per verificare la raccolta dei termini fuori dallo heap. */
+public class TerminiFuoriHeap {
+	/**
+	 * Client per verificare la raccolta dei termini di un polinomio in un {@link OffHeapTermStore}.
+	 *
+	 * <p>Legge una sequenza di linee dal flusso di ingresso standard in cui ciascuna linea
+	 * rappresenta un termine, come il coefficiente (un intero o una frazione) seguito dagli
+	 * esponenti delle variabili, oppure contiene la parola {@code compatta}. Aggiunge ciascun
+	 * termine alla raccolta, creata per il numero di termini specificato sulla linea di comando e
+	 * quindi ingrandita quando i termini distinti lo superano, e per ciascuna parola {@code
+	 * compatta} rimuove i monomi i cui coefficienti si sono annullati emettendo il numero di monomi
+	 * rimasti nel flusso d'uscita standard. Al termine emette il numero di monomi e i termini con
+	 * coefficiente non nullo, ordinati per monomio.
+	 *
+	 * @param args il numero di variabili e il numero di termini previsti.
+	 */
+	public static void main(String[] args) {
+		final int variables = Integer.parseInt(args[0]);
+
+		try (OffHeapTermStore store = new OffHeapTermStore(variables, Integer.parseInt(args[1]))) {
+			Scanner s = new Scanner(System.in);
+			while (s.hasNextLine()) {
+				String line = s.nextLine().trim();
+				if (line.equals("compatta")) {
+					store.compact();
+					System.out.println(store.size());
+					continue;
+				}
+
+				String[] fields = line.split("\\s+");
+				String[] fraction = fields[0].split("/");
+				Rational coefficient = fraction.length == 1
+						? Rational.fromInt(Long.parseLong(fraction[0]))
+						: Rational.fromNumDen(Long.parseLong(fraction[0]), Long.parseLong(fraction[1]));
+				long[] exponents = new long[variables];
+				for (int i = 0; i < variables; i++) exponents[i] = Long.parseLong(fields[i + 1]);
+				store.add(Monomial.of(exponents), coefficient);
+			}
+
+			Map<Monomial, Rational> terms = new TreeMap<>();
+			for (Iterator<TermCollector.Term> it = store.terms(); it.hasNext(); ) {
+				TermCollector.Term term = it.next();
+				if (terms.put(term.monomial(), term.coefficient()) != null)
+					throw new AssertionError("Monomio duplicato: " + term.monomial());
+			}
+			System.out.println(store.size());
+			for (Map.Entry<Monomial, Rational> term : terms.entrySet())
+				System.out.println(term.getKey() + " " + term.getValue());
+		}
+	}
+}
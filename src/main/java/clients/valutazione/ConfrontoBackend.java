@@ -0,0 +1,46 @@
+package clients.valutazione;
+
+import luppolo.eval.Program;
+import luppolo.node.Node;
+import luppolo.parse.Polish;
+
+import java.text.ParseException;
+import java.util.Scanner;
+
+/** Classe contenete il client per verificare che i backend di valutazione diano gli stessi risultati. */
+public class ConfrontoBackend {
+	/**
+	 * Client per verificare che la valutazione di un'espressione compilata dia gli stessi risultati
+	 * con i backend {@link Program.Backend#SCALAR} e {@link Program.Backend#COLUMNAR}.
+	 *
+	 * <p>Legge una sequenza di linee dal flusso di ingresso standard in cui ciascuna linea
+	 * rappresenta un'espressione in notazione polacca. Per ciascuna linea, costruisce l'espressione
+	 * corrispondente, la <em>compila</em> e la valuta con entrambi i backend nel numero di punti
+	 * specificato come argomento sulla linea di comando, quindi emette nel flusso d'uscita standard
+	 * una linea con il numero dei valori calcolati e il numero dei valori (confrontati bit a bit) in
+	 * cui i due backend differiscono.
+	 *
+	 * @param args il numero dei punti.
+	 */
+	public static void main(String[] args) throws ParseException {
+		final int points = Integer.parseInt(args[0]);
+
+		Scanner s = new Scanner(System.in);
+		while (s.hasNextLine()) {
+			Node expr = Polish.parse(s.nextLine());
+			Program program = Program.compile(expr);
+
+			double[][] columns = new double[program.variables().size()][points];
+			for (int v = 0; v < columns.length; v++)
+				for (int i = 0; i < points; i++)
+					columns[v][i] = ((i * 37 + v * 11) % 41 - 20) / 8.0;
+
+			double[] scalar = program.evaluateAll(Program.Backend.SCALAR, columns);
+			double[] columnar = program.evaluateAll(Program.Backend.COLUMNAR, columns);
+			int differences = 0;
+			for (int i = 0; i < scalar.length; i++)
+				if (Double.doubleToLongBits(scalar[i]) != Double.doubleToLongBits(columnar[i])) differences++;
+			System.out.println(scalar.length + " " + differences);
+		}
+	}
+}
@@ -0,0 +1,59 @@
+package clients.valutazione;
+
+import luppolo.eval.Arithmetic;
+import luppolo.eval.Dual;
+import luppolo.eval.DualEvaluate;
+import luppolo.math.Rational;
+import luppolo.node.Node;
+import luppolo.parse.Polish;
+
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Scanner;
+
+/** Classe contenete il client per verificare il calcolo delle derivate con i numeri duali. */
+public class DerivataDuale {
+	/**
+	 * Client per verificare il calcolo del valore di un'espressione e della sua derivata in un
+	 * punto con i numeri duali.
+	 *
+	 * <p>Legge una sequenza di linee dal flusso di ingresso standard in cui ciascuna linea
+	 * rappresenta un'espressione in notazione polacca. Per ciascuna linea, costruisce l'espressione
+	 * corrispondente e, per ciascun punto specificato sulla linea di comando, emette nel flusso
+	 * d'uscita standard una linea con il valore esatto dell'espressione e della sua derivata rispetto
+	 * alla variabile specificata come primo argomento, separati da uno spazio (o con il messaggio
+	 * dell'errore se uno dei due non è razionale). I valori devono coincidere con quelli ottenuti
+	 * valutando l'espressione e la sua derivata, calcolata e semplificata.
+	 *
+	 * @param args la variabile, seguita dai punti, ciascuno nella forma {@code x=1/2,y=-3}.
+	 */
+	public static void main(String[] args) throws ParseException {
+		String variable = args[0];
+		List<Map<String, Rational>> assignments = new ArrayList<>();
+		for (int i = 1; i < args.length; i++) {
+			Map<String, Rational> assignment = new HashMap<>();
+			for (String value : args[i].split(",")) {
+				String[] parts = value.split("[=/]");
+				long den = parts.length > 2 ? Long.parseLong(parts[2]) : 1;
+				assignment.put(parts[0], Rational.fromNumDen(Long.parseLong(parts[1]), den));
+			}
+			assignments.add(assignment);
+		}
+
+		Scanner s = new Scanner(System.in);
+		while (s.hasNextLine()) {
+			Node expr = Polish.parse(s.nextLine());
+			for (Map<String, Rational> assignment : assignments) {
+				try {
+					Dual<Rational> dual = expr.transform(new DualEvaluate<>(Arithmetic.RATIONAL, assignment, variable));
+					System.out.println(dual.value() + " " + dual.derivative());
+				} catch (IllegalArgumentException e) {
+					System.out.println(e.getMessage());
+				}
+			}
+		}
+	}
+}
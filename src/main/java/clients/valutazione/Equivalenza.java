@@ -0,0 +1,45 @@
+package clients.valutazione;
+
+import luppolo.eval.Equivalence;
+import luppolo.node.Node;
+import luppolo.parse.Polish;
+
+import java.text.ParseException;
+import java.util.Random;
+import java.util.Scanner;
+
+/** Classe contenete il client per verificare il controllo probabilistico dell'equivalenza delle espressioni. */
+public class Equivalenza {
+	/**
+	 * Client per verificare il controllo probabilistico dell'equivalenza di coppie di espressioni.
+	 *
+	 * <p>Legge una sequenza di linee dal flusso di ingresso standard in cui ciascuna linea
+	 * rappresenta un'espressione in notazione polacca, a coppie di linee consecutive. Per ciascuna
+	 * coppia, costruisce le espressioni corrispondenti e emette nel flusso d'uscita standard una
+	 * linea con {@code true} se le espressioni sono equivalenti, {@code false} se non lo sono, o con
+	 * il messaggio dell'errore se l'equivalenza non può essere controllata. Se il limite all'errore
+	 * non è valido, emette solo il messaggio dell'errore.
+	 *
+	 * @param args il limite alla probabilità di errore e il seme dei numeri casuali.
+	 */
+	public static void main(String[] args) throws ParseException {
+		final Equivalence equivalence;
+		try {
+			equivalence = new Equivalence(Double.parseDouble(args[0]), new Random(Long.parseLong(args[1])));
+		} catch (IllegalArgumentException e) {
+			System.out.println(e.getMessage());
+			return;
+		}
+
+		Scanner s = new Scanner(System.in);
+		while (s.hasNextLine()) {
+			Node lhs = Polish.parse(s.nextLine());
+			Node rhs = Polish.parse(s.nextLine());
+			try {
+				System.out.println(equivalence.equivalent(lhs, rhs));
+			} catch (IllegalArgumentException e) {
+				System.out.println(e.getMessage());
+			}
+		}
+	}
+}
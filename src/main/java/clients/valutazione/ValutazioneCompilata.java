@@ -0,0 +1,50 @@
+package clients.valutazione;
+
+import luppolo.eval.Program;
+import luppolo.node.Node;
+import luppolo.parse.Polish;
+
+import java.text.ParseException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Scanner;
+
+/** Classe contenete il client per verificare la compilazione e la valutazione in virgola mobile delle espressioni. */
+public class ValutazioneCompilata {
+	/**
+	 * Client per verificare la compilazione di un'espressione e la sua valutazione in virgola
+	 * mobile su una colonna di punti.
+	 *
+	 * <p>Legge una sequenza di linee dal flusso di ingresso standard in cui ciascuna linea
+	 * rappresenta un'espressione in notazione polacca. Per ciascuna linea, costruisce l'espressione
+	 * corrispondente, la <em>compila</em> ed emette nel flusso d'uscita standard il listato del
+	 * programma ottenuto (in cui le sottoespressioni costanti sono calcolate e le potenze intere
+	 * sono ridotte a moltiplicazioni), seguito da una linea con i valori dell'espressione nei punti
+	 * specificati dagli argomenti sulla linea di comando, separati da spazi.
+	 *
+	 * @param args le colonne dei valori delle variabili, nella forma {@code x=1,-2,0.5}.
+	 */
+	public static void main(String[] args) throws ParseException {
+		Map<String, double[]> columns = new HashMap<>();
+		for (String arg : args) {
+			String[] assignment = arg.split("=");
+			columns.put(assignment[0], Arrays.stream(assignment[1].split(",")).mapToDouble(Double::parseDouble).toArray());
+		}
+
+		Scanner s = new Scanner(System.in);
+		while (s.hasNextLine()) {
+			Node expr = Polish.parse(s.nextLine());
+			Program program = Program.compile(expr);
+			double[][] values = program.variables().stream().map(columns::get).toArray(double[][]::new);
+
+			System.out.println(program);
+			StringBuilder line = new StringBuilder();
+			for (double value : program.evaluateAll(values)) {
+				if (!line.isEmpty()) line.append(' ');
+				line.append(value);
+			}
+			System.out.println(line);
+		}
+	}
+}
@@ -0,0 +1,70 @@
+package clients.valutazione;
+
+import luppolo.eval.Evaluate;
+import luppolo.math.Rational;
+import luppolo.node.Node;
+import luppolo.parse.StraightLine;
+
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Scanner;
+
+/** Classe contenete il client per verificare la valutazione esatta delle espressioni. */
+public class ValutazioneEsatta {
+	/**
+	 * Client per verificare la valutazione esatta, in numeri razionali, di un'espressione.
+	 *
+	 * <p>Legge una sequenza di linee dal flusso di ingresso standard corrispondenti ad un programma
+	 * lineare e costruisce l'espressione corrispondente, in cui le sottoespressioni sono condivise.
+	 * Per ciascun punto specificato come argomento sulla linea di comando emette nel flusso d'uscita
+	 * standard una linea con il valore dell'espressione nel punto, o con il messaggio dell'errore se
+	 * il valore non è definito o non è razionale; infine emette una linea con i valori in tutti i
+	 * punti, separati da spazi, calcolati visitando l'espressione una sola volta (o con il messaggio
+	 * dell'errore).
+	 *
+	 * @param args i punti, ciascuno nella forma {@code x=1/2,y=-3}.
+	 */
+	public static void main(String[] args) throws ParseException {
+		Scanner s = new Scanner(System.in);
+		StraightLine parser = new StraightLine();
+		while (s.hasNextLine()) {
+			String line = s.nextLine();
+			if (line.isBlank()) break;
+			parser.parse(line);
+		}
+		Node expr = parser.getLast();
+
+		List<Map<String, Rational>> assignments = new ArrayList<>();
+		for (String arg : args) {
+			Map<String, Rational> assignment = new HashMap<>();
+			for (String value : arg.split(",")) {
+				String[] parts = value.split("[=/]");
+				long den = parts.length > 2 ? Long.parseLong(parts[2]) : 1;
+				assignment.put(parts[0], Rational.fromNumDen(Long.parseLong(parts[1]), den));
+			}
+			assignments.add(assignment);
+		}
+
+		for (Map<String, Rational> assignment : assignments) {
+			try {
+				System.out.println(expr.transform(new Evaluate(assignment)));
+			} catch (IllegalArgumentException e) {
+				System.out.println(e.getMessage());
+			}
+		}
+
+		try {
+			StringBuilder line = new StringBuilder();
+			for (Rational value : Evaluate.evaluateAll(expr, assignments)) {
+				if (!line.isEmpty()) line.append(' ');
+				line.append(value);
+			}
+			System.out.println(line);
+		} catch (IllegalArgumentException e) {
+			System.out.println(e.getMessage());
+		}
+	}
+}
@@ -0,0 +1,57 @@
+package clients.valutazione;
+
+import luppolo.eval.HandleCompiler;
+import luppolo.node.Node;
+import luppolo.parse.Polish;
+
+import java.lang.invoke.MethodHandle;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Scanner;
+
+/** Classe contenete il client per verificare la compilazione delle espressioni in method handle. */
+public class ValutazioneHandle {
+	/**
+	 * Client per verificare la compilazione di un'espressione in un method handle e la sua
+	 * valutazione in virgola mobile.
+	 *
+	 * <p>Legge una sequenza di linee dal flusso di ingresso standard in cui ciascuna linea
+	 * rappresenta un'espressione in notazione polacca. Per ciascuna linea, costruisce l'espressione
+	 * corrispondente, la <em>compila</em> in un method handle (usando lo stesso compilatore, e
+	 * quindi la stessa cache, per tutte le linee) ed emette nel flusso d'uscita standard una linea
+	 * con i valori dell'espressione nei punti specificati dagli argomenti sulla linea di comando,
+	 * separati da spazi. In ciascun punto il valore deve coincidere con quello calcolato da
+	 * {@link ValutazioneCompilata}.
+	 *
+	 * @param args le colonne dei valori delle variabili, nella forma {@code x=1,-2,0.5}.
+	 */
+	public static void main(String[] args) throws Throwable {
+		List<String> variables = new ArrayList<>();
+		List<double[]> columns = new ArrayList<>();
+		for (String arg : args) {
+			String[] assignment = arg.split("=");
+			variables.add(assignment[0]);
+			String[] values = assignment[1].split(",");
+			double[] column = new double[values.length];
+			for (int i = 0; i < values.length; i++) column[i] = Double.parseDouble(values[i]);
+			columns.add(column);
+		}
+		final int points = columns.isEmpty() ? 1 : columns.get(0).length;
+
+		HandleCompiler compiler = new HandleCompiler();
+		Scanner s = new Scanner(System.in);
+		while (s.hasNextLine()) {
+			Node expr = Polish.parse(s.nextLine());
+			MethodHandle handle = compiler.compile(expr, variables);
+
+			StringBuilder line = new StringBuilder();
+			double[] point = new double[variables.size()];
+			for (int i = 0; i < points; i++) {
+				for (int v = 0; v < point.length; v++) point[v] = columns.get(v)[i];
+				if (!line.isEmpty()) line.append(' ');
+				line.append((double) handle.invokeExact(point));
+			}
+			System.out.println(line);
+		}
+	}
+}
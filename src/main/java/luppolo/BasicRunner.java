@@ -26,6 +26,8 @@ public class BasicRunner {
 	private static final BasicPrinter BASIC_PRINT = new BasicPrinter();
 	/** The {@link TreePrinter} printer instance. */
 	private static final TreePrinter TREE_PRINT = new TreePrinter();
+	/** The limits of the printed expressions, so that the huge ones don't flood the terminal. */
+	private static final PrintLimits LIMITS = new PrintLimits(64, 64, 1 << 16);
 
 	/** {@link BufferedReader} for reading input from the user. */
 	private static final BufferedReader reader;
@@ -142,13 +144,16 @@ public class BasicRunner {
 	}
 
 	/**
-	 * EFFECTS: prints an expression in linearized format and in tree format.
+	 * EFFECTS: prints an expression in linearized format and in tree format, streaming it to the output within {@link #LIMITS}.
 	 * @param expr The expression to print.
+	 * @throws IOException If an error occurred while writing the output.
 	 */
-	private static void printExpr(Node expr) {
+	private static void printExpr(Node expr) throws IOException {
 		writer.println("Linearized format:");
-		writer.println(expr.transform(BASIC_PRINT));
+		BASIC_PRINT.print(expr, writer, LIMITS);
+		writer.println();
 		writer.println("Tree format:");
-		writer.println(expr.transform(TREE_PRINT));
+		TREE_PRINT.print(expr, writer, LIMITS);
+		writer.println();
 	}
 }
\ No newline at end of file
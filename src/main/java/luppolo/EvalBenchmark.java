@@ -0,0 +1,79 @@
+package luppolo;
+
+import luppolo.eval.Program;
+import luppolo.node.Node;
+import luppolo.parse.Polish;
+import luppolo.transform.Expand;
+import luppolo.transform.Simplify;
+
+import java.text.ParseException;
+import java.util.Random;
+
+/**
+ * Benchmark for the backends of {@link Program}.
+ * This class must never be instantiated, it just holds the static methods of the benchmark.
+ */
+public class EvalBenchmark {
+	/** Constructor that mustn't be called */
+	private EvalBenchmark() {
+		assert false: "This class mustn't be instatiated";
+	}
+
+	/** The number of points evaluated by each run. */
+	private static final int POINTS = 1 << 20;
+	/** The number of runs used to warm up the JIT compiler. */
+	private static final int WARMUP_RUNS = 5;
+	/** The number of timed runs. */
+	private static final int RUNS = 10;
+
+	/**
+	 * Main method of the benchmark.
+	 * <p>
+	 *     EFFECTS: Expands and simplifies the polynomial (x + y + z + 1)^n (a wide polynomial, with many terms),
+	 *     then evaluates it on random points with each backend and prints the average time of each run.
+	 * @param args The exponent n, 8 if not specified.
+	 * @throws ParseException Never, the benchmark expression is always valid.
+	 */
+	public static void main(String[] args) throws ParseException {
+		final int exponent = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+		Node polynomial = Polish.parse("^ + + x y + z 1 " + exponent)
+			.transform(new Expand())
+			.transform(new Simplify());
+		Program program = Program.compile(polynomial);
+
+		Random random = new Random(42);
+		double[][] columns = new double[program.variables().size()][POINTS];
+		for (double[] column : columns)
+			for (int i = 0; i < POINTS; i++)
+				column[i] = random.nextDouble() * 2 - 1;
+
+		System.out.printf("Evaluating (x + y + z + 1)^%d on %d points%n", exponent, POINTS);
+		double scalar = measure(program, Program.Backend.SCALAR, columns);
+		double columnar = measure(program, Program.Backend.COLUMNAR, columns);
+		System.out.printf("SCALAR:   %8.2f ms%n", scalar);
+		System.out.printf("COLUMNAR: %8.2f ms%n", columnar);
+		System.out.printf("Speedup:  %8.2fx%n", scalar / columnar);
+	}
+
+	/**
+	 * <p>EFFECTS: Measures the average time to evaluate the program with the given backend.</p>
+	 * @param program The program to evaluate.
+	 * @param backend The backend to use.
+	 * @param columns The points to evaluate.
+	 * @return The average time of a run in milliseconds.
+	 */
+	private static double measure(Program program, Program.Backend backend, double[][] columns) {
+		// Accumulate the results, so that the evaluation cannot be optimized away
+		double checksum = 0;
+		for (int i = 0; i < WARMUP_RUNS; i++)
+			checksum += program.evaluateAll(backend, columns)[0];
+
+		long start = System.nanoTime();
+		for (int i = 0; i < RUNS; i++)
+			checksum += program.evaluateAll(backend, columns)[0];
+		long elapsed = System.nanoTime() - start;
+
+		if (Double.isNaN(checksum)) System.out.println("NaN checksum");
+		return elapsed / 1e6 / RUNS;
+	}
+}
@@ -0,0 +1,104 @@
+package luppolo.eval;
+
+import luppolo.math.Rational;
+
+import java.util.Objects;
+
+/**
+ * <p>The arithmetic operations on a number type, used by the evaluators that support more than one number type.</p>
+ * <p>REQUIREMENTS: The implementers must be immutable, and their operations must not modify the operands.</p>
+ * @param <T> The number type.
+ */
+public interface Arithmetic<T> {
+	/** Exact arithmetic on {@link Rational} numbers, the errors are the same of {@link Evaluate}. */
+	Arithmetic<Rational> RATIONAL = new Arithmetic<>() {
+		@Override
+		public Rational fromRational(Rational value) {
+			return Objects.requireNonNull(value);
+		}
+
+		@Override
+		public Rational add(Rational lhs, Rational rhs) {
+			return lhs.add(rhs);
+		}
+
+		@Override
+		public Rational mul(Rational lhs, Rational rhs) {
+			return lhs.mul(rhs);
+		}
+
+		@Override
+		public Rational pow(Rational base, Rational exp) {
+			return Evaluate.power(base, exp);
+		}
+	};
+
+	/**
+	 * Floating point arithmetic on doubles, with the semantics of {@link Program}:
+	 * the roots with an odd index of negative numbers are real, the ones with an even index are NaN.
+	 */
+	Arithmetic<Double> DOUBLE = new Arithmetic<>() {
+		@Override
+		public Double fromRational(Rational value) {
+			return (double) value.num / value.den;
+		}
+
+		@Override
+		public Double add(Double lhs, Double rhs) {
+			return lhs + rhs;
+		}
+
+		@Override
+		public Double mul(Double lhs, Double rhs) {
+			return lhs * rhs;
+		}
+
+		@Override
+		public Double pow(Double base, Rational exp) {
+			// Roots with an even index of negative numbers are not real, Math.pow returns NaN
+			if (base >= 0 || exp.den % 2 == 0) return Math.pow(base, fromRational(exp));
+			double value = Math.pow(-base, fromRational(exp));
+			return exp.num % 2 == 0 ? value : -value;
+		}
+	};
+
+	/**
+	 * <p>EFFECTS: Converts a rational to the number type.</p>
+	 * <p>REQUIREMENTS: value must be non-null.</p>
+	 * @param value The rational.
+	 * @return The converted value.
+	 * @throws NullPointerException If value is null.
+	 */
+	T fromRational(Rational value) throws NullPointerException;
+
+	/**
+	 * <p>EFFECTS: Computes the sum of two numbers.</p>
+	 * <p>REQUIREMENTS: The operands must be non-null.</p>
+	 * @param lhs The first operand.
+	 * @param rhs The second operand.
+	 * @return The sum.
+	 * @throws NullPointerException If any of the operands is null.
+	 */
+	T add(T lhs, T rhs) throws NullPointerException;
+
+	/**
+	 * <p>EFFECTS: Computes the product of two numbers.</p>
+	 * <p>REQUIREMENTS: The operands must be non-null.</p>
+	 * @param lhs The first operand.
+	 * @param rhs The second operand.
+	 * @return The product.
+	 * @throws NullPointerException If any of the operands is null.
+	 */
+	T mul(T lhs, T rhs) throws NullPointerException;
+
+	/**
+	 * <p>EFFECTS: Computes a power with a rational exponent.</p>
+	 * <p>REQUIREMENTS: The operands must be non-null.</p>
+	 * @param base The base.
+	 * @param exp The exponent.
+	 * @return The power.
+	 * @throws IllegalArgumentException If the power is undefined for the number type.
+	 * @throws NullPointerException If any of the operands is null.
+	 */
+	T pow(T base, Rational exp) throws IllegalArgumentException, NullPointerException;
+}
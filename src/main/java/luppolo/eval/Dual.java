@@ -0,0 +1,25 @@
+package luppolo.eval;
+
+import java.util.Objects;
+
+/**
+ * <p>A <a href="https://en.wikipedia.org/wiki/Dual_number">dual number</a>, the value of a function and of its derivative at a point.</p>
+ * <p>AF: This represents the dual number value + derivative * ε, where ε^2 = 0.</p>
+ * <p>REQUIREMENTS: value and derivative must be non-null.</p>
+ * <p>MUTABILITY: This class is immutable, if T is immutable.</p>
+ * @param value The value of the function.
+ * @param derivative The value of the derivative.
+ * @param <T> The number type.
+ */
+public record Dual<T>(T value, T derivative) {
+	/**
+	 * Constructor for {@link Dual}.
+	 * <p>REQUIREMENTS: All the parameters must be non-null.</p>
+	 * @param value The value of the function.
+	 * @param derivative The value of the derivative.
+	 */
+	public Dual {
+		Objects.requireNonNull(value);
+		Objects.requireNonNull(derivative);
+	}
+}
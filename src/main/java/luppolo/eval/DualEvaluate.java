@@ -0,0 +1,156 @@
+package luppolo.eval;
+
+import luppolo.math.Rational;
+import luppolo.node.*;
+
+import java.util.*;
+
+/**
+ * <p>
+ *     A visitor that computes the value of an expression and of its derivative with respect to a variable, at a point,
+ *     using <a href="https://en.wikipedia.org/wiki/Automatic_differentiation#Forward_accumulation">forward accumulation</a>
+ *     with {@link Dual} numbers.
+ * </p>
+ * <p>
+ *     Unlike computing the derivative with {@link luppolo.transform.Differentiate} and evaluating it,
+ *     no expression is built: the derivative is propagated with the value in a single visit of the original expression.
+ *     The rules, given the dual numbers (u, u') and (v, v') of the operands, are:
+ *     <ul>
+ *         <li>{@link SumNode}: (u + v, u' + v').</li>
+ *         <li>{@link MulNode}: (u * v, u' * v + u * v').</li>
+ *         <li>{@link PowNode} with exponent e: (u^e, e * u^(e - 1) * u').</li>
+ *     </ul>
+ * <p>
+ *     AF: arithmetic defines the number type, assignment maps the name of each variable to its value,
+ *     variable is the variable with respect to differentiate, values maps each evaluated node to its dual number.
+ * <p>
+ *     REQUIREMENTS:
+ *     <ul>
+ *         <li>All the fields must be non-null, and the maps must not contain null keys or values.</li>
+ *         <li>Each value in values must be the dual number of its node for the assignment.</li>
+ *         <li>see {@link Visitor} for the additional requirements.</li>
+ *     </ul>
+ * <p>
+ *     MUTABILITY: This class is mutable, by means of memoizing the dual numbers of the nodes (by reference).
+ *     Since the nodes are immutable the memoized values never change, so the visitor respects the requirements of {@link Visitor}.
+ * </p>
+ * @param <T> The number type, see {@link Arithmetic#RATIONAL} and {@link Arithmetic#DOUBLE}.
+ */
+public class DualEvaluate<T> implements Visitor<Dual<T>> {
+	/** The arithmetic of the number type. */
+	private final Arithmetic<T> arithmetic;
+	/** The value of each variable. */
+	private final Map<String, T> assignment;
+	/** The variable with respect to differentiate. */
+	private final String variable;
+	/** The dual number of each evaluated node, identified by reference. */
+	private final Map<Node, Dual<T>> values;
+	/** The constant zero. */
+	private final T zero;
+	/** The constant one. */
+	private final T one;
+
+	/**
+	 * <p>EFFECTS: Constructs a new {@link DualEvaluate}.</p>
+	 * <p>
+	 *     REQUIREMENTS:
+	 *     <ul>
+	 *         <li>The parameters must be non-null.</li>
+	 *         <li>assignment must not contain null keys or values.</li>
+	 *     </ul>
+	 * @param arithmetic The arithmetic of the number type.
+	 * @param assignment The value of each variable.
+	 * @param variable The variable with respect to differentiate.
+	 * @throws NullPointerException If any of the parameters, or of the keys or values of assignment, is null.
+	 */
+	public DualEvaluate(Arithmetic<T> arithmetic, Map<String, T> assignment, String variable)
+		throws NullPointerException
+	{
+		this.arithmetic = Objects.requireNonNull(arithmetic);
+		this.assignment = Map.copyOf(assignment);
+		this.variable = Objects.requireNonNull(variable);
+		this.values = new IdentityHashMap<>();
+		this.zero = arithmetic.fromRational(Rational.ZERO);
+		this.one = arithmetic.fromRational(Rational.ONE);
+	}
+
+	/**
+	 * <p>EFFECTS: Evaluates a node, using the memoized value if the node was already evaluated.</p>
+	 * @param node The node to evaluate.
+	 * @return The dual number of the node.
+	 */
+	private Dual<T> evaluate(Node node) {
+		Dual<T> value = values.get(node);
+		if (value == null) {
+			value = node.transform(this);
+			values.put(node, value);
+		}
+		return value;
+	}
+
+	@Override
+	public Dual<T> visit(NumberNode node) {
+		return new Dual<>(arithmetic.fromRational(node.value()), zero);
+	}
+
+	@Override
+	public Dual<T> visit(VariableNode node)
+		throws IllegalArgumentException
+	{
+		T value = assignment.get(node.name());
+		if (value == null)
+			throw new IllegalArgumentException("The variable " + node.name() + " is not assigned");
+		return new Dual<>(value, node.name().equals(variable) ? one : zero);
+	}
+
+	@Override
+	public Dual<T> visit(SumNode node)
+		throws IllegalArgumentException
+	{
+		T value = zero;
+		T derivative = zero;
+		for (Node operand : node.operands()) {
+			Dual<T> dual = evaluate(operand);
+			value = arithmetic.add(value, dual.value());
+			derivative = arithmetic.add(derivative, dual.derivative());
+		}
+		return new Dual<>(value, derivative);
+	}
+
+	@Override
+	public Dual<T> visit(MulNode node)
+		throws IllegalArgumentException
+	{
+		T value = one;
+		T derivative = zero;
+		for (Node operand : node.operands()) {
+			Dual<T> dual = evaluate(operand);
+			// (u, u') * (v, v') = (u * v, u' * v + u * v')
+			derivative = arithmetic.add(
+				arithmetic.mul(derivative, dual.value()),
+				arithmetic.mul(value, dual.derivative())
+			);
+			value = arithmetic.mul(value, dual.value());
+		}
+		return new Dual<>(value, derivative);
+	}
+
+	@Override
+	public Dual<T> visit(PowNode node)
+		throws IllegalArgumentException
+	{
+		Dual<T> base = evaluate(node.base());
+		Rational exp = node.exp();
+		T value = arithmetic.pow(base.value(), exp);
+
+		// If the base is constant the derivative is zero, u^(e - 1) is not computed since it could be undefined
+		if (base.derivative().equals(zero) || exp.equals(Rational.ZERO))
+			return new Dual<>(value, zero);
+		if (exp.equals(Rational.ONE))
+			return base;
+
+		T power = arithmetic.pow(base.value(), exp.add(Rational.NEG_ONE));
+		T derivative = arithmetic.mul(arithmetic.mul(arithmetic.fromRational(exp), power), base.derivative());
+		return new Dual<>(value, derivative);
+	}
+}
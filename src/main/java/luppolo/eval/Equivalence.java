@@ -0,0 +1,354 @@
+package luppolo.eval;
+
+import luppolo.math.Modular;
+import luppolo.math.Rational;
+import luppolo.node.*;
+
+import java.util.*;
+
+/**
+ * <p>
+ *     A probabilistic checker of the equivalence of two expressions, that evaluates both of them at random points
+ *     modulo random primes, instead of expanding and simplifying them.
+ * </p>
+ * <p>
+ *     An expression with integer exponents is a rational function P/Q, so two expressions P/Q and R/S are equivalent
+ *     if and only if the polynomial P*S - R*Q is zero. By the
+ *     <a href="https://en.wikipedia.org/wiki/Schwartz%E2%80%93Zippel_lemma">Schwartz-Zippel lemma</a> a non-zero polynomial of
+ *     degree D vanishes at a random point modulo a prime p with probability at most D/p, so the expressions are evaluated at
+ *     independent random points until the probability that all of them agree on non-equivalent expressions is less than the error bound.
+ *     The degree D is bounded from the structure of the expressions, without expanding them.
+ * </p>
+ * <p>
+ *     The negative exponents are computed with modular inverses, and the points where an expression is undefined
+ *     (like a zero denominator) are discarded and sampled again.
+ *     The non integer exponents are supported only on constant bases, whose exact value is computed with {@link Evaluate}.
+ * </p>
+ * <p>
+ *     AF: error is the maximum probability that two non-equivalent expressions are reported as equivalent,
+ *     random is the source of the random points and primes.
+ * <p>REQUIREMENTS: random must be non-null, 0 &lt; error &lt; 1.</p>
+ * <p>MUTABILITY: This class is mutable, by means of the state of random.</p>
+ * <p>
+ *     NOTES: The bound assumes that the random prime doesn't divide all the coefficients of P*S - R*Q,
+ *     which for non-equivalent expressions with reasonable coefficients happens with negligible probability.
+ * </p>
+ */
+public class Equivalence {
+	/** The default error bound. */
+	public static final double DEFAULT_ERROR = 1e-12;
+	/** The maximum number of points sampled to find one where both expressions are defined. */
+	private static final int MAX_ATTEMPTS = 64;
+	/** The value of an undefined expression, the residues are never negative. */
+	private static final long UNDEFINED = -1;
+
+	/** The maximum probability of a wrong answer. */
+	private final double error;
+	/** The source of randomness. */
+	private final Random random;
+
+	/**
+	 * <p>EFFECTS: Constructs a new {@link Equivalence} with the {@link #DEFAULT_ERROR} bound.</p>
+	 */
+	public Equivalence() {
+		this(DEFAULT_ERROR, new Random());
+	}
+
+	/**
+	 * <p>EFFECTS: Constructs a new {@link Equivalence}.</p>
+	 * <p>REQUIREMENTS: random must be non-null, 0 &lt; error &lt; 1.</p>
+	 * @param error The maximum probability that two non-equivalent expressions are reported as equivalent.
+	 * @param random The source of randomness, a seeded one makes the checks reproducible.
+	 * @throws IllegalArgumentException If error is not in (0, 1).
+	 * @throws NullPointerException If random is null.
+	 */
+	public Equivalence(double error, Random random)
+		throws IllegalArgumentException, NullPointerException
+	{
+		if (!(error > 0 && error < 1))
+			throw new IllegalArgumentException("The error bound must be between zero and one");
+
+		this.error = error;
+		this.random = Objects.requireNonNull(random);
+	}
+
+	/**
+	 * <p>EFFECTS: Checks if two expressions are equivalent.</p>
+	 * <p>
+	 *     If the expressions are equivalent the result is always true, otherwise the result is false
+	 *     with probability at least 1 - error.
+	 * </p>
+	 * <p>REQUIREMENTS: The parameters must be non-null.</p>
+	 * <p>MUTABILITY: This method advances the state of the source of randomness.</p>
+	 * @param lhs The first expression.
+	 * @param rhs The second expression.
+	 * @return true if the expressions are (probably) equivalent.
+	 * @throws IllegalArgumentException If an expression contains a non integer exponent of a non constant base,
+	 * the value of a constant expression is not rational, the degree of the expressions is too high to bound the error,
+	 * or the expressions are undefined at every sampled point.
+	 * @throws NullPointerException If any of the parameters is null.
+	 */
+	public boolean equivalent(Node lhs, Node rhs)
+		throws IllegalArgumentException, NullPointerException
+	{
+		Objects.requireNonNull(lhs);
+		Objects.requireNonNull(rhs);
+
+		Map<String, Integer> variables = new HashMap<>();
+		Plan left = new Plan(lhs, variables);
+		Plan right = new Plan(rhs, variables);
+
+		// deg(P*S - R*Q) <= max(deg(P) + deg(S), deg(R) + deg(Q))
+		long degree = Math.max(
+			saturatedAdd(left.numeratorDegree, right.denominatorDegree),
+			saturatedAdd(right.numeratorDegree, left.denominatorDegree)
+		);
+
+		final int trials = trials(degree);
+		final long[] point = new long[variables.size()];
+		for (int i = 0; i < trials; i++)
+			if (!agree(left, right, point)) return false;
+		return true;
+	}
+
+	/**
+	 * <p>EFFECTS: Computes the number of independent trials needed to satisfy the error bound.</p>
+	 * @param degree The bound to the degree of the difference of the expressions.
+	 * @return The number of trials.
+	 * @throws IllegalArgumentException If the degree is too high to bound the error.
+	 */
+	private int trials(long degree)
+		throws IllegalArgumentException
+	{
+		// The primes are at least 2^30
+		final double failure = degree / (double) (Modular.MAX_MODULUS / 2);
+		if (failure >= 1)
+			throw new IllegalArgumentException("The degree of the expressions is too high to bound the error");
+		if (degree == 0) return 1;
+		return Math.max(1, (int) Math.ceil(Math.log(error) / Math.log(failure)));
+	}
+
+	/**
+	 * <p>EFFECTS: Evaluates the expressions at a random point, where both of them are defined, modulo a random prime.</p>
+	 * <p>MUTABILITY: This method modifies point.</p>
+	 * @param left The first expression.
+	 * @param right The second expression.
+	 * @param point The array that holds the value of each variable.
+	 * @return true if the values of the expressions are equal.
+	 * @throws IllegalArgumentException If the expressions are undefined at every sampled point.
+	 */
+	private boolean agree(Plan left, Plan right, long[] point)
+		throws IllegalArgumentException
+	{
+		for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+			final long modulus = Modular.randomPrime(random);
+			for (int i = 0; i < point.length; i++)
+				point[i] = random.nextLong(modulus);
+
+			long a = left.evaluate(point, modulus);
+			if (a == UNDEFINED) continue;
+			long b = right.evaluate(point, modulus);
+			if (b == UNDEFINED) continue;
+			return a == b;
+		}
+		throw new IllegalArgumentException("The expressions are undefined at every sampled point");
+	}
+
+	/**
+	 * <p>EFFECTS: Computes a + b, or {@link Long#MAX_VALUE} if it overflows.</p>
+	 * <p>REQUIREMENTS: a and b must be non-negative.</p>
+	 * @param a The first operand.
+	 * @param b The second operand.
+	 * @return The saturated sum.
+	 */
+	private static long saturatedAdd(long a, long b) {
+		long sum = a + b;
+		return sum < 0 ? Long.MAX_VALUE : sum;
+	}
+
+	/**
+	 * <p>EFFECTS: Computes a * b, or {@link Long#MAX_VALUE} if it overflows.</p>
+	 * <p>REQUIREMENTS: a and b must be non-negative.</p>
+	 * @param a The first operand.
+	 * @param b The second operand.
+	 * @return The saturated product.
+	 */
+	private static long saturatedMul(long a, long b) {
+		if (a != 0 && b > Long.MAX_VALUE / a) return Long.MAX_VALUE;
+		return a * b;
+	}
+
+	/**
+	 * <p>
+	 *     An expression prepared for the modular evaluation: the distinct nodes are stored in topological order,
+	 *     with the indices of their children, and the degrees of the numerator and denominator of the expression are bounded.
+	 * </p>
+	 * <p>
+	 *     AF: nodes are the distinct (by reference) nodes of the expression in topological order,
+	 *     operands[i] are the indices in nodes of the children of nodes[i],
+	 *     variables[i] is the index in the point of nodes[i] if it is a variable,
+	 *     constants[i] is the exact value of nodes[i] if it is a non integer power of a constant,
+	 *     numeratorDegree and denominatorDegree bound the degrees of the numerator and denominator of the expression.
+	 * <p>REQUIREMENTS: The indices in operands[i] must be less than i.</p>
+	 * <p>MUTABILITY: This class is immutable.</p>
+	 */
+	private static class Plan {
+		/** The distinct nodes, in topological order. */
+		private final Node[] nodes;
+		/** The indices of the children of each node. */
+		private final int[][] operands;
+		/** The index in the point of each variable. */
+		private final int[] variables;
+		/** The exact value of each non integer power of a constant. */
+		private final Rational[] constants;
+		/** The bound to the degree of the numerator. */
+		final long numeratorDegree;
+		/** The bound to the degree of the denominator. */
+		final long denominatorDegree;
+
+		/**
+		 * <p>EFFECTS: Prepares an expression for the evaluation.</p>
+		 * <p>MUTABILITY: This constructor adds the new variables of the expression to indices.</p>
+		 * @param expr The expression.
+		 * @param indices The index in the point of each variable.
+		 * @throws IllegalArgumentException If the expression contains a non integer exponent of a non constant base,
+		 * or the value of a constant expression is not rational.
+		 */
+		Plan(Node expr, Map<String, Integer> indices)
+			throws IllegalArgumentException
+		{
+			List<Node> order = Dag.topologicalOrder(expr);
+			Map<Node, Integer> positions = new IdentityHashMap<>();
+			Evaluate exact = new Evaluate(Map.of());
+
+			this.nodes = new Node[order.size()];
+			this.operands = new int[order.size()][];
+			this.variables = new int[order.size()];
+			this.constants = new Rational[order.size()];
+			// The degrees of numerator and denominator, and whether the node has no variables
+			long[] numerators = new long[order.size()];
+			long[] denominators = new long[order.size()];
+			boolean[] constant = new boolean[order.size()];
+
+			for (int i = 0; i < nodes.length; i++) {
+				Node node = order.get(i);
+				List<Node> children = Dag.children(node);
+				int[] childIndices = new int[children.size()];
+				for (int j = 0; j < childIndices.length; j++)
+					childIndices[j] = positions.get(children.get(j));
+
+				nodes[i] = node;
+				operands[i] = childIndices;
+				positions.put(node, i);
+
+				if (node instanceof NumberNode) {
+					constant[i] = true;
+				} else if (node instanceof VariableNode variable) {
+					variables[i] = indices.computeIfAbsent(variable.name(), name -> indices.size());
+					numerators[i] = 1;
+				} else if (node instanceof SumNode) {
+					// a/b + c/d = (a*d + c*b) / (b*d)
+					long denominator = 0;
+					for (int operand : childIndices)
+						denominator = saturatedAdd(denominator, denominators[operand]);
+					long numerator = 0;
+					constant[i] = true;
+					for (int operand : childIndices) {
+						numerator = Math.max(numerator, saturatedAdd(numerators[operand], denominator - denominators[operand]));
+						constant[i] &= constant[operand];
+					}
+					numerators[i] = numerator;
+					denominators[i] = denominator;
+				} else if (node instanceof MulNode) {
+					constant[i] = true;
+					for (int operand : childIndices) {
+						numerators[i] = saturatedAdd(numerators[i], numerators[operand]);
+						denominators[i] = saturatedAdd(denominators[i], denominators[operand]);
+						constant[i] &= constant[operand];
+					}
+				} else {
+					Rational exp = ((PowNode) node).exp();
+					int base = childIndices[0];
+					constant[i] = constant[base];
+
+					if (!exp.isInteger()) {
+						if (!constant[base])
+							throw new IllegalArgumentException("Non integer exponents are supported only on constant bases");
+						constants[i] = node.transform(exact);
+					} else if (exp.num >= 0) {
+						numerators[i] = saturatedMul(exp.num, numerators[base]);
+						denominators[i] = saturatedMul(exp.num, denominators[base]);
+					} else {
+						// (a/b)^-n = b^n / a^n
+						numerators[i] = saturatedMul(-exp.num, denominators[base]);
+						denominators[i] = saturatedMul(-exp.num, numerators[base]);
+					}
+				}
+			}
+
+			this.numeratorDegree = numerators[nodes.length - 1];
+			this.denominatorDegree = denominators[nodes.length - 1];
+		}
+
+		/**
+		 * <p>EFFECTS: Evaluates the expression at a point, modulo a prime.</p>
+		 * <p>REQUIREMENTS: point must contain a residue for each variable of the expression.</p>
+		 * @param point The value of each variable.
+		 * @param modulus The prime modulus.
+		 * @return The value of the expression, or {@link #UNDEFINED} if it is undefined at the point.
+		 */
+		long evaluate(long[] point, long modulus) {
+			// The evaluation stops at the first undefined node, so the values of the operands are always defined
+			long[] values = new long[nodes.length];
+			for (int i = 0; i < nodes.length; i++) {
+				final Node node = nodes[i];
+				long value;
+				if (node instanceof NumberNode number) {
+					value = residue(number.value(), modulus);
+				} else if (node instanceof VariableNode) {
+					value = point[variables[i]];
+				} else if (node instanceof SumNode) {
+					value = 0;
+					for (int operand : operands[i])
+						value = Modular.add(value, values[operand], modulus);
+				} else if (node instanceof MulNode) {
+					value = 1;
+					for (int operand : operands[i])
+						value = Modular.mul(value, values[operand], modulus);
+				} else if (constants[i] != null) {
+					value = residue(constants[i], modulus);
+				} else {
+					value = power(values[operands[i][0]], ((PowNode) node).exp().num, modulus);
+				}
+
+				if (value == UNDEFINED) return UNDEFINED;
+				values[i] = value;
+			}
+			return values[nodes.length - 1];
+		}
+
+		/**
+		 * <p>EFFECTS: Computes the residue of a rational number.</p>
+		 * @param value The rational number.
+		 * @param modulus The prime modulus.
+		 * @return The residue, or {@link #UNDEFINED} if the modulus divides the denominator.
+		 */
+		private static long residue(Rational value, long modulus) {
+			if (Modular.reduce(value.den, modulus) == 0) return UNDEFINED;
+			return Modular.fromRational(value, modulus);
+		}
+
+		/**
+		 * <p>EFFECTS: Computes base^exp modulo a prime.</p>
+		 * @param base The residue of the base.
+		 * @param exp The integer exponent.
+		 * @param modulus The prime modulus.
+		 * @return The power, or {@link #UNDEFINED} if the base is zero and the exponent is not positive.
+		 */
+		private static long power(long base, long exp, long modulus) {
+			if (base == 0 && exp <= 0) return UNDEFINED;
+			if (exp >= 0) return Modular.pow(base, exp, modulus);
+			return Modular.pow(Modular.inverse(base, modulus), -exp, modulus);
+		}
+	}
+}
@@ -0,0 +1,240 @@
+package luppolo.eval;
+
+import luppolo.math.Rational;
+import luppolo.node.*;
+
+import java.util.*;
+
+/**
+ * <p>
+ *     A visitor that computes the exact value of an expression, for a given assignment of rational values to its variables.
+ *     The value is computed with {@link Rational} arithmetic, so there are no rounding errors.
+ * </p>
+ * <p>
+ *     The value of each node is memoized by reference, so the shared subexpressions (like the ones built by a
+ *     straight line program) are evaluated once, and the evaluation takes linear time in the number of distinct nodes.
+ *     To evaluate the same expression with many assignments use {@link #evaluateAll(Node, List)},
+ *     that visits the expression only once.
+ * </p>
+ * <p>
+ *     AF: assignment maps the name of each variable to its value, values maps each evaluated node to its value.
+ * <p>
+ *     REQUIREMENTS:
+ *     <ul>
+ *         <li>assignment and values must be non-null, and must not contain null keys or values.</li>
+ *         <li>Each value in values must be the value of its node for the assignment.</li>
+ *         <li>see {@link Visitor} for the additional requirements.</li>
+ *     </ul>
+ * <p>
+ *     MUTABILITY: This class is mutable, by means of memoizing the values of the nodes.
+ *     Since the nodes are immutable the memoized values never change, so the visitor respects the requirements of {@link Visitor}.
+ * </p>
+ * <p>NOTES: Like {@link Rational}, the evaluation doesn't check for overflows.</p>
+ */
+public class Evaluate implements Visitor<Rational> {
+	/** The value of each variable. */
+	private final Map<String, Rational> assignment;
+	/** The value of each evaluated node, identified by reference. */
+	private final Map<Node, Rational> values;
+
+	/**
+	 * <p>EFFECTS: Constructs a new {@link Evaluate} for the given assignment.</p>
+	 * <p>REQUIREMENTS: assignment must be non-null, and must not contain null keys or values.</p>
+	 * @param assignment The value of each variable.
+	 * @throws NullPointerException If assignment, or any of its keys or values, is null.
+	 */
+	public Evaluate(Map<String, Rational> assignment)
+		throws NullPointerException
+	{
+		this.assignment = Map.copyOf(assignment);
+		this.values = new IdentityHashMap<>();
+	}
+
+	/**
+	 * <p>EFFECTS: Evaluates an expression with the given assignments, the expression is visited only once.</p>
+	 * <p>
+	 *     REQUIREMENTS:
+	 *     <ul>
+	 *         <li>The parameters must be non-null, assignments must not contain null elements.</li>
+	 *         <li>Every assignment must assign all the variables of expr.</li>
+	 *     </ul>
+	 * @param expr The expression to evaluate.
+	 * @param assignments The assignments of values to the variables.
+	 * @return The value of the expression for each assignment, in the same order of the assignments.
+	 * @throws IllegalArgumentException If a variable is not assigned, or the value is not a rational number.
+	 * @throws NullPointerException If any of the parameters is null.
+	 */
+	public static List<Rational> evaluateAll(Node expr, List<Map<String, Rational>> assignments)
+		throws IllegalArgumentException, NullPointerException
+	{
+		Objects.requireNonNull(expr);
+		Objects.requireNonNull(assignments);
+
+		Plan plan = new Plan(expr);
+		List<Rational> results = new ArrayList<>(assignments.size());
+		for (Map<String, Rational> assignment : assignments)
+			results.add(plan.evaluate(Objects.requireNonNull(assignment)));
+		return results;
+	}
+
+	/**
+	 * <p>EFFECTS: Evaluates a node, using the memoized value if the node was already evaluated.</p>
+	 * @param node The node to evaluate.
+	 * @return The value of the node.
+	 */
+	private Rational evaluate(Node node) {
+		Rational value = values.get(node);
+		if (value == null) {
+			value = node.transform(this);
+			values.put(node, value);
+		}
+		return value;
+	}
+
+	@Override
+	public Rational visit(NumberNode node) {
+		return node.value();
+	}
+
+	@Override
+	public Rational visit(VariableNode node)
+		throws IllegalArgumentException
+	{
+		return variable(assignment, node.name());
+	}
+
+	@Override
+	public Rational visit(SumNode node)
+		throws IllegalArgumentException
+	{
+		Rational sum = Rational.ZERO;
+		for (Node operand : node.operands())
+			sum = sum.add(evaluate(operand));
+		return sum;
+	}
+
+	@Override
+	public Rational visit(MulNode node)
+		throws IllegalArgumentException
+	{
+		Rational product = Rational.ONE;
+		for (Node operand : node.operands())
+			product = product.mul(evaluate(operand));
+		return product;
+	}
+
+	@Override
+	public Rational visit(PowNode node)
+		throws IllegalArgumentException
+	{
+		return power(evaluate(node.base()), node.exp());
+	}
+
+	/**
+	 * <p>EFFECTS: Returns the value assigned to a variable.</p>
+	 * @param assignment The value of each variable.
+	 * @param name The name of the variable.
+	 * @return The value of the variable.
+	 * @throws IllegalArgumentException If the variable is not assigned.
+	 */
+	private static Rational variable(Map<String, Rational> assignment, String name)
+		throws IllegalArgumentException
+	{
+		Rational value = assignment.get(name);
+		if (value == null)
+			throw new IllegalArgumentException("The variable " + name + " is not assigned");
+		return value;
+	}
+
+	/**
+	 * <p>EFFECTS: Computes base^exp, if the result is a rational number.</p>
+	 * @param base The base.
+	 * @param exp The exponent.
+	 * @return The power.
+	 * @throws IllegalArgumentException If computing 0^0, 0 to a negative exponent, or if the result is not rational.
+	 */
+	static Rational power(Rational base, Rational exp)
+		throws IllegalArgumentException
+	{
+		Optional<Rational> result = base.pow(exp);
+		if (result.isPresent()) return result.get();
+
+		if (exp.den % 2 == 0 && base.compareTo(Rational.ZERO) < 0)
+			throw new IllegalArgumentException("Even roots of negative numbers are not real");
+		throw new IllegalArgumentException("The value " + base + "^" + exp + " is not a rational number");
+	}
+
+	/**
+	 * <p>
+	 *     An expression prepared for the evaluation with many assignments:
+	 *     the distinct nodes are stored in topological order, with the indices of their children.
+	 * </p>
+	 * <p>
+	 *     AF: nodes are the distinct (by reference) nodes of the expression in topological order,
+	 *     operands[i] are the indices in nodes of the children of nodes[i].
+	 * <p>REQUIREMENTS: The indices in operands[i] must be less than i.</p>
+	 * <p>MUTABILITY: This class is immutable.</p>
+	 */
+	private static class Plan {
+		/** The distinct nodes, in topological order. */
+		private final Node[] nodes;
+		/** The indices of the children of each node. */
+		private final int[][] operands;
+
+		/**
+		 * <p>EFFECTS: Prepares an expression for the evaluation.</p>
+		 * @param expr The expression.
+		 */
+		Plan(Node expr) {
+			List<Node> order = Dag.topologicalOrder(expr);
+			Map<Node, Integer> indices = new IdentityHashMap<>();
+			this.nodes = new Node[order.size()];
+			this.operands = new int[order.size()][];
+
+			for (int i = 0; i < nodes.length; i++) {
+				Node node = order.get(i);
+				List<Node> children = Dag.children(node);
+				int[] childIndices = new int[children.size()];
+				for (int j = 0; j < childIndices.length; j++)
+					childIndices[j] = indices.get(children.get(j));
+
+				nodes[i] = node;
+				operands[i] = childIndices;
+				indices.put(node, i);
+			}
+		}
+
+		/**
+		 * <p>EFFECTS: Evaluates the expression for an assignment.</p>
+		 * @param assignment The value of each variable.
+		 * @return The value of the expression.
+		 * @throws IllegalArgumentException If a variable is not assigned, or the value is not a rational number.
+		 */
+		Rational evaluate(Map<String, Rational> assignment)
+			throws IllegalArgumentException
+		{
+			Rational[] values = new Rational[nodes.length];
+			for (int i = 0; i < nodes.length; i++) {
+				final Node node = nodes[i];
+				final Rational value;
+				if (node instanceof NumberNode number) {
+					value = number.value();
+				} else if (node instanceof VariableNode variable) {
+					value = variable(assignment, variable.name());
+				} else if (node instanceof SumNode) {
+					Rational sum = Rational.ZERO;
+					for (int operand : operands[i]) sum = sum.add(values[operand]);
+					value = sum;
+				} else if (node instanceof MulNode) {
+					Rational product = Rational.ONE;
+					for (int operand : operands[i]) product = product.mul(values[operand]);
+					value = product;
+				} else {
+					value = power(values[operands[i][0]], ((PowNode) node).exp());
+				}
+				values[i] = value;
+			}
+			return values[nodes.length - 1];
+		}
+	}
+}
@@ -0,0 +1,436 @@
+package luppolo.eval;
+
+import luppolo.math.Rational;
+import luppolo.node.*;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.*;
+
+/**
+ * <p>
+ *     A compiler that translates an expression to a {@link MethodHandle} of type (double[])double,
+ *     that evaluates the expression in floating point arithmetic, given the values of the variables.
+ * </p>
+ * <p>
+ *     The handle is built only using the {@link MethodHandles} combinators, without an interpreter loop,
+ *     so when it's invoked often the JIT compiler inlines the whole expression in straight line machine code.
+ *     The semantics of the operations are the same as {@link Program}: constants are folded, integer powers are computed
+ *     by repeated multiplication and the other powers using {@link Math#pow}, preserving the sign of odd roots.
+ * </p>
+ * <p>
+ *     AF: compiled maps each expression, identified by its kind and the handles of its operands (see {@link Key}),
+ *     to the handle that evaluates the expression, where the i-th element of the array argument is the value of the i-th variable.
+ *     constants maps the handles of the constant expressions to their value.
+ * <p>
+ *     REQUIREMENTS:
+ *     <ul>
+ *         <li>compiled and constants must be non-null, and must not contain null keys or values.</li>
+ *         <li>Each handle in constants must return its value, for every argument.</li>
+ *     </ul>
+ * <p>MUTABILITY: This class is mutable, by means of adding the compiled handles to the cache.</p>
+ * <p>
+ *     NOTES: The handles should be invoked with {@code (double) handle.invokeExact(values)}.
+ *     The size of the code generated by the JIT compiler grows with the size of the expression,
+ *     so this class is meant for small expressions evaluated many times, {@link Program} is better suited for large ones.
+ * </p>
+ */
+public class HandleCompiler {
+	/** The handle of {@link #add(double, double)}. */
+	private static final MethodHandle ADD;
+	/** The handle of {@link #mul(double, double)}. */
+	private static final MethodHandle MUL;
+	/** The handle of {@link #reciprocal(double)}. */
+	private static final MethodHandle RECIPROCAL;
+	/** The handle of {@link Math#pow(double, double)}. */
+	private static final MethodHandle POW;
+	/** The handle of {@link #powEven(double, double)}. */
+	private static final MethodHandle POW_EVEN;
+	/** The handle of {@link #powOdd(double, double)}. */
+	private static final MethodHandle POW_ODD;
+	/** The handle that reads an element of a double[]. */
+	private static final MethodHandle ELEMENT = MethodHandles.arrayElementGetter(double[].class);
+	/** The type of the compiled handles. */
+	private static final MethodType TYPE = MethodType.methodType(double.class, double[].class);
+
+	static {
+		MethodHandles.Lookup lookup = MethodHandles.lookup();
+		MethodType binary = MethodType.methodType(double.class, double.class, double.class);
+		try {
+			ADD = lookup.findStatic(HandleCompiler.class, "add", binary);
+			MUL = lookup.findStatic(HandleCompiler.class, "mul", binary);
+			RECIPROCAL = lookup.findStatic(HandleCompiler.class, "reciprocal", MethodType.methodType(double.class, double.class));
+			POW = lookup.findStatic(Math.class, "pow", binary);
+			POW_EVEN = lookup.findStatic(HandleCompiler.class, "powEven", binary);
+			POW_ODD = lookup.findStatic(HandleCompiler.class, "powOdd", binary);
+		} catch (NoSuchMethodException | IllegalAccessException e) {
+			throw new ExceptionInInitializerError(e);
+		}
+	}
+
+	/** The cache of the compiled handles. */
+	private final Map<Key, MethodHandle> compiled;
+	/** The value of each constant handle, identified by reference. */
+	private final Map<MethodHandle, Double> constants;
+
+	/**
+	 * <p>
+	 *     The key of the cache. The operands are identified by their handles, that are shared by the equal subexpressions,
+	 *     so building and hashing the key of a node doesn't visit its subtree.
+	 * </p>
+	 * @param kind The class of the expression.
+	 * @param value The value of a number, the index of a variable in the argument array, the exponent of a power, or null.
+	 * @param operands The handles of the operands, or of the base of a power.
+	 */
+	private record Key(Class<? extends Node> kind, Object value, List<MethodHandle> operands) {}
+
+	/** <p>EFFECTS: Constructs a new {@link HandleCompiler} with an empty cache.</p> */
+	public HandleCompiler() {
+		this.compiled = new HashMap<>();
+		this.constants = new IdentityHashMap<>();
+	}
+
+	/**
+	 * <p>EFFECTS: Builds the (double[])double handle that returns a constant, and records its value.</p>
+	 * <p>MUTABILITY: This method adds the handle to the constants.</p>
+	 * @param value The constant.
+	 * @return The constant handle.
+	 */
+	private MethodHandle constant(double value) {
+		MethodHandle handle = MethodHandles.dropArguments(MethodHandles.constant(double.class, value), 0, double[].class);
+		constants.put(handle, value);
+		return handle;
+	}
+
+	/**
+	 * <p>
+	 *     EFFECTS: Compiles an expression to a handle of type (double[])double.
+	 *     Structurally equal expressions (and subexpressions) are compiled only once, and share the same handle.
+	 * </p>
+	 * <p>
+	 *     REQUIREMENTS:
+	 *     <ul>
+	 *         <li>The parameters must be non-null.</li>
+	 *         <li>variables must contain all the variables of expr.</li>
+	 *     </ul>
+	 * <p>MUTABILITY: This method adds the compiled handles to the cache.</p>
+	 * @param expr The expression to compile.
+	 * @param variables The variables, in the order of the elements of the argument of the handle.
+	 * @return The handle that evaluates the expression.
+	 * @throws IllegalArgumentException If a variable of expr is not in variables.
+	 * @throws NullPointerException If any of the parameters is null.
+	 */
+	public MethodHandle compile(Node expr, List<String> variables)
+		throws IllegalArgumentException, NullPointerException
+	{
+		Objects.requireNonNull(expr);
+		return new Translator(List.copyOf(variables)).translate(expr);
+	}
+
+	/**
+	 * <p>
+	 *     The translator from {@link Node} to {@link MethodHandle},
+	 *     each visit returns a handle of type (double[])double or a constant.
+	 * </p>
+	 * <p>
+	 *     MUTABILITY: This class is mutable, by means of remembering the handles of the translated nodes,
+	 *     it must be used to compile a single expression. It also adds the handles to the cache of the enclosing {@link HandleCompiler}.
+	 * </p>
+	 */
+	private class Translator implements Visitor<MethodHandle> {
+		/** The variables, in the order of the argument array. */
+		private final List<String> variables;
+		/** The handle of each translated node, identified by reference. */
+		private final Map<Node, MethodHandle> translated = new IdentityHashMap<>();
+
+		/**
+		 * <p>EFFECTS: Constructs a new translator.</p>
+		 * @param variables The variables, in the order of the argument array.
+		 */
+		Translator(List<String> variables) {
+			this.variables = variables;
+		}
+
+		/**
+		 * <p>EFFECTS: Translates an expression, looking up the cache of the compiler.</p>
+		 * @param node The expression.
+		 * @return The handle of the expression.
+		 * @throws IllegalArgumentException If a variable of node is not in variables.
+		 */
+		MethodHandle translate(Node node)
+			throws IllegalArgumentException
+		{
+			MethodHandle handle = translated.get(node);
+			if (handle != null) return handle;
+
+			Key key = key(node);
+			handle = compiled.get(key);
+			if (handle == null) {
+				handle = node.transform(this);
+				compiled.put(key, handle);
+			}
+			translated.put(node, handle);
+			return handle;
+		}
+
+		/**
+		 * <p>EFFECTS: Builds the key of an expression, translating its operands.</p>
+		 * @param node The expression.
+		 * @return The key of the expression.
+		 * @throws IllegalArgumentException If a variable of node is not in variables.
+		 */
+		private Key key(Node node)
+			throws IllegalArgumentException
+		{
+			if (node instanceof NumberNode number) return new Key(NumberNode.class, number.value(), List.of());
+			if (node instanceof VariableNode variable) return new Key(VariableNode.class, index(variable), List.of());
+			if (node instanceof PowNode pow) return new Key(PowNode.class, pow.exp(), List.of(translate(pow.base())));
+
+			List<Node> operands = node instanceof SumNode sum ? sum.operands() : ((MulNode) node).operands();
+			List<MethodHandle> handles = new ArrayList<>(operands.size());
+			for (Node operand : operands) handles.add(translate(operand));
+			return new Key(node.getClass(), null, handles);
+		}
+
+		/**
+		 * <p>EFFECTS: Returns the index of a variable in the argument array.</p>
+		 * @param node The variable.
+		 * @return The index of the variable.
+		 * @throws IllegalArgumentException If the variable is not in variables.
+		 */
+		private int index(VariableNode node)
+			throws IllegalArgumentException
+		{
+			int index = variables.indexOf(node.name());
+			if (index < 0)
+				throw new IllegalArgumentException("The variable " + node.name() + " is not assigned");
+			return index;
+		}
+
+		@Override
+		public MethodHandle visit(NumberNode node) {
+			return constant(toDouble(node.value()));
+		}
+
+		@Override
+		public MethodHandle visit(VariableNode node)
+			throws IllegalArgumentException
+		{
+			return MethodHandles.insertArguments(ELEMENT, 1, index(node));
+		}
+
+		@Override
+		public MethodHandle visit(SumNode node) {
+			return fold(node.operands(), ADD, 0);
+		}
+
+		@Override
+		public MethodHandle visit(MulNode node) {
+			return fold(node.operands(), MUL, 1);
+		}
+
+		@Override
+		public MethodHandle visit(PowNode node) {
+			MethodHandle base = translate(node.base());
+			Rational exp = node.exp();
+
+			final MethodHandle power;
+			if (exp.isInteger()) {
+				power = integerPower(Math.abs(exp.num), exp.num < 0);
+			} else {
+				MethodHandle pow;
+				if (exp.den % 2 == 0) pow = POW;
+				else if (exp.num % 2 == 0) pow = POW_EVEN;
+				else pow = POW_ODD;
+				power = MethodHandles.insertArguments(pow, 1, toDouble(exp));
+			}
+
+			Double constantBase = constants.get(base);
+			if (constantBase != null) {
+				try {
+					return constant((double) power.invokeExact((double) constantBase));
+				} catch (Throwable e) {
+					// The power functions cannot throw
+					throw new AssertionError(e);
+				}
+			}
+
+			return MethodHandles.filterReturnValue(base, power);
+		}
+
+		/**
+		 * <p>
+		 *     EFFECTS: Builds the handle that combines all the operands with a commutative and associative operation.
+		 *     The constant operands are folded in a single constant, the others are combined in a balanced tree.
+		 * </p>
+		 * @param operands The operands to combine.
+		 * @param operation The (double, double)double handle of the operation.
+		 * @param neutral The neutral element of the operation.
+		 * @return The handle that computes the combination of the operands.
+		 */
+		private MethodHandle fold(List<Node> operands, MethodHandle operation, double neutral) {
+			double constant = neutral;
+			List<MethodHandle> handles = new ArrayList<>(operands.size());
+			for (Node operand : operands) {
+				MethodHandle handle = translate(operand);
+				Double value = constants.get(handle);
+				if (value == null) handles.add(handle);
+				else constant = operation == ADD ? constant + value : constant * value;
+			}
+
+			// As in the simplification, a product with a zero factor is zero
+			if (handles.isEmpty() || operation == MUL && constant == 0) return constant(constant);
+
+			MethodHandle result = balanced(handles, 0, handles.size(), operation);
+			if (constant != neutral)
+				result = MethodHandles.filterReturnValue(result, MethodHandles.insertArguments(operation, 1, constant));
+			return result;
+		}
+
+		/**
+		 * <p>EFFECTS: Combines the handles between from (included) and to (excluded) in a balanced binary tree.</p>
+		 * @param handles The handles of type (double[])double to combine.
+		 * @param from The first handle.
+		 * @param to The end of the range of handles.
+		 * @param operation The (double, double)double handle of the operation.
+		 * @return The handle that computes the combination.
+		 */
+		private MethodHandle balanced(List<MethodHandle> handles, int from, int to, MethodHandle operation) {
+			if (to - from == 1) return handles.get(from);
+			int middle = (from + to) / 2;
+			MethodHandle lhs = balanced(handles, from, middle, operation);
+			MethodHandle rhs = balanced(handles, middle, to, operation);
+			return combine(operation, lhs, rhs, TYPE);
+		}
+	}
+
+	/**
+	 * <p>
+	 *     EFFECTS: Builds the (double)double handle that computes x^exponent, or x^-exponent if reciprocal,
+	 *     by repeated multiplication using exponentiation by squaring.
+	 *     The multiplications are the same of {@link Program}: the squares x^(2^k) are computed in order,
+	 *     and the square of each set bit k of the exponent is multiplied to the product of the previous ones.
+	 * </p>
+	 * <p>
+	 *     NOTES: Every square and every product is computed once, so the handle performs O(log exponent) multiplications:
+	 *     the handle that continues the computation takes the (product, square) pair as its two arguments,
+	 *     instead of recomputing them from x.
+	 * </p>
+	 * @param exponent The non-negative exponent.
+	 * @param reciprocal If the exponent is negative.
+	 * @return The handle of the power.
+	 */
+	private static MethodHandle integerPower(long exponent, boolean reciprocal) {
+		MethodType unary = MethodType.methodType(double.class, double.class);
+		if (exponent == 0) return MethodHandles.dropArguments(MethodHandles.constant(double.class, 1.0), 0, double.class);
+
+		List<Integer> bits = new ArrayList<>();
+		for (int bit = 0; exponent >> bit != 0; bit++)
+			if ((exponent >> bit & 1) == 1) bits.add(bit);
+
+		// rest is the (product, square)double handle that completes the power,
+		// given the product of the squares of the previous set bits and the square of the current one
+		MethodHandle rest = MUL;
+		for (int i = bits.size() - 2; i >= 1; i--) {
+			MethodHandle next = MethodHandles.filterArguments(rest, 1, squares(bits.get(i + 1) - bits.get(i)));
+			// (product, square) -> next(product * square, square)
+			rest = MethodHandles.foldArguments(MethodHandles.dropArguments(next, 1, double.class), MUL);
+		}
+
+		MethodHandle result = squares(bits.get(0));
+		if (bits.size() > 1) {
+			// x^(2^k) is both the first product and the square the next one is computed from
+			MethodHandle first = MethodHandles.filterArguments(rest, 1, squares(bits.get(1) - bits.get(0)));
+			result = MethodHandles.filterReturnValue(result, MethodHandles.permuteArguments(first, unary, 0, 0));
+		}
+
+		if (reciprocal) result = MethodHandles.filterReturnValue(result, RECIPROCAL);
+		return result;
+	}
+
+	/**
+	 * <p>EFFECTS: Builds the (double)double handle that computes x^(2^count) by repeated squaring.</p>
+	 * @param count The non-negative number of squarings.
+	 * @return The handle of the power.
+	 */
+	private static MethodHandle squares(int count) {
+		MethodHandle square = MethodHandles.permuteArguments(MUL, MethodType.methodType(double.class, double.class), 0, 0);
+		MethodHandle result = MethodHandles.identity(double.class);
+		for (int i = 0; i < count; i++)
+			result = MethodHandles.filterReturnValue(result, square);
+		return result;
+	}
+
+	/**
+	 * <p>EFFECTS: Builds the handle that applies a binary operation to the results of lhs and rhs, invoked on the same arguments.</p>
+	 * @param operation The (double, double)double handle of the operation.
+	 * @param lhs The handle of the left hand side, of type (A)double.
+	 * @param rhs The handle of the right hand side, of type (A)double.
+	 * @param type The type (A)double of the result.
+	 * @return The combined handle.
+	 */
+	private static MethodHandle combine(MethodHandle operation, MethodHandle lhs, MethodHandle rhs, MethodType type) {
+		// (A, A)double, then both the arguments are taken from the single argument of the result
+		MethodHandle filtered = MethodHandles.filterArguments(operation, 0, lhs, rhs);
+		return MethodHandles.permuteArguments(filtered, type, 0, 0);
+	}
+
+	/**
+	 * <p>EFFECTS: Converts a rational to the nearest double.</p>
+	 * @param value The rational.
+	 * @return The value as a double.
+	 */
+	private static double toDouble(Rational value) {
+		return (double) value.num / value.den;
+	}
+
+	/**
+	 * <p>EFFECTS: Computes lhs + rhs.</p>
+	 * @param lhs The first operand.
+	 * @param rhs The second operand.
+	 * @return The sum.
+	 */
+	private static double add(double lhs, double rhs) {
+		return lhs + rhs;
+	}
+
+	/**
+	 * <p>EFFECTS: Computes lhs * rhs.</p>
+	 * @param lhs The first operand.
+	 * @param rhs The second operand.
+	 * @return The product.
+	 */
+	private static double mul(double lhs, double rhs) {
+		return lhs * rhs;
+	}
+
+	/**
+	 * <p>EFFECTS: Computes 1 / value.</p>
+	 * @param value The operand.
+	 * @return The reciprocal.
+	 */
+	private static double reciprocal(double value) {
+		return 1.0 / value;
+	}
+
+	/**
+	 * <p>EFFECTS: Computes |base|^exp, the power for exponents with an even numerator and an odd denominator.</p>
+	 * @param base The base.
+	 * @param exp The exponent.
+	 * @return The power.
+	 */
+	private static double powEven(double base, double exp) {
+		return Math.pow(Math.abs(base), exp);
+	}
+
+	/**
+	 * <p>EFFECTS: Computes sign(base) * |base|^exp, the power for exponents with an odd numerator and an odd denominator.</p>
+	 * @param base The base.
+	 * @param exp The exponent.
+	 * @return The power.
+	 */
+	private static double powOdd(double base, double exp) {
+		return Math.copySign(Math.pow(Math.abs(base), exp), base);
+	}
+}
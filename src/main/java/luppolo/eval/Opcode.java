@@ -0,0 +1,137 @@
+package luppolo.eval;
+
+/**
+ * <p>The operations of the instructions of a {@link Program}.</p>
+ * <p>
+ *     Each operation is applied element by element to a block of values: the target, lhs and rhs registers are
+ *     arrays holding the values of the same points, and constant is the immediate operand of the instruction.
+ *     Every operation is a tight loop over arrays, so that it can be optimized (and vectorized) by the JIT compiler.
+ * </p>
+ * <p>NOTES: The target register can be the same array as an operand register, since each element is read before being written.</p>
+ * <p>NOTES: The scalar version of each operation is used to evaluate a single point at a time, without the overhead of the blocks.</p>
+ */
+enum Opcode {
+	/** target = lhs + rhs */
+	ADD {
+		@Override
+		void apply(double[] target, double[] lhs, double[] rhs, double constant, int length) {
+			for (int i = 0; i < length; i++) target[i] = lhs[i] + rhs[i];
+		}
+
+		@Override
+		double apply(double lhs, double rhs, double constant) {
+			return lhs + rhs;
+		}
+	},
+	/** target = lhs * rhs */
+	MUL {
+		@Override
+		void apply(double[] target, double[] lhs, double[] rhs, double constant, int length) {
+			for (int i = 0; i < length; i++) target[i] = lhs[i] * rhs[i];
+		}
+
+		@Override
+		double apply(double lhs, double rhs, double constant) {
+			return lhs * rhs;
+		}
+	},
+	/** target = lhs + constant */
+	ADD_CONST {
+		@Override
+		void apply(double[] target, double[] lhs, double[] rhs, double constant, int length) {
+			for (int i = 0; i < length; i++) target[i] = lhs[i] + constant;
+		}
+
+		@Override
+		double apply(double lhs, double rhs, double constant) {
+			return lhs + constant;
+		}
+	},
+	/** target = lhs * constant */
+	MUL_CONST {
+		@Override
+		void apply(double[] target, double[] lhs, double[] rhs, double constant, int length) {
+			for (int i = 0; i < length; i++) target[i] = lhs[i] * constant;
+		}
+
+		@Override
+		double apply(double lhs, double rhs, double constant) {
+			return lhs * constant;
+		}
+	},
+	/** target = 1 / lhs */
+	RECIPROCAL {
+		@Override
+		void apply(double[] target, double[] lhs, double[] rhs, double constant, int length) {
+			for (int i = 0; i < length; i++) target[i] = 1.0 / lhs[i];
+		}
+
+		@Override
+		double apply(double lhs, double rhs, double constant) {
+			return 1.0 / lhs;
+		}
+	},
+	/** target = lhs ^ constant, where the exponent has an even denominator (the result is NaN for negative bases) */
+	POW {
+		@Override
+		void apply(double[] target, double[] lhs, double[] rhs, double constant, int length) {
+			for (int i = 0; i < length; i++) target[i] = Math.pow(lhs[i], constant);
+		}
+
+		@Override
+		double apply(double lhs, double rhs, double constant) {
+			return Math.pow(lhs, constant);
+		}
+	},
+	/** target = |lhs| ^ constant, where the exponent has an even numerator and an odd denominator */
+	POW_EVEN {
+		@Override
+		void apply(double[] target, double[] lhs, double[] rhs, double constant, int length) {
+			for (int i = 0; i < length; i++) target[i] = Math.pow(Math.abs(lhs[i]), constant);
+		}
+
+		@Override
+		double apply(double lhs, double rhs, double constant) {
+			return Math.pow(Math.abs(lhs), constant);
+		}
+	},
+	/** target = sign(lhs) * |lhs| ^ constant, where the exponent has an odd numerator and an odd denominator */
+	POW_ODD {
+		@Override
+		void apply(double[] target, double[] lhs, double[] rhs, double constant, int length) {
+			for (int i = 0; i < length; i++) target[i] = Math.copySign(Math.pow(Math.abs(lhs[i]), constant), lhs[i]);
+		}
+
+		@Override
+		double apply(double lhs, double rhs, double constant) {
+			return Math.copySign(Math.pow(Math.abs(lhs), constant), lhs);
+		}
+	};
+
+	/**
+	 * <p>EFFECTS: Applies the operation to the first length elements of the registers.</p>
+	 * <p>
+	 *     REQUIREMENTS:
+	 *     <ul>
+	 *         <li>target and lhs must be non-null.</li>
+	 *         <li>rhs must be non-null if the operation uses it.</li>
+	 *         <li>The registers must have at least length elements.</li>
+	 *     </ul>
+	 * <p>MUTABILITY: This method modifies target.</p>
+	 * @param target The register to write.
+	 * @param lhs The first operand register.
+	 * @param rhs The second operand register, ignored by unary operations.
+	 * @param constant The immediate operand, ignored by operations that don't use it.
+	 * @param length The number of elements to compute.
+	 */
+	abstract void apply(double[] target, double[] lhs, double[] rhs, double constant, int length);
+
+	/**
+	 * <p>EFFECTS: Applies the operation to single values.</p>
+	 * @param lhs The first operand.
+	 * @param rhs The second operand, ignored by unary operations.
+	 * @param constant The immediate operand, ignored by operations that don't use it.
+	 * @return The result of the operation.
+	 */
+	abstract double apply(double lhs, double rhs, double constant);
+}
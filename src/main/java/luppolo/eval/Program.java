@@ -0,0 +1,543 @@
+package luppolo.eval;
+
+import luppolo.math.Rational;
+import luppolo.node.*;
+
+import java.util.*;
+
+/**
+ * <p>An expression compiled to a register based program, that evaluates the expression in floating point arithmetic.</p>
+ * <p>
+ *     The program is evaluated on batches of points: every register holds the values of a block of points,
+ *     and each instruction is applied to the whole block before moving to the next instruction,
+ *     so the expression tree is never walked during the evaluation.
+ * </p>
+ * <p>
+ *     AF: The program is the sequence of instructions (opcodes[i], targets[i], lhs[i], rhs[i], constants[i]),
+ *     applied to a set of registers; the first variables.size() registers hold the values of the variables,
+ *     in the order of variables. The value of the expression is the register result,
+ *     or resultConstant if result is negative (the expression is constant).
+ * <p>
+ *     REQUIREMENTS:
+ *     <ul>
+ *         <li>All the fields must be non-null.</li>
+ *         <li>opcodes, targets, lhs, rhs and constants must have the same length.</li>
+ *         <li>Every register index must be between 0 and registers - 1.</li>
+ *         <li>targets must not contain the index of a variable register.</li>
+ *         <li>variables must be sorted and not contain duplicates.</li>
+ *     </ul>
+ * <p>MUTABILITY: This class is immutable.</p>
+ */
+public class Program {
+	/** The number of points evaluated at once, small enough to keep the registers in the cache. */
+	private static final int BLOCK_SIZE = 1024;
+	/** The number of points below which the scalar backend is faster than the columnar backend. */
+	private static final int SCALAR_THRESHOLD = 2;
+
+	/** The names of the variables, in the order of the input columns. */
+	private final List<String> variables;
+	/** The operation of each instruction. */
+	private final Opcode[] opcodes;
+	/** The register written by each instruction. */
+	private final int[] targets;
+	/** The first operand register of each instruction. */
+	private final int[] lhs;
+	/** The second operand register of each instruction, or -1 if not used. */
+	private final int[] rhs;
+	/** The immediate operand of each instruction. */
+	private final double[] constants;
+	/** The number of registers used by the program. */
+	private final int registers;
+	/** The register holding the value of the expression, or -1 if the expression is constant. */
+	private final int result;
+	/** The value of the expression if it's constant. */
+	private final double resultConstant;
+
+	/**
+	 * <p>Private constructor of {@link Program}, use {@link #compile(Node)}.</p>
+	 * <p>REQUIREMENTS: The arguments must respect the invariants of the class.</p>
+	 * @param variables The names of the variables.
+	 * @param opcodes The operation of each instruction.
+	 * @param targets The register written by each instruction.
+	 * @param lhs The first operand register of each instruction.
+	 * @param rhs The second operand register of each instruction.
+	 * @param constants The immediate operand of each instruction.
+	 * @param registers The number of registers.
+	 * @param result The register holding the result, or -1.
+	 * @param resultConstant The value of the expression if it's constant.
+	 */
+	private Program(
+		List<String> variables,
+		Opcode[] opcodes,
+		int[] targets,
+		int[] lhs,
+		int[] rhs,
+		double[] constants,
+		int registers,
+		int result,
+		double resultConstant
+	) {
+		this.variables = variables;
+		this.opcodes = opcodes;
+		this.targets = targets;
+		this.lhs = lhs;
+		this.rhs = rhs;
+		this.constants = constants;
+		this.registers = registers;
+		this.result = result;
+		this.resultConstant = resultConstant;
+	}
+
+	/**
+	 * <p>
+	 *     EFFECTS: Compiles an expression to a {@link Program}.
+	 *     The constant subexpressions are folded, integer powers are computed by repeated multiplication
+	 *     (using exponentiation by squaring) and the shared (by reference) subexpressions are computed once.
+	 * </p>
+	 * <p>REQUIREMENTS: expr must be non-null.</p>
+	 * @param expr The expression to compile.
+	 * @return The compiled program.
+	 * @throws NullPointerException If expr is null.
+	 */
+	public static Program compile(Node expr)
+		throws NullPointerException
+	{
+		Objects.requireNonNull(expr);
+
+		// The variables are assigned to the first registers, sorted by name
+		SortedSet<String> names = new TreeSet<>();
+		for (Node node : Dag.topologicalOrder(expr))
+			if (node instanceof VariableNode variable) names.add(variable.name());
+		List<String> variables = List.copyOf(names);
+
+		Compiler compiler = new Compiler(variables);
+		Operand operand = compiler.compile(expr);
+		return compiler.allocate(operand);
+	}
+
+	/**
+	 * <p>EFFECTS: Returns the names of the variables, in the order expected by the evaluation methods.</p>
+	 * @return The sorted immutable list of the variables of the expression.
+	 */
+	public List<String> variables() {
+		return variables;
+	}
+
+	/**
+	 * <p>EFFECTS: Evaluates the expression at a single point, using the {@link Backend#SCALAR} backend.</p>
+	 * <p>
+	 *     REQUIREMENTS:
+	 *     <ul>
+	 *         <li>point must be non-null.</li>
+	 *         <li>point must contain a value for each variable, in the order of {@link #variables()}.</li>
+	 *     </ul>
+	 * @param point The value of each variable.
+	 * @return The value of the expression.
+	 * @throws IllegalArgumentException If the number of values is different from the number of variables.
+	 * @throws NullPointerException If point is null.
+	 */
+	public double evaluate(double... point)
+		throws IllegalArgumentException, NullPointerException
+	{
+		Objects.requireNonNull(point);
+		if (point.length != variables.size())
+			throw new IllegalArgumentException("Expected " + variables.size() + " values, got " + point.length);
+		if (result < 0) return resultConstant;
+
+		double[] values = new double[registers];
+		System.arraycopy(point, 0, values, 0, point.length);
+		return run(values);
+	}
+
+	/**
+	 * <p>
+	 *     EFFECTS: Evaluates the expression at a batch of points, given by a column of values for each variable.
+	 *     The backend is chosen automatically: {@link Backend#COLUMNAR} for large batches,
+	 *     {@link Backend#SCALAR} for batches too small to amortize the cost of the blocks.
+	 * </p>
+	 * <p>REQUIREMENTS: see {@link #evaluateAll(Backend, double[][])}.</p>
+	 * @param columns The column of values of each variable, the i-th point is given by the i-th value of every column.
+	 * @return The value of the expression at each point.
+	 *         If the expression has no variables, the result contains a single value.
+	 * @throws IllegalArgumentException If the number of columns is different from the number of variables,
+	 *                                  or the columns have different lengths.
+	 * @throws NullPointerException If columns or any of the columns is null.
+	 */
+	public double[] evaluateAll(double[]... columns)
+		throws IllegalArgumentException, NullPointerException
+	{
+		return evaluateAll(null, columns);
+	}
+
+	/**
+	 * <p>EFFECTS: Evaluates the expression at a batch of points, given by a column of values for each variable.</p>
+	 * <p>
+	 *     REQUIREMENTS:
+	 *     <ul>
+	 *         <li>columns must be non-null and not contain a null element.</li>
+	 *         <li>columns must contain a column for each variable, in the order of {@link #variables()}.</li>
+	 *         <li>All the columns must have the same length.</li>
+	 *     </ul>
+	 * @param backend The backend to use, if null it's chosen automatically.
+	 * @param columns The column of values of each variable, the i-th point is given by the i-th value of every column.
+	 * @return The value of the expression at each point.
+	 *         If the expression has no variables, the result contains a single value.
+	 * @throws IllegalArgumentException If the number of columns is different from the number of variables,
+	 *                                  or the columns have different lengths.
+	 * @throws NullPointerException If columns or any of the columns is null.
+	 */
+	public double[] evaluateAll(Backend backend, double[]... columns)
+		throws IllegalArgumentException, NullPointerException
+	{
+		Objects.requireNonNull(columns);
+		for (double[] column : columns) Objects.requireNonNull(column);
+		if (columns.length != variables.size())
+			throw new IllegalArgumentException("Expected " + variables.size() + " columns, got " + columns.length);
+
+		final int points = columns.length == 0 ? 1 : columns[0].length;
+		for (double[] column : columns)
+			if (column.length != points)
+				throw new IllegalArgumentException("All the columns must have the same length");
+
+		double[] values = new double[points];
+		if (result < 0) {
+			Arrays.fill(values, resultConstant);
+			return values;
+		}
+
+		if (backend == null)
+			backend = points < SCALAR_THRESHOLD ? Backend.SCALAR : Backend.COLUMNAR;
+
+		switch (backend) {
+			case SCALAR -> evaluateScalar(columns, values);
+			case COLUMNAR -> evaluateColumnar(columns, values);
+		}
+		return values;
+	}
+
+	/**
+	 * <p>EFFECTS: Evaluates the expression one point at a time, with a single value for each register.</p>
+	 * <p>REQUIREMENTS: The columns must be valid, values must have the same length as the columns.</p>
+	 * <p>MUTABILITY: This method modifies values.</p>
+	 * @param columns The column of values of each variable.
+	 * @param values The array where the value of each point is written.
+	 */
+	private void evaluateScalar(double[][] columns, double[] values) {
+		double[] registerValues = new double[registers];
+		for (int point = 0; point < values.length; point++) {
+			for (int v = 0; v < columns.length; v++)
+				registerValues[v] = columns[v][point];
+			values[point] = run(registerValues);
+		}
+	}
+
+	/**
+	 * <p>EFFECTS: Runs the program on a single point.</p>
+	 * <p>REQUIREMENTS: values must have a value for each register, starting with the values of the variables.</p>
+	 * <p>MUTABILITY: This method modifies values.</p>
+	 * @param values The value of each register.
+	 * @return The value of the expression.
+	 */
+	private double run(double[] values) {
+		for (int i = 0; i < opcodes.length; i++) {
+			double rhsValue = rhs[i] < 0 ? 0 : values[rhs[i]];
+			values[targets[i]] = opcodes[i].apply(values[lhs[i]], rhsValue, constants[i]);
+		}
+		return values[result];
+	}
+
+	/**
+	 * <p>EFFECTS: Evaluates the expression on blocks of points, each instruction is applied to the whole block.</p>
+	 * <p>REQUIREMENTS: The columns must be valid, values must have the same length as the columns.</p>
+	 * <p>MUTABILITY: This method modifies values.</p>
+	 * @param columns The column of values of each variable.
+	 * @param values The array where the value of each point is written.
+	 */
+	private void evaluateColumnar(double[][] columns, double[] values) {
+		final int points = values.length;
+		double[][] block = new double[registers][Math.min(points, BLOCK_SIZE)];
+		for (int start = 0; start < points; start += BLOCK_SIZE) {
+			final int length = Math.min(BLOCK_SIZE, points - start);
+			for (int v = 0; v < columns.length; v++)
+				System.arraycopy(columns[v], start, block[v], 0, length);
+
+			for (int i = 0; i < opcodes.length; i++) {
+				double[] rhsRegister = rhs[i] < 0 ? null : block[rhs[i]];
+				opcodes[i].apply(block[targets[i]], block[lhs[i]], rhsRegister, constants[i], length);
+			}
+
+			System.arraycopy(block[result], 0, values, start, length);
+		}
+	}
+
+	/**
+	 * <p>
+	 *     EFFECTS: Returns the listing of the program, one instruction for each line, followed by the result.
+	 *     The registers are named r0, r1, ..., and the first ones hold the variables in the order of {@link #variables()}.
+	 * </p>
+	 * @return The listing of the program, like {@code r2 = MUL r0, r1}.
+	 */
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder();
+		for (int i = 0; i < opcodes.length; i++) {
+			builder.append('r').append(targets[i]).append(" = ").append(opcodes[i].name()).append(" r").append(lhs[i]);
+			switch (opcodes[i]) {
+				case ADD, MUL -> builder.append(", r").append(rhs[i]);
+				case RECIPROCAL -> {}
+				default -> builder.append(", ").append(constants[i]);
+			}
+			builder.append('\n');
+		}
+		builder.append("return ");
+		if (result < 0) builder.append(resultConstant);
+		else builder.append('r').append(result);
+		return builder.toString();
+	}
+
+	/**
+	 * <p>The strategies to evaluate a {@link Program} on a batch of points.</p>
+	 * <p>NOTES: The two backends compute the same operations, in the same order, so they return the same values.</p>
+	 */
+	public enum Backend {
+		/** Evaluates one point at a time, without allocating the blocks of registers. */
+		SCALAR,
+		/**
+		 * Evaluates blocks of points, applying each instruction to the whole block in a tight loop over the registers,
+		 * that the JIT compiler translates to SIMD instructions.
+		 */
+		COLUMNAR
+	}
+
+	/**
+	 * The result of compiling a subexpression, either a register or a constant.
+	 * @param register The register holding the value, or -1 if the value is constant.
+	 * @param constant The constant value, if register is -1.
+	 */
+	private record Operand(int register, double constant) {
+		/**
+		 * <p>EFFECTS: Constructs a constant operand.</p>
+		 * @param value The value of the constant.
+		 * @return The constant operand.
+		 */
+		static Operand of(double value) {
+			return new Operand(-1, value);
+		}
+
+		/**
+		 * <p>EFFECTS: Checks if the operand is constant.</p>
+		 * @return true if the operand is a constant.
+		 */
+		boolean isConstant() {
+			return register < 0;
+		}
+	}
+
+	/**
+	 * <p>The compiler from {@link Node} to {@link Program}.</p>
+	 * <p>
+	 *     AF: The instructions emitted so far, where each instruction writes a new virtual register;
+	 *     the virtual registers from 0 to variables.size() - 1 hold the variables,
+	 *     the instruction i writes the virtual register variables.size() + i.
+	 *     compiled maps every compiled node to its operand.
+	 * <p>REQUIREMENTS: The operands of an instruction must be virtual registers written before the instruction.</p>
+	 * <p>MUTABILITY: This class is mutable, it must be used to compile a single expression.</p>
+	 */
+	private static class Compiler implements Visitor<Operand> {
+		/** The sorted names of the variables. */
+		private final List<String> variables;
+		/** The operand of each compiled node. */
+		private final Map<Node, Operand> compiled = new IdentityHashMap<>();
+		/** The operation of each emitted instruction. */
+		private final List<Opcode> opcodes = new ArrayList<>();
+		/** The first virtual operand of each emitted instruction. */
+		private final List<Integer> lhs = new ArrayList<>();
+		/** The second virtual operand of each emitted instruction, or -1. */
+		private final List<Integer> rhs = new ArrayList<>();
+		/** The immediate operand of each emitted instruction. */
+		private final List<Double> constants = new ArrayList<>();
+
+		/**
+		 * <p>EFFECTS: Constructs a new compiler.</p>
+		 * @param variables The sorted names of the variables.
+		 */
+		Compiler(List<String> variables) {
+			this.variables = variables;
+		}
+
+		/**
+		 * <p>EFFECTS: Compiles a node, if it wasn't already compiled.</p>
+		 * @param node The node to compile.
+		 * @return The operand holding the value of the node.
+		 */
+		Operand compile(Node node) {
+			Operand operand = compiled.get(node);
+			if (operand == null) {
+				operand = node.transform(this);
+				compiled.put(node, operand);
+			}
+			return operand;
+		}
+
+		@Override
+		public Operand visit(NumberNode node) {
+			return Operand.of(toDouble(node.value()));
+		}
+
+		@Override
+		public Operand visit(VariableNode node) {
+			return new Operand(Collections.binarySearch(variables, node.name()), 0);
+		}
+
+		@Override
+		public Operand visit(SumNode node) {
+			double constant = 0;
+			int register = -1;
+			for (Node operand : node.operands()) {
+				Operand compiledOperand = compile(operand);
+				if (compiledOperand.isConstant()) constant += compiledOperand.constant();
+				else if (register < 0) register = compiledOperand.register();
+				else register = emit(Opcode.ADD, register, compiledOperand.register(), 0);
+			}
+
+			if (register < 0) return Operand.of(constant);
+			if (constant != 0) register = emit(Opcode.ADD_CONST, register, -1, constant);
+			return new Operand(register, 0);
+		}
+
+		@Override
+		public Operand visit(MulNode node) {
+			double constant = 1;
+			int register = -1;
+			for (Node operand : node.operands()) {
+				Operand compiledOperand = compile(operand);
+				if (compiledOperand.isConstant()) constant *= compiledOperand.constant();
+				else if (register < 0) register = compiledOperand.register();
+				else register = emit(Opcode.MUL, register, compiledOperand.register(), 0);
+			}
+
+			// As in the simplification, a product with a zero factor is zero
+			if (register < 0 || constant == 0) return Operand.of(constant);
+			if (constant != 1) register = emit(Opcode.MUL_CONST, register, -1, constant);
+			return new Operand(register, 0);
+		}
+
+		@Override
+		public Operand visit(PowNode node) {
+			Operand base = compile(node.base());
+			Rational exp = node.exp();
+
+			if (base.isConstant())
+				return Operand.of(Arithmetic.DOUBLE.pow(base.constant(), exp));
+
+			if (exp.equals(Rational.ZERO)) return Operand.of(1);
+
+			if (!exp.isInteger()) {
+				final Opcode opcode;
+				if (exp.den % 2 == 0) opcode = Opcode.POW;
+				else if (exp.num % 2 == 0) opcode = Opcode.POW_EVEN;
+				else opcode = Opcode.POW_ODD;
+				return new Operand(emit(opcode, base.register(), -1, toDouble(exp)), 0);
+			}
+
+			// Exponentiation by squaring
+			long remaining = Math.abs(exp.num);
+			int square = base.register();
+			int register = -1;
+			for (;;) {
+				if (remaining % 2 == 1)
+					register = register < 0 ? square : emit(Opcode.MUL, register, square, 0);
+				remaining /= 2;
+				if (remaining == 0) break;
+				square = emit(Opcode.MUL, square, square, 0);
+			}
+
+			if (exp.num < 0) register = emit(Opcode.RECIPROCAL, register, -1, 0);
+			return new Operand(register, 0);
+		}
+
+		/**
+		 * <p>EFFECTS: Emits an instruction.</p>
+		 * <p>MUTABILITY: This method modifies the compiler.</p>
+		 * @param opcode The operation.
+		 * @param lhs The first virtual operand.
+		 * @param rhs The second virtual operand, or -1.
+		 * @param constant The immediate operand.
+		 * @return The virtual register written by the instruction.
+		 */
+		private int emit(Opcode opcode, int lhs, int rhs, double constant) {
+			this.opcodes.add(opcode);
+			this.lhs.add(lhs);
+			this.rhs.add(rhs);
+			this.constants.add(constant);
+			return variables.size() + opcodes.size() - 1;
+		}
+
+		/**
+		 * <p>
+		 *     EFFECTS: Builds the {@link Program} from the emitted instructions, mapping the virtual registers to
+		 *     the smallest possible number of registers: a register is reused as soon as its value is no longer needed.
+		 * </p>
+		 * @param operand The operand holding the value of the expression.
+		 * @return The compiled program.
+		 */
+		Program allocate(Operand operand) {
+			final int size = opcodes.size();
+			final int first = variables.size();
+
+			// The last instruction reading each virtual register, the result is read after the last instruction
+			int[] lastUse = new int[first + size];
+			for (int i = 0; i < size; i++) {
+				lastUse[lhs.get(i)] = i;
+				if (rhs.get(i) >= 0) lastUse[rhs.get(i)] = i;
+			}
+			if (!operand.isConstant()) lastUse[operand.register()] = size;
+
+			int[] physical = new int[first + size];
+			for (int v = 0; v < first; v++) physical[v] = v;
+			Deque<Integer> free = new ArrayDeque<>();
+			int registers = first;
+
+			int[] targets = new int[size];
+			int[] lhsRegisters = new int[size];
+			int[] rhsRegisters = new int[size];
+			double[] constantValues = new double[size];
+			for (int i = 0; i < size; i++) {
+				int l = lhs.get(i);
+				int r = rhs.get(i);
+				lhsRegisters[i] = physical[l];
+				rhsRegisters[i] = r < 0 ? -1 : physical[r];
+				constantValues[i] = constants.get(i);
+
+				// Release the temporary registers that are no longer needed, the target can reuse them
+				if (l >= first && lastUse[l] == i) free.push(physical[l]);
+				if (r >= first && r != l && lastUse[r] == i) free.push(physical[r]);
+
+				int target = free.isEmpty() ? registers++ : free.pop();
+				physical[first + i] = target;
+				targets[i] = target;
+			}
+
+			return new Program(
+				variables,
+				opcodes.toArray(Opcode[]::new),
+				targets,
+				lhsRegisters,
+				rhsRegisters,
+				constantValues,
+				registers,
+				operand.isConstant() ? -1 : physical[operand.register()],
+				operand.constant()
+			);
+		}
+
+		/**
+		 * <p>EFFECTS: Converts a rational to the nearest double.</p>
+		 * @param value The rational.
+		 * @return The value as a double.
+		 */
+		private static double toDouble(Rational value) {
+			return (double) value.num / value.den;
+		}
+	}
+}
@@ -0,0 +1,290 @@
+package luppolo.math;
+
+import java.util.Arrays;
+
+/**
+ * <p>Utility class for the arithmetic of dense univariate polynomials modulo a prime.</p>
+ * <p>
+ *     The polynomials are arrays of residues, where the element at index i is the coefficient of x^i,
+ *     and the highest coefficient is non-zero (the zero polynomial is the empty array).
+ *     All the moduli must be primes less than {@link Modular#MAX_MODULUS}.
+ * </p>
+ * <p>
+ *     The products use the <a href="https://en.wikipedia.org/wiki/Number-theoretic_transform">number theoretic transform</a>
+ *     when the modulus has a root of unity of a large enough order (like the primes in {@link #NTT_PRIMES}),
+ *     otherwise <a href="https://en.wikipedia.org/wiki/Karatsuba_algorithm">Karatsuba algorithm</a>,
+ *     and the schoolbook algorithm for the small polynomials.
+ * </p>
+ */
+public class DensePolynomial {
+	/** Constructor to the utility class that must never be called */
+	private DensePolynomial() {
+		assert false: "Utility class cannot be instantiated";
+	}
+
+	/** Primes of the form c * 2^k + 1 with k &gt;= 23, that support transforms of length up to 2^k, their product is greater than 2^145. */
+	public static final long[] NTT_PRIMES = {2013265921L, 469762049L, 167772161L, 998244353L, 754974721L};
+	/** The length under which the schoolbook product is faster than the other algorithms. */
+	private static final int SCHOOLBOOK_THRESHOLD = 32;
+
+	/**
+	 * <p>EFFECTS: Computes the sum of two polynomials.</p>
+	 * <p>REQUIREMENTS: The parameters must be non-null, modulus must be a prime.</p>
+	 * @param lhs The first polynomial.
+	 * @param rhs The second polynomial.
+	 * @param modulus The prime modulus.
+	 * @return The sum.
+	 */
+	public static long[] add(long[] lhs, long[] rhs, long modulus) {
+		if (lhs.length < rhs.length) return add(rhs, lhs, modulus);
+		long[] sum = lhs.clone();
+		for (int i = 0; i < rhs.length; i++) sum[i] = Modular.add(sum[i], rhs[i], modulus);
+		return trim(sum);
+	}
+
+	/**
+	 * <p>EFFECTS: Computes the product of two polynomials.</p>
+	 * <p>REQUIREMENTS: The parameters must be non-null, modulus must be a prime.</p>
+	 * @param lhs The first polynomial.
+	 * @param rhs The second polynomial.
+	 * @param modulus The prime modulus.
+	 * @return The product.
+	 * @throws ArithmeticException If the degree of the product doesn't fit in an array.
+	 */
+	public static long[] mul(long[] lhs, long[] rhs, long modulus)
+		throws ArithmeticException
+	{
+		if (lhs.length == 0 || rhs.length == 0) return new long[0];
+		final int length = Math.addExact(lhs.length, rhs.length) - 1;
+
+		long[] product;
+		if (nonZero(lhs) <= SCHOOLBOOK_THRESHOLD || nonZero(rhs) <= SCHOOLBOOK_THRESHOLD) {
+			// The schoolbook algorithm skips the zero coefficients of its first operand, like the ones of a power of x
+			product = new long[length];
+			if (nonZero(lhs) <= nonZero(rhs)) schoolbook(lhs, 0, lhs.length, rhs, 0, rhs.length, product, 0, modulus);
+			else schoolbook(rhs, 0, rhs.length, lhs, 0, lhs.length, product, 0, modulus);
+		} else if (supportsTransform(length, modulus)) {
+			product = transformMul(lhs, rhs, length, modulus);
+		} else {
+			product = new long[length];
+			karatsuba(lhs, 0, lhs.length, rhs, 0, rhs.length, product, 0, modulus);
+		}
+		// The leading coefficient of a product modulo a prime is never zero
+		return product;
+	}
+
+	/**
+	 * <p>EFFECTS: Computes the power of a polynomial, by repeated squaring.</p>
+	 * <p>REQUIREMENTS: The parameters must be non-null, modulus must be a prime, exp must be non-negative.</p>
+	 * @param base The polynomial.
+	 * @param exp The exponent.
+	 * @param modulus The prime modulus.
+	 * @return The power, where the zero polynomial to the zero is one.
+	 * @throws ArithmeticException If the degree of the power doesn't fit in an array.
+	 */
+	public static long[] pow(long[] base, long exp, long modulus)
+		throws ArithmeticException
+	{
+		if (nonZero(base) == 1) {
+			// (c * x^k)^e = c^e * x^(k * e)
+			final int degree = base.length - 1;
+			long[] power = new long[Math.toIntExact(Math.multiplyExact((long) degree, exp)) + 1];
+			power[power.length - 1] = Modular.pow(base[degree], exp, modulus);
+			return power;
+		}
+
+		long[] result = {1};
+		for (;;) {
+			if (exp % 2 == 1) result = mul(result, base, modulus);
+			exp /= 2;
+			if (exp == 0) return result;
+			base = mul(base, base, modulus);
+		}
+	}
+
+	/**
+	 * <p>EFFECTS: Removes the zero coefficients at the end of a polynomial.</p>
+	 * @param polynomial The polynomial.
+	 * @return The trimmed polynomial, that may be the same array.
+	 */
+	public static long[] trim(long[] polynomial) {
+		int length = polynomial.length;
+		while (length > 0 && polynomial[length - 1] == 0) length--;
+		return length == polynomial.length ? polynomial : Arrays.copyOf(polynomial, length);
+	}
+
+	/**
+	 * <p>EFFECTS: Counts the non-zero coefficients of a polynomial.</p>
+	 * @param polynomial The polynomial.
+	 * @return The number of non-zero coefficients.
+	 */
+	private static int nonZero(long[] polynomial) {
+		int count = 0;
+		for (long coefficient : polynomial)
+			if (coefficient != 0) count++;
+		return count;
+	}
+
+	/**
+	 * <p>EFFECTS: Checks if the modulus has a root of unity of order a power of two greater or equal than length.</p>
+	 * @param length The length of the product.
+	 * @param modulus The prime modulus.
+	 * @return true if the product can be computed with the number theoretic transform.
+	 */
+	private static boolean supportsTransform(int length, long modulus) {
+		long size = Long.highestOneBit(Math.max(1, length - 1)) << 1;
+		return (modulus - 1) % size == 0;
+	}
+
+	/**
+	 * <p>EFFECTS: Adds the product of two slices to a slice of target, with the schoolbook algorithm.</p>
+	 * <p>MUTABILITY: This method modifies target.</p>
+	 * @param a The first array.
+	 * @param aFrom The start of the first slice.
+	 * @param aLength The length of the first slice.
+	 * @param b The second array.
+	 * @param bFrom The start of the second slice.
+	 * @param bLength The length of the second slice.
+	 * @param target The target array.
+	 * @param targetFrom The start of the target slice.
+	 * @param modulus The prime modulus.
+	 */
+	private static void schoolbook(
+		long[] a, int aFrom, int aLength,
+		long[] b, int bFrom, int bLength,
+		long[] target, int targetFrom, long modulus
+	) {
+		for (int i = 0; i < aLength; i++) {
+			final long coefficient = a[aFrom + i];
+			if (coefficient == 0) continue;
+			for (int j = 0; j < bLength; j++) {
+				final int k = targetFrom + i + j;
+				target[k] = Modular.add(target[k], Modular.mul(coefficient, b[bFrom + j], modulus), modulus);
+			}
+		}
+	}
+
+	/**
+	 * <p>EFFECTS: Adds the product of two slices to a slice of target, with Karatsuba algorithm.</p>
+	 * <p>MUTABILITY: This method modifies target.</p>
+	 * @param a The first array.
+	 * @param aFrom The start of the first slice.
+	 * @param aLength The length of the first slice.
+	 * @param b The second array.
+	 * @param bFrom The start of the second slice.
+	 * @param bLength The length of the second slice.
+	 * @param target The target array.
+	 * @param targetFrom The start of the target slice.
+	 * @param modulus The prime modulus.
+	 */
+	private static void karatsuba(
+		long[] a, int aFrom, int aLength,
+		long[] b, int bFrom, int bLength,
+		long[] target, int targetFrom, long modulus
+	) {
+		if (Math.min(aLength, bLength) <= SCHOOLBOOK_THRESHOLD) {
+			schoolbook(a, aFrom, aLength, b, bFrom, bLength, target, targetFrom, modulus);
+			return;
+		}
+
+		// a = a0 + a1 * x^half, b = b0 + b1 * x^half
+		final int half = (Math.max(aLength, bLength) + 1) / 2;
+		if (Math.min(aLength, bLength) <= half) {
+			// Unbalanced operands: split only the longer one
+			if (aLength < bLength) {
+				karatsuba(b, bFrom, bLength, a, aFrom, aLength, target, targetFrom, modulus);
+				return;
+			}
+			karatsuba(a, aFrom, half, b, bFrom, bLength, target, targetFrom, modulus);
+			karatsuba(a, aFrom + half, aLength - half, b, bFrom, bLength, target, targetFrom + half, modulus);
+			return;
+		}
+
+		final int aHigh = aLength - half;
+		final int bHigh = bLength - half;
+		long[] low = new long[2 * half - 1];
+		long[] high = new long[aHigh + bHigh - 1];
+		karatsuba(a, aFrom, half, b, bFrom, half, low, 0, modulus);
+		karatsuba(a, aFrom + half, aHigh, b, bFrom + half, bHigh, high, 0, modulus);
+
+		// (a0 + a1) * (b0 + b1) - a0 * b0 - a1 * b1 = a0 * b1 + a1 * b0
+		long[] aSum = Arrays.copyOfRange(a, aFrom, aFrom + half);
+		long[] bSum = Arrays.copyOfRange(b, bFrom, bFrom + half);
+		for (int i = 0; i < aHigh; i++) aSum[i] = Modular.add(aSum[i], a[aFrom + half + i], modulus);
+		for (int i = 0; i < bHigh; i++) bSum[i] = Modular.add(bSum[i], b[bFrom + half + i], modulus);
+		long[] middle = new long[2 * half - 1];
+		karatsuba(aSum, 0, half, bSum, 0, half, middle, 0, modulus);
+		for (int i = 0; i < low.length; i++) middle[i] = Modular.sub(middle[i], low[i], modulus);
+		for (int i = 0; i < high.length; i++) middle[i] = Modular.sub(middle[i], high[i], modulus);
+
+		for (int i = 0; i < low.length; i++)
+			target[targetFrom + i] = Modular.add(target[targetFrom + i], low[i], modulus);
+		for (int i = 0; i < middle.length; i++)
+			target[targetFrom + half + i] = Modular.add(target[targetFrom + half + i], middle[i], modulus);
+		for (int i = 0; i < high.length; i++)
+			target[targetFrom + 2 * half + i] = Modular.add(target[targetFrom + 2 * half + i], high[i], modulus);
+	}
+
+	/**
+	 * <p>EFFECTS: Computes the product of two polynomials with the number theoretic transform.</p>
+	 * <p>REQUIREMENTS: {@link #supportsTransform(int, long)} must be true for length and modulus.</p>
+	 * @param lhs The first polynomial.
+	 * @param rhs The second polynomial.
+	 * @param length The length of the product.
+	 * @param modulus The prime modulus.
+	 * @return The product.
+	 */
+	private static long[] transformMul(long[] lhs, long[] rhs, int length, long modulus) {
+		final int size = Integer.highestOneBit(length - 1) << 1;
+		long[] a = Arrays.copyOf(lhs, size);
+		long[] b = Arrays.copyOf(rhs, size);
+		final long root = Modular.pow(Modular.primitiveRoot(modulus), (modulus - 1) / size, modulus);
+
+		transform(a, root, modulus);
+		transform(b, root, modulus);
+		for (int i = 0; i < size; i++) a[i] = Modular.mul(a[i], b[i], modulus);
+		transform(a, Modular.inverse(root, modulus), modulus);
+
+		final long scale = Modular.inverse(size, modulus);
+		long[] product = new long[length];
+		for (int i = 0; i < length; i++) product[i] = Modular.mul(a[i], scale, modulus);
+		return product;
+	}
+
+	/**
+	 * <p>EFFECTS: Computes the number theoretic transform of an array in place, with the iterative Cooley-Tukey algorithm.</p>
+	 * <p>REQUIREMENTS: The length of values must be a power of two, root must be a root of unity of that order.</p>
+	 * <p>MUTABILITY: This method modifies values.</p>
+	 * @param values The coefficients, replaced by the values at the powers of root.
+	 * @param root The root of unity.
+	 * @param modulus The prime modulus.
+	 */
+	private static void transform(long[] values, long root, long modulus) {
+		final int n = values.length;
+		// Bit reversal permutation
+		for (int i = 1, j = 0; i < n; i++) {
+			int bit = n >> 1;
+			for (; (j & bit) != 0; bit >>= 1) j ^= bit;
+			j ^= bit;
+			if (i < j) {
+				long temp = values[i];
+				values[i] = values[j];
+				values[j] = temp;
+			}
+		}
+
+		for (int length = 2; length <= n; length <<= 1) {
+			final long step = Modular.pow(root, n / length, modulus);
+			for (int start = 0; start < n; start += length) {
+				long w = 1;
+				for (int k = 0; k < length / 2; k++) {
+					long u = values[start + k];
+					long v = Modular.mul(values[start + k + length / 2], w, modulus);
+					values[start + k] = Modular.add(u, v, modulus);
+					values[start + k + length / 2] = Modular.sub(u, v, modulus);
+					w = Modular.mul(w, step, modulus);
+				}
+			}
+		}
+	}
+}
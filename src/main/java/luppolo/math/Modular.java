@@ -0,0 +1,293 @@
+package luppolo.math;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+
+/**
+ * <p>Utility class for the arithmetic modulo a prime number.</p>
+ * <p>
+ *     The residues are represented as longs in the range [0, modulus), and the moduli are primes less than 2^31,
+ *     so that the product of two residues never overflows a long.
+ * </p>
+ */
+public class Modular {
+	/** Constructor to the utility class that must never be called */
+	private Modular() {
+		assert false: "Utility class cannot be instantiated";
+	}
+
+	/** The largest supported modulus (exclusive). */
+	public static final long MAX_MODULUS = 1L << 31;
+	/** The bases of Miller-Rabin test, that are enough to decide the primality of every number less than 3215031751 */
+	private static final long[] WITNESSES = {2, 3, 5, 7};
+
+	/**
+	 * <p>EFFECTS: Computes the residue of a value, in the range [0, modulus).</p>
+	 * <p>REQUIREMENTS: modulus must be positive.</p>
+	 * @param value The value.
+	 * @param modulus The modulus.
+	 * @return value mod modulus.
+	 */
+	public static long reduce(long value, long modulus) {
+		return Math.floorMod(value, modulus);
+	}
+
+	/**
+	 * <p>EFFECTS: Computes the residue of a rational number, that is num * den^-1.</p>
+	 * <p>REQUIREMENTS: modulus must be a prime less than {@link #MAX_MODULUS}.</p>
+	 * @param value The rational number.
+	 * @param modulus The modulus.
+	 * @return The residue of value.
+	 * @throws IllegalArgumentException If the modulus divides the denominator.
+	 */
+	public static long fromRational(Rational value, long modulus)
+		throws IllegalArgumentException
+	{
+		return mul(reduce(value.num, modulus), inverse(reduce(value.den, modulus), modulus), modulus);
+	}
+
+	/**
+	 * <p>EFFECTS: Computes (a + b) mod modulus.</p>
+	 * <p>REQUIREMENTS: a and b must be residues, modulus must be less than {@link #MAX_MODULUS}.</p>
+	 * @param a The first operand.
+	 * @param b The second operand.
+	 * @param modulus The modulus.
+	 * @return The sum.
+	 */
+	public static long add(long a, long b, long modulus) {
+		long sum = a + b;
+		return sum >= modulus ? sum - modulus : sum;
+	}
+
+	/**
+	 * <p>EFFECTS: Computes (a - b) mod modulus.</p>
+	 * <p>REQUIREMENTS: a and b must be residues, modulus must be less than {@link #MAX_MODULUS}.</p>
+	 * @param a The first operand.
+	 * @param b The second operand.
+	 * @param modulus The modulus.
+	 * @return The difference.
+	 */
+	public static long sub(long a, long b, long modulus) {
+		long difference = a - b;
+		return difference < 0 ? difference + modulus : difference;
+	}
+
+	/**
+	 * <p>EFFECTS: Computes (a * b) mod modulus.</p>
+	 * <p>REQUIREMENTS: a and b must be residues, modulus must be less than {@link #MAX_MODULUS}.</p>
+	 * @param a The first operand.
+	 * @param b The second operand.
+	 * @param modulus The modulus.
+	 * @return The product.
+	 */
+	public static long mul(long a, long b, long modulus) {
+		return a * b % modulus;
+	}
+
+	/**
+	 * <p>EFFECTS: Computes base^exp mod modulus, where exp &gt;= 0.</p>
+	 * <p>REQUIREMENTS: base must be a residue, modulus must be less than {@link #MAX_MODULUS}.</p>
+	 * <p>NOTES: This is the same binary exponentiation algorithm of {@link Utils#pow(long, long)}.</p>
+	 * @param base The base.
+	 * @param exp The exponent.
+	 * @param modulus The modulus.
+	 * @return The power, 0^0 is 1.
+	 * @throws IllegalArgumentException If exp &lt; 0.
+	 */
+	public static long pow(long base, long exp, long modulus)
+		throws IllegalArgumentException
+	{
+		if (exp < 0)
+			throw new IllegalArgumentException("Exponent cannot be negative");
+
+		long result = 1 % modulus;
+		while (exp != 0) {
+			if (exp % 2 == 1) result = mul(result, base, modulus);
+			exp /= 2;
+			base = mul(base, base, modulus);
+		}
+
+		return result;
+	}
+
+	/**
+	 * <p>EFFECTS: Computes the multiplicative inverse of a residue.</p>
+	 * <p>REQUIREMENTS: a must be a residue, modulus must be a prime less than {@link #MAX_MODULUS}.</p>
+	 * <p>NOTES: This uses <a href="https://en.wikipedia.org/wiki/Fermat%27s_little_theorem">Fermat's little theorem</a>, a^-1 = a^(p - 2).</p>
+	 * @param a The residue.
+	 * @param modulus The modulus.
+	 * @return The inverse of a.
+	 * @throws IllegalArgumentException If a is zero.
+	 */
+	public static long inverse(long a, long modulus)
+		throws IllegalArgumentException
+	{
+		if (a == 0)
+			throw new IllegalArgumentException("Zero has no modular inverse");
+		return pow(a, modulus - 2, modulus);
+	}
+
+	/**
+	 * <p>EFFECTS: Checks if a number is prime.</p>
+	 * <p>REQUIREMENTS: n must be less than {@link #MAX_MODULUS}.</p>
+	 * <p>NOTES: This is a deterministic version of the <a href="https://en.wikipedia.org/wiki/Miller%E2%80%93Rabin_primality_test">Miller-Rabin test</a>.</p>
+	 * @param n The number to test.
+	 * @return true if n is prime.
+	 */
+	public static boolean isPrime(long n) {
+		if (n < 2) return false;
+		for (long witness : WITNESSES)
+			if (n % witness == 0) return n == witness;
+
+		// n - 1 = d * 2^s, with d odd
+		int s = Long.numberOfTrailingZeros(n - 1);
+		long d = (n - 1) >> s;
+
+		for (long witness : WITNESSES) {
+			long x = pow(witness, d, n);
+			if (x == 1 || x == n - 1) continue;
+
+			boolean composite = true;
+			for (int i = 1; i < s && composite; i++) {
+				x = mul(x, x, n);
+				if (x == n - 1) composite = false;
+			}
+			if (composite) return false;
+		}
+		return true;
+	}
+
+	/**
+	 * <p>EFFECTS: Returns a random prime in the range [2^30, 2^31).</p>
+	 * <p>REQUIREMENTS: random must be non-null.</p>
+	 * <p>MUTABILITY: This method advances the state of random.</p>
+	 * @param random The source of randomness.
+	 * @return A random prime.
+	 */
+	public static long randomPrime(Random random) {
+		final long min = MAX_MODULUS / 2;
+		for (;;) {
+			// Only odd candidates, about one in 21 is prime
+			long candidate = (min + random.nextLong(min)) | 1;
+			if (isPrime(candidate)) return candidate;
+		}
+	}
+
+	/**
+	 * <p>EFFECTS: Computes the distinct prime factors of a number, in increasing order.</p>
+	 * <p>REQUIREMENTS: n must be positive.</p>
+	 * <p>NOTES: This uses trial division, so it is meant for numbers less than {@link #MAX_MODULUS}.</p>
+	 * @param n The number.
+	 * @return The distinct prime factors.
+	 */
+	public static List<Long> primeFactors(long n) {
+		List<Long> factors = new ArrayList<>();
+		for (long d = 2; d * d <= n; d++) {
+			if (n % d != 0) continue;
+			factors.add(d);
+			while (n % d == 0) n /= d;
+		}
+		if (n > 1) factors.add(n);
+		return factors;
+	}
+
+	/**
+	 * <p>EFFECTS: Finds the smallest <a href="https://en.wikipedia.org/wiki/Primitive_root_modulo_n">primitive root</a> of a prime.</p>
+	 * <p>REQUIREMENTS: modulus must be a prime less than {@link #MAX_MODULUS}.</p>
+	 * @param modulus The prime modulus.
+	 * @return The smallest generator of the multiplicative group modulo the prime.
+	 */
+	public static long primitiveRoot(long modulus) {
+		if (modulus == 2) return 1;
+		List<Long> factors = primeFactors(modulus - 1);
+		outer: for (long g = 2;; g++) {
+			// g is a generator if its order is not a proper divisor of modulus - 1
+			for (long factor : factors)
+				if (pow(g, (modulus - 1) / factor, modulus) == 1) continue outer;
+			return g;
+		}
+	}
+
+	/**
+	 * <p>EFFECTS: Computes the value modulo the product of the moduli that has the given residues.</p>
+	 * <p>
+	 *     REQUIREMENTS:
+	 *     <ul>
+	 *         <li>residues and moduli must be non-null, and have the same length.</li>
+	 *         <li>The moduli must be distinct primes less than {@link #MAX_MODULUS}.</li>
+	 *         <li>residues[i] must be a residue modulo moduli[i].</li>
+	 *     </ul>
+	 * <p>
+	 *     NOTES: This is <a href="https://en.wikipedia.org/wiki/Chinese_remainder_theorem">Chinese remaindering</a>
+	 *     with Garner's algorithm: the mixed radix digits are computed with long arithmetic, and only the final value is a {@link BigInteger}.
+	 * </p>
+	 * @param residues The residue modulo each modulus.
+	 * @param moduli The moduli.
+	 * @return The value in the range [0, product of the moduli).
+	 */
+	public static BigInteger chineseRemainder(long[] residues, long[] moduli) {
+		assert residues.length == moduli.length: "Each residue must have its modulus";
+
+		// value = digits[0] + digits[1] * m0 + digits[2] * m0 * m1 + ...
+		long[] digits = new long[residues.length];
+		for (int i = 0; i < digits.length; i++) {
+			long digit = residues[i];
+			for (int j = 0; j < i; j++) {
+				long difference = sub(digit, reduce(digits[j], moduli[i]), moduli[i]);
+				digit = mul(difference, inverse(reduce(moduli[j], moduli[i]), moduli[i]), moduli[i]);
+			}
+			digits[i] = digit;
+		}
+
+		BigInteger value = BigInteger.ZERO;
+		for (int i = digits.length - 1; i >= 0; i--)
+			value = value.multiply(BigInteger.valueOf(moduli[i])).add(BigInteger.valueOf(digits[i]));
+		return value;
+	}
+
+	/**
+	 * <p>EFFECTS: Finds the rational number num/den such that num = value * den (mod modulus), with |num| and den that fit in a long.</p>
+	 * <p>
+	 *     REQUIREMENTS:
+	 *     <ul>
+	 *         <li>The parameters must be non-null.</li>
+	 *         <li>0 &lt;= value &lt; modulus.</li>
+	 *     </ul>
+	 * <p>
+	 *     NOTES: This is <a href="https://en.wikipedia.org/wiki/Rational_reconstruction_(mathematics)">rational reconstruction</a>
+	 *     with the extended Euclidean algorithm, the result is unique when modulus &gt; 2^127.
+	 * </p>
+	 * @param value The residue.
+	 * @param modulus The modulus.
+	 * @return An {@link Optional} that contains the rational number, if it exists.
+	 */
+	public static Optional<Rational> reconstruct(BigInteger value, BigInteger modulus) {
+		final BigInteger bound = BigInteger.valueOf(Long.MAX_VALUE);
+
+		// Most of the values are small integers, that don't need the Euclidean algorithm
+		if (value.compareTo(bound) <= 0)
+			return Optional.of(Rational.fromInt(value.longValueExact()));
+		BigInteger opposite = modulus.subtract(value);
+		if (opposite.compareTo(bound) <= 0)
+			return Optional.of(Rational.fromInt(opposite.negate().longValueExact()));
+
+		// Invariant: r * t0 = r0 * t (mod modulus), stop at the first remainder that fits in a long
+		BigInteger r0 = modulus, r1 = value;
+		BigInteger t0 = BigInteger.ZERO, t1 = BigInteger.ONE;
+		while (r1.compareTo(bound) > 0) {
+			BigInteger[] division = r0.divideAndRemainder(r1);
+			r0 = r1;
+			r1 = division[1];
+			BigInteger t = t0.subtract(division[0].multiply(t1));
+			t0 = t1;
+			t1 = t;
+		}
+
+		if (t1.abs().compareTo(bound) > 0 || !r1.gcd(t1).equals(BigInteger.ONE))
+			return Optional.empty();
+		return Optional.of(Rational.fromNumDen(r1.longValueExact() * t1.signum(), t1.abs().longValueExact()));
+	}
+}
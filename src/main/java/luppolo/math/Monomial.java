@@ -0,0 +1,167 @@
+package luppolo.math;
+
+import java.util.Arrays;
+
+/**
+ * <p>A monomial, the product of a fixed list of variables, each one to a non-negative integer exponent.</p>
+ * <p>The monomials are ordered lexicographically by their exponents, from the first variable to the last.</p>
+ * <p>
+ *     AF: exponents[i] is the exponent of the i-th variable, the variables are identified by their index
+ *     so the monomials of the same polynomial must agree on the list of variables.
+ * <p>
+ *     REQUIREMENTS:
+ *     <ul>
+ *         <li>exponents must be non-null and must not contain negative values.</li>
+ *         <li>hash must be the hash of exponents.</li>
+ *     </ul>
+ * <p>MUTABILITY: This class is immutable.</p>
+ */
+public final class Monomial implements Comparable<Monomial> {
+	/** The exponent of each variable. */
+	private final long[] exponents;
+	/** The cached hash code of the exponents. */
+	private final int hash;
+
+	/**
+	 * <p>Private constructor of {@link Monomial}, that doesn't copy the exponents.</p>
+	 * <p>REQUIREMENTS: exponents must not contain negative values, and must not be modified after the call.</p>
+	 * @param exponents The exponent of each variable.
+	 */
+	private Monomial(long[] exponents) {
+		assert Arrays.stream(exponents).allMatch(e -> e >= 0): "Exponents cannot be negative";
+		this.exponents = exponents;
+		this.hash = Arrays.hashCode(exponents);
+	}
+
+	/**
+	 * <p>Factory method for the monomial 1.</p>
+	 * <p>REQUIREMENTS: variables must be non-negative.</p>
+	 * @param variables The number of variables.
+	 * @return The monomial with all the exponents equal to zero.
+	 */
+	public static Monomial one(int variables) {
+		return new Monomial(new long[variables]);
+	}
+
+	/**
+	 * <p>Factory method for the monomial of a single variable.</p>
+	 * <p>REQUIREMENTS: 0 &lt;= index &lt; variables.</p>
+	 * @param index The index of the variable.
+	 * @param variables The number of variables.
+	 * @return The monomial with the exponent of the variable equal to one, and the others equal to zero.
+	 */
+	public static Monomial variable(int index, int variables) {
+		long[] exponents = new long[variables];
+		exponents[index] = 1;
+		return new Monomial(exponents);
+	}
+
+	/**
+	 * <p>Factory method for a {@link Monomial}.</p>
+	 * @param exponents The exponent of each variable.
+	 * @return The monomial.
+	 * @throws IllegalArgumentException If an exponent is negative.
+	 */
+	public static Monomial of(long... exponents)
+		throws IllegalArgumentException
+	{
+		for (long exponent : exponents)
+			if (exponent < 0)
+				throw new IllegalArgumentException("Exponents cannot be negative");
+		return new Monomial(exponents.clone());
+	}
+
+	/**
+	 * <p>EFFECTS: Returns the number of variables.</p>
+	 * @return The number of variables.
+	 */
+	public int variables() {
+		return exponents.length;
+	}
+
+	/**
+	 * <p>EFFECTS: Returns the exponent of a variable.</p>
+	 * <p>REQUIREMENTS: 0 &lt;= index &lt; variables().</p>
+	 * @param index The index of the variable.
+	 * @return The exponent of the variable.
+	 */
+	public long exponent(int index) {
+		return exponents[index];
+	}
+
+	/**
+	 * <p>EFFECTS: Computes the total degree, the sum of the exponents.</p>
+	 * @return The total degree.
+	 * @throws ArithmeticException If the degree overflows.
+	 */
+	public long degree()
+		throws ArithmeticException
+	{
+		long degree = 0;
+		for (long exponent : exponents) degree = Math.addExact(degree, exponent);
+		return degree;
+	}
+
+	/**
+	 * <p>EFFECTS: Computes the product of two monomials, adding the exponents.</p>
+	 * <p>REQUIREMENTS: The monomials must have the same variables.</p>
+	 * @param other The other monomial.
+	 * @return The product.
+	 * @throws ArithmeticException If an exponent overflows.
+	 */
+	public Monomial mul(Monomial other)
+		throws ArithmeticException
+	{
+		assert exponents.length == other.exponents.length: "The monomials must have the same variables";
+		long[] product = new long[exponents.length];
+		for (int i = 0; i < product.length; i++)
+			product[i] = Math.addExact(exponents[i], other.exponents[i]);
+		return new Monomial(product);
+	}
+
+	/**
+	 * <p>EFFECTS: Computes the power of the monomial, multiplying the exponents.</p>
+	 * <p>REQUIREMENTS: exp must be non-negative.</p>
+	 * @param exp The exponent.
+	 * @return The power.
+	 * @throws ArithmeticException If an exponent overflows.
+	 */
+	public Monomial pow(long exp)
+		throws ArithmeticException
+	{
+		assert exp >= 0: "Exponent cannot be negative";
+		long[] power = new long[exponents.length];
+		for (int i = 0; i < power.length; i++)
+			power[i] = Math.multiplyExact(exponents[i], exp);
+		return new Monomial(power);
+	}
+
+	/**
+	 * <p>EFFECTS: Compares two monomials lexicographically by their exponents.</p>
+	 * <p>REQUIREMENTS: The monomials must have the same variables.</p>
+	 * @param other The other monomial.
+	 * @return A negative number, zero or a positive number if this monomial is less than, equal to or greater than other.
+	 */
+	@Override
+	public int compareTo(Monomial other) {
+		assert exponents.length == other.exponents.length: "The monomials must have the same variables";
+		return Arrays.compare(exponents, other.exponents);
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) return true;
+		if (!(o instanceof Monomial other)) return false;
+		return hash == other.hash && Arrays.equals(exponents, other.exponents);
+	}
+
+	@Override
+	public int hashCode() {
+		return hash;
+	}
+
+	@Override
+	public String toString() {
+		return Arrays.toString(exponents);
+	}
+}
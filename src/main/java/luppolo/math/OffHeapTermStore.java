@@ -0,0 +1,417 @@
+package luppolo.math;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.util.*;
+
+/**
+ * <p>
+ *     A hash table from monomials to rational coefficients stored outside of the Java heap, in a direct {@link ByteBuffer},
+ *     that combines the like terms of a polynomial as they are added.
+ * </p>
+ * <p>
+ *     Each slot of the table holds the exponents of a monomial followed by the numerator and the denominator of its coefficient,
+ *     all as longs, and the collisions are resolved with linear probing.
+ *     Since the terms are not Java objects, the garbage collector never scans them,
+ *     so its pauses don't grow with the number of terms.
+ * </p>
+ * <p>
+ *     AF: the polynomial is the sum of the terms in the occupied slots of table, a slot is empty when its denominator is zero.
+ * <p>
+ *     REQUIREMENTS:
+ *     <ul>
+ *         <li>variables must be non-negative, the number of slots must be a power of two.</li>
+ *         <li>size must be the number of occupied slots, and must be at most half of the slots.</li>
+ *         <li>The monomials in the occupied slots must be distinct, and reachable by linear probing from their hash.</li>
+ *         <li>table is null only after the store is closed.</li>
+ *     </ul>
+ * <p>MUTABILITY: This class is mutable.</p>
+ * <p>
+ *     NOTES: The store must be closed after its use, with try-with-resources.
+ *     Closing only drops the reference to the buffer: its native memory is freed when the garbage collector
+ *     collects the buffer object, without scanning its content, so it is not returned immediately.
+ *     For the same reason the old table is left to the garbage collector every time the table grows,
+ *     a store sized with the number of terms it will hold never grows,
+ *     and {@link #compact()} and {@link #clear()} reuse the table without allocating.
+ * </p>
+ */
+public final class OffHeapTermStore implements AutoCloseable {
+	/** The maximum number of slots, so that the table fits in a single buffer. */
+	private final int maxSlots;
+	/** The number of variables of the monomials. */
+	private final int variables;
+	/** The number of longs of each slot. */
+	private final int stride;
+	/** The slots of the table. */
+	private LongBuffer table;
+	/** The number of slots. */
+	private int slots;
+	/** The number of occupied slots. */
+	private int size;
+
+	/**
+	 * <p>EFFECTS: Constructs a new empty {@link OffHeapTermStore}.</p>
+	 * @param variables The number of variables of the monomials.
+	 * @param expectedTerms The number of distinct terms that can be added before resizing the table.
+	 * @throws IllegalArgumentException If variables or expectedTerms is negative, or the table doesn't fit in a buffer.
+	 */
+	public OffHeapTermStore(int variables, int expectedTerms)
+		throws IllegalArgumentException
+	{
+		if (variables < 0) throw new IllegalArgumentException("The number of variables cannot be negative");
+		if (expectedTerms < 0) throw new IllegalArgumentException("The number of terms cannot be negative");
+
+		this.variables = variables;
+		this.stride = variables + 2;
+		this.maxSlots = Integer.highestOneBit(Integer.MAX_VALUE / (stride * Long.BYTES));
+		if ((long) expectedTerms * 2 > maxSlots)
+			throw new IllegalArgumentException("The table cannot hold " + expectedTerms + " terms");
+		allocate(Math.min(maxSlots, Math.max(16, Integer.highestOneBit(Math.max(1, expectedTerms)) * 4)));
+	}
+
+	/**
+	 * <p>EFFECTS: Returns the number of distinct monomials in the store, including the ones whose coefficients cancelled out since the last {@link #compact()}.</p>
+	 * @return The number of distinct monomials.
+	 * @throws IllegalStateException If the store is closed.
+	 */
+	public int size()
+		throws IllegalStateException
+	{
+		checkOpen();
+		return size;
+	}
+
+	/**
+	 * <p>EFFECTS: Adds a term to the polynomial, combining it with the like term in the store.</p>
+	 * <p>MUTABILITY: This method modifies the store.</p>
+	 * @param monomial The monomial.
+	 * @param coefficient The coefficient.
+	 * @throws IllegalArgumentException If the monomial doesn't have the variables of the store.
+	 * @throws IllegalStateException If the store is closed, or it cannot grow.
+	 * @throws ArithmeticException If the sum of the coefficients overflows.
+	 */
+	public void add(Monomial monomial, Rational coefficient)
+		throws IllegalArgumentException, IllegalStateException, ArithmeticException
+	{
+		checkOpen();
+		if (monomial.variables() != variables)
+			throw new IllegalArgumentException("The monomial must have " + variables + " variables");
+
+		int slot = hash(monomial) & (slots - 1);
+		for (;; slot = (slot + 1) & (slots - 1)) {
+			final int offset = slot * stride;
+			if (table.get(offset + variables + 1) == 0) break;
+			if (matches(offset, monomial)) {
+				Rational sum = coefficient(offset).addExact(coefficient);
+				table.put(offset + variables, sum.num);
+				table.put(offset + variables + 1, sum.den);
+				return;
+			}
+		}
+
+		if (2 * (size + 1) > slots) {
+			grow();
+			add(monomial, coefficient);
+			return;
+		}
+		final int offset = slot * stride;
+		for (int i = 0; i < variables; i++) table.put(offset + i, monomial.exponent(i));
+		table.put(offset + variables, coefficient.num);
+		table.put(offset + variables + 1, coefficient.den);
+		size++;
+	}
+
+	/**
+	 * <p>EFFECTS: Returns the terms with a non-zero coefficient, in no particular order.</p>
+	 * @return An iterator over the terms, it must not be used after the store is modified or closed.
+	 * @throws IllegalStateException If the store is closed.
+	 */
+	public Iterator<TermCollector.Term> terms()
+		throws IllegalStateException
+	{
+		checkOpen();
+		return new Iterator<>() {
+			/** The next slot to check. */
+			private int slot = skip(0);
+
+			/**
+			 * <p>EFFECTS: Finds the first slot with a non-zero term, starting from a slot.</p>
+			 * @param from The first slot to check.
+			 * @return The slot, or the number of slots if there are none.
+			 */
+			private int skip(int from) {
+				while (from < slots && !nonZero(from * stride)) from++;
+				return from;
+			}
+
+			@Override
+			public boolean hasNext() {
+				return slot < slots;
+			}
+
+			@Override
+			public TermCollector.Term next()
+				throws NoSuchElementException
+			{
+				if (slot >= slots) throw new NoSuchElementException();
+				TermCollector.Term term = new TermCollector.Term(monomial(slot * stride), coefficient(slot * stride));
+				slot = skip(slot + 1);
+				return term;
+			}
+		};
+	}
+
+	/**
+	 * <p>EFFECTS: Returns the offsets of the terms with a non-zero coefficient, sorted by monomial.</p>
+	 * @return The offsets of the terms, in increasing order of monomial.
+	 * @throws IllegalStateException If the store is closed.
+	 */
+	int[] sortedOffsets()
+		throws IllegalStateException
+	{
+		checkOpen();
+		int count = 0;
+		int[] offsets = new int[size];
+		for (int slot = 0; slot < slots; slot++)
+			if (nonZero(slot * stride)) offsets[count++] = slot * stride;
+		offsets = Arrays.copyOf(offsets, count);
+		sort(offsets, new int[count], 0, count);
+		return offsets;
+	}
+
+	/**
+	 * <p>EFFECTS: Writes a term to a buffer, in the encoding of {@link TermCollector}.</p>
+	 * <p>MUTABILITY: This method writes to out.</p>
+	 * @param offset The offset of the term.
+	 * @param out The output, with room for the term.
+	 */
+	void write(int offset, LongBuffer out) {
+		out.put(table.slice(offset, stride));
+	}
+
+	/**
+	 * <p>EFFECTS: Removes the monomials whose coefficients cancelled out, so that they don't count in {@link #size()}.</p>
+	 * <p>MUTABILITY: This method modifies the store, in place.</p>
+	 * @throws IllegalStateException If the store is closed.
+	 */
+	public void compact()
+		throws IllegalStateException
+	{
+		checkOpen();
+		for (int slot = 0; slot < slots; slot++) {
+			final int offset = slot * stride;
+			if (table.get(offset + variables + 1) != 0 && table.get(offset + variables) == 0) {
+				table.put(offset + variables + 1, 0);
+				size--;
+			}
+		}
+
+		// The emptied slots can break the probe sequences, so the terms are inserted again in probing order starting after an empty slot:
+		// when a term is moved, the terms between its hash and its slot are already in place, so it moves back at most to its hash
+		int start = 0;
+		while (table.get(start * stride + variables + 1) != 0) start++;
+		final long[] term = new long[stride];
+		for (int i = 1; i <= slots; i++) {
+			final int slot = (start + i) & (slots - 1);
+			final int from = slot * stride;
+			if (table.get(from + variables + 1) == 0) continue;
+			int to = hash(table, from) & (slots - 1);
+			if (to == slot) continue;
+			table.get(from, term);
+			table.put(from + variables + 1, 0);
+			while (table.get(to * stride + variables + 1) != 0) to = (to + 1) & (slots - 1);
+			table.put(to * stride, term);
+		}
+	}
+
+	/**
+	 * <p>EFFECTS: Removes all the terms.</p>
+	 * <p>MUTABILITY: This method modifies the store.</p>
+	 * @throws IllegalStateException If the store is closed.
+	 */
+	public void clear()
+		throws IllegalStateException
+	{
+		checkOpen();
+		for (int slot = 0; slot < slots; slot++) table.put(slot * stride + variables + 1, 0);
+		size = 0;
+	}
+
+	/**
+	 * <p>EFFECTS: Drops the reference to the buffer, the store cannot be used anymore.</p>
+	 * <p>NOTES: The native memory of the buffer is freed only when the garbage collector collects it.</p>
+	 */
+	@Override
+	public void close() {
+		table = null;
+		slots = 0;
+		size = 0;
+	}
+
+	/**
+	 * <p>EFFECTS: Allocates a new empty table, the old one is left to the garbage collector.</p>
+	 * <p>MUTABILITY: This method replaces the table.</p>
+	 * @param slots The number of slots, a power of two.
+	 */
+	private void allocate(int slots) {
+		this.slots = slots;
+		this.table = ByteBuffer.allocateDirect(slots * stride * Long.BYTES).order(ByteOrder.nativeOrder()).asLongBuffer();
+	}
+
+	/**
+	 * <p>EFFECTS: Doubles the number of slots, and inserts again the terms.</p>
+	 * <p>MUTABILITY: This method replaces the table.</p>
+	 * @throws IllegalStateException If the table cannot grow.
+	 */
+	private void grow()
+		throws IllegalStateException
+	{
+		if (slots >= maxSlots) throw new IllegalStateException("The table cannot hold more terms");
+		rehash(2 * slots);
+	}
+
+	/**
+	 * <p>EFFECTS: Inserts again the terms with a non-zero coefficient in a new table.</p>
+	 * <p>MUTABILITY: This method replaces the table.</p>
+	 * @param slots The number of slots of the new table, a power of two, greater than the current one.
+	 */
+	private void rehash(int slots) {
+		LongBuffer old = table;
+		final int oldSlots = this.slots;
+		allocate(slots);
+		size = 0;
+
+		for (int slot = 0; slot < oldSlots; slot++) {
+			final int from = slot * stride;
+			// The empty slots and the cancelled terms are dropped
+			if (old.get(from + variables + 1) == 0 || old.get(from + variables) == 0) continue;
+			int to = hash(old, from) & (slots - 1);
+			while (table.get(to * stride + variables + 1) != 0) to = (to + 1) & (slots - 1);
+			table.put(to * stride, old, from, stride);
+			size++;
+		}
+	}
+
+	/**
+	 * <p>EFFECTS: Throws if the store is closed.</p>
+	 * @throws IllegalStateException If the store is closed.
+	 */
+	private void checkOpen()
+		throws IllegalStateException
+	{
+		if (table == null) throw new IllegalStateException("The store is closed");
+	}
+
+	/**
+	 * <p>EFFECTS: Mixes the hash of a sequence of exponents with the next one.</p>
+	 * @param hash The hash of the previous exponents.
+	 * @param exponent The exponent.
+	 * @return The hash.
+	 */
+	private static long mix(long hash, long exponent) {
+		hash = (hash ^ exponent) * 0x9E3779B97F4A7C15L;
+		return hash ^ (hash >>> 29);
+	}
+
+	/**
+	 * <p>EFFECTS: Computes the hash of a monomial.</p>
+	 * @param monomial The monomial.
+	 * @return The hash.
+	 */
+	private int hash(Monomial monomial) {
+		long hash = 0;
+		for (int i = 0; i < variables; i++) hash = mix(hash, monomial.exponent(i));
+		return (int) (hash ^ (hash >>> 32));
+	}
+
+	/**
+	 * <p>EFFECTS: Computes the hash of the monomial in a slot, it is equal to the hash of the same {@link Monomial}.</p>
+	 * @param buffer The table.
+	 * @param offset The offset of the slot.
+	 * @return The hash.
+	 */
+	private int hash(LongBuffer buffer, int offset) {
+		long hash = 0;
+		for (int i = 0; i < variables; i++) hash = mix(hash, buffer.get(offset + i));
+		return (int) (hash ^ (hash >>> 32));
+	}
+
+	/**
+	 * <p>EFFECTS: Checks if the monomial in a slot is equal to a monomial.</p>
+	 * @param offset The offset of the slot.
+	 * @param monomial The monomial.
+	 * @return true if they are equal, false otherwise.
+	 */
+	private boolean matches(int offset, Monomial monomial) {
+		for (int i = 0; i < variables; i++)
+			if (table.get(offset + i) != monomial.exponent(i)) return false;
+		return true;
+	}
+
+	/**
+	 * <p>EFFECTS: Checks if a slot is occupied by a term with a non-zero coefficient.</p>
+	 * @param offset The offset of the slot.
+	 * @return true if the slot holds a non-zero term, false otherwise.
+	 */
+	private boolean nonZero(int offset) {
+		// The numerators of the empty slots are not cleared
+		return table.get(offset + variables + 1) != 0 && table.get(offset + variables) != 0;
+	}
+
+	/**
+	 * <p>EFFECTS: Decodes the monomial in a slot.</p>
+	 * @param offset The offset of the slot.
+	 * @return The monomial.
+	 */
+	private Monomial monomial(int offset) {
+		long[] exponents = new long[variables];
+		table.get(offset, exponents);
+		return Monomial.of(exponents);
+	}
+
+	/**
+	 * <p>EFFECTS: Decodes the coefficient in a slot.</p>
+	 * @param offset The offset of the slot.
+	 * @return The coefficient.
+	 */
+	private Rational coefficient(int offset) {
+		return Rational.fromNumDen(table.get(offset + variables), table.get(offset + variables + 1));
+	}
+
+	/**
+	 * <p>EFFECTS: Compares the monomials in two slots, lexicographically by their exponents.</p>
+	 * @param lhs The offset of the first slot.
+	 * @param rhs The offset of the second slot.
+	 * @return A negative number, zero or a positive number if the first monomial is less than, equal to or greater than the second.
+	 */
+	private int compare(int lhs, int rhs) {
+		for (int i = 0; i < variables; i++) {
+			int order = Long.compare(table.get(lhs + i), table.get(rhs + i));
+			if (order != 0) return order;
+		}
+		return 0;
+	}
+
+	/**
+	 * <p>EFFECTS: Sorts a range of offsets of slots by monomial, with merge sort.</p>
+	 * <p>MUTABILITY: This method modifies offsets and temp.</p>
+	 * @param offsets The offsets of the slots.
+	 * @param temp A temporary array as long as offsets.
+	 * @param from The start of the range, inclusive.
+	 * @param to The end of the range, exclusive.
+	 */
+	private void sort(int[] offsets, int[] temp, int from, int to) {
+		if (to - from < 2) return;
+		final int middle = (from + to) >>> 1;
+		sort(offsets, temp, from, middle);
+		sort(offsets, temp, middle, to);
+		if (compare(offsets[middle - 1], offsets[middle]) <= 0) return;
+
+		System.arraycopy(offsets, from, temp, from, to - from);
+		for (int i = from, l = from, r = middle; i < to; i++) {
+			if (r >= to || (l < middle && compare(temp[l], temp[r]) <= 0)) offsets[i] = temp[l++];
+			else offsets[i] = temp[r++];
+		}
+	}
+}
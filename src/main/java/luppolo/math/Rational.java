@@ -154,6 +154,29 @@ public class Rational implements Comparable<Rational> {
 		return new Rational(num, den);
 	}
 
+	/**
+	 * <p>EFFECTS: Computes the sum of the two rationals, checking for overflows.</p>
+	 * @param other The rhs operand to sum.
+	 * @return The sum of this and other.
+	 * @throws ArithmeticException If the sum, or an intermediate result, overflows.
+	 * @throws NullPointerException If other is null.
+	 */
+	public Rational addExact(Rational other)
+		throws ArithmeticException, NullPointerException
+	{
+		Objects.requireNonNull(other);
+		long gcd = Utils.gcd(this.den, other.den);
+		long den = Math.multiplyExact(this.den / gcd, other.den);
+		long num = Math.addExact(
+			Math.multiplyExact(this.num, other.den / gcd),
+			Math.multiplyExact(other.num, this.den / gcd)
+		);
+
+		// Simplify
+		gcd = Utils.gcd(num, den);
+		return new Rational(num / gcd, den / gcd);
+	}
+
 	/**
 	 * <p>EFFECTS: Computes the product of the two rationals.</p>
 	 * @param other The rhs operand of the multiplication.
@@ -178,6 +201,25 @@ public class Rational implements Comparable<Rational> {
 		return new Rational(num1 * num2, den1 * den2);
 	}
 
+	/**
+	 * <p>EFFECTS: Computes the product of the two rationals, checking for overflows.</p>
+	 * @param other The rhs operand of the multiplication.
+	 * @return The product of this and other.
+	 * @throws ArithmeticException If the product overflows.
+	 * @throws NullPointerException If other is null.
+	 */
+	public Rational mulExact(Rational other)
+		throws ArithmeticException, NullPointerException
+	{
+		Objects.requireNonNull(other);
+		long gcd1 = Utils.gcd(this.num, other.den);
+		long gcd2 = Utils.gcd(other.num, this.den);
+		return new Rational(
+			Math.multiplyExact(this.num / gcd1, other.num / gcd2),
+			Math.multiplyExact(this.den / gcd2, other.den / gcd1)
+		);
+	}
+
 	/**
 	 * <p>
 	 *     EFFECTS: Computes the result of the pow between this and exp, if the result is rational.
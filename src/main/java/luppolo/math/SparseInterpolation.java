@@ -0,0 +1,374 @@
+package luppolo.math;
+
+import java.util.*;
+
+/**
+ * <p>Utility class for the sparse interpolation of polynomials modulo a prime.</p>
+ * <p>
+ *     The algorithms follow <a href="https://doi.org/10.1145/62212.62241">Ben-Or and Tiwari</a>:
+ *     if f(z) = c1 * z^k1 + ... + ct * z^kt, the sequence a_j = f(w^j) is a linear recurrence whose characteristic
+ *     polynomial has the roots w^k1, ..., w^kt. The recurrence is found with {@link #berlekampMassey(long[], long)},
+ *     the roots with {@link #roots(long[], long, Random)}, the exponents with {@link #discreteLog(long, long, long)},
+ *     and the coefficients with {@link #solveVandermonde(long[], long[], long)}.
+ * </p>
+ * <p>
+ *     The polynomials are arrays of residues, where the element at index i is the coefficient of z^i,
+ *     and the highest coefficient is non-zero (the zero polynomial is the empty array).
+ *     All the moduli must be primes less than {@link Modular#MAX_MODULUS}.
+ * </p>
+ */
+public class SparseInterpolation {
+	/** Constructor to the utility class that must never be called */
+	private SparseInterpolation() {
+		assert false: "Utility class cannot be instantiated";
+	}
+
+	/**
+	 * <p>EFFECTS: Finds the shortest linear recurrence that generates a sequence.</p>
+	 * <p>
+	 *     REQUIREMENTS:
+	 *     <ul>
+	 *         <li>sequence must be non-null, and contain only residues.</li>
+	 *         <li>modulus must be a prime.</li>
+	 *     </ul>
+	 * <p>
+	 *     NOTES: This is the <a href="https://en.wikipedia.org/wiki/Berlekamp%E2%80%93Massey_algorithm">Berlekamp-Massey algorithm</a>,
+	 *     the recurrence is exact if the sequence has at least twice as many elements as the order of the recurrence.
+	 * </p>
+	 * @param sequence The sequence.
+	 * @param modulus The prime modulus.
+	 * @return The monic characteristic polynomial of the recurrence.
+	 */
+	public static long[] berlekampMassey(long[] sequence, long modulus) {
+		// The connection polynomial c, such that sum c[i] * s[n - i] = 0, and the one before the last length change
+		long[] current = {1};
+		long[] previous = {1};
+		int length = 0;
+		int shift = 1;
+		long previousDiscrepancy = 1;
+
+		for (int n = 0; n < sequence.length; n++) {
+			long discrepancy = sequence[n];
+			for (int i = 1; i <= length && i < current.length; i++)
+				discrepancy = Modular.add(discrepancy, Modular.mul(current[i], sequence[n - i], modulus), modulus);
+
+			if (discrepancy == 0) {
+				shift++;
+				continue;
+			}
+
+			// current -= discrepancy / previousDiscrepancy * z^shift * previous
+			long factor = Modular.mul(discrepancy, Modular.inverse(previousDiscrepancy, modulus), modulus);
+			long[] updated = Arrays.copyOf(current, Math.max(current.length, previous.length + shift));
+			for (int i = 0; i < previous.length; i++)
+				updated[i + shift] = Modular.sub(updated[i + shift], Modular.mul(factor, previous[i], modulus), modulus);
+
+			if (2 * length <= n) {
+				length = n + 1 - length;
+				previous = current;
+				previousDiscrepancy = discrepancy;
+				shift = 1;
+			} else {
+				shift++;
+			}
+			current = updated;
+		}
+
+		// The characteristic polynomial is the reverse of the connection polynomial
+		long[] characteristic = new long[length + 1];
+		for (int i = 0; i <= length; i++)
+			characteristic[length - i] = i < current.length ? current[i] : 0;
+		return characteristic;
+	}
+
+	/**
+	 * <p>EFFECTS: Finds the roots of a polynomial that is the product of distinct linear factors, with non-zero roots.</p>
+	 * <p>
+	 *     REQUIREMENTS:
+	 *     <ul>
+	 *         <li>The parameters must be non-null.</li>
+	 *         <li>polynomial must be monic.</li>
+	 *         <li>modulus must be an odd prime.</li>
+	 *     </ul>
+	 * <p>MUTABILITY: This method advances the state of random.</p>
+	 * <p>NOTES: This is the <a href="https://en.wikipedia.org/wiki/Cantor%E2%80%93Zassenhaus_algorithm">Cantor-Zassenhaus algorithm</a> for linear factors.</p>
+	 * @param polynomial The monic polynomial.
+	 * @param modulus The prime modulus.
+	 * @param random The source of randomness.
+	 * @return An {@link Optional} that contains the roots, empty if the polynomial is not a product of distinct linear factors with non-zero roots.
+	 */
+	public static Optional<long[]> roots(long[] polynomial, long modulus, Random random) {
+		// The polynomial divides z^(p - 1) - 1 if and only if it has distinct non-zero roots
+		long[] power = powMod(new long[] {0, 1}, modulus - 1, polynomial, modulus);
+		if (!Arrays.equals(power, reduce(new long[] {1}, polynomial, modulus)))
+			return Optional.empty();
+
+		long[] roots = new long[polynomial.length - 1];
+		int count = 0;
+		Deque<long[]> factors = new ArrayDeque<>();
+		factors.push(polynomial);
+		while (!factors.isEmpty()) {
+			long[] factor = factors.pop();
+			if (factor.length == 1) continue;
+			if (factor.length == 2) {
+				roots[count++] = Modular.sub(0, factor[0], modulus);
+				continue;
+			}
+
+			// gcd(f, (z + a)^((p - 1) / 2) - 1) contains the roots r such that r + a is a quadratic residue
+			for (;;) {
+				long[] linear = {random.nextLong(modulus), 1};
+				long[] half = powMod(linear, (modulus - 1) / 2, factor, modulus);
+				long[] split = gcd(factor, subtractOne(half, modulus), modulus);
+				if (split.length > 1 && split.length < factor.length) {
+					factors.push(split);
+					factors.push(divide(factor, split, modulus));
+					break;
+				}
+			}
+		}
+		return Optional.of(roots);
+	}
+
+	/**
+	 * <p>EFFECTS: Computes the discrete logarithm of a value, with respect to a primitive root.</p>
+	 * <p>
+	 *     REQUIREMENTS:
+	 *     <ul>
+	 *         <li>modulus must be a prime.</li>
+	 *         <li>generator must be a primitive root of modulus, value must be a non-zero residue.</li>
+	 *     </ul>
+	 * <p>
+	 *     NOTES: This is the <a href="https://en.wikipedia.org/wiki/Pohlig%E2%80%93Hellman_algorithm">Pohlig-Hellman algorithm</a>,
+	 *     its cost is proportional to the largest prime factor of modulus - 1, so the modulus should be a prime like 15 * 2^27 + 1.
+	 * </p>
+	 * @param value The value.
+	 * @param generator The primitive root.
+	 * @param modulus The prime modulus.
+	 * @return The exponent k in [0, modulus - 1) such that generator^k = value.
+	 */
+	public static long discreteLog(long value, long generator, long modulus) {
+		final long order = modulus - 1;
+		long result = 0;
+		long combined = 1;
+
+		for (long factor : Modular.primeFactors(order)) {
+			long power = 1;
+			while ((order / power) % factor == 0) power *= factor;
+
+			// The digits of the logarithm in base factor, modulo power
+			long gamma = Modular.pow(generator, order / factor, modulus);
+			long log = 0;
+			for (long digitPower = 1; digitPower < power; digitPower *= factor) {
+				long shifted = Modular.mul(value, Modular.inverse(Modular.pow(generator, log, modulus), modulus), modulus);
+				long target = Modular.pow(shifted, order / (digitPower * factor), modulus);
+				long digit = 0;
+				for (long candidate = 1; candidate != target; candidate = Modular.mul(candidate, gamma, modulus)) digit++;
+				log += digit * digitPower;
+			}
+
+			// Chinese remaindering of result (mod combined) and log (mod power)
+			long k = Modular.reduce((log - result) % power * inverse(combined % power, power), power);
+			result += combined * k;
+			combined *= power;
+		}
+		return result;
+	}
+
+	/**
+	 * <p>EFFECTS: Computes the monic polynomial with the given roots.</p>
+	 * <p>REQUIREMENTS: roots must be non-null and contain only residues, modulus must be a prime.</p>
+	 * @param roots The roots.
+	 * @param modulus The prime modulus.
+	 * @return The polynomial (z - r1) * ... * (z - rt).
+	 */
+	public static long[] fromRoots(long[] roots, long modulus) {
+		long[] polynomial = new long[roots.length + 1];
+		polynomial[0] = 1;
+		for (int i = 0; i < roots.length; i++) {
+			// Multiply the polynomial of degree i by (z - root)
+			for (int j = i + 1; j > 0; j--)
+				polynomial[j] = Modular.sub(polynomial[j - 1], Modular.mul(roots[i], polynomial[j], modulus), modulus);
+			polynomial[0] = Modular.sub(0, Modular.mul(roots[i], polynomial[0], modulus), modulus);
+		}
+		return polynomial;
+	}
+
+	/**
+	 * <p>EFFECTS: Solves the transposed Vandermonde system values[j] = sum c[i] * roots[i]^j, for j in [0, t).</p>
+	 * <p>
+	 *     REQUIREMENTS:
+	 *     <ul>
+	 *         <li>roots and values must be non-null, have the same length and contain only residues.</li>
+	 *         <li>The roots must be distinct, modulus must be a prime.</li>
+	 *     </ul>
+	 * <p>NOTES: Each coefficient is computed in linear time, using the polynomial with all the roots except one.</p>
+	 * @param roots The distinct roots.
+	 * @param values The values of the sums.
+	 * @param modulus The prime modulus.
+	 * @return The coefficient of each root.
+	 */
+	public static long[] solveVandermonde(long[] roots, long[] values, long modulus) {
+		assert roots.length == values.length: "Each root must have its value";
+		final int t = roots.length;
+		long[] polynomial = fromRoots(roots, modulus);
+		long[] coefficients = new long[t];
+
+		for (int i = 0; i < t; i++) {
+			// q(z) = polynomial(z) / (z - roots[i]), c[i] = sum q[j] * values[j] / q(roots[i])
+			long q = 1;
+			long numerator = Modular.mul(q, values[t - 1], modulus);
+			long denominator = 1;
+			for (int j = t - 1; j > 0; j--) {
+				q = Modular.add(polynomial[j], Modular.mul(roots[i], q, modulus), modulus);
+				numerator = Modular.add(numerator, Modular.mul(q, values[j - 1], modulus), modulus);
+				denominator = Modular.add(Modular.mul(denominator, roots[i], modulus), q, modulus);
+			}
+			coefficients[i] = Modular.mul(numerator, Modular.inverse(denominator, modulus), modulus);
+		}
+		return coefficients;
+	}
+
+	/**
+	 * <p>EFFECTS: Computes the inverse of a modulo a (not necessarily prime) modulus, with the extended Euclidean algorithm.</p>
+	 * <p>REQUIREMENTS: a and modulus must be coprime, 0 &lt;= a &lt; modulus.</p>
+	 * @param a The value.
+	 * @param modulus The modulus.
+	 * @return The inverse of a.
+	 */
+	private static long inverse(long a, long modulus) {
+		long r0 = modulus, r1 = a;
+		long t0 = 0, t1 = 1;
+		while (r1 != 0) {
+			long q = r0 / r1;
+			long r = r0 - q * r1;
+			r0 = r1;
+			r1 = r;
+			long t = t0 - q * t1;
+			t0 = t1;
+			t1 = t;
+		}
+		return Modular.reduce(t0, modulus);
+	}
+
+	/**
+	 * <p>EFFECTS: Removes the zero coefficients at the end of a polynomial.</p>
+	 * @param polynomial The polynomial.
+	 * @return The trimmed polynomial.
+	 */
+	private static long[] trim(long[] polynomial) {
+		int length = polynomial.length;
+		while (length > 0 && polynomial[length - 1] == 0) length--;
+		return length == polynomial.length ? polynomial : Arrays.copyOf(polynomial, length);
+	}
+
+	/**
+	 * <p>EFFECTS: Computes the remainder of the division of a polynomial by a non-zero polynomial.</p>
+	 * @param dividend The dividend.
+	 * @param divisor The non-zero divisor.
+	 * @param modulus The prime modulus.
+	 * @return The remainder.
+	 */
+	private static long[] reduce(long[] dividend, long[] divisor, long modulus) {
+		long[] remainder = dividend.clone();
+		final int degree = divisor.length - 1;
+		final long leading = Modular.inverse(divisor[degree], modulus);
+		for (int i = remainder.length - 1; i >= degree; i--) {
+			if (remainder[i] == 0) continue;
+			long factor = Modular.mul(remainder[i], leading, modulus);
+			for (int j = 0; j <= degree; j++)
+				remainder[i - degree + j] = Modular.sub(remainder[i - degree + j], Modular.mul(factor, divisor[j], modulus), modulus);
+		}
+		return trim(Arrays.copyOf(remainder, Math.min(remainder.length, degree)));
+	}
+
+	/**
+	 * <p>EFFECTS: Computes the exact quotient of the division of a polynomial by a non-zero polynomial.</p>
+	 * @param dividend The dividend.
+	 * @param divisor The non-zero divisor, that divides dividend.
+	 * @param modulus The prime modulus.
+	 * @return The quotient.
+	 */
+	private static long[] divide(long[] dividend, long[] divisor, long modulus) {
+		long[] remainder = dividend.clone();
+		final int degree = divisor.length - 1;
+		final long leading = Modular.inverse(divisor[degree], modulus);
+		long[] quotient = new long[dividend.length - degree];
+		for (int i = remainder.length - 1; i >= degree; i--) {
+			long factor = Modular.mul(remainder[i], leading, modulus);
+			quotient[i - degree] = factor;
+			for (int j = 0; j <= degree; j++)
+				remainder[i - degree + j] = Modular.sub(remainder[i - degree + j], Modular.mul(factor, divisor[j], modulus), modulus);
+		}
+		return quotient;
+	}
+
+	/**
+	 * <p>EFFECTS: Computes the product of two polynomials, modulo a third one.</p>
+	 * @param lhs The first polynomial.
+	 * @param rhs The second polynomial.
+	 * @param divisor The non-zero polynomial modulus.
+	 * @param modulus The prime modulus.
+	 * @return The product modulo divisor.
+	 */
+	private static long[] mulMod(long[] lhs, long[] rhs, long[] divisor, long modulus) {
+		if (lhs.length == 0 || rhs.length == 0) return lhs.length == 0 ? lhs : rhs;
+		long[] product = new long[lhs.length + rhs.length - 1];
+		for (int i = 0; i < lhs.length; i++)
+			for (int j = 0; j < rhs.length; j++)
+				product[i + j] = Modular.add(product[i + j], Modular.mul(lhs[i], rhs[j], modulus), modulus);
+		return reduce(product, divisor, modulus);
+	}
+
+	/**
+	 * <p>EFFECTS: Computes a power of a polynomial modulo another one, by repeated squaring.</p>
+	 * @param base The base polynomial.
+	 * @param exp The non-negative exponent.
+	 * @param divisor The non-zero polynomial modulus.
+	 * @param modulus The prime modulus.
+	 * @return The power modulo divisor.
+	 */
+	private static long[] powMod(long[] base, long exp, long[] divisor, long modulus) {
+		long[] result = reduce(new long[] {1}, divisor, modulus);
+		base = reduce(base, divisor, modulus);
+		while (exp != 0) {
+			if (exp % 2 == 1) result = mulMod(result, base, divisor, modulus);
+			exp /= 2;
+			base = mulMod(base, base, divisor, modulus);
+		}
+		return result;
+	}
+
+	/**
+	 * <p>EFFECTS: Computes the monic greatest common divisor of two polynomials.</p>
+	 * @param a The first polynomial.
+	 * @param b The second polynomial.
+	 * @param modulus The prime modulus.
+	 * @return The monic gcd, or the zero polynomial if both are zero.
+	 */
+	private static long[] gcd(long[] a, long[] b, long modulus) {
+		while (b.length != 0) {
+			long[] r = reduce(a, b, modulus);
+			a = b;
+			b = r;
+		}
+		if (a.length == 0) return a;
+
+		long leading = Modular.inverse(a[a.length - 1], modulus);
+		long[] monic = new long[a.length];
+		for (int i = 0; i < a.length; i++) monic[i] = Modular.mul(a[i], leading, modulus);
+		return monic;
+	}
+
+	/**
+	 * <p>EFFECTS: Subtracts one from a polynomial.</p>
+	 * @param polynomial The polynomial.
+	 * @param modulus The prime modulus.
+	 * @return The polynomial minus one.
+	 */
+	private static long[] subtractOne(long[] polynomial, long modulus) {
+		long[] result = Arrays.copyOf(polynomial, Math.max(1, polynomial.length));
+		result[0] = Modular.sub(result[0], 1, modulus);
+		return trim(result);
+	}
+}
@@ -0,0 +1,431 @@
+package luppolo.math;
+
+import java.util.*;
+
+/**
+ * <p>A sparse multivariate polynomial with the coefficients reduced modulo a prime, with its terms sorted by monomial.</p>
+ * <p>
+ *     The sums of products are computed with the heap based algorithm of
+ *     <a href="https://doi.org/10.1145/1086837.1086847">Johnson</a>: the terms of the products are generated
+ *     in decreasing order of monomial and the like terms are merged as soon as they are generated,
+ *     so the memory used besides the result is proportional to the number of terms of the smaller factors,
+ *     and not to the number of terms of the products.
+ * </p>
+ * <p>
+ *     AF: the polynomial is the sum of coefficients[i] * monomials[i].
+ * <p>
+ *     REQUIREMENTS:
+ *     <ul>
+ *         <li>monomials and coefficients must be non-null and have the same length, monomials must not contain null elements.</li>
+ *         <li>The monomials must have the same variables, and must be sorted in strictly decreasing order.</li>
+ *         <li>The coefficients must be non-zero residues.</li>
+ *     </ul>
+ * <p>MUTABILITY: This class is immutable.</p>
+ */
+public final class SparsePolynomial {
+	/** The monomials of the terms, in decreasing order. */
+	private final Monomial[] monomials;
+	/** The coefficients of the terms. */
+	private final long[] coefficients;
+
+	/**
+	 * <p>Private constructor of {@link SparsePolynomial}, that doesn't copy the arrays.</p>
+	 * <p>REQUIREMENTS: The arrays must satisfy the representation invariant, and must not be modified after the call.</p>
+	 * @param monomials The monomials of the terms.
+	 * @param coefficients The coefficients of the terms.
+	 */
+	private SparsePolynomial(Monomial[] monomials, long[] coefficients) {
+		this.monomials = monomials;
+		this.coefficients = coefficients;
+	}
+
+	/**
+	 * <p>Factory method for a {@link SparsePolynomial}.</p>
+	 * <p>REQUIREMENTS: The monomials must have the same variables, the coefficients must be residues.</p>
+	 * @param terms The coefficient of each monomial, the zero coefficients are ignored.
+	 * @return The polynomial.
+	 * @throws NullPointerException If terms, or any of its keys or values, is null.
+	 */
+	public static SparsePolynomial of(Map<Monomial, Long> terms)
+		throws NullPointerException
+	{
+		List<Monomial> sorted = new ArrayList<>(terms.size());
+		for (Map.Entry<Monomial, Long> term : terms.entrySet())
+			if (term.getValue() != 0) sorted.add(Objects.requireNonNull(term.getKey()));
+		sorted.sort(Comparator.reverseOrder());
+
+		Monomial[] monomials = sorted.toArray(new Monomial[0]);
+		long[] coefficients = new long[monomials.length];
+		for (int i = 0; i < monomials.length; i++) coefficients[i] = terms.get(monomials[i]);
+		return new SparsePolynomial(monomials, coefficients);
+	}
+
+	/**
+	 * <p>EFFECTS: Returns the number of terms.</p>
+	 * @return The number of terms.
+	 */
+	public int size() {
+		return monomials.length;
+	}
+
+	/**
+	 * <p>EFFECTS: Returns the terms as a map.</p>
+	 * @return A new map from the monomials to their non-zero coefficients.
+	 */
+	public Map<Monomial, Long> toMap() {
+		Map<Monomial, Long> terms = new HashMap<>(2 * monomials.length);
+		for (int i = 0; i < monomials.length; i++) terms.put(monomials[i], coefficients[i]);
+		return terms;
+	}
+
+	/**
+	 * <p>EFFECTS: Computes the sum of the products lhs[k] * rhs[k], merging the like terms of all the products with a single heap.</p>
+	 * <p>
+	 *     REQUIREMENTS:
+	 *     <ul>
+	 *         <li>The parameters must be non-null and have the same size, and must not contain null elements.</li>
+	 *         <li>All the monomials must have the same variables, modulus must be the prime of the coefficients.</li>
+	 *     </ul>
+	 * <p>
+	 *     NOTES: The heap contains at most one term for each term of lhs[k], so the smaller factors should be in lhs.
+	 *     The monomials are packed in a single long, to compare them quickly,
+	 *     when the exponents of the products don't fit the terms are merged with a hash table instead.
+	 * </p>
+	 * @param lhs The left factors of the products.
+	 * @param rhs The right factors of the products.
+	 * @param modulus The prime modulus.
+	 * @return The sum of the products.
+	 * @throws ArithmeticException If an exponent overflows.
+	 */
+	public static SparsePolynomial sumOfProducts(List<SparsePolynomial> lhs, List<SparsePolynomial> rhs, long modulus)
+		throws ArithmeticException
+	{
+		assert lhs.size() == rhs.size(): "Every product must have two factors";
+
+		Optional<Packing> packing = Packing.of(lhs, rhs);
+		if (packing.isEmpty()) {
+			Map<Monomial, Long> terms = new HashMap<>();
+			for (int k = 0; k < lhs.size(); k++) {
+				SparsePolynomial l = lhs.get(k), r = rhs.get(k);
+				for (int i = 0; i < l.size(); i++)
+					for (int j = 0; j < r.size(); j++)
+						terms.merge(
+							l.monomials[i].mul(r.monomials[j]),
+							Modular.mul(l.coefficients[i], r.coefficients[j], modulus),
+							(a, b) -> Modular.add(a, b, modulus)
+						);
+			}
+			return of(terms);
+		}
+
+		// The term (row, column) of each product, the next ones of the row are generated when it's extracted
+		Map<SparsePolynomial, long[]> keys = new IdentityHashMap<>();
+		Heap heap = new Heap(lhs.size());
+		for (int k = 0; k < lhs.size(); k++) {
+			SparsePolynomial l = lhs.get(k), r = rhs.get(k);
+			if (l.size() == 0 || r.size() == 0) continue;
+			heap.add(new Cursor(
+				l, keys.computeIfAbsent(l, packing.get()::pack),
+				r, keys.computeIfAbsent(r, packing.get()::pack),
+				0
+			));
+		}
+
+		List<Monomial> monomials = new ArrayList<>();
+		List<Long> coefficients = new ArrayList<>();
+		while (!heap.isEmpty()) {
+			final long key = heap.top().key;
+			long coefficient = 0;
+			// Merge all the terms with the same monomial, they are at the top of the heap
+			do {
+				Cursor cursor = heap.top();
+				coefficient = Modular.add(coefficient, cursor.coefficient(modulus), modulus);
+
+				// The start of the next row is less than the start of this one
+				Cursor next = cursor.column == 0 && cursor.row + 1 < cursor.lhs.size()
+					? new Cursor(cursor.lhs, cursor.lhsKeys, cursor.rhs, cursor.rhsKeys, cursor.row + 1)
+					: null;
+				if (cursor.column + 1 < cursor.rhs.size()) {
+					cursor.next();
+					heap.siftTop();
+				} else {
+					heap.removeTop();
+				}
+				if (next != null) heap.add(next);
+			} while (!heap.isEmpty() && heap.top().key == key);
+
+			if (coefficient != 0) {
+				monomials.add(packing.get().unpack(key));
+				coefficients.add(coefficient);
+			}
+		}
+
+		long[] values = new long[coefficients.size()];
+		for (int i = 0; i < values.length; i++) values[i] = coefficients.get(i);
+		return new SparsePolynomial(monomials.toArray(new Monomial[0]), values);
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) return true;
+		if (!(o instanceof SparsePolynomial other)) return false;
+		return Arrays.equals(monomials, other.monomials) && Arrays.equals(coefficients, other.coefficients);
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * Arrays.hashCode(monomials) + Arrays.hashCode(coefficients);
+	}
+
+	@Override
+	public String toString() {
+		StringJoiner joiner = new StringJoiner(" + ");
+		for (int i = 0; i < monomials.length; i++) joiner.add(coefficients[i] + "*" + monomials[i]);
+		return joiner.toString();
+	}
+
+	/**
+	 * <p>
+	 *     An encoding of the monomials of a sum of products in a single non-negative long,
+	 *     with a field of bits for each variable, from the first variable in the most significant bits to the last one.
+	 *     The fields are wide enough for the exponents of the products, so the product of two monomials is the sum
+	 *     of their keys, and the order of the keys is the order of the monomials.
+	 * </p>
+	 * <p>AF: shifts[i] is the position of the field of the i-th variable, widths[i] is its number of bits.</p>
+	 * <p>REQUIREMENTS: The fields must not overlap, and must fit in 63 bits.</p>
+	 * <p>MUTABILITY: This class is immutable.</p>
+	 */
+	private static final class Packing {
+		/** The position of the field of each variable. */
+		private final int[] shifts;
+		/** The number of bits of the field of each variable. */
+		private final int[] widths;
+
+		/**
+		 * <p>EFFECTS: Constructs a new {@link Packing}.</p>
+		 * @param widths The number of bits of the field of each variable.
+		 */
+		private Packing(int[] widths) {
+			this.widths = widths;
+			this.shifts = new int[widths.length];
+			for (int i = widths.length - 2; i >= 0; i--) shifts[i] = shifts[i + 1] + widths[i + 1];
+		}
+
+		/**
+		 * <p>EFFECTS: Computes the packing of the monomials of a sum of products, if their exponents fit in 63 bits.</p>
+		 * @param lhs The left factors of the products.
+		 * @param rhs The right factors of the products.
+		 * @return An {@link Optional} that contains the packing, empty if the exponents don't fit.
+		 * @throws ArithmeticException If an exponent overflows.
+		 */
+		static Optional<Packing> of(List<SparsePolynomial> lhs, List<SparsePolynomial> rhs)
+			throws ArithmeticException
+		{
+			long[] degrees = null;
+			for (int k = 0; k < lhs.size(); k++) {
+				long[] l = degrees(lhs.get(k)), r = degrees(rhs.get(k));
+				if (l == null || r == null) continue;
+				if (degrees == null) degrees = new long[l.length];
+				for (int i = 0; i < degrees.length; i++) degrees[i] = Math.max(degrees[i], Math.addExact(l[i], r[i]));
+			}
+			if (degrees == null) return Optional.of(new Packing(new int[0]));
+
+			int[] widths = new int[degrees.length];
+			int bits = 0;
+			for (int i = 0; i < widths.length; i++) {
+				widths[i] = Long.SIZE - Long.numberOfLeadingZeros(degrees[i]);
+				bits += widths[i];
+			}
+			return bits < Long.SIZE ? Optional.of(new Packing(widths)) : Optional.empty();
+		}
+
+		/**
+		 * <p>EFFECTS: Computes the greatest exponent of each variable in a polynomial.</p>
+		 * @param polynomial The polynomial.
+		 * @return The greatest exponents, null if the polynomial is zero.
+		 */
+		private static long[] degrees(SparsePolynomial polynomial) {
+			if (polynomial.size() == 0) return null;
+			long[] degrees = new long[polynomial.monomials[0].variables()];
+			for (Monomial monomial : polynomial.monomials)
+				for (int i = 0; i < degrees.length; i++) degrees[i] = Math.max(degrees[i], monomial.exponent(i));
+			return degrees;
+		}
+
+		/**
+		 * <p>EFFECTS: Packs the monomials of a polynomial.</p>
+		 * <p>REQUIREMENTS: The polynomial must be one of the factors of the packing.</p>
+		 * @param polynomial The polynomial.
+		 * @return The key of each monomial, in the same order.
+		 */
+		long[] pack(SparsePolynomial polynomial) {
+			long[] keys = new long[polynomial.size()];
+			for (int j = 0; j < keys.length; j++)
+				for (int i = 0; i < shifts.length; i++) keys[j] |= polynomial.monomials[j].exponent(i) << shifts[i];
+			return keys;
+		}
+
+		/**
+		 * <p>EFFECTS: Unpacks a monomial.</p>
+		 * @param key The key of the monomial.
+		 * @return The monomial.
+		 */
+		Monomial unpack(long key) {
+			long[] exponents = new long[shifts.length];
+			for (int i = 0; i < shifts.length; i++) exponents[i] = (key >>> shifts[i]) & ((1L << widths[i]) - 1);
+			return Monomial.of(exponents);
+		}
+	}
+
+	/**
+	 * <p>A position in a product, the term lhs[row] * rhs[column].</p>
+	 * <p>
+	 *     AF: lhs and rhs are the factors of the product, lhsKeys and rhsKeys are the keys of their monomials,
+	 *     row and column are the indices of the terms, key is the key of their product.
+	 * <p>REQUIREMENTS: row and column must be valid indices of the terms of lhs and rhs, key must be the key of their product.</p>
+	 * <p>MUTABILITY: This class is mutable, it must not be modified while it is in a heap, except at its top.</p>
+	 */
+	private static final class Cursor {
+		/** The left factor. */
+		private final SparsePolynomial lhs;
+		/** The keys of the monomials of the left factor. */
+		private final long[] lhsKeys;
+		/** The right factor. */
+		private final SparsePolynomial rhs;
+		/** The keys of the monomials of the right factor. */
+		private final long[] rhsKeys;
+		/** The index of the term of lhs. */
+		private final int row;
+		/** The index of the term of rhs. */
+		private int column;
+		/** The key of the monomial of the product of the terms. */
+		private long key;
+
+		/**
+		 * <p>EFFECTS: Constructs a new {@link Cursor} at the start of a row.</p>
+		 * @param lhs The left factor.
+		 * @param lhsKeys The keys of the monomials of the left factor.
+		 * @param rhs The right factor.
+		 * @param rhsKeys The keys of the monomials of the right factor.
+		 * @param row The index of the term of lhs.
+		 */
+		Cursor(SparsePolynomial lhs, long[] lhsKeys, SparsePolynomial rhs, long[] rhsKeys, int row) {
+			this.lhs = lhs;
+			this.lhsKeys = lhsKeys;
+			this.rhs = rhs;
+			this.rhsKeys = rhsKeys;
+			this.row = row;
+			this.key = lhsKeys[row] + rhsKeys[0];
+		}
+
+		/**
+		 * <p>EFFECTS: Moves the cursor to the next term of its row.</p>
+		 * <p>REQUIREMENTS: The cursor must not be at the end of its row.</p>
+		 * <p>MUTABILITY: This method modifies the cursor.</p>
+		 */
+		void next() {
+			column++;
+			key = lhsKeys[row] + rhsKeys[column];
+		}
+
+		/**
+		 * <p>EFFECTS: Computes the coefficient of the product of the terms.</p>
+		 * @param modulus The prime modulus.
+		 * @return The coefficient.
+		 */
+		long coefficient(long modulus) {
+			return Modular.mul(lhs.coefficients[row], rhs.coefficients[column], modulus);
+		}
+	}
+
+	/**
+	 * <p>
+	 *     A binary max heap of cursors ordered by key, unlike {@link PriorityQueue}
+	 *     the top can be moved to its next term and sifted down without removing it.
+	 * </p>
+	 * <p>
+	 *     AF: the cursors are cursors[0 .. size - 1], with the children of cursors[i] at 2i + 1 and 2i + 2.
+	 * <p>
+	 *     REQUIREMENTS: The key of each cursor must be greater than or equal to the ones of its children,
+	 *     cursors must be non-null, and the cursors in the heap must be non-null.
+	 * <p>MUTABILITY: This class is mutable.</p>
+	 */
+	private static final class Heap {
+		/** The cursors, as an implicit binary tree. */
+		private Cursor[] cursors;
+		/** The number of cursors in the heap. */
+		private int size;
+
+		/**
+		 * <p>EFFECTS: Constructs a new empty {@link Heap}.</p>
+		 * @param capacity The initial capacity.
+		 */
+		Heap(int capacity) {
+			this.cursors = new Cursor[Math.max(1, capacity)];
+		}
+
+		/**
+		 * <p>EFFECTS: Returns true if the heap is empty.</p>
+		 * @return true if the heap is empty, false otherwise.
+		 */
+		boolean isEmpty() {
+			return size == 0;
+		}
+
+		/**
+		 * <p>EFFECTS: Returns the cursor with the greatest key.</p>
+		 * <p>REQUIREMENTS: The heap must not be empty.</p>
+		 * @return The top of the heap.
+		 */
+		Cursor top() {
+			return cursors[0];
+		}
+
+		/**
+		 * <p>EFFECTS: Adds a cursor to the heap.</p>
+		 * <p>MUTABILITY: This method modifies the heap.</p>
+		 * @param cursor The cursor.
+		 */
+		void add(Cursor cursor) {
+			if (size == cursors.length) cursors = Arrays.copyOf(cursors, 2 * size);
+			int i = size++;
+			while (i > 0) {
+				int parent = (i - 1) / 2;
+				if (cursors[parent].key >= cursor.key) break;
+				cursors[i] = cursors[parent];
+				i = parent;
+			}
+			cursors[i] = cursor;
+		}
+
+		/**
+		 * <p>EFFECTS: Removes the top of the heap.</p>
+		 * <p>REQUIREMENTS: The heap must not be empty.</p>
+		 * <p>MUTABILITY: This method modifies the heap.</p>
+		 */
+		void removeTop() {
+			cursors[0] = cursors[--size];
+			cursors[size] = null;
+			if (size > 0) siftTop();
+		}
+
+		/**
+		 * <p>EFFECTS: Restores the order of the heap after the key of the top decreased.</p>
+		 * <p>REQUIREMENTS: The heap must not be empty.</p>
+		 * <p>MUTABILITY: This method modifies the heap.</p>
+		 */
+		void siftTop() {
+			final Cursor cursor = cursors[0];
+			int i = 0;
+			for (;;) {
+				int child = 2 * i + 1;
+				if (child >= size) break;
+				if (child + 1 < size && cursors[child + 1].key > cursors[child].key) child++;
+				if (cursor.key >= cursors[child].key) break;
+				cursors[i] = cursors[child];
+				i = child;
+			}
+			cursors[i] = cursor;
+		}
+	}
+}
@@ -0,0 +1,618 @@
+package luppolo.math;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * <p>
+ *     A collector of the terms of a polynomial with rational coefficients, that combines the like terms
+ *     using a bounded amount of memory, spilling to temporary files the terms that don't fit.
+ * </p>
+ * <p>
+ *     The terms are buffered in a compact binary encoding (the exponents, the numerator and the denominator as longs)
+ *     in an {@link OffHeapTermStore}, that combines the like terms as they are added.
+ *     When the distinct buffered terms exceed the memory budget the monomials whose coefficients cancelled out are dropped,
+ *     and if at least half of the terms remain they are sorted by monomial,
+ *     and written as a sorted run to a temporary file. The runs are then merged with a k-way merge,
+ *     that combines the like terms of all the runs while reading them in order through windows of {@link #WINDOW_SIZE} bytes.
+ *     At most {@link #MAX_FAN_IN} runs are merged at the same time: when there are more runs,
+ *     the oldest ones are first merged in passes into new runs, so the open files and the memory of the windows are bounded.
+ * </p>
+ * <p>
+ *     AF: the collected polynomial is the sum of the terms in the runs and of the terms in store,
+ *     each term is stored as variables exponents followed by the numerator and the denominator of its coefficient.
+ * <p>
+ *     REQUIREMENTS:
+ *     <ul>
+ *         <li>variables must be non-negative, capacity must be positive.</li>
+ *         <li>The terms in each run must be sorted by monomial, with distinct monomials and non-zero coefficients.</li>
+ *         <li>directory and runs must be non-null, the files of the runs must exist until the collector is closed.</li>
+ *         <li>store must be non-null until the collector is closed, and must contain at most capacity terms.</li>
+ *         <li>output must be non-null, and must have room for at least one term.</li>
+ *         <li>merge is null until the terms are read, and then it reads at most {@link #MAX_FAN_IN} runs.</li>
+ *     </ul>
+ * <p>MUTABILITY: This class is mutable, the terms can be added until they are read.</p>
+ * <p>NOTES: The collector must be closed to delete its temporary files.</p>
+ */
+public final class TermCollector implements AutoCloseable {
+	/** The default memory budget, in bytes. */
+	public static final long DEFAULT_BUDGET = 64L << 20;
+	/** The minimum number of distinct terms buffered before spilling, even if the budget is smaller. */
+	public static final int MIN_CAPACITY = 1 << 10;
+	/** The maximum number of runs merged at the same time. */
+	public static final int MAX_FAN_IN = 64;
+	/** The size of the buffers used to write and read the runs, in bytes. */
+	public static final int WINDOW_SIZE = 1 << 16;
+
+	/** The number of variables of the monomials. */
+	private final int variables;
+	/** The number of longs used by each term. */
+	private final int stride;
+	/** The maximum number of distinct terms in the buffer. */
+	private final int capacity;
+	/** The directory of the temporary files. */
+	private final Path directory;
+	/** The sorted runs spilled to the temporary files. */
+	private final List<Run> runs = new ArrayList<>();
+	/** The buffered terms. */
+	private OffHeapTermStore store;
+	/** The buffer used to write the runs. */
+	private final ByteBuffer output;
+	/** The merge of the runs, once the terms are read. */
+	private Merge merge;
+	/** Whether the terms were read. */
+	private boolean read;
+
+	/**
+	 * A sorted run in a temporary file.
+	 * @param path The path of the file.
+	 * @param terms The number of terms in the file.
+	 */
+	private record Run(Path path, int terms) {}
+
+	/**
+	 * A term of the collected polynomial.
+	 * @param monomial The monomial.
+	 * @param coefficient The non-zero coefficient.
+	 */
+	public record Term(Monomial monomial, Rational coefficient) {}
+
+	/**
+	 * <p>EFFECTS: Constructs a new {@link TermCollector}, that uses the default temporary directory.</p>
+	 * @param variables The number of variables of the monomials.
+	 * @param budget The memory budget of the buffered terms, in bytes.
+	 * @throws IllegalArgumentException If variables or budget is negative.
+	 */
+	public TermCollector(int variables, long budget)
+		throws IllegalArgumentException
+	{
+		this(variables, budget, Path.of(System.getProperty("java.io.tmpdir")));
+	}
+
+	/**
+	 * <p>EFFECTS: Constructs a new {@link TermCollector}.</p>
+	 * @param variables The number of variables of the monomials.
+	 * @param budget The memory budget of the buffered terms, in bytes, at least {@link #MIN_CAPACITY} terms are always buffered.
+	 * @param directory The directory of the temporary files.
+	 * @throws IllegalArgumentException If variables or budget is negative.
+	 * @throws NullPointerException If directory is null.
+	 */
+	public TermCollector(int variables, long budget, Path directory)
+		throws IllegalArgumentException, NullPointerException
+	{
+		if (variables < 0) throw new IllegalArgumentException("The number of variables cannot be negative");
+		if (budget < 0) throw new IllegalArgumentException("The memory budget cannot be negative");
+
+		this.variables = variables;
+		this.stride = variables + 2;
+		this.directory = Objects.requireNonNull(directory);
+		// The hash table uses up to four slots for each term, and two ints to sort it
+		final long termBytes = 4L * stride * Long.BYTES + 2L * Integer.BYTES;
+		final int maxTerms = Integer.highestOneBit(Integer.MAX_VALUE / (stride * Long.BYTES)) / 2;
+		this.capacity = (int) Math.min(Math.max(MIN_CAPACITY, budget / termBytes), maxTerms);
+		// The budget already accounts for the slots of the whole capacity, so the table is allocated once and never grows
+		this.store = new OffHeapTermStore(variables, capacity);
+		this.output = ByteBuffer.allocateDirect(windowSize());
+	}
+
+	/**
+	 * <p>EFFECTS: Adds a term to the polynomial.</p>
+	 * <p>MUTABILITY: This method modifies the collector.</p>
+	 * @param monomial The monomial.
+	 * @param coefficient The coefficient.
+	 * @throws IllegalArgumentException If the monomial doesn't have the variables of the collector.
+	 * @throws IllegalStateException If the terms were already read.
+	 * @throws ArithmeticException If the sum of the coefficients of the like terms overflows.
+	 * @throws UncheckedIOException If the terms cannot be written to a temporary file.
+	 */
+	public void add(Monomial monomial, Rational coefficient)
+		throws IllegalArgumentException, IllegalStateException, ArithmeticException, UncheckedIOException
+	{
+		if (monomial.variables() != variables)
+			throw new IllegalArgumentException("The monomial must have " + variables + " variables");
+		if (read) throw new IllegalStateException("The terms were already read");
+		if (coefficient.equals(Rational.ZERO)) return;
+
+		store.add(monomial, coefficient);
+		if (store.size() >= capacity) {
+			// The monomials that cancelled out don't need to be spilled, if enough of them are dropped the buffer is not full anymore
+			store.compact();
+			if (store.size() >= capacity / 2) spill();
+		}
+	}
+
+	/**
+	 * <p>EFFECTS: Returns the terms of the polynomial, with the like terms combined, in increasing order of monomial.</p>
+	 * <p>MUTABILITY: After this method is called no more terms can be added.</p>
+	 * @return An iterator over the terms, it is valid until the collector is closed.
+	 * @throws IllegalStateException If the terms were already read.
+	 * @throws ArithmeticException If the sum of the coefficients of the like terms overflows.
+	 * @throws UncheckedIOException If the terms cannot be read from the temporary files.
+	 */
+	public Iterator<Term> terms()
+		throws IllegalStateException, ArithmeticException, UncheckedIOException
+	{
+		if (read) throw new IllegalStateException("The terms were already read");
+		read = true;
+
+		try {
+			if (runs.isEmpty()) {
+				// Everything fits in memory
+				int[] offsets = store.sortedOffsets();
+				LongBuffer combined = LongBuffer.allocate(offsets.length * stride);
+				for (int offset : offsets) store.write(offset, combined);
+				store.close();
+				merge = new Merge(List.of(new Reader(combined.flip())));
+			} else {
+				if (store.size() > 0) spill();
+				store.close();
+				// Merge the oldest runs until all the remaining ones can be merged at the same time
+				while (runs.size() > MAX_FAN_IN) {
+					List<Run> oldest = runs.subList(0, MAX_FAN_IN);
+					Run merged = mergeRuns(oldest);
+					for (Run run : oldest) Files.deleteIfExists(run.path());
+					oldest.clear();
+					runs.add(merged);
+				}
+				merge = new Merge(open(runs));
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return merge;
+	}
+
+	/**
+	 * <p>EFFECTS: Deletes the temporary files.</p>
+	 * @throws UncheckedIOException If a file cannot be deleted.
+	 */
+	@Override
+	public void close()
+		throws UncheckedIOException
+	{
+		read = true;
+		store.close();
+		try {
+			if (merge != null) merge.close();
+			for (Run run : runs) Files.deleteIfExists(run.path());
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		} finally {
+			runs.clear();
+		}
+	}
+
+	/**
+	 * <p>EFFECTS: Sorts the buffered terms, and writes them to a new sorted run.</p>
+	 * <p>MUTABILITY: This method empties the buffer.</p>
+	 * @throws UncheckedIOException If the run cannot be written.
+	 */
+	private void spill()
+		throws UncheckedIOException
+	{
+		int[] offsets = store.sortedOffsets();
+		if (offsets.length > 0) {
+			try (RunWriter writer = new RunWriter()) {
+				for (int offset : offsets) store.write(offset, writer.next());
+				runs.add(writer.finish());
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+		store.clear();
+	}
+
+	/**
+	 * <p>EFFECTS: Merges sorted runs into a new sorted run, combining the like terms.</p>
+	 * <p>REQUIREMENTS: runs must be non-null, and contain at most {@link #MAX_FAN_IN} runs.</p>
+	 * @param runs The runs to merge, they are not deleted.
+	 * @return The merged run.
+	 * @throws IOException If the runs cannot be read, or the merged run cannot be written.
+	 * @throws ArithmeticException If the sum of the coefficients of the like terms overflows.
+	 */
+	private Run mergeRuns(List<Run> runs)
+		throws IOException, ArithmeticException
+	{
+		try (Merge merged = new Merge(open(runs)); RunWriter writer = new RunWriter()) {
+			while (merged.hasNext()) writer.next().put(merged.nextEncoded());
+			return writer.finish();
+		}
+	}
+
+	/**
+	 * <p>EFFECTS: Opens the readers of some runs.</p>
+	 * <p>REQUIREMENTS: runs must be non-null.</p>
+	 * @param runs The runs.
+	 * @return The readers of the runs, in the same order.
+	 * @throws IOException If a run cannot be opened, in this case the readers already opened are closed.
+	 */
+	private List<Reader> open(List<Run> runs)
+		throws IOException
+	{
+		List<Reader> readers = new ArrayList<>(runs.size());
+		try {
+			for (Run run : runs) readers.add(new Reader(run.path()));
+		} catch (IOException | RuntimeException e) {
+			for (Reader reader : readers) reader.close();
+			throw e;
+		}
+		return readers;
+	}
+
+	/**
+	 * <p>EFFECTS: Returns the size of the buffers of the runs, a multiple of the size of a term.</p>
+	 * @return The size in bytes, the largest multiple of the size of a term not greater than {@link #WINDOW_SIZE}, and at least one term.
+	 */
+	private int windowSize() {
+		final int termBytes = stride * Long.BYTES;
+		return Math.max(1, WINDOW_SIZE / termBytes) * termBytes;
+	}
+
+	/**
+	 * <p>EFFECTS: Compares the monomials of two encoded terms, lexicographically by their exponents.</p>
+	 * @param lhs The array of the first term.
+	 * @param lhsOffset The offset of the first term.
+	 * @param rhs The array of the second term.
+	 * @param rhsOffset The offset of the second term.
+	 * @return A negative number, zero or a positive number if the first monomial is less than, equal to or greater than the second.
+	 */
+	private int compare(long[] lhs, int lhsOffset, long[] rhs, int rhsOffset) {
+		return Arrays.compare(lhs, lhsOffset, lhsOffset + variables, rhs, rhsOffset, rhsOffset + variables);
+	}
+
+	/**
+	 * <p>EFFECTS: Decodes the coefficient of an encoded term.</p>
+	 * @param terms The array of the term.
+	 * @param offset The offset of the term.
+	 * @return The coefficient.
+	 */
+	private Rational coefficient(long[] terms, int offset) {
+		return Rational.fromNumDen(terms[offset + variables], terms[offset + variables + 1]);
+	}
+
+	/**
+	 * <p>The k-way merge of sorted runs, that combines the like terms.</p>
+	 * <p>
+	 *     AF: heads[i] is the next term of sources[i], heap contains the indices of the sources that are not exhausted,
+	 *     ordered by the monomial of their next term, combined is the next combined term if hasNext is true.
+	 * <p>REQUIREMENTS: The sources must be sorted runs of encoded terms.</p>
+	 * <p>MUTABILITY: This class is mutable.</p>
+	 */
+	private final class Merge implements Iterator<Term>, AutoCloseable {
+		/** The sorted runs. */
+		private final List<Reader> sources;
+		/** The next term of each run. */
+		private final long[][] heads;
+		/** The runs ordered by their next term. */
+		private final PriorityQueue<Integer> heap;
+		/** The next combined term. */
+		private final long[] combined;
+		/** The term returned by {@link #nextEncoded}. */
+		private final long[] current;
+		/** Whether there is a next combined term. */
+		private boolean hasNext;
+
+		/**
+		 * <p>EFFECTS: Constructs a new {@link Merge}, that closes the sources.</p>
+		 * @param sources The sorted runs.
+		 * @throws ArithmeticException If the sum of the coefficients of the like terms overflows.
+		 * @throws UncheckedIOException If the runs cannot be read.
+		 */
+		Merge(List<Reader> sources)
+			throws ArithmeticException, UncheckedIOException
+		{
+			this.sources = sources;
+			this.heads = new long[sources.size()][stride];
+			this.heap = new PriorityQueue<>(Math.max(1, sources.size()), (a, b) -> compare(heads[a], 0, heads[b], 0));
+			this.combined = new long[stride];
+			this.current = new long[stride];
+			try {
+				for (int i = 0; i < sources.size(); i++) advance(i);
+				this.hasNext = combine();
+			} catch (RuntimeException e) {
+				close();
+				throw e;
+			}
+		}
+
+		/**
+		 * <p>EFFECTS: Reads the next term of a run, and adds the run to the heap if it was not exhausted.</p>
+		 * <p>MUTABILITY: This method modifies the heap and the head of the run.</p>
+		 * @param source The index of the run.
+		 * @throws UncheckedIOException If the run cannot be read.
+		 */
+		private void advance(int source)
+			throws UncheckedIOException
+		{
+			try {
+				if (sources.get(source).read(heads[source])) heap.add(source);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+
+		/**
+		 * <p>EFFECTS: Combines the like terms at the top of the heap into combined, skipping the ones that cancel out.</p>
+		 * <p>MUTABILITY: This method advances the runs.</p>
+		 * @return true if there is a combined term, false if there are no more terms.
+		 * @throws ArithmeticException If the sum of the coefficients overflows.
+		 * @throws UncheckedIOException If the runs cannot be read.
+		 */
+		private boolean combine()
+			throws ArithmeticException, UncheckedIOException
+		{
+			while (!heap.isEmpty()) {
+				final int first = heap.poll();
+				System.arraycopy(heads[first], 0, combined, 0, variables);
+				Rational coefficient = coefficient(heads[first], 0);
+				advance(first);
+				while (!heap.isEmpty() && compare(heads[heap.peek()], 0, combined, 0) == 0) {
+					int like = heap.poll();
+					coefficient = coefficient.addExact(coefficient(heads[like], 0));
+					advance(like);
+				}
+				if (!coefficient.equals(Rational.ZERO)) {
+					combined[variables] = coefficient.num;
+					combined[variables + 1] = coefficient.den;
+					return true;
+				}
+			}
+			return false;
+		}
+
+		/**
+		 * <p>EFFECTS: Returns the next combined term, in the encoding of the runs.</p>
+		 * <p>MUTABILITY: This method advances the merge.</p>
+		 * @return The encoded term, it is overwritten by the next call.
+		 * @throws NoSuchElementException If there are no more terms.
+		 * @throws ArithmeticException If the sum of the coefficients of the like terms overflows.
+		 * @throws UncheckedIOException If the runs cannot be read.
+		 */
+		long[] nextEncoded()
+			throws NoSuchElementException, ArithmeticException, UncheckedIOException
+		{
+			if (!hasNext) throw new NoSuchElementException();
+			System.arraycopy(combined, 0, current, 0, stride);
+			hasNext = combine();
+			return current;
+		}
+
+		@Override
+		public boolean hasNext() {
+			return hasNext;
+		}
+
+		@Override
+		public Term next()
+			throws NoSuchElementException, ArithmeticException, UncheckedIOException
+		{
+			long[] term = nextEncoded();
+			return new Term(Monomial.of(Arrays.copyOf(term, variables)), coefficient(term, 0));
+		}
+
+		/**
+		 * <p>EFFECTS: Closes the sources.</p>
+		 * @throws UncheckedIOException If a source cannot be closed.
+		 */
+		@Override
+		public void close()
+			throws UncheckedIOException
+		{
+			hasNext = false;
+			heap.clear();
+			try {
+				for (Reader source : sources) source.close();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+	}
+
+	/**
+	 * <p>A reader of the terms of a sorted run, in memory or in a file read through a window.</p>
+	 * <p>
+	 *     AF: the remaining terms are the ones in terms, followed by the ones in the file after position,
+	 *     channel is null if the run is in memory.
+	 * <p>REQUIREMENTS: terms must be non-null, window is non-null if channel is non-null, and its capacity must be a multiple of a term.</p>
+	 * <p>MUTABILITY: This class is mutable.</p>
+	 */
+	private final class Reader implements AutoCloseable {
+		/** The file of the run. */
+		private final FileChannel channel;
+		/** The buffer of the window. */
+		private final ByteBuffer window;
+		/** The terms of the window. */
+		private LongBuffer terms;
+		/** The position of the file after the window. */
+		private long position;
+
+		/**
+		 * <p>EFFECTS: Constructs a new {@link Reader} of a run in memory.</p>
+		 * @param terms The terms of the run.
+		 */
+		Reader(LongBuffer terms) {
+			this.channel = null;
+			this.window = null;
+			this.terms = terms;
+		}
+
+		/**
+		 * <p>EFFECTS: Constructs a new {@link Reader} of a run in a file.</p>
+		 * @param path The path of the file.
+		 * @throws IOException If the file cannot be opened.
+		 */
+		Reader(Path path)
+			throws IOException
+		{
+			this.channel = FileChannel.open(path, StandardOpenOption.READ);
+			this.window = ByteBuffer.allocateDirect(windowSize());
+			this.terms = LongBuffer.allocate(0);
+		}
+
+		/**
+		 * <p>EFFECTS: Reads the next term of the run.</p>
+		 * <p>MUTABILITY: This method advances the reader, and writes to term.</p>
+		 * @param term The array where the term is read.
+		 * @return true if a term was read, false if the run is exhausted.
+		 * @throws IOException If the file cannot be read.
+		 */
+		boolean read(long[] term)
+			throws IOException
+		{
+			if (!terms.hasRemaining() && (channel == null || !fill())) return false;
+			terms.get(term);
+			return true;
+		}
+
+		/**
+		 * <p>EFFECTS: Reads the next window of the file.</p>
+		 * <p>MUTABILITY: This method replaces the window.</p>
+		 * @return true if the window contains some terms, false if the file is exhausted.
+		 * @throws IOException If the file cannot be read.
+		 */
+		private boolean fill()
+			throws IOException
+		{
+			window.clear();
+			// The file contains whole terms, and the window is a multiple of a term, so it is filled with whole terms
+			while (window.hasRemaining()) {
+				int read = channel.read(window, position);
+				if (read < 0) break;
+				position += read;
+			}
+			terms = window.flip().asLongBuffer();
+			return terms.hasRemaining();
+		}
+
+		@Override
+		public void close()
+			throws IOException
+		{
+			if (channel != null) channel.close();
+		}
+	}
+
+	/**
+	 * <p>A writer of a new sorted run to a temporary file, through the output buffer of the collector.</p>
+	 * <p>
+	 *     AF: the run is the terms written to the file, followed by the ones in terms,
+	 *     count is the number of terms of the run, the file is deleted when the writer is closed before it is finished.
+	 * <p>REQUIREMENTS: Only one writer can use the output buffer at the same time.</p>
+	 * <p>MUTABILITY: This class is mutable.</p>
+	 */
+	private final class RunWriter implements AutoCloseable {
+		/** The path of the file. */
+		private final Path path;
+		/** The file. */
+		private final FileChannel channel;
+		/** The terms not yet written to the file. */
+		private final LongBuffer terms;
+		/** The number of terms of the run. */
+		private int count;
+		/** Whether the run is complete. */
+		private boolean finished;
+
+		/**
+		 * <p>EFFECTS: Constructs a new {@link RunWriter}, creating its temporary file.</p>
+		 * @throws IOException If the file cannot be created.
+		 */
+		RunWriter()
+			throws IOException
+		{
+			this.path = Files.createTempFile(directory, "terms-", ".run");
+			try {
+				this.channel = FileChannel.open(path, StandardOpenOption.WRITE);
+			} catch (IOException | RuntimeException e) {
+				Files.deleteIfExists(path);
+				throw e;
+			}
+			this.terms = output.clear().asLongBuffer();
+		}
+
+		/**
+		 * <p>EFFECTS: Returns the buffer where the next term must be written.</p>
+		 * <p>REQUIREMENTS: The caller must put exactly one term in the buffer.</p>
+		 * <p>MUTABILITY: This method can write the buffer to the file.</p>
+		 * @return The buffer, with room for one term.
+		 * @throws IOException If the file cannot be written.
+		 */
+		LongBuffer next()
+			throws IOException
+		{
+			if (terms.remaining() < stride) flush();
+			count++;
+			return terms;
+		}
+
+		/**
+		 * <p>EFFECTS: Writes the remaining terms, and completes the run.</p>
+		 * <p>MUTABILITY: After this method is called the writer cannot be used anymore.</p>
+		 * @return The run.
+		 * @throws IOException If the file cannot be written.
+		 */
+		Run finish()
+			throws IOException
+		{
+			flush();
+			channel.close();
+			finished = true;
+			return new Run(path, count);
+		}
+
+		/**
+		 * <p>EFFECTS: Writes the buffered terms to the file.</p>
+		 * <p>MUTABILITY: This method empties the buffer.</p>
+		 * @throws IOException If the file cannot be written.
+		 */
+		private void flush()
+			throws IOException
+		{
+			output.clear().limit(terms.position() * Long.BYTES);
+			while (output.hasRemaining()) channel.write(output);
+			terms.clear();
+		}
+
+		/**
+		 * <p>EFFECTS: Closes the file, and deletes it if the run is not complete.</p>
+		 * @throws IOException If the file cannot be closed or deleted.
+		 */
+		@Override
+		public void close()
+			throws IOException
+		{
+			if (finished) return;
+			try {
+				channel.close();
+			} finally {
+				Files.deleteIfExists(path);
+			}
+		}
+	}
+}
@@ -0,0 +1,103 @@
+package luppolo.node;
+
+import java.util.*;
+
+/**
+ * <p>Utility class to inspect an expression as a directed acyclic graph.</p>
+ * <p>
+ *     Because {@link Node}s are immutable, the same instance can be safely referenced by more than one parent
+ *     (e.g. the expressions built by a straight line program), in this case walking the expression as a tree
+ *     visits the shared instances many times, potentially an exponential number of times.
+ *     The methods in this class identify the nodes by <b>reference</b> so that each instance is visited only once.
+ * </p>
+ */
+public class Dag {
+	/** Constructor to the utility class that must never be called. */
+	private Dag() {
+		assert false: "Utility class cannot be instantiated";
+	}
+
+	/** Visitor that returns the direct children of a node. */
+	private static final Visitor<List<Node>> CHILDREN = new Visitor<>() {
+		@Override
+		public List<Node> visit(NumberNode node) {
+			return List.of();
+		}
+
+		@Override
+		public List<Node> visit(VariableNode node) {
+			return List.of();
+		}
+
+		@Override
+		public List<Node> visit(SumNode node) {
+			return node.operands();
+		}
+
+		@Override
+		public List<Node> visit(MulNode node) {
+			return node.operands();
+		}
+
+		@Override
+		public List<Node> visit(PowNode node) {
+			return List.of(node.base());
+		}
+	};
+
+	/**
+	 * <p>EFFECTS: Returns the direct children of a node, the exponent of a {@link PowNode} is not a child.</p>
+	 * <p>REQUIREMENTS: node must be non-null.</p>
+	 * @param node The node.
+	 * @return An immutable list of the children of the node.
+	 * @throws NullPointerException If node is null.
+	 */
+	public static List<Node> children(Node node)
+		throws NullPointerException
+	{
+		return node.transform(CHILDREN);
+	}
+
+	/**
+	 * <p>
+	 *     EFFECTS: Returns all the distinct (by reference) nodes reachable from root, in topological order.
+	 *     Each node appears after all of its children, so the last element of the list is always root.
+	 * </p>
+	 * <p>REQUIREMENTS: root must be non-null.</p>
+	 * <p>NOTES: The visit is iterative, so that very deep expressions don't overflow the call stack.</p>
+	 * @param root The root of the expression.
+	 * @return The nodes of the expression in topological order.
+	 * @throws NullPointerException If root is null.
+	 */
+	public static List<Node> topologicalOrder(Node root)
+		throws NullPointerException
+	{
+		Objects.requireNonNull(root);
+
+		List<Node> order = new ArrayList<>();
+		Set<Node> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+		// Each frame holds a node and the iterator over its children that still need to be visited
+		Deque<Node> nodes = new ArrayDeque<>();
+		Deque<Iterator<Node>> pending = new ArrayDeque<>();
+
+		visited.add(root);
+		nodes.push(root);
+		pending.push(children(root).iterator());
+		while (!nodes.isEmpty()) {
+			Iterator<Node> iter = pending.peek();
+			if (iter.hasNext()) {
+				Node child = iter.next();
+				if (visited.add(child)) {
+					nodes.push(child);
+					pending.push(children(child).iterator());
+				}
+			} else {
+				// All the children have been emitted, the node can be emitted
+				order.add(nodes.pop());
+				pending.pop();
+			}
+		}
+
+		return order;
+	}
+}
@@ -0,0 +1,15 @@
+package luppolo.node;
+
+/**
+ * <p>A {@link Visitor} that declares that it has no mutable state, so it can visit different nodes concurrently.</p>
+ * <p>
+ *     REQUIREMENTS:
+ *     <ul>
+ *         <li>The methods of the visitor must be safe to call at the same time from many threads.</li>
+ *         <li>The result of visiting a node must depend only on the node, and not on the other visited nodes.</li>
+ *         <li>see {@link Visitor} for the additional requirements.</li>
+ *     </ul>
+ * <p>NOTES: This interface has no methods, it only marks the visitors that can be applied in parallel.</p>
+ * @param <Ret> The return type of the visitor.
+ */
+public interface StatelessVisitor<Ret> extends Visitor<Ret> {}
@@ -0,0 +1,60 @@
+package luppolo.parse;
+
+import java.nio.ByteBuffer;
+import java.util.Objects;
+
+/**
+ * <p>A view of a range of ASCII bytes as a {@link CharSequence}, the non ASCII bytes are read as {@code U+FFFD}.</p>
+ * <p>AF: the sequence is the characters of bytes[start], ..., bytes[end - 1].</p>
+ * <p>REQUIREMENTS: bytes must be non-null, 0 &lt;= start &lt;= end &lt;= bytes.limit().</p>
+ * <p>MUTABILITY: This class is immutable, if the bytes don't change.</p>
+ */
+class Ascii implements CharSequence {
+	/** The bytes. */
+	private final ByteBuffer bytes;
+	/** The start of the range, inclusive. */
+	private final int start;
+	/** The end of the range, exclusive. */
+	private final int end;
+
+	/**
+	 * <p>EFFECTS: Constructs a new {@link Ascii} view.</p>
+	 * @param bytes The bytes.
+	 * @param start The start of the range, inclusive.
+	 * @param end The end of the range, exclusive.
+	 */
+	Ascii(ByteBuffer bytes, int start, int end) {
+		this.bytes = bytes;
+		this.start = start;
+		this.end = end;
+	}
+
+	@Override
+	public int length() {
+		return end - start;
+	}
+
+	@Override
+	public char charAt(int index)
+		throws IndexOutOfBoundsException
+	{
+		Objects.checkIndex(index, end - start);
+		byte b = bytes.get(start + index);
+		return b >= 0 ? (char) b : '\uFFFD';
+	}
+
+	@Override
+	public CharSequence subSequence(int from, int to)
+		throws IndexOutOfBoundsException
+	{
+		Objects.checkFromToIndex(from, to, end - start);
+		return new Ascii(bytes, start + from, start + to);
+	}
+
+	@Override
+	public String toString() {
+		char[] chars = new char[end - start];
+		for (int i = 0; i < chars.length; i++) chars[i] = charAt(i);
+		return new String(chars);
+	}
+}
@@ -0,0 +1,103 @@
+package luppolo.parse;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * <p>Utility class to read the lines of a file, memory mapped in chunks that start and end at line boundaries.</p>
+ * <p>
+ *     The lines are the same of {@link Scanner#nextLine()}: they are terminated by {@code \n}, {@code \r\n} or {@code \r},
+ *     and the last line can be unterminated.
+ * </p>
+ */
+class MappedLines {
+	/** Constructor to the utility class that must never be called. */
+	private MappedLines() {
+		assert false: "Utility class cannot be instantiated";
+	}
+
+	/**
+	 * <p>EFFECTS: Maps a file in chunks of about chunkSize bytes, split after a {@code \n}.</p>
+	 * <p>REQUIREMENTS: file must be non-null, chunkSize must be positive.</p>
+	 * @param file The file to map.
+	 * @param chunkSize The target size of a chunk, in bytes.
+	 * @return The mapped chunks, in the order of the file.
+	 * @throws IOException If the file cannot be read, or a line is longer than {@link Integer#MAX_VALUE} bytes.
+	 * @throws NullPointerException If file is null.
+	 */
+	static List<MappedByteBuffer> map(Path file, int chunkSize)
+		throws IOException, NullPointerException
+	{
+		assert chunkSize > 0;
+
+		List<MappedByteBuffer> chunks = new ArrayList<>();
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			final long size = channel.size();
+			for (long start = 0; start < size; ) {
+				long end = lineBoundary(channel, Math.min(size, start + chunkSize), size);
+				if (end - start > Integer.MAX_VALUE) throw new IOException("A line is too long to be parsed");
+				chunks.add(channel.map(FileChannel.MapMode.READ_ONLY, start, end - start));
+				start = end;
+			}
+		}
+		return chunks;
+	}
+
+	/**
+	 * <p>EFFECTS: Finds the first line boundary (the position after a {@code \n}) at or after a position.</p>
+	 * @param channel The file.
+	 * @param position The position, at most size.
+	 * @param size The size of the file.
+	 * @return The position of the line boundary, or size if there are no more {@code \n}.
+	 * @throws IOException If the file cannot be read.
+	 */
+	private static long lineBoundary(FileChannel channel, long position, long size)
+		throws IOException
+	{
+		// The boundary is the start of a line, so the byte before it must be a newline
+		if (position == size) return size;
+		ByteBuffer window = ByteBuffer.allocate(1 << 12);
+		for (long pos = position - 1; pos < size; ) {
+			window.clear();
+			int read = channel.read(window, pos);
+			if (read <= 0) break;
+			for (int i = 0; i < read; i++)
+				if (window.get(i) == '\n') return pos + i + 1;
+			pos += read;
+		}
+		return size;
+	}
+
+	/**
+	 * <p>EFFECTS: Finds the end of the line that starts at a position.</p>
+	 * <p>REQUIREMENTS: bytes must be non-null, 0 &lt;= start &lt;= bytes.limit().</p>
+	 * @param bytes The bytes of a chunk.
+	 * @param start The start of the line.
+	 * @return The position of the terminator of the line, or bytes.limit() if the line is unterminated.
+	 */
+	static int lineEnd(ByteBuffer bytes, int start) {
+		final int limit = bytes.limit();
+		int end = start;
+		while (end < limit && bytes.get(end) != '\n' && bytes.get(end) != '\r') end++;
+		return end;
+	}
+
+	/**
+	 * <p>EFFECTS: Finds the start of the line that follows a terminator.</p>
+	 * <p>REQUIREMENTS: bytes must be non-null, end must be a value returned by {@link #lineEnd}.</p>
+	 * @param bytes The bytes of a chunk.
+	 * @param end The position of the terminator.
+	 * @return The start of the next line, greater than bytes.limit() if the line was unterminated.
+	 */
+	static int nextLine(ByteBuffer bytes, int end) {
+		final int limit = bytes.limit();
+		// \r\n is a single terminator
+		if (end < limit && bytes.get(end) == '\r' && end + 1 < limit && bytes.get(end + 1) == '\n') end++;
+		return end + 1;
+	}
+}
@@ -4,11 +4,18 @@ import luppolo.math.Rational;
 import luppolo.node.*;
 
 import java.text.ParseException;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Objects;
-import java.util.Stack;
 
-/** Utility class for polish notation parser functionality. */
+/**
+ * <p>Utility class for polish notation parser functionality.</p>
+ * <p>
+ *     The input is scanned by hand from the end, like in reverse polish notation, working with the offsets of the tokens,
+ *     so that the tokens are never copied, except for the names of the variables.
+ *     The parsed operands are kept in an {@link OperandStack}, with the offset where each of them starts.
+ * </p>
+ */
 public class Polish {
 	/** Constructor to the utility class that must never be called. */
 	private Polish() {
@@ -18,70 +25,145 @@ public class Polish {
 	/**
 	 * <p>EFFECTS: Parses a polish notation expression to a {@link Node}.</p>
 	 * <p>REQUIREMENTS: Input must be non-null.</p>
-	 * <p>NOTE: If a parse exception is thrown it will have offset 0.</p>
-	 * @param input The input string to parse.
+	 * <p>
+	 *     NOTE: The tokens are separated by whitespace, like {@code \s} of {@link java.util.regex.Pattern}.
+	 *     The error offset of a {@link ParseException} is the start of the invalid token,
+	 *     or of the first operand that is left over.
+	 * </p>
+	 * @param input The input to parse.
 	 * @return A {@link Node} containing the parsed expression.
 	 * @throws ParseException If the passed expression is invalid.
 	 * @throws NullPointerException If input is null.
 	 * @see <a href="https://en.wikipedia.org/wiki/Polish_notation">Polish notation on Wikipedia</a>
 	 */
-	public static Node parse(String input)
+	public static Node parse(CharSequence input)
 		throws ParseException, NullPointerException
 	{
 		Objects.requireNonNull(input);
+		// An empty input is an empty token, that is not a valid number
+		if (input.length() == 0)
+			throw new ParseException("Invalid number", 0);
+
+		OperandStack operands = new OperandStack();
 
-		// Split into parts using whitespace as delimiter
-		String[] parts = input.split("\\s+");
+		// Read the tokens in reverse order, like in reverse polish notation
+		int end = input.length();
+		for (;;) {
+			while (end > 0 && isWhitespace(input.charAt(end - 1))) end--;
+			if (end == 0) break;
+			int start = end - 1;
+			while (start > 0 && !isWhitespace(input.charAt(start - 1))) start--;
 
-		Stack<Node> operands = new Stack<>();
+			operands.push(token(input, start, end, operands), start);
+			end = start;
+		}
 
-		// Read the parts in reverse order, like in reverse polish notation
-		for (int i = parts.length - 1; i >= 0; i--) {
-			final String part = parts[i];
+		// The leading whitespace is an empty token before the first one, that is not a valid number
+		if (!operands.isEmpty() && isWhitespace(input.charAt(0)))
+			throw new ParseException("Invalid number", 0);
 
-			// Try to parse an operator
-			Node innerNode = switch (part) {
-				case "+" -> new SumNode(getOperands(operands));
-				case "-" -> SumNode.fromSub(getOperands(operands));
-				case "*" -> new MulNode(getOperands(operands));
-				case "/" -> MulNode.fromDiv(getOperands(operands));
-				case "^" -> {
-					List<Node> ops = getOperands(operands);
+		if (operands.isEmpty())
+			throw new ParseException("Cannot parse empty string", 0);
+		if (operands.size() > 1)
+			throw new ParseException("Too many operands", operands.start(operands.size() - 2));
+		return operands.pop();
+	}
+
+	/**
+	 * <p>EFFECTS: Parses a token, popping the operands of an operator.</p>
+	 * <p>REQUIREMENTS: The parameters must be non-null, the token must not be empty and must not contain whitespace.</p>
+	 * <p>MUTABILITY: This method pops the operands of an operator from operands.</p>
+	 * @param input The input.
+	 * @param start The start of the token, inclusive.
+	 * @param end The end of the token, exclusive.
+	 * @param operands The operands that follow the token.
+	 * @return The parsed node.
+	 * @throws ParseException If the token is invalid, or an operator doesn't have enough operands.
+	 */
+	private static Node token(CharSequence input, int start, int end, OperandStack operands)
+		throws ParseException
+	{
+		// Try to parse an operator
+		if (end - start == 1) {
+			switch (input.charAt(start)) {
+				case '+': return new SumNode(getOperands(operands, start));
+				case '-': return SumNode.fromSub(getOperands(operands, start));
+				case '*': return new MulNode(getOperands(operands, start));
+				case '/': return MulNode.fromDiv(getOperands(operands, start));
+				case '^': {
+					List<Node> ops = getOperands(operands, start);
 					try {
-						yield new PowNode(ops.get(0), ops.get(1));
+						return new PowNode(ops.get(0), ops.get(1));
 					} catch (IllegalArgumentException e) {
-						throw new ParseException("Cannot simplify exponent to a rational number", 0);
+						throw new ParseException("Cannot simplify exponent to a rational number", start);
 					}
 				}
-				default -> null;
-			};
-
-			if (innerNode != null) {
-				operands.push(innerNode);
-				continue;
+				default: break;
 			}
+		}
 
-			// Try to parse a variable
-			if (part.matches("^[a-zA-Z]+$")) {
-				operands.push(new VariableNode(part));
-				continue;
-			}
+		// Try to parse a variable
+		if (isVariable(input, start, end))
+			return new VariableNode(input.subSequence(start, end).toString());
 
-			// Try to parse a number
-			try {
-				long value = Long.parseLong(part);
-				Rational rat = Rational.fromInt(value);
-				operands.push(new NumberNode(rat));
-			} catch (NumberFormatException e) {
-				throw new ParseException("Invalid number", 0);
-			}
+		// Try to parse a number
+		return new NumberNode(Rational.fromInt(parseLong(input, start, end)));
+	}
+
+	/**
+	 * <p>EFFECTS: Checks if a character is whitespace, like {@code \s} of {@link java.util.regex.Pattern}.</p>
+	 * @param c The character.
+	 * @return true if the character is whitespace, false otherwise.
+	 */
+	private static boolean isWhitespace(char c) {
+		return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+	}
+
+	/**
+	 * <p>EFFECTS: Checks if a token is a variable name, made only of upper or lowercase letters.</p>
+	 * @param input The input.
+	 * @param start The start of the token, inclusive.
+	 * @param end The end of the token, exclusive.
+	 * @return true if the token is a variable name, false otherwise.
+	 */
+	private static boolean isVariable(CharSequence input, int start, int end) {
+		for (int i = start; i < end; i++) {
+			char c = input.charAt(i);
+			if (!(c >= 'a' && c <= 'z') && !(c >= 'A' && c <= 'Z')) return false;
+		}
+		return true;
+	}
+
+	/**
+	 * <p>EFFECTS: Parses a token as a signed decimal long, with the same syntax of {@link Long#parseLong(String)}.</p>
+	 * @param input The input.
+	 * @param start The start of the token, inclusive.
+	 * @param end The end of the token, exclusive.
+	 * @return The parsed number.
+	 * @throws ParseException If the token is not a valid long.
+	 */
+	private static long parseLong(CharSequence input, int start, int end)
+		throws ParseException
+	{
+		int i = start;
+		boolean negative = false;
+		if (input.charAt(i) == '-' || input.charAt(i) == '+') {
+			negative = input.charAt(i) == '-';
+			i++;
 		}
+		if (i == end) throw new ParseException("Invalid number", start);
 
-		if (operands.isEmpty())
-			throw new ParseException("Cannot parse empty string", 0);
-		if (operands.size() > 1)
-			throw new ParseException("Too many operands", 0);
-		return operands.pop();
+		// The number is accumulated as a negative value, because its range is larger
+		final long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+		long result = 0;
+		for (; i < end; i++) {
+			int digit = Character.digit(input.charAt(i), 10);
+			if (digit < 0 || result < limit / 10) throw new ParseException("Invalid number", start);
+			result *= 10;
+			if (result < limit + digit) throw new ParseException("Invalid number", start);
+			result -= digit;
+		}
+		return negative ? result : -result;
 	}
 
 	/**
@@ -93,14 +175,83 @@ public class Polish {
 	 *     </ul>
 	 * <p>MUTABILITY: This method mutates the operands parameter.</p>
 	 * @param operands The operands to read.
+	 * @param offset The offset of the operator.
 	 * @return A list of the last two operands.
 	 * @throws ParseException If operands contains less than two operands.
 	 */
-	private static List<Node> getOperands(Stack<Node> operands)
+	private static List<Node> getOperands(OperandStack operands, int offset)
 		throws ParseException
 	{
 		if (operands.size() < 2)
-			throw new ParseException("Not enough operands", 0);
+			throw new ParseException("Not enough operands", offset);
 		return List.of(operands.pop(), operands.pop());
 	}
-}
\ No newline at end of file
+
+	/**
+	 * <p>An unsynchronized stack of parsed operands, with the offsets where they start.</p>
+	 * <p>AF: the stack contains nodes[0], ..., nodes[size - 1], from the bottom to the top, starts[i] is the offset of nodes[i].</p>
+	 * <p>REQUIREMENTS: nodes and starts must be non-null, have the same length, and size must be at most their length.</p>
+	 * <p>MUTABILITY: This class is mutable.</p>
+	 */
+	private static class OperandStack {
+		/** The nodes in the stack. */
+		private Node[] nodes = new Node[16];
+		/** The offsets where the nodes start. */
+		private int[] starts = new int[16];
+		/** The number of nodes in the stack. */
+		private int size;
+
+		/**
+		 * <p>EFFECTS: Pushes a node on the stack.</p>
+		 * <p>MUTABILITY: This method modifies the stack.</p>
+		 * @param node The node.
+		 * @param start The offset where the node starts.
+		 */
+		void push(Node node, int start) {
+			if (size == nodes.length) {
+				nodes = Arrays.copyOf(nodes, 2 * size);
+				starts = Arrays.copyOf(starts, 2 * size);
+			}
+			nodes[size] = node;
+			starts[size] = start;
+			size++;
+		}
+
+		/**
+		 * <p>EFFECTS: Pops the node on the top of the stack.</p>
+		 * <p>REQUIREMENTS: The stack must not be empty.</p>
+		 * <p>MUTABILITY: This method modifies the stack.</p>
+		 * @return The node.
+		 */
+		Node pop() {
+			Node node = nodes[--size];
+			nodes[size] = null;
+			return node;
+		}
+
+		/**
+		 * <p>EFFECTS: Returns the offset where a node starts.</p>
+		 * @param index The index of the node, from the bottom of the stack.
+		 * @return The offset.
+		 */
+		int start(int index) {
+			return starts[index];
+		}
+
+		/**
+		 * <p>EFFECTS: Returns the number of nodes in the stack.</p>
+		 * @return The number of nodes.
+		 */
+		int size() {
+			return size;
+		}
+
+		/**
+		 * <p>EFFECTS: Checks if the stack is empty.</p>
+		 * @return true if the stack is empty, false otherwise.
+		 */
+		boolean isEmpty() {
+			return size == 0;
+		}
+	}
+}
@@ -0,0 +1,139 @@
+package luppolo.parse;
+
+import luppolo.node.Node;
+
+import java.io.IOException;
+import java.io.Serial;
+import java.nio.MappedByteBuffer;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * <p>Utility class to parse files of polish notation expressions, one for each line, in parallel.</p>
+ * <p>
+ *     The file is memory mapped and split at line boundaries into chunks of about {@link #CHUNK_SIZE} bytes,
+ *     the chunks are parsed by different tasks of a {@link ForkJoinPool}, and the parsed expressions are returned
+ *     in the order of the lines. The newlines are found directly in the mapped bytes, and each line is read by
+ *     {@link Polish#parse} through an ASCII view of the bytes, without decoding it to a {@link String}.
+ * </p>
+ * <p>
+ *     The lines are the same of {@link Scanner#nextLine()}: they are terminated by {@code \n}, {@code \r\n} or {@code \r},
+ *     and the last line can be unterminated.
+ * </p>
+ * <p>
+ *     NOTES: The files must be encoded in ASCII (or in a superset of it, like UTF-8, but the non ASCII characters
+ *     are read as {@code U+FFFD}, so they are never part of a valid expression).
+ * </p>
+ */
+public class PolishBatch {
+	/** The target size of a chunk, in bytes. */
+	public static final int CHUNK_SIZE = 1 << 22;
+
+	/** Constructor to the utility class that must never be called. */
+	private PolishBatch() {
+		assert false: "Utility class cannot be instantiated";
+	}
+
+	/**
+	 * <p>EFFECTS: Parses the lines of a file, using the common pool.</p>
+	 * <p>REQUIREMENTS: file must be non-null.</p>
+	 * @param file The file to parse.
+	 * @return The parsed expressions, in the order of the lines.
+	 * @throws IOException If the file cannot be read, or a line is longer than {@link Integer#MAX_VALUE} bytes.
+	 * @throws ParseException If a line is invalid, the first one, with its line number in the message and the error offset in the line.
+	 * @throws NullPointerException If file is null.
+	 */
+	public static List<Node> parse(Path file)
+		throws IOException, ParseException, NullPointerException
+	{
+		return parse(file, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * <p>EFFECTS: Parses the lines of a file, using a pool.</p>
+	 * <p>REQUIREMENTS: The parameters must be non-null.</p>
+	 * @param file The file to parse.
+	 * @param pool The pool that parses the chunks.
+	 * @return The parsed expressions, in the order of the lines.
+	 * @throws IOException If the file cannot be read, or a line is longer than {@link Integer#MAX_VALUE} bytes.
+	 * @throws ParseException If a line is invalid, the first one, with its line number in the message and the error offset in the line.
+	 * @throws NullPointerException If a parameter is null.
+	 */
+	public static List<Node> parse(Path file, ForkJoinPool pool)
+		throws IOException, ParseException, NullPointerException
+	{
+		Objects.requireNonNull(pool);
+
+		List<Chunk> chunks = new ArrayList<>();
+		for (MappedByteBuffer bytes : MappedLines.map(file, CHUNK_SIZE)) chunks.add(new Chunk(bytes));
+
+		pool.invoke(new RecursiveAction() {
+			@Serial
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected void compute() {
+				ForkJoinTask.invokeAll(chunks);
+			}
+		});
+
+		List<Node> nodes = new ArrayList<>();
+		int lines = 0;
+		for (Chunk chunk : chunks) {
+			if (chunk.error != null) {
+				ParseException error = chunk.error;
+				throw new ParseException("Line " + (lines + chunk.nodes.size() + 1) + ": " + error.getMessage(), error.getErrorOffset());
+			}
+			nodes.addAll(chunk.nodes);
+			lines += chunk.nodes.size();
+		}
+		return nodes;
+	}
+
+	/**
+	 * <p>The task that parses the lines of a chunk, until the first invalid one.</p>
+	 * <p>
+	 *     AF: bytes are the bytes of the chunk, nodes are the parsed lines,
+	 *     error is the exception of the first invalid line, that follows the parsed ones, or null if all the lines are valid.
+	 * <p>REQUIREMENTS: bytes must be non-null, and must start at the start of a line.</p>
+	 * <p>MUTABILITY: This class is mutable, the task stores its results.</p>
+	 */
+	private static class Chunk extends RecursiveAction {
+		/** The version of the serialized form, the tasks are never serialized. */
+		@Serial
+		private static final long serialVersionUID = 1L;
+
+		/** The bytes of the chunk. */
+		private final transient MappedByteBuffer bytes;
+		/** The parsed lines. */
+		private final transient List<Node> nodes = new ArrayList<>();
+		/** The exception of the first invalid line. */
+		private transient ParseException error;
+
+		/**
+		 * <p>EFFECTS: Constructs a new {@link Chunk}.</p>
+		 * @param bytes The bytes of the chunk.
+		 */
+		Chunk(MappedByteBuffer bytes) {
+			this.bytes = bytes;
+		}
+
+		@Override
+		protected void compute() {
+			for (int start = 0; start < bytes.limit(); ) {
+				int end = MappedLines.lineEnd(bytes, start);
+				try {
+					nodes.add(Polish.parse(new Ascii(bytes, start, end)));
+				} catch (ParseException e) {
+					error = e;
+					return;
+				}
+				start = MappedLines.nextLine(bytes, end);
+			}
+		}
+	}
+}
@@ -8,25 +8,86 @@ import java.util.*;
 
 /**
  * Implementation a <a href="https://en.wikipedia.org/wiki/Straight-line_program">Straight line program</a> parser.
- * <p>AF: This class stores a straight line program as a list of expressions where each expression corresponds to a line of the program.
+ * <p>
+ *     In streaming mode the parser knows the last line that uses each line (see {@link #lastUses}),
+ *     and releases each expression after its last use, so the memory used is bounded by the expressions
+ *     that are still going to be used, instead of the length of the program.
+ * </p>
+ * <p>
+ *     AF: This class stores a straight line program as a list of expressions where each expression corresponds to a line of the program,
+ *     lastUses[i] is the index of the last line that uses the line i, or lastUses is null if the expressions are never released,
+ *     last is the last parsed expression.
  * <p>
  *     REQUIREMENTS:
  *     <ul>
  *         <li>previousExpressions must be non-null.</li>
- *         <li>previousExpressions can only be modified by adding new expressions.</li>
+ *         <li>previousExpressions can only be modified by adding new expressions, and by releasing the ones after their last use.</li>
+ *         <li>last is null only if no expressions were parsed.</li>
  *     </ul>
  * <p>MUTABILITY: This class is mutable, by means of adding a expression to the previousExpressions list.</p>
  * @see <a href="https://en.wikipedia.org/wiki/Straight-line_program">Straight line program</a>
  */
 public class StraightLine {
 	/** List of all previously parsed instructions */
-	private final List<Node> previousExpressions;
+	private final Expressions previousExpressions;
+	/** The index of the last line that uses each line, or null if the expressions are never released. */
+	private int[] lastUses;
+	/** The last parsed expression. */
+	private Node last;
 
 	/**
 	 * Constructor for a new {@link StraightLine} parser.
 	 */
 	public StraightLine() {
-		this.previousExpressions = new ArrayList<>();
+		this.previousExpressions = new Expressions();
+	}
+
+	/**
+	 * <p>EFFECTS: Constructs a new {@link StraightLine} parser in streaming mode.</p>
+	 * <p>
+	 *     REQUIREMENTS: lastUses must be non-null, lastUses[i] must be the index of the last line that uses the line i
+	 *     (or i if no line uses it), like computed by {@link #lastUses}, for all the lines that will be parsed.
+	 * </p>
+	 * <p>NOTE: After an invalid line the indices of the following lines don't correspond to lastUses, so no expressions are released anymore.</p>
+	 * @param lastUses The index of the last line that uses each line, the array is not copied.
+	 * @throws NullPointerException If lastUses is null.
+	 */
+	public StraightLine(int[] lastUses)
+		throws NullPointerException
+	{
+		this();
+		this.lastUses = Objects.requireNonNull(lastUses);
+	}
+
+	/**
+	 * <p>EFFECTS: Computes the index of the last line that uses each line of a program, for the streaming mode.</p>
+	 * <p>REQUIREMENTS: lines must be non-null, and must not contain null elements.</p>
+	 * <p>NOTE: The invalid lines are ignored, so that the parser reports their errors.</p>
+	 * @param lines The lines of the program.
+	 * @return The array lastUses, where lastUses[i] is the index of the last line that uses the line i, or i if no line uses it.
+	 */
+	public static int[] lastUses(Iterator<String> lines) {
+		int[] lastUses = new int[16];
+		int count = 0;
+		while (lines.hasNext()) {
+			String[] parts = lines.next().trim().split("\\s+");
+			if (count == lastUses.length) lastUses = Arrays.copyOf(lastUses, 2 * count);
+			lastUses[count] = count;
+
+			// The leaves and the invalid lines don't use other lines
+			if (!parts[0].equals(".")) {
+				for (int i = 1; i < parts.length; i++) {
+					try {
+						int index = Integer.parseInt(parts[i]);
+						if (index >= 0 && index < count) lastUses[index] = count;
+					} catch (NumberFormatException e) {
+						// The parser reports the invalid index
+					}
+				}
+			}
+			count++;
+		}
+		return Arrays.copyOf(lastUses, count);
 	}
 
 	/**
@@ -51,9 +112,26 @@ public class StraightLine {
 		throws ParseException
 	{
 		Objects.requireNonNull(input);
-		Node parseResult = parseImpl(input);
+		List<Integer> references = new ArrayList<>();
+		final Node parseResult;
+		try {
+			parseResult = parseImpl(input, references);
+		} catch (ParseException e) {
+			// The following lines don't correspond to lastUses anymore
+			lastUses = null;
+			throw e;
+		}
 		// If an exception is thrown, the list of previous expressions is not updated
+		final int index = this.previousExpressions.size();
 		this.previousExpressions.add(parseResult);
+		this.last = parseResult;
+
+		// Release the expressions that are not going to be used anymore, including this one
+		if (lastUses != null && index < lastUses.length) {
+			for (int reference : references)
+				if (lastUses[reference] <= index) this.previousExpressions.release(reference);
+			if (lastUses[index] <= index) this.previousExpressions.release(index);
+		}
 		return parseResult;
 	}
 
@@ -65,10 +143,10 @@ public class StraightLine {
 	public Node getLast()
 		throws IndexOutOfBoundsException
 	{
-		if (previousExpressions.isEmpty())
+		if (last == null)
 			throw new IndexOutOfBoundsException("Cannot get last expression, parser is empty");
 
-		return previousExpressions.get(previousExpressions.size() - 1);
+		return last;
 	}
 
 	/**
@@ -77,11 +155,12 @@ public class StraightLine {
 	 *     Using the previous expression as input.
 	 * </p>
 	 * @param input The input string to parse.
+	 * @param references The list where the indices of the used expressions are added.
 	 * @return A {@link Node} containing the parsed expression.
 	 * @throws ParseException If the passed expression is invalid.
 	 * @throws NullPointerException If input is null.
 	 */
-	private Node parseImpl(String input)
+	private Node parseImpl(String input, List<Integer> references)
 		throws ParseException, NullPointerException
 	{
 		Objects.requireNonNull(input);
@@ -124,7 +203,11 @@ public class StraightLine {
 					throw new ParseException("Invalid negative index", 0);
 				if (index >= this.previousExpressions.size())
 					throw new ParseException("Index out of bounds", 0);
-				operands.add(this.previousExpressions.get(index));
+				Node operand = this.previousExpressions.get(index);
+				if (operand == null)
+					throw new ParseException("Expression " + index + " is no longer available", 0);
+				operands.add(operand);
+				references.add(index);
 			} catch (NumberFormatException e) {
 				throw new ParseException("Invalid syntax", 0);
 			}
@@ -133,7 +216,21 @@ public class StraightLine {
 		if (operands.size() < 2)
 			throw new ParseException("An expression must be followed by at least two operands", 0);
 
-		return switch (operatorChar) {
+		return makeOperation(operatorChar, operands);
+	}
+
+	/**
+	 * <p>EFFECTS: Constructs the {@link Node} of an operation of a straight line program.</p>
+	 * <p>REQUIREMENTS: operands must be non-null, and its size must be greater than one.</p>
+	 * @param operator The operator of the line.
+	 * @param operands The operands of the operation.
+	 * @return The constructed {@link Node}.
+	 * @throws ParseException If the operator is not valid, or the exponents cannot be converted to rationals.
+	 */
+	static Node makeOperation(char operator, List<Node> operands)
+		throws ParseException
+	{
+		return switch (operator) {
 			case '+' -> new SumNode(operands);
 			case '-' -> SumNode.fromSub(operands);
 			case '*' -> new MulNode(operands);
@@ -152,7 +249,7 @@ public class StraightLine {
 	 * @return The constructed {@link PowNode}.
 	 * @throws ParseException if the exponents cannot be converted to rationals
 	 */
-	private Node makePowNode(List<Node> operands) throws ParseException {
+	private static Node makePowNode(List<Node> operands) throws ParseException {
 		Objects.requireNonNull(operands);
 		assert operands.size() >= 2;
 
@@ -168,4 +265,85 @@ public class StraightLine {
 			throw new ParseException("Cannot simplify exponent to a rational number", 0);
 		}
 	}
-}
\ No newline at end of file
+
+	/**
+	 * <p>An unsynchronized list of expressions, stored in chunks that are dropped when all their expressions are released.</p>
+	 * <p>
+	 *     AF: the list contains the expressions 0, ..., size - 1, the expression i is chunks[i / CHUNK_SIZE][i % CHUNK_SIZE],
+	 *     or null if it was released or its chunk was dropped.
+	 *     live[c] is the number of expressions of the chunk c that are not released.
+	 * </p>
+	 * <p>
+	 *     REQUIREMENTS:
+	 *     <ul>
+	 *         <li>chunks and live must be non-null and have the same length.</li>
+	 *         <li>Only the chunks that are full can be dropped.</li>
+	 *     </ul>
+	 * <p>MUTABILITY: This class is mutable.</p>
+	 */
+	private static class Expressions {
+		/** The number of expressions in each chunk. */
+		private static final int CHUNK_SIZE = 1 << 12;
+
+		/** The chunks of expressions. */
+		private Node[][] chunks = new Node[16][];
+		/** The number of expressions that are not released in each chunk. */
+		private int[] live = new int[16];
+		/** The number of expressions in the list. */
+		private int size;
+
+		/**
+		 * <p>EFFECTS: Adds an expression at the end of the list.</p>
+		 * <p>REQUIREMENTS: node must be non-null.</p>
+		 * <p>MUTABILITY: This method modifies the list.</p>
+		 * @param node The expression.
+		 */
+		void add(Node node) {
+			assert node != null;
+			int chunk = size / CHUNK_SIZE;
+			if (chunk == chunks.length) {
+				chunks = Arrays.copyOf(chunks, 2 * chunk);
+				live = Arrays.copyOf(live, 2 * chunk);
+			}
+			if (chunks[chunk] == null) chunks[chunk] = new Node[CHUNK_SIZE];
+			chunks[chunk][size % CHUNK_SIZE] = node;
+			live[chunk]++;
+			size++;
+		}
+
+		/**
+		 * <p>EFFECTS: Returns an expression of the list.</p>
+		 * <p>REQUIREMENTS: index must be between 0 and size - 1.</p>
+		 * @param index The index of the expression.
+		 * @return The expression, or null if it was released.
+		 */
+		Node get(int index) {
+			Node[] chunk = chunks[index / CHUNK_SIZE];
+			return chunk == null ? null : chunk[index % CHUNK_SIZE];
+		}
+
+		/**
+		 * <p>EFFECTS: Releases an expression, dropping its chunk if it is full and all its expressions are released.</p>
+		 * <p>REQUIREMENTS: index must be between 0 and size - 1.</p>
+		 * <p>MUTABILITY: This method modifies the list.</p>
+		 * @param index The index of the expression, nothing happens if it was already released.
+		 */
+		void release(int index) {
+			int chunk = index / CHUNK_SIZE;
+			if (chunks[chunk] == null || chunks[chunk][index % CHUNK_SIZE] == null) return;
+
+			chunks[chunk][index % CHUNK_SIZE] = null;
+			live[chunk]--;
+			// The last chunk is kept until it is full, because new expressions are added to it
+			if (live[chunk] == 0 && (chunk + 1) * CHUNK_SIZE <= size) chunks[chunk] = null;
+		}
+
+		/**
+		 * <p>EFFECTS: Returns the number of expressions in the list, including the released ones.</p>
+		 * @return The number of expressions.
+		 */
+		int size() {
+			return size;
+		}
+	}
+}
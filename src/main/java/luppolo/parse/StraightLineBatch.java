@@ -0,0 +1,414 @@
+package luppolo.parse;
+
+import luppolo.math.Rational;
+import luppolo.node.Node;
+import luppolo.node.NumberNode;
+import luppolo.node.VariableNode;
+
+import java.io.IOException;
+import java.io.Serial;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * <p>Utility class to parse files of straight line programs, one instruction for each line, in two phases.</p>
+ * <p>
+ *     In the first phase the file is memory mapped and split at line boundaries into chunks of about {@link #CHUNK_SIZE} bytes,
+ *     the chunks are tokenized and validated by different tasks of a {@link ForkJoinPool}, and each line is stored
+ *     as a compact instruction: the operator and the indices of its operands, or the leaf node of the line.
+ *     In the second phase a single linear pass links the instructions in the order of the lines, building the nodes.
+ *     The nodes are hash consed: the lines with the same operator and the same operands (or the same leaf) share
+ *     the same instance, so they are constructed only once.
+ * </p>
+ * <p>
+ *     The lines are parsed like {@link StraightLine#parse}, and they are the same of {@link Scanner#nextLine()}:
+ *     they are terminated by {@code \n}, {@code \r\n} or {@code \r}, and the last line can be unterminated.
+ * </p>
+ * <p>
+ *     NOTES: The files must be encoded in ASCII (or in a superset of it, like UTF-8, but the non ASCII characters
+ *     are read as {@code U+FFFD}, so they are never part of a valid line).
+ * </p>
+ */
+public class StraightLineBatch {
+	/** The target size of a chunk, in bytes. */
+	public static final int CHUNK_SIZE = 1 << 22;
+
+	/** The operator of the leaf lines. */
+	private static final char LEAF = '.';
+
+	/** Constructor to the utility class that must never be called. */
+	private StraightLineBatch() {
+		assert false: "Utility class cannot be instantiated";
+	}
+
+	/**
+	 * <p>EFFECTS: Parses the lines of a file, using the common pool.</p>
+	 * <p>REQUIREMENTS: file must be non-null.</p>
+	 * @param file The file to parse.
+	 * @return The expressions of the lines, in the order of the lines.
+	 * @throws IOException If the file cannot be read, or a line is longer than {@link Integer#MAX_VALUE} bytes.
+	 * @throws ParseException If a line is invalid, the first one, with its line number in the message.
+	 * @throws NullPointerException If file is null.
+	 */
+	public static List<Node> parse(Path file)
+		throws IOException, ParseException, NullPointerException
+	{
+		return parse(file, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * <p>EFFECTS: Parses the lines of a file, using a pool.</p>
+	 * <p>REQUIREMENTS: The parameters must be non-null.</p>
+	 * @param file The file to parse.
+	 * @param pool The pool that tokenizes the chunks.
+	 * @return The expressions of the lines, in the order of the lines.
+	 * @throws IOException If the file cannot be read, or a line is longer than {@link Integer#MAX_VALUE} bytes.
+	 * @throws ParseException If a line is invalid, the first one, with its line number in the message.
+	 * @throws NullPointerException If a parameter is null.
+	 */
+	public static List<Node> parse(Path file, ForkJoinPool pool)
+		throws IOException, ParseException, NullPointerException
+	{
+		Objects.requireNonNull(pool);
+
+		List<Chunk> chunks = new ArrayList<>();
+		for (MappedByteBuffer bytes : MappedLines.map(file, CHUNK_SIZE)) chunks.add(new Chunk(bytes));
+
+		pool.invoke(new RecursiveAction() {
+			@Serial
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected void compute() {
+				ForkJoinTask.invokeAll(chunks);
+			}
+		});
+
+		return link(chunks);
+	}
+
+	/**
+	 * <p>
+	 *     EFFECTS: Builds the nodes of the tokenized lines, in the order of the lines,
+	 *     checking that the operands of each line precede it.
+	 * </p>
+	 * <p>REQUIREMENTS: chunks must be non-null, and the chunks must be tokenized.</p>
+	 * @param chunks The tokenized chunks, in the order of the file.
+	 * @return The expressions of the lines.
+	 * @throws ParseException If a line is invalid, the first one, with its line number in the message.
+	 */
+	private static List<Node> link(List<Chunk> chunks)
+		throws ParseException
+	{
+		int lines = 0;
+		for (Chunk chunk : chunks) lines += chunk.lines;
+
+		List<Node> nodes = new ArrayList<>(lines);
+		// canonical[i] is the first line whose node is the same instance of the node of the line i
+		int[] canonical = new int[lines];
+		Map<Node, Integer> leaves = new HashMap<>();
+		Map<Instruction, Integer> instructions = new HashMap<>();
+
+		for (Chunk chunk : chunks) {
+			for (int line = 0, from = 0; line < chunk.lines; line++) {
+				final int index = nodes.size();
+				final int to = chunk.ends[line];
+				try {
+					final Integer same;
+					if (chunk.operators[line] == LEAF) {
+						same = leaves.putIfAbsent(chunk.leaves[line], index);
+						if (same == null) nodes.add(chunk.leaves[line]);
+					} else {
+						int[] operands = new int[to - from];
+						for (int i = 0; i < operands.length; i++)
+							operands[i] = canonical[checkIndex(chunk.operands[from + i], index)];
+
+						Instruction instruction = new Instruction(chunk.operators[line], operands);
+						same = instructions.putIfAbsent(instruction, index);
+						if (same == null) nodes.add(instruction.build(nodes));
+					}
+					canonical[index] = same == null ? index : same;
+					if (same != null) nodes.add(nodes.get(same));
+				} catch (ParseException e) {
+					throw new ParseException("Line " + (index + 1) + ": " + e.getMessage(), e.getErrorOffset());
+				}
+				from = to;
+			}
+
+			if (chunk.error != null) {
+				final int index = nodes.size();
+				try {
+					// The operands that precede the error are checked first, like in StraightLine
+					final int from = chunk.lines == 0 ? 0 : chunk.ends[chunk.lines - 1];
+					for (int i = from; i < chunk.size; i++) checkIndex(chunk.operands[i], index);
+					throw chunk.error;
+				} catch (ParseException e) {
+					throw new ParseException("Line " + (index + 1) + ": " + e.getMessage(), e.getErrorOffset());
+				}
+			}
+		}
+		return nodes;
+	}
+
+	/**
+	 * <p>EFFECTS: Checks that an operand precedes the line that uses it.</p>
+	 * @param operand The index of the operand.
+	 * @param line The index of the line.
+	 * @return The index of the operand.
+	 * @throws ParseException If the operand doesn't precede the line.
+	 */
+	private static int checkIndex(int operand, int line)
+		throws ParseException
+	{
+		if (operand >= line)
+			throw new ParseException("Index out of bounds", 0);
+		return operand;
+	}
+
+	/**
+	 * <p>An operation of a straight line program, used to hash cons the nodes.</p>
+	 * <p>AF: the operation operator applied to the expressions of the lines operands[0], ..., operands[operands.length - 1].</p>
+	 * <p>
+	 *     REQUIREMENTS:
+	 *     <ul>
+	 *         <li>operator must be a valid operator of a straight line program.</li>
+	 *         <li>operands must be non-null, and have at least two elements.</li>
+	 *     </ul>
+	 * <p>MUTABILITY: This class is immutable, operands is never modified.</p>
+	 * @param operator The operator.
+	 * @param operands The indices of the lines of the operands.
+	 */
+	private record Instruction(char operator, int[] operands) {
+		/**
+		 * <p>EFFECTS: Builds the node of the operation.</p>
+		 * <p>REQUIREMENTS: nodes must be non-null, and contain the expressions of the operands.</p>
+		 * @param nodes The expressions of the lines.
+		 * @return The node of the operation.
+		 * @throws ParseException If the exponents cannot be converted to rationals.
+		 */
+		Node build(List<Node> nodes)
+			throws ParseException
+		{
+			List<Node> arguments = new ArrayList<>(operands.length);
+			for (int operand : operands) arguments.add(nodes.get(operand));
+			return StraightLine.makeOperation(operator, arguments);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			return obj instanceof Instruction other && operator == other.operator && Arrays.equals(operands, other.operands);
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * operator + Arrays.hashCode(operands);
+		}
+
+		@Override
+		public String toString() {
+			return operator + " " + Arrays.toString(operands);
+		}
+	}
+
+	/**
+	 * <p>The task that tokenizes and validates the lines of a chunk, until the first invalid one.</p>
+	 * <p>
+	 *     AF: bytes are the bytes of the chunk, the line i of the chunk, for 0 &lt;= i &lt; lines, has the operator operators[i],
+	 *     the leaf leaves[i] if the operator is {@link #LEAF}, otherwise the operands operands[ends[i - 1]], ..., operands[ends[i] - 1]
+	 *     (where ends[-1] is 0).
+	 *     error is the exception of the first invalid line, that follows the valid ones, or null if all the lines are valid,
+	 *     in this case operands[ends[lines - 1]], ..., operands[size - 1] are the operands that precede the error in the line.
+	 * </p>
+	 * <p>
+	 *     REQUIREMENTS:
+	 *     <ul>
+	 *         <li>bytes must be non-null, and must start at the start of a line.</li>
+	 *         <li>operators, ends and leaves must have the same length, at least lines.</li>
+	 *         <li>size must be at most the length of operands.</li>
+	 *     </ul>
+	 * <p>MUTABILITY: This class is mutable, the task stores its results.</p>
+	 */
+	private static class Chunk extends RecursiveAction {
+		/** The version of the serialized form, the tasks are never serialized. */
+		@Serial
+		private static final long serialVersionUID = 1L;
+
+		/** The bytes of the chunk. */
+		private final transient MappedByteBuffer bytes;
+		/** The operators of the lines. */
+		private char[] operators = new char[64];
+		/** The end of the operands of each line. */
+		private int[] ends = new int[64];
+		/** The leaves of the lines. */
+		private transient Node[] leaves = new Node[64];
+		/** The number of valid lines. */
+		private int lines;
+		/** The operands of the lines. */
+		private int[] operands = new int[256];
+		/** The number of operands. */
+		private int size;
+		/** The exception of the first invalid line. */
+		private transient ParseException error;
+
+		/**
+		 * <p>EFFECTS: Constructs a new {@link Chunk}.</p>
+		 * @param bytes The bytes of the chunk.
+		 */
+		Chunk(MappedByteBuffer bytes) {
+			this.bytes = bytes;
+		}
+
+		@Override
+		protected void compute() {
+			for (int start = 0; start < bytes.limit(); ) {
+				int end = MappedLines.lineEnd(bytes, start);
+				try {
+					tokenize(start, end);
+				} catch (ParseException e) {
+					error = e;
+					return;
+				}
+				start = MappedLines.nextLine(bytes, end);
+			}
+		}
+
+		/**
+		 * <p>EFFECTS: Tokenizes and validates a line, like {@link StraightLine#parse}, except for the indices of the operands.</p>
+		 * <p>REQUIREMENTS: 0 &lt;= start &lt;= end &lt;= bytes.limit().</p>
+		 * <p>MUTABILITY: This method appends the line to the chunk, or its operands that precede the error.</p>
+		 * @param start The start of the line.
+		 * @param end The end of the line.
+		 * @throws ParseException If the line is invalid.
+		 */
+		private void tokenize(int start, int end)
+			throws ParseException
+		{
+			// Trim the line like String#trim
+			while (start < end && isTrimmed(bytes.get(start))) start++;
+			while (end > start && isTrimmed(bytes.get(end - 1))) end--;
+			Ascii line = new Ascii(bytes, start, end);
+
+			int tokenEnd = tokenEnd(line, 0);
+			if (tokenEnd != 1)
+				throw new ParseException("First part must be a dot or an operator", 0);
+			final char operator = line.charAt(0);
+
+			if (lines == operators.length) {
+				operators = Arrays.copyOf(operators, 2 * lines);
+				ends = Arrays.copyOf(ends, 2 * lines);
+				leaves = Arrays.copyOf(leaves, 2 * lines);
+			}
+
+			// Expression is a leaf
+			if (operator == LEAF) {
+				int tokenStart = tokenStart(line, tokenEnd);
+				tokenEnd = tokenEnd(line, tokenStart);
+				if (tokenStart == line.length() || tokenEnd != line.length())
+					throw new ParseException("Invalid number of arguments after a dot", 0);
+
+				leaves[lines] = leaf(line, tokenStart, tokenEnd);
+			} else {
+				// Expression is an operation, read all the indices
+				final int first = size;
+				for (int tokenStart = tokenStart(line, tokenEnd); tokenStart < line.length(); tokenStart = tokenStart(line, tokenEnd)) {
+					tokenEnd = tokenEnd(line, tokenStart);
+					final int index;
+					try {
+						index = Integer.parseInt(line, tokenStart, tokenEnd, 10);
+					} catch (NumberFormatException e) {
+						throw new ParseException("Invalid syntax", 0);
+					}
+					if (index < 0)
+						throw new ParseException("Invalid negative index", 0);
+
+					if (size == operands.length) operands = Arrays.copyOf(operands, 2 * size);
+					operands[size++] = index;
+				}
+
+				if (size - first < 2)
+					throw new ParseException("An expression must be followed by at least two operands", 0);
+				if ("+-*/^".indexOf(operator) < 0)
+					throw new ParseException("First part must be dot or an operator", 0);
+			}
+
+			operators[lines] = operator;
+			ends[lines] = size;
+			lines++;
+		}
+
+		/**
+		 * <p>EFFECTS: Constructs the leaf node of an argument after a dot.</p>
+		 * @param line The line.
+		 * @param start The start of the argument.
+		 * @param end The end of the argument.
+		 * @return The variable or number node of the argument.
+		 * @throws ParseException If the argument is not a variable or a number.
+		 */
+		private static Node leaf(CharSequence line, int start, int end)
+			throws ParseException
+		{
+			// Argument is a variable
+			boolean variable = true;
+			for (int i = start; i < end && variable; i++) {
+				char c = line.charAt(i);
+				variable = (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+			}
+			if (variable)
+				return new VariableNode(line.subSequence(start, end).toString());
+
+			// Argument must be a number
+			try {
+				long value = Long.parseLong(line, start, end, 10);
+				return new NumberNode(Rational.fromInt(value));
+			} catch (NumberFormatException e) {
+				throw new ParseException("Invalid syntax", 0);
+			}
+		}
+
+		/**
+		 * <p>EFFECTS: Checks if a byte is removed by {@link String#trim()}.</p>
+		 * @param b The byte.
+		 * @return true if the byte is an ASCII control character or a space.
+		 */
+		private static boolean isTrimmed(byte b) {
+			return b >= 0 && b <= ' ';
+		}
+
+		/**
+		 * <p>EFFECTS: Checks if a character is a separator, matched by the regular expression {@code \s}.</p>
+		 * @param c The character.
+		 * @return true if the character is a separator.
+		 */
+		private static boolean isSeparator(char c) {
+			return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+		}
+
+		/**
+		 * <p>EFFECTS: Finds the start of the token that follows a position.</p>
+		 * @param line The line.
+		 * @param position The position.
+		 * @return The start of the next token, or the length of the line if there are no more tokens.
+		 */
+		private static int tokenStart(CharSequence line, int position) {
+			while (position < line.length() && isSeparator(line.charAt(position))) position++;
+			return position;
+		}
+
+		/**
+		 * <p>EFFECTS: Finds the end of the token that starts at a position.</p>
+		 * @param line The line.
+		 * @param position The start of the token.
+		 * @return The end of the token.
+		 */
+		private static int tokenEnd(CharSequence line, int position) {
+			while (position < line.length() && !isSeparator(line.charAt(position))) position++;
+			return position;
+		}
+	}
+}
@@ -1,18 +1,121 @@
 package luppolo.print;
 
 import luppolo.node.*;
+import luppolo.transform.ParallelTransform;
 
+import java.io.IOException;
 import java.util.List;
+import java.util.Objects;
 
 /**
  * <p>A printer that prints a {@link Node} in linearized format.</p>
- * <p>REQUIREMENTS: see {@link Visitor} for the requirements.</p>
- * <p>MUTABILITY: This class has no state and it cannot mutate, respecting the mutability requirements of {@link Visitor}.</p>
+ * <p>
+ *     The visitor returns the printed expression as a {@link String}, while {@link #print} writes it directly
+ *     to an {@link Appendable} as the tree is walked, without building the strings of the subtrees.
+ * </p>
+ * <p>REQUIREMENTS: see {@link StatelessVisitor} for the requirements.</p>
+ * <p>
+ *     MUTABILITY: This class has no state and it cannot mutate, respecting the mutability requirements of {@link StatelessVisitor},
+ *     so the same instance can be used by more threads, and by {@link ParallelTransform}.
+ * </p>
  */
-public class BasicPrinter implements Visitor<String> {
+public class BasicPrinter implements StatelessVisitor<String> {
 	/** Constructor for {@link BasicPrinter} */
 	public BasicPrinter() {}
 
+	/**
+	 * <p>EFFECTS: Prints an expression in linearized format, writing it to out while it is produced.</p>
+	 * <p>REQUIREMENTS: The parameters must be non-null.</p>
+	 * <p>NOTES: To write UTF-8 bytes to a channel out can be {@link java.nio.channels.Channels#newWriter}.</p>
+	 * @param expr The expression to print.
+	 * @param out The output of the printed expression.
+	 * @throws IOException If the output throws it.
+	 * @throws NullPointerException If any of the parameters is null.
+	 */
+	public void print(Node expr, Appendable out)
+		throws IOException, NullPointerException
+	{
+		print(expr, out, PrintLimits.UNLIMITED);
+	}
+
+	/**
+	 * <p>
+	 *     EFFECTS: Prints an expression in linearized format within the limits, writing it to out while it is produced.
+	 *     The elided operands are printed like {@code +(x, y, …(+9832 terms))}, see {@link PrintLimits}.
+	 * </p>
+	 * <p>REQUIREMENTS: The parameters must be non-null.</p>
+	 * @param expr The expression to print.
+	 * @param out The output of the printed expression.
+	 * @param limits The limits of the printed output.
+	 * @throws IOException If the output throws it.
+	 * @throws NullPointerException If any of the parameters is null.
+	 */
+	public void print(Node expr, Appendable out, PrintLimits limits)
+		throws IOException, NullPointerException
+	{
+		Objects.requireNonNull(expr);
+		Objects.requireNonNull(out);
+		Objects.requireNonNull(limits);
+
+		print(expr, new BoundedAppendable(out, limits.maxChars()), limits, 0);
+	}
+
+	/**
+	 * <p>EFFECTS: Prints a subtree within the limits, writing it to out, until out is exhausted.</p>
+	 * <p>REQUIREMENTS: The parameters must be non-null, depth must be non-negative.</p>
+	 * @param node The root of the subtree.
+	 * @param out The bounded output.
+	 * @param limits The limits of the printed output.
+	 * @param depth The depth of the node.
+	 * @throws IOException If the output throws it.
+	 */
+	private void print(Node node, BoundedAppendable out, PrintLimits limits, int depth)
+		throws IOException
+	{
+		if (out.exhausted()) return;
+
+		out.append(node.toString());
+		if (node instanceof SumNode sum) {
+			printOperands(sum.operands(), "terms", out, limits, depth);
+		} else if (node instanceof MulNode mul) {
+			printOperands(mul.operands(), "factors", out, limits, depth);
+		} else if (node instanceof PowNode pow) {
+			out.append("(");
+			if (depth < limits.maxDepth()) print(pow.base(), out, limits, depth + 1);
+			else out.append(BoundedAppendable.ELLIPSIS);
+			out.append(", ").append(pow.exp().toString()).append(")");
+		}
+	}
+
+	/**
+	 * <p>
+	 *     EFFECTS: Prints the operands within the limits in a comma delimited list enclosed by parenthesis, writing them to out.
+	 *     The operands that are not printed are replaced by their number.
+	 * </p>
+	 * <p>REQUIREMENTS: The parameters must be non-null, depth must be non-negative.</p>
+	 * @param operands The operands to print.
+	 * @param kind The name of the operands, used for the elided ones.
+	 * @param out The bounded output.
+	 * @param limits The limits of the printed output.
+	 * @param depth The depth of the node of the operands.
+	 * @throws IOException If the output throws it.
+	 */
+	private void printOperands(List<Node> operands, String kind, BoundedAppendable out, PrintLimits limits, int depth)
+		throws IOException
+	{
+		final int printed = depth < limits.maxDepth() ? Math.min(operands.size(), limits.maxOperands()) : 0;
+		out.append("(");
+		for (int i = 0; i < printed && !out.exhausted(); i++) {
+			if (i > 0) out.append(", ");
+			print(operands.get(i), out, limits, depth + 1);
+		}
+		if (printed < operands.size()) {
+			if (printed > 0) out.append(", ");
+			out.append(BoundedAppendable.ELLIPSIS + "(+" + (operands.size() - printed) + " " + kind + ")");
+		}
+		out.append(")");
+	}
+
 	@Override
 	public String visit(NumberNode node) {
 		return node.toString();
@@ -52,7 +155,7 @@ public class BasicPrinter implements Visitor<String> {
 	 *     EFFECTS: appends the printed operands to the builder.
 	 *     The operands are printed in a comma delimited list enclosed by parenthesis.
 	 * <p>REQUIREMENTS: The parameters must be non-null</p>
-	 * <p>NOTES: This method modifies the provided builder</p>
+	 * <p>NOTES: This method modifies the provided builder, the operands can be printed in parallel by {@link ParallelTransform#transformAll}.</p>
 	 * @param operands The operands to print.
 	 * @param builder The build to append the result to.
 	 */
@@ -60,10 +163,10 @@ public class BasicPrinter implements Visitor<String> {
 		assert operands != null;
 		assert builder != null;
 
-		builder.append("(").append(operands.get(0).transform(this));
-		for (int i = 1; i < operands.size(); i++) {
-			Node operand = operands.get(i);
-			builder.append(", ").append(operand.transform(this));
+		List<String> printed = ParallelTransform.transformAll(operands, this);
+		builder.append("(").append(printed.get(0));
+		for (int i = 1; i < printed.size(); i++) {
+			builder.append(", ").append(printed.get(i));
 		}
 		builder.append(")");
 	}
@@ -0,0 +1,70 @@
+package luppolo.print;
+
+import java.io.IOException;
+
+/**
+ * <p>An {@link Appendable} that writes at most a given number of characters to another one, followed by an ellipsis.</p>
+ * <p>AF: out is the output, remaining is the number of characters that can still be written, exhausted is true after the ellipsis.</p>
+ * <p>REQUIREMENTS: out must be non-null, remaining must be non-negative, and zero if exhausted is true.</p>
+ * <p>MUTABILITY: This class is mutable, by means of writing characters.</p>
+ */
+final class BoundedAppendable implements Appendable {
+	/** The ellipsis that marks the elided parts. */
+	static final String ELLIPSIS = "…";
+
+	/** The output. */
+	private final Appendable out;
+	/** The number of characters that can still be written. */
+	private long remaining;
+	/** Whether the limit was exceeded. */
+	private boolean exhausted;
+
+	/**
+	 * <p>EFFECTS: Constructs a new {@link BoundedAppendable}.</p>
+	 * @param out The output.
+	 * @param maxChars The maximum number of characters written to out, excluding the ellipsis.
+	 */
+	BoundedAppendable(Appendable out, long maxChars) {
+		this.out = out;
+		this.remaining = maxChars;
+	}
+
+	/**
+	 * <p>EFFECTS: Checks if the limit was exceeded, so nothing else is written.</p>
+	 * @return true if the limit was exceeded, false otherwise.
+	 */
+	boolean exhausted() {
+		return exhausted;
+	}
+
+	@Override
+	public Appendable append(CharSequence csq)
+		throws IOException
+	{
+		if (exhausted) return this;
+		if (csq.length() <= remaining) {
+			out.append(csq);
+			remaining -= csq.length();
+		} else {
+			// The characters that fit are written, then the rest is elided
+			out.append(csq, 0, (int) remaining).append(ELLIPSIS);
+			remaining = 0;
+			exhausted = true;
+		}
+		return this;
+	}
+
+	@Override
+	public Appendable append(CharSequence csq, int start, int end)
+		throws IOException
+	{
+		return append(csq.subSequence(start, end));
+	}
+
+	@Override
+	public Appendable append(char c)
+		throws IOException
+	{
+		return append(String.valueOf(c));
+	}
+}
@@ -0,0 +1,79 @@
+package luppolo.print;
+
+import luppolo.math.Rational;
+import luppolo.node.*;
+import luppolo.transform.Expand;
+import luppolo.transform.ExpandTerms;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Objects;
+
+/**
+ * <p>
+ *     A printer that prints the expansion of a {@link Node} in linearized format while it is computed,
+ *     without building the expanded expression: the terms generated by {@link ExpandTerms} are printed one at a time.
+ * </p>
+ * <p>
+ *     The output is the same of {@link BasicPrinter} applied to the result of {@link Expand},
+ *     except for the order of the operands of the sums, that are printed in the order they are generated.
+ * </p>
+ * <p>MUTABILITY: This class has no state and it cannot mutate.</p>
+ */
+public class ExpansionPrinter {
+	/** The printer of the single terms. */
+	private static final BasicPrinter PRINTER = new BasicPrinter();
+	/** The generator of the terms. */
+	private static final ExpandTerms TERMS = new ExpandTerms();
+
+	/** Constructor for {@link ExpansionPrinter} */
+	public ExpansionPrinter() {}
+
+	/**
+	 * <p>EFFECTS: Prints the expansion of an expression.</p>
+	 * <p>REQUIREMENTS: The parameters must be non-null.</p>
+	 * @param expr The expression to expand.
+	 * @param out The output of the printed expansion.
+	 * @throws IOException If the output throws it.
+	 * @throws IllegalArgumentException If the expression cannot be expanded.
+	 * @throws NullPointerException If any of the parameters is null.
+	 */
+	public void print(Node expr, Appendable out)
+		throws IOException, IllegalArgumentException, NullPointerException
+	{
+		Objects.requireNonNull(expr);
+		Objects.requireNonNull(out);
+
+		// The expanded operands of a sum are not merged, so they are printed as nested sums
+		if (expr instanceof SumNode sum) {
+			out.append(sum.toString()).append("(");
+			for (int i = 0; i < sum.operands().size(); i++) {
+				if (i > 0) out.append(", ");
+				print(sum.operands().get(i), out);
+			}
+			out.append(")");
+			return;
+		}
+
+		// b^1 = b
+		if (expr instanceof PowNode pow && pow.exp().equals(Rational.ONE)) {
+			print(pow.base(), out);
+			return;
+		}
+
+		Iterator<Node> terms = expr.transform(TERMS);
+		Node first = terms.next();
+		if (!terms.hasNext()) {
+			PRINTER.print(first, out);
+			return;
+		}
+
+		out.append("+(");
+		PRINTER.print(first, out);
+		while (terms.hasNext()) {
+			out.append(", ");
+			PRINTER.print(terms.next(), out);
+		}
+		out.append(")");
+	}
+}
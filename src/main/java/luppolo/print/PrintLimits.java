@@ -0,0 +1,36 @@
+package luppolo.print;
+
+/**
+ * <p>The limits of the bounded printing of {@link BasicPrinter#print(luppolo.node.Node, Appendable, PrintLimits)} and {@link TreePrinter#print(luppolo.node.Node, Appendable, PrintLimits)}.</p>
+ * <p>
+ *     The operands of the nodes at depth maxDepth (the root has depth zero), and the operands after the first maxOperands of a node,
+ *     are not visited and are printed as a single ellipsis with their number, like {@code …(+9832 terms)}.
+ *     The output stops with an ellipsis after maxChars characters.
+ *     So the cost of printing is proportional to the printed output, and not to the size of the expression.
+ * </p>
+ * <p>
+ *     REQUIREMENTS:
+ *     <ul>
+ *         <li>maxDepth, maxOperands and maxChars must be non-negative.</li>
+ *     </ul>
+ * <p>MUTABILITY: This class is immutable.</p>
+ * @param maxDepth The maximum depth of the printed nodes, the root has depth zero and the operands of the nodes at maxDepth are elided.
+ * @param maxOperands The maximum number of operands printed for each node.
+ * @param maxChars The maximum number of printed characters, excluding the final ellipsis.
+ */
+public record PrintLimits(int maxDepth, int maxOperands, long maxChars) {
+	/** The limits that print every expression in full. */
+	public static final PrintLimits UNLIMITED = new PrintLimits(Integer.MAX_VALUE, Integer.MAX_VALUE, Long.MAX_VALUE);
+
+	/**
+	 * <p>EFFECTS: Constructs new {@link PrintLimits}.</p>
+	 * @param maxDepth The maximum depth of the printed nodes, the root has depth zero and the operands of the nodes at maxDepth are elided.
+	 * @param maxOperands The maximum number of operands printed for each node.
+	 * @param maxChars The maximum number of printed characters, excluding the final ellipsis.
+	 * @throws IllegalArgumentException If a limit is negative.
+	 */
+	public PrintLimits {
+		if (maxDepth < 0 || maxOperands < 0 || maxChars < 0)
+			throw new IllegalArgumentException("The print limits cannot be negative");
+	}
+}
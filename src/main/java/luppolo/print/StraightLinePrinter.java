@@ -0,0 +1,217 @@
+package luppolo.print;
+
+import luppolo.math.Rational;
+import luppolo.node.*;
+
+import java.util.*;
+
+/**
+ * <p>A printer that prints a {@link Node} as a straight line program, that can be read back by {@link luppolo.parse.StraightLine}.</p>
+ * <p>
+ *     Each distinct (by reference) node of the expression is printed only once, as a line of the program,
+ *     and the nodes that use it refer to the index of that line, so the size of the output is proportional to
+ *     the number of distinct nodes, even when printing the expression as a tree would be exponentially larger.
+ *     The last line of the program corresponds to the printed node.
+ * </p>
+ * <p>
+ *     The transformations (like {@link luppolo.transform.Simplify} and {@link luppolo.transform.Differentiate})
+ *     build a new node for each occurrence of a shared subexpression, so their results have equal but distinct subtrees.
+ *     If mergeEqual is true the equal subtrees are printed once too: the nodes are fingerprinted bottom-up in the same walk,
+ *     since the children are emitted before their parents two subtrees are equal if and only if they have the same operator
+ *     and the same indices of their operands, so each node is hashed in time proportional to its operands and not to its subtree,
+ *     and the text of an instruction is built only the first time it is emitted.
+ * </p>
+ * <p>AF: mergeEqual is true if the equal (by value) subtrees are printed once, false if only the same (by reference) ones are.</p>
+ * <p>REQUIREMENTS: see {@link Visitor} for the requirements.</p>
+ * <p>MUTABILITY: This class is immutable, respecting the mutability requirements of {@link Visitor}.</p>
+ * <p>
+ *     NOTES: Straight line programs only contain integer literals, so a non integer rational n/d
+ *     is printed as the division n / d, which is read back as an equivalent (not equal) expression.
+ * </p>
+ */
+public class StraightLinePrinter implements Visitor<String> {
+	/** Whether the equal subtrees are printed once. */
+	private final boolean mergeEqual;
+
+	/** Constructor for {@link StraightLinePrinter}, that prints once only the same (by reference) subtrees. */
+	public StraightLinePrinter() {
+		this(false);
+	}
+
+	/**
+	 * <p>EFFECTS: Constructs a new {@link StraightLinePrinter}.</p>
+	 * @param mergeEqual If true the equal (by value) subtrees are printed once, otherwise only the same (by reference) ones are.
+	 */
+	public StraightLinePrinter(boolean mergeEqual) {
+		this.mergeEqual = mergeEqual;
+	}
+
+	@Override
+	public String visit(NumberNode node) {
+		return print(node);
+	}
+
+	@Override
+	public String visit(VariableNode node) {
+		return print(node);
+	}
+
+	@Override
+	public String visit(SumNode node) {
+		return print(node);
+	}
+
+	@Override
+	public String visit(MulNode node) {
+		return print(node);
+	}
+
+	@Override
+	public String visit(PowNode node) {
+		return print(node);
+	}
+
+	/**
+	 * <p>EFFECTS: Prints the expression as a straight line program, a line for each instruction.</p>
+	 * <p>REQUIREMENTS: root must be non-null.</p>
+	 * @param root The expression to print.
+	 * @return The straight line program.
+	 */
+	private String print(Node root) {
+		assert root != null;
+
+		Program program = new Program(mergeEqual);
+		for (Node node : Dag.topologicalOrder(root))
+			program.emit(node);
+		return String.join("\n", program.lines);
+	}
+
+	/**
+	 * <p>A straight line program being built.</p>
+	 * <p>
+	 *     AF: lines are the instructions of the program,
+	 *     indices maps each emitted node to the index of the instruction that defines it,
+	 *     constants and variables map the emitted leaves to the index of their instruction, so that they are not repeated,
+	 *     instructions maps the fingerprint of each emitted operation to its index if the equal instructions are merged, otherwise it is null.
+	 * <p>REQUIREMENTS: Each index in the maps must be a valid index of lines.</p>
+	 * <p>MUTABILITY: This class is mutable, by means of emitting new instructions.</p>
+	 */
+	private static class Program {
+		/** The instructions of the program. */
+		private final List<String> lines = new ArrayList<>();
+		/** The index of the instruction of every emitted node. */
+		private final Map<Node, Integer> indices = new IdentityHashMap<>();
+		/** The index of the instruction of every emitted rational. */
+		private final Map<Rational, Integer> constants = new HashMap<>();
+		/** The index of the instruction of every emitted variable. */
+		private final Map<String, Integer> variables = new HashMap<>();
+		/** The index of every emitted operation by fingerprint, or null if the equal instructions are not merged. */
+		private final Map<Fingerprint, Integer> instructions;
+
+		/**
+		 * <p>EFFECTS: Constructs a new empty {@link Program}.</p>
+		 * @param mergeEqual If true the equal instructions are emitted once.
+		 */
+		Program(boolean mergeEqual) {
+			this.instructions = mergeEqual ? new HashMap<>() : null;
+		}
+
+		/**
+		 * <p>EFFECTS: Emits the instruction corresponding to node.</p>
+		 * <p>REQUIREMENTS: The children of node must have already been emitted.</p>
+		 * <p>MUTABILITY: This method modifies the program.</p>
+		 * @param node The node to emit.
+		 */
+		void emit(Node node) {
+			final int index;
+			if (node instanceof NumberNode number) {
+				index = constant(number.value());
+			} else if (node instanceof VariableNode variable) {
+				index = variables.computeIfAbsent(variable.name(), name -> append(". " + name));
+			} else if (node instanceof PowNode pow) {
+				int exp = constant(pow.exp());
+				index = append(pow.toString(), new int[] {indices.get(pow.base()), exp});
+			} else {
+				List<Node> children = Dag.children(node);
+				int[] operands = new int[children.size()];
+				for (int i = 0; i < operands.length; i++) operands[i] = indices.get(children.get(i));
+				index = append(node.toString(), operands);
+			}
+			indices.put(node, index);
+		}
+
+		/**
+		 * <p>EFFECTS: Emits the instructions for a rational number, if they weren't already emitted.</p>
+		 * @param value The rational number.
+		 * @return The index of the instruction defining the number.
+		 */
+		private int constant(Rational value) {
+			Integer index = constants.get(value);
+			if (index != null) return index;
+
+			if (value.isInteger()) {
+				index = append(". " + value.num);
+			} else {
+				int num = constant(Rational.fromInt(value.num));
+				int den = constant(Rational.fromInt(value.den));
+				index = append("/ " + num + " " + den);
+			}
+			constants.put(value, index);
+			return index;
+		}
+
+		/**
+		 * <p>EFFECTS: Appends an operation to the program, if the equal instructions are merged only if it is new.</p>
+		 * @param operator The operator.
+		 * @param operands The indices of the operands.
+		 * @return The index of the instruction.
+		 */
+		private int append(String operator, int[] operands) {
+			if (instructions != null) {
+				Fingerprint fingerprint = new Fingerprint(operator, operands);
+				Integer index = instructions.get(fingerprint);
+				if (index != null) return index;
+				instructions.put(fingerprint, lines.size());
+			}
+
+			StringBuilder builder = new StringBuilder(operator);
+			for (int operand : operands) builder.append(' ').append(operand);
+			return append(builder.toString());
+		}
+
+		/**
+		 * <p>EFFECTS: Appends an instruction to the program.</p>
+		 * <p>REQUIREMENTS: The instruction must not have been emitted, the leaves are emitted once by value.</p>
+		 * @param line The instruction.
+		 * @return The index of the instruction.
+		 */
+		private int append(String line) {
+			lines.add(line);
+			return lines.size() - 1;
+		}
+	}
+
+	/**
+	 * The fingerprint of an operation, equal for two subtrees if and only if they are equal, once their operands are emitted.
+	 * @param operator The operator.
+	 * @param operands The indices of the operands.
+	 */
+	private record Fingerprint(String operator, int[] operands) {
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) return true;
+			if (!(o instanceof Fingerprint other)) return false;
+			return operator.equals(other.operator) && Arrays.equals(operands, other.operands);
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * operator.hashCode() + Arrays.hashCode(operands);
+		}
+
+		@Override
+		public String toString() {
+			return operator + " " + Arrays.toString(operands);
+		}
+	}
+}
@@ -1,19 +1,27 @@
 package luppolo.print;
 
 import luppolo.node.*;
+import luppolo.transform.ParallelTransform;
 
+import java.io.IOException;
 import java.util.List;
+import java.util.Objects;
 
 /**
  * <p>A printer that prints a {@link Node} in a visual tree format.</p>
  * <p>
- *     REQUIREMENTS:
- *     <ul>
- *         <li>prefix must be non-null</li>
- *         <li>childPrefix must be non-null</li>
- *         <li>see {@link Visitor} for the additional requirements.</li>
- *     </ul>
- * <p>MUTABILITY: This class is mutable, but the state must reset after calling apply on a node as per {@link Visitor} requirements</p>
+ *     The prefixes of the lines of a subtree depend on its position in the tree, they are kept by an immutable
+ *     {@link Subtree} visitor created for each level, so the state of the printing is local to each call.
+ * </p>
+ * <p>
+ *     The visitor returns the printed tree as a {@link String}, while {@link #print} writes it directly
+ *     to an {@link Appendable} as the tree is walked, keeping a single buffer for the indentation of the current line.
+ * </p>
+ * <p>REQUIREMENTS: see {@link StatelessVisitor} for the requirements.</p>
+ * <p>
+ *     MUTABILITY: This class has no state and it cannot mutate, respecting the mutability requirements of {@link StatelessVisitor},
+ *     so the same instance can be used by more threads, and by {@link ParallelTransform}.
+ * </p>
  * <p>
  *     NOTES:
  *     <ul>
@@ -21,7 +29,7 @@ import java.util.List;
  *         <li>This is adapted from <a href="https://stackoverflow.com/questions/4965335/how-to-print-binary-tree-diagram-in-java">Stackoverflow</a>.</li>
  *     </ul>
  */
-public class TreePrinter implements Visitor<String> {
+public class TreePrinter implements StatelessVisitor<String> {
 	/** String to put in front of an expression. */
 	private static final String EXPR =      "├── ";
 	/** String to continue the line of the expression. */
@@ -31,99 +39,204 @@ public class TreePrinter implements Visitor<String> {
 	/** String to continue after the last expression. */
 	private static final String LAST_CONT = "    ";
 
-	/** The prefix to use to print the current node */
-	private String prefix;
-	/** The prefix to use to print the child node */
-	private String childPrefix;
+	/** The printer of the root. */
+	private static final Subtree ROOT = new Subtree("", "");
 
 	/**
 	 * <p>EFFECTS: Constructs a new {@link TreePrinter}</p>
 	 */
-	public TreePrinter() {
-		this.prefix = "";
-		this.childPrefix = "";
+	public TreePrinter() {}
+
+	/**
+	 * <p>EFFECTS: Prints an expression in tree format, writing it to out while it is produced.</p>
+	 * <p>REQUIREMENTS: The parameters must be non-null.</p>
+	 * <p>NOTES: To write the box drawing characters as UTF-8 bytes to a channel out can be {@link java.nio.channels.Channels#newWriter}.</p>
+	 * @param expr The expression to print.
+	 * @param out The output of the printed tree.
+	 * @throws IOException If the output throws it.
+	 * @throws NullPointerException If any of the parameters is null.
+	 */
+	public void print(Node expr, Appendable out)
+		throws IOException, NullPointerException
+	{
+		print(expr, out, PrintLimits.UNLIMITED);
+	}
+
+	/**
+	 * <p>
+	 *     EFFECTS: Prints an expression in tree format within the limits, writing it to out while it is produced.
+	 *     The elided operands are printed as a single last child, like {@code ╰── …(+9832 terms)}, see {@link PrintLimits}.
+	 * </p>
+	 * <p>REQUIREMENTS: The parameters must be non-null.</p>
+	 * @param expr The expression to print.
+	 * @param out The output of the printed tree.
+	 * @param limits The limits of the printed output.
+	 * @throws IOException If the output throws it.
+	 * @throws NullPointerException If any of the parameters is null.
+	 */
+	public void print(Node expr, Appendable out, PrintLimits limits)
+		throws IOException, NullPointerException
+	{
+		Objects.requireNonNull(expr);
+		Objects.requireNonNull(out);
+		Objects.requireNonNull(limits);
+
+		print(expr, new StringBuilder(), "", "", new BoundedAppendable(out, limits.maxChars()), limits, 0);
+	}
+
+	/**
+	 * <p>EFFECTS: Prints a subtree in tree format within the limits, writing it to out, until out is exhausted.</p>
+	 * <p>REQUIREMENTS: The parameters must be non-null, depth must be non-negative.</p>
+	 * <p>MUTABILITY: This method modifies indent, but restores it before returning.</p>
+	 * @param node The root of the subtree.
+	 * @param indent The indentation of the line of the root, shared by all the lines of the parent.
+	 * @param marker The string put after the indentation on the line of the root.
+	 * @param cont The string added to the indentation of the lines of the children.
+	 * @param out The bounded output.
+	 * @param limits The limits of the printed output.
+	 * @param depth The depth of the node.
+	 * @throws IOException If the output throws it.
+	 */
+	private static void print(Node node, StringBuilder indent, String marker, String cont, BoundedAppendable out, PrintLimits limits, int depth)
+		throws IOException
+	{
+		if (out.exhausted()) return;
+		out.append(indent).append(marker).append(node.toString()).append('\n');
+
+		final int length = indent.length();
+		indent.append(cont);
+		if (node instanceof PowNode pow) {
+			if (depth < limits.maxDepth()) print(pow.base(), indent, EXPR, CONT, out, limits, depth + 1);
+			else out.append(indent).append(EXPR).append(BoundedAppendable.ELLIPSIS).append('\n');
+			out.append(indent).append(LAST_EXPR).append(pow.exp().toString()).append('\n');
+		} else if (node instanceof SumNode sum) {
+			printOperands(sum.operands(), "terms", indent, out, limits, depth);
+		} else if (node instanceof MulNode mul) {
+			printOperands(mul.operands(), "factors", indent, out, limits, depth);
+		}
+		indent.setLength(length);
+	}
+
+	/**
+	 * <p>EFFECTS: Prints the operands of a node within the limits, the operands that are not printed are replaced by their number.</p>
+	 * <p>REQUIREMENTS: The parameters must be non-null, depth must be non-negative.</p>
+	 * @param operands The operands to print.
+	 * @param kind The name of the operands, used for the elided ones.
+	 * @param indent The indentation of the lines of the operands.
+	 * @param out The bounded output.
+	 * @param limits The limits of the printed output.
+	 * @param depth The depth of the node of the operands.
+	 * @throws IOException If the output throws it.
+	 */
+	private static void printOperands(List<Node> operands, String kind, StringBuilder indent, BoundedAppendable out, PrintLimits limits, int depth)
+		throws IOException
+	{
+		final int printed = depth < limits.maxDepth() ? Math.min(operands.size(), limits.maxOperands()) : 0;
+		for (int i = 0; i < printed && !out.exhausted(); i++) {
+			final boolean last = i == operands.size() - 1;
+			print(operands.get(i), indent, last ? LAST_EXPR : EXPR, last ? LAST_CONT : CONT, out, limits, depth + 1);
+		}
+		if (printed < operands.size()) {
+			out.append(indent).append(LAST_EXPR)
+				.append(BoundedAppendable.ELLIPSIS + "(+" + (operands.size() - printed) + " " + kind + ")").append('\n');
+		}
 	}
 
 	@Override
 	public String visit(NumberNode node) {
-		return prefix + node.toString() + "\n";
+		return ROOT.visit(node);
 	}
 
 	@Override
 	public String visit(VariableNode node) {
-		return prefix + node.toString() + "\n";
+		return ROOT.visit(node);
 	}
 
 	@Override
 	public String visit(SumNode node) {
-		StringBuilder builder = new StringBuilder();
-		builder.append(prefix).append(node.toString()).append('\n');
-		printOperands(node.operands(), builder);
-		return builder.toString();
+		return ROOT.visit(node);
 	}
 
 	@Override
 	public String visit(MulNode node) {
-		StringBuilder builder = new StringBuilder();
-		builder.append(prefix).append(node.toString()).append('\n');
-		printOperands(node.operands(), builder);
-		return builder.toString();
+		return ROOT.visit(node);
 	}
 
 	@Override
 	public String visit(PowNode node) {
-		StringBuilder builder = new StringBuilder();
-		builder.append(prefix).append(node.toString()).append('\n');
-
-		final String currentPrefix = this.prefix;
-		final String currentChildPrefix = this.childPrefix;
-
-		this.prefix = currentChildPrefix + EXPR;
-		this.childPrefix = currentChildPrefix + CONT;
-		builder.append(node.base().transform(this));
-
-		// Reset the state, as it was before calling this method.
-		// Necessary to uphold the reset requirement.
-		this.prefix = currentPrefix;
-		this.childPrefix = currentChildPrefix;
-
-		builder
-			.append(this.childPrefix)
-			.append(LAST_EXPR)
-			.append(node.exp().toString())
-			.append('\n');
-
-
-		return builder.toString();
+		return ROOT.visit(node);
 	}
 
 	/**
-	 * <p>EFFECTS: print the operands of node in tree fashion and appends the result to the builder.</p>
-	 * <p>REQUIREMENTS: The parameters must be non-null</p>
-	 * @param operands The operands to print.
-	 * @param builder The build to append the result to.
+	 * <p>The printer of a subtree, at a given position of the tree.</p>
+	 * <p>
+	 *     AF: prefix is put in front of the line of the root of the subtree,
+	 *     childPrefix is put in front of the lines of its children.
+	 * </p>
+	 * <p>REQUIREMENTS: prefix and childPrefix must be non-null.</p>
+	 * <p>MUTABILITY: This class is immutable.</p>
+	 * @param prefix The prefix to use to print the current node.
+	 * @param childPrefix The prefix to use to print the child nodes.
 	 */
-	private void printOperands(List<Node> operands, StringBuilder builder) {
-		assert operands != null;
-		assert builder != null;
+	private record Subtree(String prefix, String childPrefix) implements StatelessVisitor<String> {
+		@Override
+		public String visit(NumberNode node) {
+			return prefix + node.toString() + "\n";
+		}
 
-		final String currentPrefix = this.prefix;
-		final String currentChildPrefix = this.childPrefix;
+		@Override
+		public String visit(VariableNode node) {
+			return prefix + node.toString() + "\n";
+		}
 
-		this.prefix = currentChildPrefix + EXPR;
-		this.childPrefix = currentChildPrefix + CONT;
-		for (int i = 0; i < operands.size() - 1; i++) {
-			builder.append(operands.get(i).transform(this));
+		@Override
+		public String visit(SumNode node) {
+			StringBuilder builder = new StringBuilder();
+			builder.append(prefix).append(node.toString()).append('\n');
+			printOperands(node.operands(), builder);
+			return builder.toString();
 		}
 
-		this.prefix = currentChildPrefix + LAST_EXPR;
-		this.childPrefix = currentChildPrefix + LAST_CONT;
-		final Node lastOperand = operands.get(operands.size() - 1);
-		builder.append(lastOperand.transform(this));
+		@Override
+		public String visit(MulNode node) {
+			StringBuilder builder = new StringBuilder();
+			builder.append(prefix).append(node.toString()).append('\n');
+			printOperands(node.operands(), builder);
+			return builder.toString();
+		}
+
+		@Override
+		public String visit(PowNode node) {
+			StringBuilder builder = new StringBuilder();
+			builder.append(prefix).append(node.toString()).append('\n');
+			builder.append(node.base().transform(new Subtree(childPrefix + EXPR, childPrefix + CONT)));
+			builder
+				.append(childPrefix)
+				.append(LAST_EXPR)
+				.append(node.exp().toString())
+				.append('\n');
+
+			return builder.toString();
+		}
 
-		// Reset the state, as it was before calling this method.
-		// Necessary to uphold the reset requirement.
-		this.prefix = currentPrefix;
-		this.childPrefix = currentChildPrefix;
+		/**
+		 * <p>EFFECTS: print the operands of node in tree fashion and appends the result to the builder.</p>
+		 * <p>REQUIREMENTS: The parameters must be non-null</p>
+		 * <p>NOTES: The operands are printed with {@link ParallelTransform#transformAll}, so they can be printed in parallel.</p>
+		 * @param operands The operands to print.
+		 * @param builder The build to append the result to.
+		 */
+		private void printOperands(List<Node> operands, StringBuilder builder) {
+			assert operands != null;
+			assert builder != null;
+
+			final int last = operands.size() - 1;
+			Subtree operand = new Subtree(childPrefix + EXPR, childPrefix + CONT);
+			for (String printed : ParallelTransform.transformAll(operands.subList(0, last), operand))
+				builder.append(printed);
+
+			Subtree lastOperand = new Subtree(childPrefix + LAST_EXPR, childPrefix + LAST_CONT);
+			builder.append(operands.get(last).transform(lastOperand));
+		}
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,131 @@
+package luppolo.transform;
+
+import luppolo.node.*;
+
+import java.util.*;
+
+/**
+ * <p>
+ *     A cache that computes higher order and mixed partial derivatives incrementally.
+ *     The derivative with respect to a sequence of variables is computed by differentiating (using {@link Differentiate})
+ *     and simplifying (using {@link Simplify}) the cached derivative of the lower order.
+ * </p>
+ * <p>
+ *     Because the order of differentiation of the mixed partial derivatives doesn't matter, the variables are sorted
+ *     before looking up the cache. So ∂²f/∂x∂y and ∂²f/∂y∂x are computed once, and both reuse ∂f/∂x.
+ * </p>
+ * <p>
+ *     AF: derivatives maps each pair (expression, sorted list of variables) to the simplified derivative of the expression
+ *     with respect to all the variables in the list, differentiators holds a {@link Differentiate} for each variable.
+ * <p>
+ *     REQUIREMENTS:
+ *     <ul>
+ *         <li>derivatives and differentiators must be non-null.</li>
+ *         <li>The variables in the keys of derivatives must be sorted.</li>
+ *         <li>The value for the key (e, [v_1, ..., v_n]) must be the derivative of e with respect to v_1, ..., v_n.</li>
+ *     </ul>
+ * <p>MUTABILITY: This class is mutable, by means of adding the computed derivatives to the cache.</p>
+ */
+public class DerivativeCache {
+	/** The simplifier applied after each differentiation. */
+	private static final Simplify SIMPLIFY = new Simplify();
+
+	/** The cached derivatives. */
+	private final Map<Key, Node> derivatives;
+	/** The differentiators for each variable. */
+	private final Map<String, Differentiate> differentiators;
+
+	/**
+	 * The key of the cache.
+	 * @param expr The differentiated expression.
+	 * @param variables The sorted list of variables.
+	 */
+	private record Key(Node expr, List<String> variables) {}
+
+	/** <p>EFFECTS: Constructs a new empty {@link DerivativeCache}.</p> */
+	public DerivativeCache() {
+		this.derivatives = new HashMap<>();
+		this.differentiators = new HashMap<>();
+	}
+
+	/**
+	 * <p>EFFECTS: Computes the n-th order derivative of expr with respect to variable.</p>
+	 * <p>
+	 *     REQUIREMENTS:
+	 *     <ul>
+	 *         <li>The parameters must be non-null.</li>
+	 *         <li>order must be non-negative.</li>
+	 *         <li>variable must be not empty and contain only upper or lowercase letters.</li>
+	 *     </ul>
+	 * <p>MUTABILITY: This method adds the computed derivatives to the cache.</p>
+	 * @param expr The expression to differentiate.
+	 * @param variable The variable with respect to differentiate.
+	 * @param order The order of the derivative, if zero expr is returned.
+	 * @return The simplified derivative.
+	 * @throws IllegalArgumentException If order is negative, the variable is invalid, or a derivative cannot be simplified.
+	 * @throws NullPointerException If any of the parameters is null.
+	 */
+	public Node derivative(Node expr, String variable, int order)
+		throws IllegalArgumentException, NullPointerException
+	{
+		Objects.requireNonNull(variable);
+		if (order < 0)
+			throw new IllegalArgumentException("The order of a derivative cannot be negative");
+		return derivative(expr, Collections.nCopies(order, variable));
+	}
+
+	/**
+	 * <p>EFFECTS: Computes the mixed partial derivative of expr with respect to all the variables.</p>
+	 * <p>
+	 *     REQUIREMENTS:
+	 *     <ul>
+	 *         <li>The parameters must be non-null.</li>
+	 *         <li>variables must not contain a null element.</li>
+	 *         <li>Each variable must be not empty and contain only upper or lowercase letters.</li>
+	 *     </ul>
+	 * <p>MUTABILITY: This method adds the computed derivatives to the cache.</p>
+	 * @param expr The expression to differentiate.
+	 * @param variables The variables with respect to differentiate, a variable is repeated for higher orders.
+	 *                  The order of the variables is irrelevant, if empty expr is returned.
+	 * @return The simplified derivative.
+	 * @throws IllegalArgumentException If a variable is invalid, or a derivative cannot be simplified.
+	 * @throws NullPointerException If any of the parameters is null.
+	 */
+	public Node derivative(Node expr, List<String> variables)
+		throws IllegalArgumentException, NullPointerException
+	{
+		Objects.requireNonNull(expr);
+		Objects.requireNonNull(variables);
+		for (String variable : variables) Objects.requireNonNull(variable);
+
+		List<String> sorted = new ArrayList<>(variables);
+		Collections.sort(sorted);
+
+		// Find the longest prefix of the variables that has already been computed
+		int computed = sorted.size();
+		Node result = null;
+		while (computed > 0) {
+			result = derivatives.get(new Key(expr, List.copyOf(sorted.subList(0, computed))));
+			if (result != null) break;
+			computed--;
+		}
+		if (computed == 0) result = expr;
+
+		// Compute the remaining orders, caching every intermediate derivative
+		for (int i = computed; i < sorted.size(); i++) {
+			Differentiate differentiate = differentiators.computeIfAbsent(sorted.get(i), Differentiate::new);
+			result = result.transform(differentiate).transform(SIMPLIFY);
+			derivatives.put(new Key(expr, List.copyOf(sorted.subList(0, i + 1))), result);
+		}
+
+		return result;
+	}
+
+	/**
+	 * <p>EFFECTS: Removes all the derivatives from the cache.</p>
+	 * <p>MUTABILITY: This method empties the cache.</p>
+	 */
+	public void clear() {
+		derivatives.clear();
+	}
+}
@@ -17,9 +17,9 @@ import java.util.Objects;
  *     <li>see {@link Visitor} for the additional requirements.</li>
  * </ul>
  *
- * <p>MUTABILITY: This class is immutable. respecting the mutability requirement of {@link Visitor}.</p>
+ * <p>MUTABILITY: This class is immutable. respecting the mutability requirement of {@link StatelessVisitor}.</p>
  */
-public class Differentiate implements Visitor<Node> {
+public class Differentiate implements StatelessVisitor<Node> {
 	/** The variable with respect to compute the derivative. */
 	public final String variable;
 
@@ -60,8 +60,7 @@ public class Differentiate implements Visitor<Node> {
 	@Override
 	public Node visit(SumNode node) {
 		List<Node> derivatives = new ArrayList<>(node.operands().size());
-		for (Node expr : node.operands()) {
-			Node derivative = expr.transform(this);
+		for (Node derivative : ParallelTransform.transformAll(node.operands(), this)) {
 			// Don't add zero terms
 			if (!(derivative instanceof NumberNode num) || !num.value().equals(Rational.ZERO))
 				derivatives.add(derivative);
@@ -83,8 +82,11 @@ public class Differentiate implements Visitor<Node> {
 		List<Node> derivatives = new ArrayList<>();
 
 		// Split constant factors, from variable factors
-		for (Node expr : node.operands()) {
-			Node derivative = expr.transform(this);
+		List<Node> operands = node.operands();
+		List<Node> operandDerivatives = ParallelTransform.transformAll(operands, this);
+		for (int i = 0; i < operands.size(); i++) {
+			Node expr = operands.get(i);
+			Node derivative = operandDerivatives.get(i);
 
 			if (derivative instanceof NumberNode numDerivative && numDerivative.value().equals(Rational.ZERO)) {
 				// If the derivative is zero the factor is constant.
@@ -10,9 +10,9 @@ import java.util.*;
  *     A transformer that expands a {@link Node},
  *     The code in this class implements all the simplification described in the project description.
  * <p>REQUIREMENTS: see {@link Visitor} for the requirements.</p>
- * <p>MUTABILITY: This class has no state and it cannot mutate, respecting the mutability requirements of {@link Visitor}.</p>
+ * <p>MUTABILITY: This class has no state and it cannot mutate, respecting the mutability requirements of {@link StatelessVisitor}.</p>
  */
-public class Expand implements Visitor<Node> {
+public class Expand implements StatelessVisitor<Node> {
 	@Override
 	public Node visit(NumberNode node) {
 		return node;
@@ -25,11 +25,8 @@ public class Expand implements Visitor<Node> {
 
 	@Override
 	public Node visit(SumNode node) {
-		List<Node> expanded = new ArrayList<>(node.operands().size());
 		// Expand all the sub nodes
-		for (Node operand : node.operands())
-			expanded.add(operand.transform(this));
-		return new SumNode(expanded);
+		return new SumNode(ParallelTransform.transformAll(node.operands(), this));
 	}
 
 	@Override
@@ -63,24 +60,27 @@ public class Expand implements Visitor<Node> {
 		assert lhs != null;
 		assert rhs != null;
 
-		// Expand recursively the left hand side
-		lhs = lhs.transform(this);
+		// Expand recursively the two sides
+		List<Node> expanded = ParallelTransform.transformAll(List.of(lhs, rhs), this);
+		lhs = expanded.get(0);
+		rhs = expanded.get(1);
+
 		List<Node> lhsTerms;
 		// If the node is a sum distributivity can be applied
 		if (lhs instanceof SumNode lhsSum) lhsTerms = lhsSum.operands();
 		else lhsTerms = List.of(lhs);
 
-		// Expand recursively the right hand side
-		rhs = rhs.transform(this);
 		List<Node> rhsTerms;
 		// If the node is a sum distributivity can be applied
 		if (rhs instanceof SumNode rhsSum) rhsTerms = rhsSum.operands();
 		else rhsTerms = List.of(rhs);
 
-		List<Node> terms = new ArrayList<>(lhsTerms.size() * rhsTerms.size());
-		for (Node lterm : lhsTerms)
-			for (Node rterm : rhsTerms)
-				terms.add(new MulNode(lterm, rterm));
+		// The term i is the product of the term i / columns of lhs, and of the term i % columns of rhs
+		final int columns = rhsTerms.size();
+		List<Node> terms = ParallelTransform.generateTerms(
+			Math.multiplyExact(lhsTerms.size(), columns),
+			i -> new MulNode(lhsTerms.get(i / columns), rhsTerms.get(i % columns))
+		);
 
 		if (terms.size() == 1)
 			return terms.get(0);
@@ -107,33 +107,27 @@ public class Expand implements Visitor<Node> {
 			return base;
 
 		int repetitions = (int)Math.abs(node.exp().num);
-		final List<Node> expandedTerms = new ArrayList<>();
+		final List<Node> expandedTerms;
 		if (base instanceof SumNode sumBase) {
 			// Compute the all the permutations with repetitions
 			List<Node> terms = sumBase.operands();
-
-			int[] indices = new int[repetitions];
-			int pos = repetitions - 1;
-			Node[] result = new Node[repetitions];
-			Arrays.fill(result, terms.get(0));
-
-			outer: for (;;) {
-				expandedTerms.add(makeTerm(result));
-				indices[pos]++;
-				while (indices[pos] >= terms.size()) {
-					indices[pos] = 0;
-					result[pos] = terms.get(0);
-					if (pos-- == 0) break outer;
-					indices[pos]++;
+			int count = 1;
+			for (int i = 0; i < repetitions; i++) count = Math.multiplyExact(count, terms.size());
+
+			// The digits of the index in base terms.size() are the indices of the terms of the permutation
+			expandedTerms = ParallelTransform.generateTerms(count, index -> {
+				Node[] result = new Node[repetitions];
+				for (int pos = repetitions - 1; pos >= 0; pos--) {
+					result[pos] = terms.get(index % terms.size());
+					index /= terms.size();
 				}
-				result[pos] = terms.get(indices[pos]);
-				pos = repetitions - 1;
-			}
+				return makeTerm(result);
+			});
 		}
 		else if (repetitions > 1) {
-			expandedTerms.add(new MulNode(Collections.nCopies(repetitions, base)));
+			expandedTerms = List.of(new MulNode(Collections.nCopies(repetitions, base)));
 		} else {
-			expandedTerms.add(base);
+			expandedTerms = List.of(base);
 		}
 
 		Node expandedBase;
@@ -164,7 +158,7 @@ public class Expand implements Visitor<Node> {
 	 * @param terms The terms to build the {@link MulNode}
 	 * @return An expression of binary {@link MulNode}s containing the provided terms.
 	 */
-	private Node makeTerm(Node[] terms) {
+	static Node makeTerm(Node[] terms) {
 		assert terms != null;
 		assert terms.length > 0;
 
@@ -0,0 +1,246 @@
+package luppolo.transform;
+
+import luppolo.math.Rational;
+import luppolo.node.*;
+
+import java.util.*;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * <p>
+ *     A visitor that enumerates lazily the terms of the expansion of a {@link Node}:
+ *     the operands of the {@link SumNode} returned by {@link Expand}, or the expanded node itself if it is not a sum.
+ * </p>
+ * <p>
+ *     The combinations of the terms of the products and of the powers are generated one at a time,
+ *     so the memory used doesn't depend on the number of terms, and the terms can be consumed
+ *     (e.g. printed by {@link luppolo.print.ExpansionPrinter}) before the whole expansion is computed.
+ *     The terms are generated in the order of the combinations, not in the order of the operands of a {@link SumNode}.
+ * </p>
+ * <p>
+ *     NOTES: The operands of a sum, the bases with a negative or non integer exponent, and the terms of the products
+ *     that contain a sum are expanded with {@link Expand} as a single term.
+ *     The errors of {@link Expand} (like computing 0^0) are thrown when the terms are generated.
+ * </p>
+ * <p>REQUIREMENTS: see {@link Visitor} for the requirements.</p>
+ * <p>MUTABILITY: This class has no state and it cannot mutate, respecting the mutability requirements of {@link Visitor}.</p>
+ */
+public class ExpandTerms implements Visitor<Iterator<Node>> {
+	/** The expansion of the single terms. */
+	private static final Expand EXPAND = new Expand();
+
+	/** Constructor for {@link ExpandTerms} */
+	public ExpandTerms() {}
+
+	/**
+	 * <p>EFFECTS: Returns a sequential stream of the terms of the expansion of an expression.</p>
+	 * @param expr The expression.
+	 * @return The stream of the terms.
+	 * @throws NullPointerException If expr is null.
+	 */
+	public static Stream<Node> stream(Node expr)
+		throws NullPointerException
+	{
+		Iterator<Node> terms = expr.transform(new ExpandTerms());
+		return StreamSupport.stream(Spliterators.spliteratorUnknownSize(terms, Spliterator.ORDERED | Spliterator.NONNULL), false);
+	}
+
+	@Override
+	public Iterator<Node> visit(NumberNode node) {
+		return List.<Node>of(node).iterator();
+	}
+
+	@Override
+	public Iterator<Node> visit(VariableNode node) {
+		return List.<Node>of(node).iterator();
+	}
+
+	@Override
+	public Iterator<Node> visit(SumNode node) {
+		// The expanded operands are not merged in the expanded sum
+		return map(node.operands().iterator(), operand -> operand.transform(EXPAND));
+	}
+
+	@Override
+	public Iterator<Node> visit(MulNode node) {
+		// Like Expand the products are expanded in pairs, and the partial product is expanded again
+		List<Node> operands = node.operands();
+		Iterator<Node> result = new Product(operands.get(0).transform(this), operands.get(1));
+		for (int i = 2; i < operands.size(); i++)
+			result = new Product(expandAgain(result), operands.get(i));
+		return result;
+	}
+
+	@Override
+	public Iterator<Node> visit(PowNode node) {
+		Rational exp = node.exp();
+		// The powers that are not expanded in a sum are expanded as a single term
+		if (!exp.isInteger() || exp.compareTo(Rational.ONE) < 0)
+			return List.of(node.transform(EXPAND)).iterator();
+
+		// b^1 = b
+		if (exp.equals(Rational.ONE)) return node.base().transform(this);
+
+		int repetitions = (int) Math.abs(exp.num);
+		Iterator<Node> base = node.base().transform(this);
+		Node first = base.next();
+		if (base.hasNext()) return new Power(node.base(), repetitions);
+		if (repetitions > 1) return List.<Node>of(new MulNode(Collections.nCopies(repetitions, first))).iterator();
+		return List.of(first).iterator();
+	}
+
+	/**
+	 * <p>EFFECTS: Returns the terms of the expansion of an expanded expression, given its terms.</p>
+	 * <p>REQUIREMENTS: terms must be non-null and must not be empty.</p>
+	 * @param terms The terms of the expanded expression.
+	 * @return The terms of its expansion.
+	 */
+	private Iterator<Node> expandAgain(Iterator<Node> terms) {
+		Node first = terms.next();
+		// A single term is not a sum, so it is expanded on its own
+		if (!terms.hasNext()) return first.transform(this);
+
+		Node second = terms.next();
+		Iterator<Node> head = List.of(first, second).iterator();
+		return map(new Iterator<>() {
+			@Override
+			public boolean hasNext() {
+				return head.hasNext() || terms.hasNext();
+			}
+
+			@Override
+			public Node next() {
+				return head.hasNext() ? head.next() : terms.next();
+			}
+		}, term -> term.transform(EXPAND));
+	}
+
+	/**
+	 * <p>EFFECTS: Returns an iterator that applies a function to the elements of another iterator, when they are requested.</p>
+	 * @param iterator The iterator.
+	 * @param function The function.
+	 * @return The mapped iterator.
+	 */
+	private static Iterator<Node> map(Iterator<Node> iterator, UnaryOperator<Node> function) {
+		return new Iterator<>() {
+			@Override
+			public boolean hasNext() {
+				return iterator.hasNext();
+			}
+
+			@Override
+			public Node next() {
+				return function.apply(iterator.next());
+			}
+		};
+	}
+
+	/**
+	 * <p>The terms of the expansion of a product between two nodes, every term of the left one times every term of the right one.</p>
+	 * <p>
+	 *     AF: lhs are the remaining terms of the left node, rhs is the right node,
+	 *     current is the current term of the left node and rhsTerms are its remaining products with the terms of rhs.
+	 * <p>REQUIREMENTS: lhs and rhs must be non-null, rhsTerms is null only before the first term.</p>
+	 * <p>MUTABILITY: This class is mutable.</p>
+	 */
+	private class Product implements Iterator<Node> {
+		/** The remaining terms of the left node. */
+		private final Iterator<Node> lhs;
+		/** The right node, its terms are enumerated again for each term of the left node. */
+		private final Node rhs;
+		/** The current term of the left node. */
+		private Node current;
+		/** The remaining terms of the right node, for the current term of the left node. */
+		private Iterator<Node> rhsTerms;
+
+		/**
+		 * <p>EFFECTS: Constructs a new {@link Product}.</p>
+		 * @param lhs The terms of the left node.
+		 * @param rhs The right node.
+		 */
+		Product(Iterator<Node> lhs, Node rhs) {
+			this.lhs = lhs;
+			this.rhs = rhs;
+		}
+
+		@Override
+		public boolean hasNext() {
+			return (rhsTerms != null && rhsTerms.hasNext()) || lhs.hasNext();
+		}
+
+		@Override
+		public Node next() {
+			if (rhsTerms == null || !rhsTerms.hasNext()) {
+				current = lhs.next();
+				rhsTerms = rhs.transform(ExpandTerms.this);
+			}
+			return new MulNode(current, rhsTerms.next());
+		}
+	}
+
+	/**
+	 * <p>
+	 *     The terms of the expansion of a power of a sum, all the sequences of terms of the base
+	 *     with the length of the exponent, enumerated like an odometer.
+	 * </p>
+	 * <p>
+	 *     AF: base is the base of the power, terms[i] is the i-th term of the current sequence
+	 *     and iterators[i] are the terms of the base that follow it, done is true if all the sequences were returned.
+	 * <p>REQUIREMENTS: base must be non-null, terms and iterators must be non-null and have the same length.</p>
+	 * <p>MUTABILITY: This class is mutable.</p>
+	 */
+	private class Power implements Iterator<Node> {
+		/** The base of the power. */
+		private final Node base;
+		/** The current sequence of terms. */
+		private final Node[] terms;
+		/** The remaining terms of the base, for each position of the sequence. */
+		private final List<Iterator<Node>> iterators;
+		/** Whether all the sequences were returned. */
+		private boolean done;
+
+		/**
+		 * <p>EFFECTS: Constructs a new {@link Power}.</p>
+		 * <p>REQUIREMENTS: repetitions must be positive, the expansion of base must be a sum.</p>
+		 * @param base The base of the power.
+		 * @param repetitions The exponent.
+		 */
+		Power(Node base, int repetitions) {
+			this.base = base;
+			this.terms = new Node[repetitions];
+			this.iterators = new ArrayList<>(repetitions);
+			for (int i = 0; i < repetitions; i++) {
+				iterators.add(base.transform(ExpandTerms.this));
+				terms[i] = iterators.get(i).next();
+			}
+		}
+
+		@Override
+		public boolean hasNext() {
+			return !done;
+		}
+
+		@Override
+		public Node next() {
+			if (done) throw new NoSuchElementException();
+			Node term = Expand.makeTerm(terms);
+
+			// Advance the last position, restarting the exhausted ones
+			for (int pos = terms.length - 1; ; pos--) {
+				if (pos < 0) {
+					done = true;
+					break;
+				}
+				if (iterators.get(pos).hasNext()) {
+					terms[pos] = iterators.get(pos).next();
+					break;
+				}
+				iterators.set(pos, base.transform(ExpandTerms.this));
+				terms[pos] = iterators.get(pos).next();
+			}
+			return term;
+		}
+	}
+}
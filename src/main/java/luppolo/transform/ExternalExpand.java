@@ -0,0 +1,320 @@
+package luppolo.transform;
+
+import luppolo.math.Monomial;
+import luppolo.math.Rational;
+import luppolo.math.TermCollector;
+import luppolo.node.*;
+
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * <p>
+ *     A transformer that expands and simplifies a {@link Node}, with the same result of {@link Expand} followed by {@link Simplify},
+ *     for polynomials whose intermediate terms don't fit in memory.
+ * </p>
+ * <p>
+ *     The terms of the expansion of a polynomial are generated one at a time, and combined by a {@link TermCollector}
+ *     that spills them to temporary files when they exceed the memory budget,
+ *     so only the final combined terms are kept in memory to build the result.
+ *     The expressions that are not supported (see {@link ModularExpand}) are expanded and simplified with {@link Expand} and {@link Simplify}.
+ * </p>
+ * <p>AF: budget is the memory budget of the buffered terms in bytes, directory is the directory of the temporary files.</p>
+ * <p>REQUIREMENTS: budget must be non-negative, directory must be non-null, see {@link Visitor} for the additional requirements.</p>
+ * <p>MUTABILITY: This class is immutable, respecting the mutability requirements of {@link Visitor}.</p>
+ * <p>
+ *     NOTES: Unlike {@link Rational} the coefficients are checked for overflows,
+ *     and the expressions whose coefficients overflow fall back to {@link Expand} and {@link Simplify}.
+ * </p>
+ */
+public class ExternalExpand implements Visitor<Node> {
+	/** The {@link Expand} transformer instance. */
+	private static final Expand EXPAND = new Expand();
+	/** The {@link Simplify} transformer instance. */
+	private static final Simplify SIMPLIFY = new Simplify();
+
+	/** The memory budget of the buffered terms, in bytes. */
+	private final long budget;
+	/** The directory of the temporary files. */
+	private final Path directory;
+
+	/**
+	 * <p>EFFECTS: Constructs a new {@link ExternalExpand}, with the default budget and temporary directory.</p>
+	 */
+	public ExternalExpand() {
+		this(TermCollector.DEFAULT_BUDGET);
+	}
+
+	/**
+	 * <p>EFFECTS: Constructs a new {@link ExternalExpand}, that uses the default temporary directory.</p>
+	 * @param budget The memory budget of the buffered terms, in bytes.
+	 * @throws IllegalArgumentException If budget is negative.
+	 */
+	public ExternalExpand(long budget)
+		throws IllegalArgumentException
+	{
+		this(budget, Path.of(System.getProperty("java.io.tmpdir")));
+	}
+
+	/**
+	 * <p>EFFECTS: Constructs a new {@link ExternalExpand}.</p>
+	 * @param budget The memory budget of the buffered terms, in bytes.
+	 * @param directory The directory of the temporary files.
+	 * @throws IllegalArgumentException If budget is negative.
+	 * @throws NullPointerException If directory is null.
+	 */
+	public ExternalExpand(long budget, Path directory)
+		throws IllegalArgumentException, NullPointerException
+	{
+		if (budget < 0) throw new IllegalArgumentException("The memory budget cannot be negative");
+		this.budget = budget;
+		this.directory = Objects.requireNonNull(directory);
+	}
+
+	@Override
+	public Node visit(NumberNode node) {
+		return expand(node);
+	}
+
+	@Override
+	public Node visit(VariableNode node) {
+		return expand(node);
+	}
+
+	@Override
+	public Node visit(SumNode node) {
+		return expand(node);
+	}
+
+	@Override
+	public Node visit(MulNode node) {
+		return expand(node);
+	}
+
+	@Override
+	public Node visit(PowNode node)
+		throws IllegalArgumentException
+	{
+		return expand(node);
+	}
+
+	/**
+	 * <p>EFFECTS: Expands and simplifies an expression, collecting its terms if it is supported.</p>
+	 * @param node The expression.
+	 * @return The expanded and simplified expression.
+	 * @throws IllegalArgumentException If the expression cannot be simplified, see {@link Simplify}.
+	 * @throws UncheckedIOException If the temporary files cannot be written or read.
+	 */
+	private Node expand(Node node)
+		throws IllegalArgumentException, UncheckedIOException
+	{
+		ModularExpand.Analysis analysis = new ModularExpand.Analysis(node);
+		if (analysis.supported()) {
+			try (TermCollector collector = new TermCollector(analysis.variables().size(), budget, directory)) {
+				analysis.prepare();
+				Iterator<TermCollector.Term> generated = new Terms(analysis).terms(analysis.root());
+				while (generated.hasNext()) {
+					TermCollector.Term term = generated.next();
+					collector.add(term.monomial(), term.coefficient());
+				}
+
+				List<Node> terms = new ArrayList<>();
+				Rational constant = Rational.ZERO;
+				for (Iterator<TermCollector.Term> combined = collector.terms(); combined.hasNext(); ) {
+					TermCollector.Term term = combined.next();
+					if (term.monomial().degree() == 0) constant = term.coefficient();
+					else terms.add(analysis.term(term.coefficient(), term.monomial()));
+				}
+				return analysis.build(terms, constant);
+			} catch (IllegalArgumentException | ArithmeticException e) {
+				// The slow path reports the same errors of Expand and Simplify
+			}
+		}
+		return node.transform(EXPAND).transform(SIMPLIFY);
+	}
+
+	/**
+	 * <p>
+	 *     The lazy generation of the terms of the expansion of a supported expression,
+	 *     every combination of the terms of the products and of the powers is generated when it is requested.
+	 * </p>
+	 * <p>AF: analysis is the prepared expression, one is the constant monomial.</p>
+	 * <p>REQUIREMENTS: The expression must be supported, and its constants must be computed.</p>
+	 * <p>MUTABILITY: This class is immutable.</p>
+	 */
+	private static class Terms {
+		/** The prepared expression. */
+		private final ModularExpand.Analysis analysis;
+		/** The constant monomial. */
+		private final Monomial one;
+
+		/**
+		 * <p>EFFECTS: Constructs a new {@link Terms}.</p>
+		 * @param analysis The prepared expression.
+		 */
+		Terms(ModularExpand.Analysis analysis) {
+			this.analysis = analysis;
+			this.one = Monomial.one(analysis.variables().size());
+		}
+
+		/**
+		 * <p>EFFECTS: Returns the terms of the expansion of a node, the like terms are not combined.</p>
+		 * @param node The node, the root of the analysis or one of its descendants.
+		 * @return The terms, the iterator throws {@link ArithmeticException} if a coefficient or an exponent overflows.
+		 */
+		Iterator<TermCollector.Term> terms(Node node) {
+			Rational value = analysis.constant(node);
+			if (value != null) {
+				if (value.equals(Rational.ZERO)) return Collections.emptyIterator();
+				return List.of(new TermCollector.Term(one, value)).iterator();
+			}
+
+			if (node instanceof VariableNode variable) {
+				int index = Collections.binarySearch(analysis.variables(), variable.name());
+				return List.of(new TermCollector.Term(Monomial.variable(index, one.variables()), Rational.ONE)).iterator();
+			} else if (node instanceof SumNode sum) {
+				Iterator<Node> operands = sum.operands().iterator();
+				return new Iterator<>() {
+					/** The remaining terms of the current operand. */
+					private Iterator<TermCollector.Term> current = Collections.emptyIterator();
+
+					@Override
+					public boolean hasNext() {
+						while (!current.hasNext() && operands.hasNext()) current = terms(operands.next());
+						return current.hasNext();
+					}
+
+					@Override
+					public TermCollector.Term next() {
+						if (!hasNext()) throw new NoSuchElementException();
+						return current.next();
+					}
+				};
+			} else if (node instanceof MulNode mul) {
+				List<Node> factors = mul.operands();
+				return new Product(factors.toArray(new Node[0]));
+			} else {
+				PowNode pow = (PowNode) node;
+				// Expand replaces b^0 with 1 without looking at the base
+				if (pow.exp().equals(Rational.ZERO)) return List.of(new TermCollector.Term(one, Rational.ONE)).iterator();
+
+				// The power of a single term is a single term
+				Iterator<TermCollector.Term> base = terms(pow.base());
+				if (!base.hasNext()) return base;
+				TermCollector.Term first = base.next();
+				if (!base.hasNext()) return List.of(power(first, pow.exp().num)).iterator();
+
+				Node[] factors = new Node[Math.toIntExact(pow.exp().num)];
+				Arrays.fill(factors, pow.base());
+				return new Product(factors);
+			}
+		}
+
+		/**
+		 * <p>EFFECTS: Computes the power of a term, by repeated squaring.</p>
+		 * @param term The term.
+		 * @param exp The positive exponent.
+		 * @return The power.
+		 * @throws ArithmeticException If the coefficient or an exponent overflows.
+		 */
+		private static TermCollector.Term power(TermCollector.Term term, long exp)
+			throws ArithmeticException
+		{
+			Rational base = term.coefficient();
+			Rational coefficient = Rational.ONE;
+			for (long e = exp; ; base = base.mulExact(base)) {
+				if (e % 2 == 1) coefficient = coefficient.mulExact(base);
+				e /= 2;
+				if (e == 0) break;
+			}
+			return new TermCollector.Term(term.monomial().pow(exp), coefficient);
+		}
+
+		/**
+		 * <p>The terms of the expansion of a product, all the products of a term of each factor, enumerated like an odometer.</p>
+		 * <p>
+		 *     AF: factors are the factors of the product, iterators[i] are the remaining terms of factors[i]
+		 *     for the current terms of the previous factors, terms[i] is the current term of factors[i],
+		 *     next is the next product or null if all the products were returned.
+		 * <p>REQUIREMENTS: The arrays must be non-null and have the same length.</p>
+		 * <p>MUTABILITY: This class is mutable.</p>
+		 */
+		private class Product implements Iterator<TermCollector.Term> {
+			/** The factors of the product. */
+			private final Node[] factors;
+			/** The remaining terms of each factor. */
+			private final List<Iterator<TermCollector.Term>> iterators;
+			/** The current term of each factor. */
+			private final TermCollector.Term[] terms;
+			/** The next product. */
+			private TermCollector.Term next;
+
+			/**
+			 * <p>EFFECTS: Constructs a new {@link Product}.</p>
+			 * <p>REQUIREMENTS: factors must not be empty.</p>
+			 * @param factors The factors of the product.
+			 * @throws ArithmeticException If a coefficient or an exponent overflows.
+			 */
+			Product(Node[] factors)
+				throws ArithmeticException
+			{
+				this.factors = factors;
+				this.iterators = new ArrayList<>(factors.length);
+				this.terms = new TermCollector.Term[factors.length];
+				for (int i = 0; i < factors.length; i++) {
+					iterators.add(terms(factors[i]));
+					if (!iterators.get(i).hasNext()) return;
+					terms[i] = iterators.get(i).next();
+				}
+				this.next = product();
+			}
+
+			/**
+			 * <p>EFFECTS: Computes the product of the current terms.</p>
+			 * @return The product.
+			 * @throws ArithmeticException If a coefficient or an exponent overflows.
+			 */
+			private TermCollector.Term product()
+				throws ArithmeticException
+			{
+				Monomial monomial = terms[0].monomial();
+				Rational coefficient = terms[0].coefficient();
+				for (int i = 1; i < terms.length; i++) {
+					monomial = monomial.mul(terms[i].monomial());
+					coefficient = coefficient.mulExact(terms[i].coefficient());
+				}
+				return new TermCollector.Term(monomial, coefficient);
+			}
+
+			@Override
+			public boolean hasNext() {
+				return next != null;
+			}
+
+			@Override
+			public TermCollector.Term next()
+				throws NoSuchElementException, ArithmeticException
+			{
+				if (next == null) throw new NoSuchElementException();
+				TermCollector.Term product = next;
+
+				// Advance the last factor, restarting the exhausted ones
+				for (int pos = terms.length - 1; ; pos--) {
+					if (pos < 0) {
+						next = null;
+						return product;
+					}
+					if (iterators.get(pos).hasNext()) {
+						terms[pos] = iterators.get(pos).next();
+						break;
+					}
+					iterators.set(pos, terms(factors[pos]));
+					terms[pos] = iterators.get(pos).next();
+				}
+				next = product();
+				return product;
+			}
+		}
+	}
+}
@@ -0,0 +1,982 @@
+package luppolo.transform;
+
+import luppolo.math.DensePolynomial;
+import luppolo.math.Modular;
+import luppolo.math.Monomial;
+import luppolo.math.Rational;
+import luppolo.math.SparseInterpolation;
+import luppolo.math.SparsePolynomial;
+import luppolo.node.*;
+
+import java.math.BigInteger;
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.IntStream;
+
+/**
+ * <p>
+ *     A transformer that expands and simplifies a {@link Node}, with the same result of {@link Expand} followed by {@link Simplify}.
+ * </p>
+ * <p>
+ *     When the expression is a polynomial, the expansion is computed on polynomials whose coefficients are reduced modulo
+ *     several primes less than 2^31, one prime per core, using only long arithmetic.
+ *     The exact rational coefficients are then rebuilt with Chinese remaindering and rational reconstruction,
+ *     so the size of the intermediate coefficients never grows, and the repeated terms are merged as soon as they are generated.
+ *     The expressions that are not supported (like a non integer exponent, or a negative exponent of a non constant base)
+ *     are expanded and simplified with {@link Expand} and {@link Simplify}.
+ * </p>
+ * <p>
+ *     The polynomials modulo each prime are computed with the {@link Strategy} chosen at construction:
+ *     multiplying the polynomials of the subexpressions, or interpolating the final polynomial from the values of the expression,
+ *     which avoids the intermediate terms of the products that cancel out.
+ *     The products of polynomials in a single variable are computed on dense arrays of coefficients,
+ *     with the number theoretic transform modulo primes that support it, see {@link DensePolynomial}.
+ * </p>
+ * <p>AF: strategy is the strategy used to compute the polynomials modulo each prime.</p>
+ * <p>REQUIREMENTS: strategy must be non-null, see {@link Visitor} for the additional requirements.</p>
+ * <p>MUTABILITY: This class is immutable, respecting the mutability requirements of {@link Visitor}.</p>
+ * <p>
+ *     NOTES: Since {@link Simplify} is not idempotent, the modular expansion is used only when it is known to produce
+ *     exactly the same expression: e.g. the product of a sum that directly contains another sum is not distributed by {@link Expand},
+ *     so an expression like (a + (b + c)) * d always falls back to {@link Expand} and {@link Simplify}.
+ * </p>
+ * <p>
+ *     NOTES: Like {@link Rational} the result is exact only if the coefficients fit in a long,
+ *     the coefficients that don't fit fall back to {@link Expand} and {@link Simplify}, that don't check for overflows.
+ * </p>
+ */
+public class ModularExpand implements Visitor<Node> {
+	/** The {@link Expand} transformer instance. */
+	private static final Expand EXPAND = new Expand();
+	/** The {@link Simplify} transformer instance. */
+	private static final Simplify SIMPLIFY = new Simplify();
+	/** The number of primes, their product is greater than 2^127 so the reconstruction of the rationals is unique. */
+	private static final int PRIMES = 5;
+
+	/** The strategy used to compute the polynomials modulo each prime. */
+	private final Strategy strategy;
+
+	/**
+	 * <p>EFFECTS: Constructs a new {@link ModularExpand} that uses the {@link Strategy#PRODUCT} strategy.</p>
+	 */
+	public ModularExpand() {
+		this(Strategy.PRODUCT);
+	}
+
+	/**
+	 * <p>EFFECTS: Constructs a new {@link ModularExpand}.</p>
+	 * <p>REQUIREMENTS: strategy must be non-null.</p>
+	 * @param strategy The strategy used to compute the polynomials modulo each prime.
+	 * @throws NullPointerException If strategy is null.
+	 */
+	public ModularExpand(Strategy strategy)
+		throws NullPointerException
+	{
+		this.strategy = Objects.requireNonNull(strategy);
+	}
+
+	/** The strategies to compute the polynomial of an expression modulo a prime. */
+	public enum Strategy {
+		/** Expand the subexpressions bottom up, multiplying and adding their polynomials. */
+		PRODUCT,
+		/**
+		 * Interpolate the polynomial from the values of the expression at chosen points, with Ben-Or and Tiwari algorithm.
+		 * The cost depends on the number of terms of the result, instead of the number of intermediate terms,
+		 * but it's bounded in advance from the structure of the expression:
+		 * when the bound on the terms or on the degrees is too large the {@link #PRODUCT} strategy is used.
+		 */
+		INTERPOLATION
+	}
+
+	@Override
+	public Node visit(NumberNode node) {
+		return expand(node);
+	}
+
+	@Override
+	public Node visit(VariableNode node) {
+		return expand(node);
+	}
+
+	@Override
+	public Node visit(SumNode node) {
+		return expand(node);
+	}
+
+	@Override
+	public Node visit(MulNode node) {
+		return expand(node);
+	}
+
+	@Override
+	public Node visit(PowNode node)
+		throws IllegalArgumentException
+	{
+		return expand(node);
+	}
+
+	/**
+	 * <p>EFFECTS: Expands and simplifies an expression, with the modular expansion if it is supported.</p>
+	 * @param node The expression.
+	 * @return The expanded and simplified expression.
+	 * @throws IllegalArgumentException If the expression cannot be simplified, see {@link Simplify}.
+	 */
+	private Node expand(Node node)
+		throws IllegalArgumentException
+	{
+		Analysis analysis = new Analysis(node);
+		if (analysis.supported()) {
+			try {
+				Optional<Node> expanded = analysis.expand(strategy);
+				if (expanded.isPresent()) return expanded.get();
+			} catch (IllegalArgumentException | ArithmeticException e) {
+				// The slow path reports the same errors of Expand and Simplify
+			}
+		}
+		return node.transform(EXPAND).transform(SIMPLIFY);
+	}
+
+	/** The shape of the result of {@link Expand} on a node. */
+	private enum Shape {
+		/** The node has no variables. */
+		CONSTANT,
+		/** The expansion is a single term. */
+		TERM,
+		/** The expansion is a sum of terms. */
+		SUM,
+		/** The expansion is a sum that directly contains other sums. */
+		NESTED_SUM,
+		/** The modular expansion doesn't produce the same result of {@link Expand} and {@link Simplify}. */
+		UNSUPPORTED
+	}
+
+	/**
+	 * <p>The analysis of an expression, that decides whether the modular expansion is supported, and prepares it.</p>
+	 * <p>
+	 *     AF: root is the expression, shapes maps each distinct (by reference) node to its {@link Shape},
+	 *     constants maps the constant nodes used by a polynomial to their value,
+	 *     variables are the names of the variables in alphabetical order.
+	 * <p>REQUIREMENTS: The fields must be non-null, the constants are computed only if the expression is supported.</p>
+	 * <p>MUTABILITY: This class is mutable, the constants are computed by {@link #prepare()}.</p>
+	 * <p>NOTES: The analysis is shared with {@link ExternalExpand}, that collects the terms of the same polynomials.</p>
+	 */
+	static class Analysis {
+		/** The expression. */
+		private final Node root;
+		/** The shape of each node. */
+		private final Map<Node, Shape> shapes = new IdentityHashMap<>();
+		/** The value of the maximal constant nodes. */
+		private final Map<Node, Rational> constants = new IdentityHashMap<>();
+		/** The names of the variables, in alphabetical order. */
+		private final List<String> variables;
+
+		/**
+		 * <p>EFFECTS: Analyzes an expression.</p>
+		 * @param root The expression.
+		 */
+		Analysis(Node root) {
+			this.root = root;
+			SortedSet<String> names = new TreeSet<>();
+			for (Node node : Dag.topologicalOrder(root)) {
+				if (node instanceof VariableNode variable) names.add(variable.name());
+				shapes.put(node, shape(node));
+			}
+			this.variables = List.copyOf(names);
+		}
+
+		/**
+		 * <p>EFFECTS: Checks if the modular expansion of the expression is supported.</p>
+		 * @return true if the modular expansion produces the same result of {@link Expand} and {@link Simplify}.
+		 */
+		boolean supported() {
+			Shape shape = shapes.get(root);
+			return shape != Shape.UNSUPPORTED && shape != Shape.CONSTANT;
+		}
+
+		/**
+		 * <p>EFFECTS: Computes the shape of a node, from the shapes of its children.</p>
+		 * @param node The node.
+		 * @return The shape of the node.
+		 */
+		private Shape shape(Node node) {
+			if (node instanceof NumberNode) return Shape.CONSTANT;
+			if (node instanceof VariableNode) return Shape.TERM;
+
+			if (node instanceof PowNode pow) {
+				Rational exp = pow.exp();
+				Shape base = shapes.get(pow.base());
+				// Non integer exponents are not rational, and are not simplified consistently by Simplify
+				if (!exp.isInteger()) return Shape.UNSUPPORTED;
+				if (base == Shape.CONSTANT) return Shape.CONSTANT;
+				// Expand replaces b^0 with 1 without looking at the base
+				if (exp.equals(Rational.ZERO)) return Shape.TERM;
+				if (exp.equals(Rational.ONE)) return base;
+				if (exp.num < 0 || base == Shape.NESTED_SUM) return Shape.UNSUPPORTED;
+				return base;
+			}
+
+			List<Shape> operands = new ArrayList<>();
+			for (Node operand : Dag.children(node)) operands.add(shapes.get(operand));
+			if (operands.contains(Shape.UNSUPPORTED)) return Shape.UNSUPPORTED;
+			if (operands.stream().allMatch(shape -> shape == Shape.CONSTANT)) return Shape.CONSTANT;
+
+			if (node instanceof SumNode) {
+				// Simplify flattens the nested sums, but Expand doesn't distribute a product over them
+				if (operands.contains(Shape.SUM) || operands.contains(Shape.NESTED_SUM)) return Shape.NESTED_SUM;
+				return Shape.SUM;
+			}
+
+			// MulNode
+			if (operands.contains(Shape.NESTED_SUM)) return Shape.UNSUPPORTED;
+			return operands.contains(Shape.SUM) ? Shape.SUM : Shape.TERM;
+		}
+
+		/**
+		 * <p>EFFECTS: Computes the expansion of the expression, modulo each prime in parallel, and rebuilds the exact result.</p>
+		 * <p>REQUIREMENTS: The expression must be supported.</p>
+		 * @param strategy The strategy used to compute the polynomials modulo each prime.
+		 * @return An {@link Optional} that contains the expanded and simplified expression,
+		 * empty if a coefficient doesn't fit in a {@link Rational}.
+		 * @throws IllegalArgumentException If a constant subexpression cannot be simplified.
+		 * @throws ArithmeticException If an exponent overflows.
+		 */
+		Optional<Node> expand(Strategy strategy)
+			throws IllegalArgumentException, ArithmeticException
+		{
+			prepare();
+			long[] moduli = primes();
+
+			Optional<List<Map<Monomial, Long>>> interpolated = strategy == Strategy.INTERPOLATION
+				? new Interpolator(this, moduli).interpolate()
+				: Optional.empty();
+			// The univariate polynomials of bounded degree are expanded with dense arrays of coefficients
+			final boolean dense = variables.size() == 1 && bound().degrees()[0] <= DenseReducer.MAX_DEGREE;
+			List<Map<Monomial, Long>> polynomials = interpolated.orElseGet(() -> IntStream.range(0, moduli.length)
+				.parallel()
+				.mapToObj(i -> dense ? new DenseReducer(this, moduli[i]).reduce() : new Reducer(this, moduli[i]).reduce(root))
+				.toList()
+			);
+
+			// The monomials with a zero coefficient modulo a prime are missing from its polynomial
+			Set<Monomial> monomials = new HashSet<>();
+			for (Map<Monomial, Long> polynomial : polynomials) monomials.addAll(polynomial.keySet());
+
+			BigInteger modulus = BigInteger.ONE;
+			for (long prime : moduli) modulus = modulus.multiply(BigInteger.valueOf(prime));
+
+			Rational constant = Rational.ZERO;
+			List<Node> terms = new ArrayList<>(monomials.size());
+			long[] residues = new long[moduli.length];
+			for (Monomial monomial : monomials) {
+				for (int i = 0; i < moduli.length; i++)
+					residues[i] = polynomials.get(i).getOrDefault(monomial, 0L);
+				Optional<Rational> coefficient = Modular.reconstruct(Modular.chineseRemainder(residues, moduli), modulus);
+				if (coefficient.isEmpty()) return Optional.empty();
+
+				if (monomial.degree() == 0) constant = coefficient.get();
+				else if (!coefficient.get().equals(Rational.ZERO)) terms.add(term(coefficient.get(), monomial));
+			}
+
+			return Optional.of(build(terms, constant));
+		}
+
+		/**
+		 * <p>EFFECTS: Returns the root of the expression.</p>
+		 * @return The expression.
+		 */
+		Node root() {
+			return root;
+		}
+
+		/**
+		 * <p>EFFECTS: Returns the names of the variables, the index of a name is the index of its variable in the monomials.</p>
+		 * @return The names of the variables, in alphabetical order.
+		 */
+		List<String> variables() {
+			return variables;
+		}
+
+		/**
+		 * <p>EFFECTS: Returns the value of a maximal constant node.</p>
+		 * <p>REQUIREMENTS: The constants must be computed.</p>
+		 * @param node The node.
+		 * @return The value of the node, or null if it is not a maximal constant node.
+		 */
+		Rational constant(Node node) {
+			return constants.get(node);
+		}
+
+		/**
+		 * <p>EFFECTS: Computes the values of the constant subexpressions used by the polynomial.</p>
+		 * <p>REQUIREMENTS: The expression must be supported.</p>
+		 * <p>MUTABILITY: This method computes the constants.</p>
+		 * @throws IllegalArgumentException If a constant subexpression cannot be simplified.
+		 */
+		void prepare()
+			throws IllegalArgumentException
+		{
+			collectConstants(root, new IdentityHashMap<>());
+		}
+
+		/**
+		 * <p>EFFECTS: Builds the sum of the terms of a polynomial, in the form built by {@link Simplify}.</p>
+		 * <p>MUTABILITY: This method adds the constant to terms.</p>
+		 * @param terms The non constant terms, built by {@link #term(Rational, Monomial)}.
+		 * @param constant The constant term.
+		 * @return The polynomial.
+		 */
+		Node build(List<Node> terms, Rational constant) {
+			if (!constant.equals(Rational.ZERO)) terms.add(new NumberNode(constant));
+			if (terms.isEmpty()) return NumberNode.ZERO;
+			if (terms.size() == 1) return terms.get(0);
+			return new SumNode(terms);
+		}
+
+		/**
+		 * <p>EFFECTS: Builds a term, in the form built by {@link Simplify}.</p>
+		 * @param coefficient The non-zero coefficient.
+		 * @param monomial The non constant monomial.
+		 * @return The term.
+		 */
+		Node term(Rational coefficient, Monomial monomial) {
+			List<Node> factors = new ArrayList<>();
+			if (!coefficient.equals(Rational.ONE)) factors.add(new NumberNode(coefficient));
+			for (int i = 0; i < monomial.variables(); i++) {
+				long exponent = monomial.exponent(i);
+				if (exponent == 0) continue;
+				Node variable = new VariableNode(variables.get(i));
+				factors.add(exponent == 1 ? variable : new PowNode(variable, Rational.fromInt(exponent)));
+			}
+			return factors.size() == 1 ? factors.get(0) : new MulNode(factors);
+		}
+
+		/**
+		 * <p>EFFECTS: Computes the value of the maximal constant subexpressions reachable from a non constant node.</p>
+		 * <p>MUTABILITY: This method modifies constants and visited.</p>
+		 * @param node The non constant node.
+		 * @param visited The nodes already visited.
+		 * @throws IllegalArgumentException If a constant subexpression cannot be simplified.
+		 */
+		private void collectConstants(Node node, Map<Node, Boolean> visited)
+			throws IllegalArgumentException
+		{
+			if (visited.put(node, Boolean.TRUE) != null) return;
+			// The base of b^0 is never expanded
+			if (node instanceof PowNode pow && pow.exp().equals(Rational.ZERO)) return;
+
+			for (Node child : Dag.children(node)) {
+				if (shapes.get(child) != Shape.CONSTANT) {
+					collectConstants(child, visited);
+				} else if (!constants.containsKey(child)) {
+					// With integer exponents the simplification of a constant is always a number
+					Node value = child.transform(EXPAND).transform(SIMPLIFY);
+					if (!(value instanceof NumberNode number))
+						throw new IllegalArgumentException("The constant cannot be simplified to a number");
+					constants.put(child, number.value());
+				}
+			}
+		}
+
+		/**
+		 * <p>A bound to the polynomial of a node.</p>
+		 * @param degrees The maximum exponent of each variable.
+		 * @param terms The maximum number of terms.
+		 */
+		private record Bound(long[] degrees, long terms) {}
+
+		/**
+		 * <p>EFFECTS: Computes the bound to the polynomial of the expression.</p>
+		 * <p>REQUIREMENTS: The expression must be supported, and the constants must be computed.</p>
+		 * @return The bound.
+		 */
+		Bound bound() {
+			return bound(root, new IdentityHashMap<>());
+		}
+
+		/**
+		 * <p>EFFECTS: Computes the bound to the polynomial of a node, using the memoized one if it was already computed.</p>
+		 * <p>MUTABILITY: This method modifies bounds.</p>
+		 * @param node The node, it must be the root or one of its non constant descendants.
+		 * @param bounds The bound of each visited node.
+		 * @return The bound.
+		 */
+		private Bound bound(Node node, Map<Node, Bound> bounds) {
+			Bound memoized = bounds.get(node);
+			if (memoized != null) return memoized;
+
+			final int count = variables.size();
+			long[] degrees = new long[count];
+			long terms = 1;
+			if (constants.containsKey(node)) {
+				// A constant is a single term of degree zero
+			} else if (node instanceof VariableNode variable) {
+				degrees[Collections.binarySearch(variables, variable.name())] = 1;
+			} else if (node instanceof SumNode sum) {
+				terms = 0;
+				for (Node operand : sum.operands()) {
+					Bound b = bound(operand, bounds);
+					for (int i = 0; i < count; i++) degrees[i] = Math.max(degrees[i], b.degrees()[i]);
+					terms = saturatedAdd(terms, b.terms());
+				}
+			} else if (node instanceof MulNode mul) {
+				for (Node operand : mul.operands()) {
+					Bound b = bound(operand, bounds);
+					for (int i = 0; i < count; i++) degrees[i] = saturatedAdd(degrees[i], b.degrees()[i]);
+					terms = saturatedMul(terms, b.terms());
+				}
+			} else {
+				PowNode pow = (PowNode) node;
+				long exp = pow.exp().num;
+				if (exp != 0) {
+					Bound b = bound(pow.base(), bounds);
+					for (int i = 0; i < count; i++) degrees[i] = saturatedMul(b.degrees()[i], exp);
+					terms = multisets(b.terms(), exp);
+				}
+			}
+
+			Bound bound = new Bound(degrees, terms);
+			bounds.put(node, bound);
+			return bound;
+		}
+
+		/**
+		 * <p>EFFECTS: Computes the number of multisets of size k of n elements, the number of terms of a sum of n terms to the k.</p>
+		 * <p>REQUIREMENTS: n and k must be positive.</p>
+		 * @param n The number of elements.
+		 * @param k The size of the multisets.
+		 * @return C(n + k - 1, n - 1), or {@link Long#MAX_VALUE} if it is greater than {@link Interpolator#MAX_TERMS}.
+		 */
+		private static long multisets(long n, long k) {
+			// C(k + n - 1, n - 1) = prod (k + i) / i, for i in [1, n), every partial product is an integer
+			long result = 1;
+			for (long i = 1; i < n; i++) {
+				result = saturatedMul(result, saturatedAdd(k, i));
+				if (result == Long.MAX_VALUE) return Long.MAX_VALUE;
+				result /= i;
+				if (result > Interpolator.MAX_TERMS) return Long.MAX_VALUE;
+			}
+			return result;
+		}
+
+		/**
+		 * <p>EFFECTS: Computes a + b, or {@link Long#MAX_VALUE} if it overflows.</p>
+		 * <p>REQUIREMENTS: a and b must be non-negative.</p>
+		 * @param a The first operand.
+		 * @param b The second operand.
+		 * @return The saturated sum.
+		 */
+		private static long saturatedAdd(long a, long b) {
+			long sum = a + b;
+			return sum < 0 ? Long.MAX_VALUE : sum;
+		}
+
+		/**
+		 * <p>EFFECTS: Computes a * b, or {@link Long#MAX_VALUE} if it overflows.</p>
+		 * <p>REQUIREMENTS: a and b must be non-negative.</p>
+		 * @param a The first operand.
+		 * @param b The second operand.
+		 * @return The saturated product.
+		 */
+		private static long saturatedMul(long a, long b) {
+			if (a != 0 && b > Long.MAX_VALUE / a) return Long.MAX_VALUE;
+			return a * b;
+		}
+		/**
+		 * <p>
+		 *     EFFECTS: Chooses the primes that don't divide the denominator of any constant:
+		 *     the {@link DensePolynomial#NTT_PRIMES} if the expression is univariate, and the largest primes.
+		 * </p>
+		 * @return The primes.
+		 */
+		private long[] primes() {
+			long[] primes = new long[PRIMES];
+			int count = 0;
+			if (variables.size() == 1)
+				for (long prime : DensePolynomial.NTT_PRIMES)
+					if (count < primes.length && !dividesDenominator(prime)) primes[count++] = prime;
+
+			for (long candidate = Modular.MAX_MODULUS - 1; count < primes.length; candidate -= 2) {
+				if (!Modular.isPrime(candidate) || dividesDenominator(candidate)) continue;
+				primes[count++] = candidate;
+			}
+			return primes;
+		}
+
+		/**
+		 * <p>EFFECTS: Checks if a prime divides the denominator of a constant.</p>
+		 * @param prime The prime.
+		 * @return true if the prime divides the denominator of any constant.
+		 */
+		private boolean dividesDenominator(long prime) {
+			return constants.values().stream().anyMatch(c -> c.den % prime == 0);
+		}
+	}
+
+	/**
+	 * <p>The expansion of an expression as a polynomial with the coefficients reduced modulo a prime.</p>
+	 * <p>
+	 *     The products in a sum are not expanded on their own: their terms are merged in order of monomial
+	 *     by {@link SparsePolynomial#sumOfProducts(List, List, long)}, so only the merged sum is stored.
+	 * </p>
+	 * <p>
+	 *     AF: analysis is the prepared expression, modulus is the prime,
+	 *     polynomials maps each expanded node (by reference) to its polynomial, as a map from the monomials to the non-zero coefficients.
+	 * <p>REQUIREMENTS: The fields must be non-null, the polynomials must not be modified after being memoized.</p>
+	 * <p>MUTABILITY: This class is mutable, by means of memoizing the polynomials of the nodes.</p>
+	 */
+	private static class Reducer {
+		/** The prepared expression. */
+		private final Analysis analysis;
+		/** The prime modulus. */
+		private final long modulus;
+		/** The number of variables. */
+		private final int variables;
+		/** The polynomial of each expanded node. */
+		private final Map<Node, Map<Monomial, Long>> polynomials = new IdentityHashMap<>();
+
+		/**
+		 * <p>EFFECTS: Constructs a new {@link Reducer}.</p>
+		 * @param analysis The prepared expression.
+		 * @param modulus The prime modulus.
+		 */
+		Reducer(Analysis analysis, long modulus) {
+			this.analysis = analysis;
+			this.modulus = modulus;
+			this.variables = analysis.variables.size();
+		}
+
+		/**
+		 * <p>EFFECTS: Computes the polynomial of a node, using the memoized one if the node was already expanded.</p>
+		 * @param node The node, it must be the root of the analysis or one of its non constant descendants.
+		 * @return The polynomial, it must not be modified.
+		 * @throws ArithmeticException If an exponent overflows.
+		 */
+		Map<Monomial, Long> reduce(Node node)
+			throws ArithmeticException
+		{
+			Map<Monomial, Long> polynomial = polynomials.get(node);
+			if (polynomial == null) {
+				polynomial = compute(node);
+				polynomials.put(node, polynomial);
+			}
+			return polynomial;
+		}
+
+		/**
+		 * <p>EFFECTS: Computes the polynomial of a node.</p>
+		 * @param node The node.
+		 * @return The polynomial.
+		 * @throws ArithmeticException If an exponent overflows.
+		 */
+		private Map<Monomial, Long> compute(Node node)
+			throws ArithmeticException
+		{
+			Rational value = analysis.constants.get(node);
+			if (value != null) return constant(Modular.fromRational(value, modulus));
+
+			if (node instanceof VariableNode variable) {
+				int index = Collections.binarySearch(analysis.variables, variable.name());
+				return Map.of(Monomial.variable(index, variables), 1L);
+			} else if (node instanceof SumNode sum) {
+				// The products are merged without expanding them on their own, with their smaller factor on the left
+				List<SparsePolynomial> lhs = new ArrayList<>(sum.operands().size());
+				List<SparsePolynomial> rhs = new ArrayList<>(sum.operands().size());
+				for (Node operand : sum.operands()) {
+					SparsePolynomial[] factors = factors(operand);
+					boolean swap = factors[0].size() > factors[1].size();
+					lhs.add(factors[swap ? 1 : 0]);
+					rhs.add(factors[swap ? 0 : 1]);
+				}
+				return SparsePolynomial.sumOfProducts(lhs, rhs, modulus).toMap();
+			} else if (node instanceof MulNode mul) {
+				Map<Monomial, Long> result = constant(1);
+				for (Node operand : mul.operands()) result = mul(result, reduce(operand));
+				return result;
+			} else {
+				PowNode pow = (PowNode) node;
+				if (pow.exp().equals(Rational.ZERO)) return constant(1);
+				return pow(reduce(pow.base()), pow.exp().num);
+			}
+		}
+
+		/**
+		 * <p>
+		 *     EFFECTS: Splits the polynomial of an operand of a sum in two factors:
+		 *     the product of all the operands but the last one and the last one, if the operand is a product
+		 *     that was not already expanded, otherwise the polynomial of the operand and the constant one.
+		 * </p>
+		 * @param node The operand.
+		 * @return The two factors.
+		 * @throws ArithmeticException If an exponent overflows.
+		 */
+		private SparsePolynomial[] factors(Node node)
+			throws ArithmeticException
+		{
+			if (node instanceof MulNode mul && !polynomials.containsKey(node) && !analysis.constants.containsKey(node)) {
+				final int last = mul.operands().size() - 1;
+				Map<Monomial, Long> lhs = constant(1);
+				for (Node operand : mul.operands().subList(0, last)) lhs = mul(lhs, reduce(operand));
+				return new SparsePolynomial[] {SparsePolynomial.of(lhs), SparsePolynomial.of(reduce(mul.operands().get(last)))};
+			}
+			return new SparsePolynomial[] {SparsePolynomial.of(reduce(node)), SparsePolynomial.of(constant(1))};
+		}
+
+		/**
+		 * <p>EFFECTS: Returns a constant polynomial.</p>
+		 * @param value The residue of the constant.
+		 * @return The polynomial.
+		 */
+		private Map<Monomial, Long> constant(long value) {
+			if (value == 0) return Map.of();
+			return Map.of(Monomial.one(variables), value);
+		}
+
+		/**
+		 * <p>EFFECTS: Adds a term to a polynomial, without removing the zero coefficients.</p>
+		 * <p>MUTABILITY: This method modifies polynomial.</p>
+		 * @param polynomial The polynomial.
+		 * @param monomial The monomial of the term.
+		 * @param coefficient The coefficient of the term.
+		 */
+		private void accumulate(Map<Monomial, Long> polynomial, Monomial monomial, long coefficient) {
+			polynomial.merge(monomial, coefficient, (a, b) -> Modular.add(a, b, modulus));
+		}
+
+		/**
+		 * <p>EFFECTS: Computes the product of two polynomials.</p>
+		 * @param lhs The first polynomial.
+		 * @param rhs The second polynomial.
+		 * @return The product.
+		 * @throws ArithmeticException If an exponent overflows.
+		 */
+		private Map<Monomial, Long> mul(Map<Monomial, Long> lhs, Map<Monomial, Long> rhs)
+			throws ArithmeticException
+		{
+			Map<Monomial, Long> result = new HashMap<>();
+			for (Map.Entry<Monomial, Long> l : lhs.entrySet())
+				for (Map.Entry<Monomial, Long> r : rhs.entrySet())
+					accumulate(result, l.getKey().mul(r.getKey()), Modular.mul(l.getValue(), r.getValue(), modulus));
+			result.values().removeIf(coefficient -> coefficient == 0);
+			return result;
+		}
+
+		/**
+		 * <p>EFFECTS: Computes the power of a polynomial, by repeated squaring.</p>
+		 * @param base The polynomial.
+		 * @param exp The positive exponent.
+		 * @return The power.
+		 * @throws ArithmeticException If an exponent overflows.
+		 */
+		private Map<Monomial, Long> pow(Map<Monomial, Long> base, long exp)
+			throws ArithmeticException
+		{
+			Map<Monomial, Long> result = constant(1);
+			for (;;) {
+				if (exp % 2 == 1) result = mul(result, base);
+				exp /= 2;
+				if (exp == 0) return result;
+				base = mul(base, base);
+			}
+		}
+	}
+
+	/**
+	 * <p>
+	 *     The expansion of a univariate expression as a dense polynomial with the coefficients reduced modulo a prime,
+	 *     the products use the fast algorithms of {@link DensePolynomial}.
+	 * </p>
+	 * <p>
+	 *     AF: analysis is the prepared expression, modulus is the prime,
+	 *     polynomials maps each expanded node (by reference) to its array of coefficients.
+	 * <p>REQUIREMENTS: The fields must be non-null, the expression must have a single variable.</p>
+	 * <p>MUTABILITY: This class is mutable, by means of memoizing the polynomials of the nodes.</p>
+	 */
+	private static class DenseReducer {
+		/** The maximum degree of the polynomials expanded with dense arrays. */
+		static final long MAX_DEGREE = 1 << 20;
+
+		/** The prepared expression. */
+		private final Analysis analysis;
+		/** The prime modulus. */
+		private final long modulus;
+		/** The polynomial of each expanded node. */
+		private final Map<Node, long[]> polynomials = new IdentityHashMap<>();
+
+		/**
+		 * <p>EFFECTS: Constructs a new {@link DenseReducer}.</p>
+		 * @param analysis The prepared expression.
+		 * @param modulus The prime modulus.
+		 */
+		DenseReducer(Analysis analysis, long modulus) {
+			this.analysis = analysis;
+			this.modulus = modulus;
+		}
+
+		/**
+		 * <p>EFFECTS: Computes the polynomial of the expression.</p>
+		 * @return The polynomial, as a map from the monomials to the non-zero coefficients.
+		 */
+		Map<Monomial, Long> reduce() {
+			long[] coefficients = reduce(analysis.root);
+			Map<Monomial, Long> polynomial = new HashMap<>();
+			for (int i = 0; i < coefficients.length; i++)
+				if (coefficients[i] != 0) polynomial.put(Monomial.of(i), coefficients[i]);
+			return polynomial;
+		}
+
+		/**
+		 * <p>EFFECTS: Computes the polynomial of a node, using the memoized one if the node was already expanded.</p>
+		 * @param node The node, it must be the root of the analysis or one of its non constant descendants.
+		 * @return The coefficients of the polynomial, they must not be modified.
+		 */
+		private long[] reduce(Node node) {
+			long[] polynomial = polynomials.get(node);
+			if (polynomial == null) {
+				polynomial = compute(node);
+				polynomials.put(node, polynomial);
+			}
+			return polynomial;
+		}
+
+		/**
+		 * <p>EFFECTS: Computes the polynomial of a node.</p>
+		 * @param node The node.
+		 * @return The coefficients of the polynomial.
+		 */
+		private long[] compute(Node node) {
+			Rational value = analysis.constants.get(node);
+			if (value != null) return DensePolynomial.trim(new long[] {Modular.fromRational(value, modulus)});
+
+			if (node instanceof VariableNode) {
+				return new long[] {0, 1};
+			} else if (node instanceof SumNode sum) {
+				// Accumulate all the operands in a single array
+				List<long[]> operands = new ArrayList<>(sum.operands().size());
+				int length = 0;
+				for (Node operand : sum.operands()) {
+					long[] polynomial = reduce(operand);
+					operands.add(polynomial);
+					length = Math.max(length, polynomial.length);
+				}
+				long[] result = new long[length];
+				for (long[] polynomial : operands)
+					for (int i = 0; i < polynomial.length; i++) result[i] = Modular.add(result[i], polynomial[i], modulus);
+				return DensePolynomial.trim(result);
+			} else if (node instanceof MulNode mul) {
+				long[] result = {1};
+				for (Node operand : mul.operands()) result = DensePolynomial.mul(result, reduce(operand), modulus);
+				return result;
+			} else {
+				PowNode pow = (PowNode) node;
+				if (pow.exp().equals(Rational.ZERO)) return new long[] {1};
+				return DensePolynomial.pow(reduce(pow.base()), pow.exp().num, modulus);
+			}
+		}
+	}
+
+	/**
+	 * <p>The evaluation of an expression at points modulo a prime.</p>
+	 * <p>AF: analysis is the prepared expression, modulus is the prime.</p>
+	 * <p>REQUIREMENTS: The fields must be non-null, the modulus must not divide the denominators of the constants.</p>
+	 * <p>MUTABILITY: This class is immutable.</p>
+	 */
+	private static class Evaluator {
+		/** The prepared expression. */
+		private final Analysis analysis;
+		/** The prime modulus. */
+		private final long modulus;
+
+		/**
+		 * <p>EFFECTS: Constructs a new {@link Evaluator}.</p>
+		 * @param analysis The prepared expression.
+		 * @param modulus The prime modulus.
+		 */
+		Evaluator(Analysis analysis, long modulus) {
+			this.analysis = analysis;
+			this.modulus = modulus;
+		}
+
+		/**
+		 * <p>EFFECTS: Evaluates the expression at a point.</p>
+		 * @param point The residue of each variable, in the order of the variables of the analysis.
+		 * @return The residue of the expression.
+		 */
+		long evaluate(long[] point) {
+			return value(analysis.root, point, new IdentityHashMap<>());
+		}
+
+		/**
+		 * <p>EFFECTS: Evaluates a node at a point, using the memoized value if the node was already evaluated.</p>
+		 * <p>MUTABILITY: This method modifies values.</p>
+		 * @param node The node, it must be the root of the analysis or one of its non constant descendants.
+		 * @param point The residue of each variable.
+		 * @param values The value of each evaluated node.
+		 * @return The residue of the node.
+		 */
+		private long value(Node node, long[] point, Map<Node, Long> values) {
+			Long memoized = values.get(node);
+			if (memoized != null) return memoized;
+
+			long value;
+			Rational constant = analysis.constants.get(node);
+			if (constant != null) {
+				value = Modular.fromRational(constant, modulus);
+			} else if (node instanceof VariableNode variable) {
+				value = point[Collections.binarySearch(analysis.variables, variable.name())];
+			} else if (node instanceof SumNode sum) {
+				value = 0;
+				for (Node operand : sum.operands()) value = Modular.add(value, value(operand, point, values), modulus);
+			} else if (node instanceof MulNode mul) {
+				value = 1;
+				for (Node operand : mul.operands()) value = Modular.mul(value, value(operand, point, values), modulus);
+			} else {
+				PowNode pow = (PowNode) node;
+				// Like Expand, b^0 is 1 without evaluating the base
+				if (pow.exp().equals(Rational.ZERO)) value = 1;
+				else value = Modular.pow(value(pow.base(), point, values), pow.exp().num, modulus);
+			}
+
+			values.put(node, value);
+			return value;
+		}
+	}
+
+	/**
+	 * <p>
+	 *     The sparse interpolation of the polynomial of an expression, modulo each prime.
+	 *     The variables are mapped to the powers of a single one with the Kronecker substitution x_i = z^radix[i],
+	 *     then the exponents of the monomials are found modulo {@link #DISCOVERY_PRIME},
+	 *     and their coefficients modulo each prime are found from as many values of the expression as the number of terms.
+	 * </p>
+	 * <p>AF: analysis is the prepared expression, moduli are the primes, random is the source of randomness.</p>
+	 * <p>REQUIREMENTS: The fields must be non-null, the moduli must not divide the denominators of the constants.</p>
+	 * <p>MUTABILITY: This class is mutable, by means of the state of random.</p>
+	 */
+	private static class Interpolator {
+		/** The prime used to find the monomials, 15 * 2^27 + 1, whose discrete logarithms are cheap to compute. */
+		private static final long DISCOVERY_PRIME = 2013265921L;
+		/** The maximum number of terms that are interpolated, finding the roots takes cubic time in the number of terms. */
+		private static final long MAX_TERMS = 1024;
+
+		/** The prepared expression. */
+		private final Analysis analysis;
+		/** The primes. */
+		private final long[] moduli;
+		/** The source of randomness. */
+		private final Random random = new Random();
+
+		/**
+		 * <p>EFFECTS: Constructs a new {@link Interpolator}.</p>
+		 * @param analysis The prepared expression.
+		 * @param moduli The primes.
+		 */
+		Interpolator(Analysis analysis, long[] moduli) {
+			this.analysis = analysis;
+			this.moduli = moduli;
+		}
+
+		/**
+		 * <p>EFFECTS: Interpolates the polynomial of the expression modulo each prime.</p>
+		 * @return An {@link Optional} that contains the polynomial modulo each prime,
+		 * empty if the bounds are too large, or the interpolation failed.
+		 */
+		Optional<List<Map<Monomial, Long>>> interpolate() {
+			final int variables = analysis.variables.size();
+			Analysis.Bound bound = analysis.bound();
+
+			// The Kronecker substitution is injective on the monomials within the degree bounds
+			long[] radix = new long[variables];
+			long size = 1;
+			for (int i = 0; i < variables; i++) {
+				radix[i] = size;
+				size = Analysis.saturatedMul(size, bound.degrees()[i] + 1);
+			}
+			final long terms = Math.min(bound.terms(), size);
+			if (terms > MAX_TERMS || size >= DISCOVERY_PRIME - 1) return Optional.empty();
+			if (analysis.constants.values().stream().anyMatch(c -> c.den % DISCOVERY_PRIME == 0)) return Optional.empty();
+
+			// The values f(g^j) are a linear recurrence whose characteristic polynomial has the roots g^k, for each exponent k
+			final long generator = Modular.primitiveRoot(DISCOVERY_PRIME);
+			long[] sequence = values(DISCOVERY_PRIME, generator, radix, (int) (2 * terms));
+			long[] characteristic = SparseInterpolation.berlekampMassey(sequence, DISCOVERY_PRIME);
+			Optional<long[]> roots = SparseInterpolation.roots(characteristic, DISCOVERY_PRIME, random);
+			if (roots.isEmpty()) return Optional.empty();
+
+			long[] exponents = new long[roots.get().length];
+			List<Monomial> monomials = new ArrayList<>(exponents.length);
+			for (int i = 0; i < exponents.length; i++) {
+				exponents[i] = SparseInterpolation.discreteLog(roots.get()[i], generator, DISCOVERY_PRIME);
+				if (exponents[i] >= size) return Optional.empty();
+
+				long[] monomial = new long[variables];
+				for (int j = 0; j < variables; j++)
+					monomial[j] = exponents[i] / radix[j] % (bound.degrees()[j] + 1);
+				monomials.add(Monomial.of(monomial));
+			}
+
+			List<Optional<Map<Monomial, Long>>> polynomials = IntStream.range(0, moduli.length)
+				.parallel()
+				.mapToObj(i -> coefficients(moduli[i], exponents, monomials, radix))
+				.toList();
+			if (polynomials.stream().anyMatch(Optional::isEmpty)) return Optional.empty();
+			return Optional.of(polynomials.stream().map(Optional::get).toList());
+		}
+
+		/**
+		 * <p>EFFECTS: Computes the values of the expression at the points (g^(j * radix[0]), g^(j * radix[1]), ...), for j in [0, count).</p>
+		 * @param modulus The prime modulus.
+		 * @param generator The primitive root g of the modulus.
+		 * @param radix The exponent of z of each variable, in the Kronecker substitution.
+		 * @param count The number of values.
+		 * @return The values.
+		 */
+		private long[] values(long modulus, long generator, long[] radix, int count) {
+			Evaluator evaluator = new Evaluator(analysis, modulus);
+			long[] steps = new long[radix.length];
+			long[] point = new long[radix.length];
+			for (int i = 0; i < radix.length; i++) {
+				steps[i] = Modular.pow(generator, radix[i], modulus);
+				point[i] = 1;
+			}
+
+			long[] values = new long[count];
+			for (int j = 0; j < count; j++) {
+				values[j] = evaluator.evaluate(point);
+				for (int i = 0; i < point.length; i++) point[i] = Modular.mul(point[i], steps[i], modulus);
+			}
+			return values;
+		}
+
+		/**
+		 * <p>EFFECTS: Computes the coefficients of the monomials modulo a prime, and checks them at a random point.</p>
+		 * @param modulus The prime modulus.
+		 * @param exponents The exponent of each monomial, in the Kronecker substitution.
+		 * @param monomials The monomials.
+		 * @param radix The exponent of z of each variable, in the Kronecker substitution.
+		 * @return An {@link Optional} that contains the polynomial, empty if the check failed.
+		 */
+		private Optional<Map<Monomial, Long>> coefficients(long modulus, long[] exponents, List<Monomial> monomials, long[] radix) {
+			final long generator = Modular.primitiveRoot(modulus);
+			long[] roots = new long[exponents.length];
+			for (int i = 0; i < roots.length; i++) roots[i] = Modular.pow(generator, exponents[i], modulus);
+			long[] coefficients = SparseInterpolation.solveVandermonde(roots, values(modulus, generator, radix, roots.length), modulus);
+
+			Map<Monomial, Long> polynomial = new HashMap<>();
+			for (int i = 0; i < coefficients.length; i++)
+				if (coefficients[i] != 0) polynomial.put(monomials.get(i), coefficients[i]);
+
+			// A monomial whose coefficient is a multiple of the discovery prime is missing, which is detected with high probability
+			long[] point = new long[radix.length];
+			for (int i = 0; i < point.length; i++) point[i] = ThreadLocalRandom.current().nextLong(modulus);
+			long expected = new Evaluator(analysis, modulus).evaluate(point);
+			long actual = 0;
+			for (Map.Entry<Monomial, Long> term : polynomial.entrySet()) {
+				long value = term.getValue();
+				for (int i = 0; i < point.length; i++)
+					value = Modular.mul(value, Modular.pow(point[i], term.getKey().exponent(i), modulus), modulus);
+				actual = Modular.add(actual, value, modulus);
+			}
+			return actual == expected ? Optional.of(polynomial) : Optional.empty();
+		}
+	}
+}
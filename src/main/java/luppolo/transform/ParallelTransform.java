@@ -0,0 +1,379 @@
+package luppolo.transform;
+
+import luppolo.node.*;
+
+import java.io.Serial;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.IntFunction;
+
+/**
+ * <p>
+ *     An executor that applies a {@link StatelessVisitor} using a {@link ForkJoinPool},
+ *     transforming the independent operands of the wide sums and products concurrently.
+ * </p>
+ * <p>
+ *     The visitors transform the operands of a node with {@link #transformAll}: when it is called inside
+ *     {@link #apply} and the operands are large enough, the operands are split recursively in two halves,
+ *     that are transformed by different tasks, otherwise they are transformed one at a time.
+ *     The sizes of the subtrees are computed once before the visit, and cached for the whole visit.
+ *     The results are always combined in the order of the operands, so the output doesn't depend on the scheduling,
+ *     and if more operands fail the exception of the first one is thrown, like in a sequential visit.
+ * </p>
+ * <p>
+ *     The printers are stateless visitors too, so applying them with {@link #apply} prints the large subtrees
+ *     concurrently, and joins the printed operands in order.
+ * </p>
+ * <p>
+ *     The terms of the large expanded products are generated with {@link #generateTerms} in blocks,
+ *     each block collects and sorts its terms in its own list, and the sorted blocks are merged in pairs,
+ *     so that sorting the operands of the resulting {@link SumNode} only needs a linear pass.
+ * </p>
+ * <p>AF: pool is the pool that runs the tasks, threshold is the minimum size of the operands transformed by more tasks.</p>
+ * <p>REQUIREMENTS: pool must be non-null, threshold must be positive.</p>
+ * <p>MUTABILITY: This class is immutable.</p>
+ */
+public class ParallelTransform {
+	/** The default minimum number of nodes of the operands transformed by more tasks. */
+	public static final long DEFAULT_THRESHOLD = 1 << 12;
+
+	/** The visit running on the current thread, or null if the thread is not running a visit. */
+	private static final ThreadLocal<Visit> CURRENT = new ThreadLocal<>();
+
+	/** The pool that runs the tasks. */
+	private final ForkJoinPool pool;
+	/** The minimum number of nodes of the operands transformed by more tasks. */
+	private final long threshold;
+
+	/**
+	 * The state of a parallel visit, shared by all its tasks.
+	 * @param sizes The number of nodes of the subtrees of the visited expression, by reference.
+	 * @param threshold The minimum number of nodes of the operands transformed by more tasks.
+	 */
+	private record Visit(Map<Node, Long> sizes, long threshold) {
+		/**
+		 * <p>EFFECTS: Returns the number of nodes of a subtree.</p>
+		 * @param node The root of the subtree.
+		 * @return The number of nodes, or zero if the node is not part of the visited expression.
+		 */
+		long size(Node node) {
+			return sizes.getOrDefault(node, 0L);
+		}
+	}
+
+	/** <p>EFFECTS: Constructs a new {@link ParallelTransform}, that uses the common pool and the default threshold.</p> */
+	public ParallelTransform() {
+		this(ForkJoinPool.commonPool(), DEFAULT_THRESHOLD);
+	}
+
+	/**
+	 * <p>EFFECTS: Constructs a new {@link ParallelTransform}.</p>
+	 * @param pool The pool that runs the tasks.
+	 * @param threshold The minimum number of nodes of the operands transformed by more tasks.
+	 * @throws IllegalArgumentException If threshold is not positive.
+	 * @throws NullPointerException If pool is null.
+	 */
+	public ParallelTransform(ForkJoinPool pool, long threshold)
+		throws IllegalArgumentException, NullPointerException
+	{
+		if (threshold <= 0) throw new IllegalArgumentException("The threshold must be positive");
+		this.pool = Objects.requireNonNull(pool);
+		this.threshold = threshold;
+	}
+
+	/**
+	 * <p>EFFECTS: Transforms a node with a visitor, the same as {@link Node#transform}, in parallel.</p>
+	 * @param node The node.
+	 * @param visitor The visitor.
+	 * @return The transformed value.
+	 * @param <Ret> The return type of the visitor.
+	 * @throws NullPointerException If a parameter is null.
+	 * @throws RuntimeException If an error happened while applying the visitor.
+	 */
+	public <Ret> Ret apply(Node node, StatelessVisitor<Ret> visitor)
+		throws NullPointerException, RuntimeException
+	{
+		Objects.requireNonNull(visitor);
+		// With a single worker the tasks would only add overhead
+		if (pool.getParallelism() == 1) return node.transform(visitor);
+
+		Visit visit = new Visit(sizes(node), threshold);
+		Object[] result = new Object[1];
+		RuntimeException[] error = new RuntimeException[1];
+		pool.invoke(new Range<>(visit, visitor, new Node[] {node}, new long[] {0, visit.size(node)}, result, error, 0, 1));
+
+		// The exception is thrown by this thread, the pool would wrap the exceptions thrown by its workers
+		if (error[0] != null) throw error[0];
+		@SuppressWarnings("unchecked")
+		Ret transformed = (Ret) result[0];
+		return transformed;
+	}
+
+	/**
+	 * <p>
+	 *     EFFECTS: Transforms each operand with a visitor, in parallel if the current thread is running
+	 *     a visit of {@link #apply}, the visitor is a {@link StatelessVisitor} and the operands are large enough.
+	 * </p>
+	 * <p>REQUIREMENTS: The parameters must be non-null.</p>
+	 * @param operands The operands.
+	 * @param visitor The visitor.
+	 * @return The transformed operands, in the same order.
+	 * @param <Ret> The return type of the visitor.
+	 * @throws RuntimeException If an error happened while applying the visitor, the one of the first operand that failed.
+	 */
+	public static <Ret> List<Ret> transformAll(List<Node> operands, Visitor<Ret> visitor)
+		throws RuntimeException
+	{
+		assert operands != null;
+		assert visitor != null;
+
+		Visit visit = CURRENT.get();
+		if (visit == null || !(visitor instanceof StatelessVisitor) || operands.size() < 2) return sequential(operands, visitor);
+
+		// The sizes of the first i operands, to find the size of a range in constant time
+		long[] prefix = new long[operands.size() + 1];
+		for (int i = 0; i < operands.size(); i++) prefix[i + 1] = saturatedAdd(prefix[i], visit.size(operands.get(i)));
+		if (prefix[operands.size()] < visit.threshold()) return sequential(operands, visitor);
+
+		Node[] nodes = operands.toArray(new Node[0]);
+		Object[] results = new Object[nodes.length];
+		RuntimeException[] errors = new RuntimeException[nodes.length];
+		new Range<>(visit, visitor, nodes, prefix, results, errors, 0, nodes.length).invoke();
+
+		List<Ret> transformed = new ArrayList<>(nodes.length);
+		for (int i = 0; i < nodes.length; i++) {
+			if (errors[i] != null) throw errors[i];
+			@SuppressWarnings("unchecked")
+			Ret result = (Ret) results[i];
+			transformed.add(result);
+		}
+		return transformed;
+	}
+
+	/**
+	 * <p>
+	 *     EFFECTS: Generates the terms with the indices from 0 to count - 1.
+	 *     If the current thread is running a visit of {@link #apply} and there are enough terms,
+	 *     blocks of terms are generated and sorted in parallel, and then merged, otherwise they are generated in order.
+	 * </p>
+	 * <p>REQUIREMENTS: term must be non-null, must not throw, and must not call {@link #transformAll}.</p>
+	 * @param count The number of terms, non-negative.
+	 * @param term The function that generates the term with an index.
+	 * @return A mutable list of the terms, sorted or in the order of their indices.
+	 */
+	public static List<Node> generateTerms(int count, IntFunction<Node> term) {
+		assert count >= 0;
+		assert term != null;
+
+		Visit visit = CURRENT.get();
+		if (visit == null || count < visit.threshold()) {
+			List<Node> terms = new ArrayList<>(count);
+			for (int i = 0; i < count; i++) terms.add(term.apply(i));
+			return terms;
+		}
+		return new Block(term, visit.threshold(), 0, count).invoke();
+	}
+
+	/**
+	 * <p>EFFECTS: Merges two sorted lists of nodes.</p>
+	 * @param lhs The first sorted list.
+	 * @param rhs The second sorted list.
+	 * @return A mutable sorted list with the nodes of both lists.
+	 */
+	private static List<Node> merge(List<Node> lhs, List<Node> rhs) {
+		List<Node> merged = new ArrayList<>(lhs.size() + rhs.size());
+		int l = 0;
+		int r = 0;
+		while (l < lhs.size() && r < rhs.size()) {
+			if (lhs.get(l).compareTo(rhs.get(r)) <= 0) merged.add(lhs.get(l++));
+			else merged.add(rhs.get(r++));
+		}
+		merged.addAll(lhs.subList(l, lhs.size()));
+		merged.addAll(rhs.subList(r, rhs.size()));
+		return merged;
+	}
+
+	/**
+	 * <p>EFFECTS: Transforms each operand with a visitor, one at a time.</p>
+	 * @param operands The operands.
+	 * @param visitor The visitor.
+	 * @return The transformed operands, in the same order.
+	 * @param <Ret> The return type of the visitor.
+	 * @throws RuntimeException If an error happened while applying the visitor.
+	 */
+	private static <Ret> List<Ret> sequential(List<Node> operands, Visitor<Ret> visitor)
+		throws RuntimeException
+	{
+		List<Ret> transformed = new ArrayList<>(operands.size());
+		for (Node operand : operands) transformed.add(operand.transform(visitor));
+		return transformed;
+	}
+
+	/**
+	 * <p>EFFECTS: Computes the number of nodes of each subtree of an expression, the shared subtrees are counted each time.</p>
+	 * @param root The root of the expression.
+	 * @return The number of nodes of each subtree, by reference.
+	 * @throws NullPointerException If root is null.
+	 */
+	private static Map<Node, Long> sizes(Node root)
+		throws NullPointerException
+	{
+		Map<Node, Long> sizes = new IdentityHashMap<>();
+		// The children are always before their parents
+		for (Node node : Dag.topologicalOrder(root)) {
+			long size = 1;
+			for (Node child : Dag.children(node)) size = saturatedAdd(size, sizes.get(child));
+			sizes.put(node, size);
+		}
+		return sizes;
+	}
+
+	/**
+	 * <p>EFFECTS: Adds two non-negative numbers, returning {@link Long#MAX_VALUE} if the sum overflows.</p>
+	 * @param lhs The first number.
+	 * @param rhs The second number.
+	 * @return The sum.
+	 */
+	private static long saturatedAdd(long lhs, long rhs) {
+		long sum = lhs + rhs;
+		return sum < 0 ? Long.MAX_VALUE : sum;
+	}
+
+	/**
+	 * <p>The task that transforms a range of operands, splitting it in two halves if it is large enough.</p>
+	 * <p>
+	 *     AF: the task transforms nodes[from], ..., nodes[to - 1], storing in results[i] the result of nodes[i],
+	 *     or in errors[i] its exception, prefix[i] is the size of the first i nodes.
+	 * <p>
+	 *     REQUIREMENTS: The arrays must be non-null, the range must not be empty,
+	 *     and the ranges of the running tasks must not overlap.
+	 * <p>MUTABILITY: This class is mutable, the task writes its results in the shared arrays.</p>
+	 * @param <Ret> The return type of the visitor.
+	 */
+	private static class Range<Ret> extends RecursiveAction {
+		/** The version of the serialized form, the tasks are never serialized. */
+		@Serial
+		private static final long serialVersionUID = 1L;
+
+		/** The visit running the task. */
+		private final transient Visit visit;
+		/** The visitor. */
+		private final transient Visitor<Ret> visitor;
+		/** The operands. */
+		private final transient Node[] nodes;
+		/** The sizes of the prefixes of the operands. */
+		private final transient long[] prefix;
+		/** The results of the operands. */
+		private final transient Object[] results;
+		/** The exceptions of the operands. */
+		private final transient RuntimeException[] errors;
+		/** The start of the range, inclusive. */
+		private final int from;
+		/** The end of the range, exclusive. */
+		private final int to;
+
+		/**
+		 * <p>EFFECTS: Constructs a new {@link Range}.</p>
+		 * @param visit The visit running the task.
+		 * @param visitor The visitor.
+		 * @param nodes The operands.
+		 * @param prefix The sizes of the prefixes of the operands.
+		 * @param results The results of the operands.
+		 * @param errors The exceptions of the operands.
+		 * @param from The start of the range, inclusive.
+		 * @param to The end of the range, exclusive.
+		 */
+		Range(Visit visit, Visitor<Ret> visitor, Node[] nodes, long[] prefix, Object[] results, RuntimeException[] errors, int from, int to) {
+			this.visit = visit;
+			this.visitor = visitor;
+			this.nodes = nodes;
+			this.prefix = prefix;
+			this.results = results;
+			this.errors = errors;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from > 1 && prefix[to] - prefix[from] >= visit.threshold()) {
+				final int middle = (from + to) >>> 1;
+				invokeAll(
+					new Range<>(visit, visitor, nodes, prefix, results, errors, from, middle),
+					new Range<>(visit, visitor, nodes, prefix, results, errors, middle, to)
+				);
+				return;
+			}
+
+			// A stolen task runs on a thread that may be in the middle of another visit
+			Visit previous = CURRENT.get();
+			CURRENT.set(visit);
+			try {
+				for (int i = from; i < to; i++) {
+					try {
+						results[i] = nodes[i].transform(visitor);
+					} catch (RuntimeException e) {
+						// Only the first exception is thrown, the following operands can be skipped
+						errors[i] = e;
+						return;
+					}
+				}
+			} finally {
+				CURRENT.set(previous);
+			}
+		}
+	}
+
+	/**
+	 * <p>The task that generates and sorts a block of terms, splitting it in two halves if it is larger than the threshold.</p>
+	 * <p>AF: the task returns the sorted terms with the indices from, ..., to - 1, generated by term.</p>
+	 * <p>REQUIREMENTS: term must be non-null, threshold must be positive, from must be at most to.</p>
+	 * <p>MUTABILITY: This class is immutable, except for the state of the task.</p>
+	 */
+	private static class Block extends RecursiveTask<List<Node>> {
+		/** The version of the serialized form, the tasks are never serialized. */
+		@Serial
+		private static final long serialVersionUID = 1L;
+
+		/** The function that generates the terms. */
+		private final transient IntFunction<Node> term;
+		/** The maximum number of terms generated without splitting. */
+		private final long threshold;
+		/** The first index, inclusive. */
+		private final int from;
+		/** The last index, exclusive. */
+		private final int to;
+
+		/**
+		 * <p>EFFECTS: Constructs a new {@link Block}.</p>
+		 * @param term The function that generates the terms.
+		 * @param threshold The maximum number of terms generated without splitting.
+		 * @param from The first index, inclusive.
+		 * @param to The last index, exclusive.
+		 */
+		Block(IntFunction<Node> term, long threshold, int from, int to) {
+			this.term = term;
+			this.threshold = threshold;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected List<Node> compute() {
+			if (to - from > threshold) {
+				final int middle = (from + to) >>> 1;
+				Block lhs = new Block(term, threshold, from, middle);
+				Block rhs = new Block(term, threshold, middle, to);
+				invokeAll(lhs, rhs);
+				return merge(lhs.join(), rhs.join());
+			}
+
+			List<Node> terms = new ArrayList<>(to - from);
+			for (int i = from; i < to; i++) terms.add(term.apply(i));
+			terms.sort(null);
+			return terms;
+		}
+	}
+}
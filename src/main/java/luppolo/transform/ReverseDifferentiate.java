@@ -0,0 +1,230 @@
+package luppolo.transform;
+
+import luppolo.math.Rational;
+import luppolo.node.*;
+
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * <p>
+ *     Utility class that computes derivatives using <a href="https://en.wikipedia.org/wiki/Automatic_differentiation#Reverse_accumulation">reverse accumulation</a>.
+ * </p>
+ * <p>
+ *     Unlike {@link Differentiate}, that copies the operands of products and the bases of powers in every term
+ *     produced by the product and chain rules, this class computes the <em>adjoint</em> of every node of the expression,
+ *     starting from the root, and builds the derivatives referencing the original nodes and the adjoints.
+ *     The result is a directed acyclic graph where the shared parts are stored only once,
+ *     the graph can be exported without expanding it to a tree using {@link luppolo.print.StraightLinePrinter}.
+ * </p>
+ * <p>
+ *     Given the node n, with adjoint a, the contributions to the adjoints of its children are:
+ *     <ul>
+ *         <li>{@link SumNode}: each operand receives a.</li>
+ *         <li>{@link MulNode}: the operand i receives a times the product of all the other operands.</li>
+ *         <li>{@link PowNode} B^e: the base receives a * e * B^(e - 1).</li>
+ *     </ul>
+ *     The adjoint of a node is the sum of the contributions received from its parents,
+ *     the derivative with respect to a variable is the sum of the adjoints of the nodes of that variable.
+ * <p>NOTES: The result is not simplified, and simplifying it with {@link Simplify} expands it to a tree.</p>
+ */
+public class ReverseDifferentiate {
+	/** Constructor to the utility class that must never be called. */
+	private ReverseDifferentiate() {
+		assert false: "Utility class cannot be instantiated";
+	}
+
+	/**
+	 * <p>EFFECTS: Computes the derivative of expr with respect to variable.</p>
+	 * <p>
+	 *     REQUIREMENTS:
+	 *     <ul>
+	 *         <li>expr must be non-null.</li>
+	 *         <li>variable must be non-null not empty and contain only upper or lowercase letters.</li>
+	 *     </ul>
+	 * @param expr The expression to differentiate.
+	 * @param variable The variable with respect to differentiate.
+	 * @return The derivative, sharing the subexpressions of expr.
+	 * @throws IllegalArgumentException If variable is empty or contains illegal chars.
+	 * @throws NullPointerException If any of the parameters is null.
+	 */
+	public static Node derivative(Node expr, String variable)
+		throws IllegalArgumentException, NullPointerException
+	{
+		Objects.requireNonNull(expr);
+		Objects.requireNonNull(variable);
+		if (!variable.matches("^[a-zA-Z]+$"))
+			throw new IllegalArgumentException("Invalid variable name");
+
+		return adjoints(expr, variable::equals).getOrDefault(variable, NumberNode.ZERO);
+	}
+
+	/**
+	 * <p>
+	 *     EFFECTS: Computes the derivatives of expr with respect to all of its variables.
+	 *     All the derivatives are computed with a single visit of the expression and they share their subexpressions.
+	 * </p>
+	 * <p>REQUIREMENTS: expr must be non-null.</p>
+	 * @param expr The expression to differentiate.
+	 * @return A map from the name of each variable to the corresponding derivative, sorted by variable name.
+	 * @throws NullPointerException If expr is null.
+	 */
+	public static SortedMap<String, Node> gradient(Node expr)
+		throws NullPointerException
+	{
+		Objects.requireNonNull(expr);
+		return adjoints(expr, name -> true);
+	}
+
+	/**
+	 * <p>EFFECTS: Propagates the adjoints from the root of expr to the variables selected by active.</p>
+	 * <p>REQUIREMENTS: The parameters must be non-null.</p>
+	 * @param expr The expression to differentiate.
+	 * @param active The predicate that selects the variables to differentiate with respect to.
+	 * @return A map from the name of each selected variable in expr to the derivative.
+	 */
+	private static SortedMap<String, Node> adjoints(Node expr, Predicate<String> active) {
+		assert expr != null;
+		assert active != null;
+
+		List<Node> order = Dag.topologicalOrder(expr);
+
+		// A node is active if it depends on a selected variable, only active nodes propagate their adjoint
+		Set<Node> activeNodes = Collections.newSetFromMap(new IdentityHashMap<>());
+		for (Node node : order) {
+			boolean isActive;
+			if (node instanceof VariableNode variable) {
+				isActive = active.test(variable.name());
+			} else if (node instanceof PowNode pow && pow.exp().equals(Rational.ZERO)) {
+				// b^0 is constant, so it doesn't depend on the variables of b
+				isActive = false;
+			} else {
+				isActive = false;
+				for (Node child : Dag.children(node))
+					isActive |= activeNodes.contains(child);
+			}
+			if (isActive) activeNodes.add(node);
+		}
+
+		Map<Node, List<Node>> contributions = new IdentityHashMap<>();
+		SortedMap<String, List<Node>> variableContributions = new TreeMap<>();
+		contributions.put(expr, new ArrayList<>(List.of(NumberNode.ONE)));
+
+		// Visit the nodes from the root, so that a node is visited after all of its parents
+		for (int i = order.size() - 1; i >= 0; i--) {
+			Node node = order.get(i);
+			if (!activeNodes.contains(node)) continue;
+
+			// An active node can receive no contributions if all of its parents are constant (e.g. the base of b^0),
+			// in this case its adjoint is zero and it doesn't contribute to its children
+			List<Node> received = contributions.remove(node);
+			if (received == null) continue;
+			Node adjoint = sum(received);
+
+			if (node instanceof VariableNode variable) {
+				variableContributions.computeIfAbsent(variable.name(), k -> new ArrayList<>()).add(adjoint);
+			} else if (node instanceof SumNode sum) {
+				for (Node operand : sum.operands())
+					contribute(contributions, activeNodes, operand, adjoint);
+			} else if (node instanceof MulNode mul) {
+				propagateProduct(contributions, activeNodes, mul.operands(), adjoint);
+			} else if (node instanceof PowNode pow) {
+				Rational exp = pow.exp();
+				// (b^e)' = e * b^(e - 1) * b'
+				// b^0 is never active, so exp is not zero
+				Node local = null;
+				if (!exp.equals(Rational.ONE)) {
+					Rational derivativeExp = exp.add(Rational.NEG_ONE);
+					Node power = derivativeExp.equals(Rational.ONE) ? pow.base() : new PowNode(pow.base(), derivativeExp);
+					local = new MulNode(new NumberNode(exp), power);
+				}
+				contribute(contributions, activeNodes, pow.base(), product(adjoint, local));
+			}
+		}
+
+		SortedMap<String, Node> result = new TreeMap<>();
+		for (Map.Entry<String, List<Node>> entry : variableContributions.entrySet())
+			result.put(entry.getKey(), sum(entry.getValue()));
+		return result;
+	}
+
+	/**
+	 * <p>
+	 *     EFFECTS: Propagates the adjoint of a product to its active operands.
+	 *     The product of the other operands is computed from the products of the operands before and after each operand,
+	 *     these partial products are shared, so that a product of n operands creates O(n) new nodes instead of O(n^2).
+	 * </p>
+	 * <p>REQUIREMENTS: The parameters must be non-null, operands must have at least two elements.</p>
+	 * <p>MUTABILITY: This method modifies contributions.</p>
+	 * @param contributions The contributions received by each node.
+	 * @param activeNodes The set of the active nodes.
+	 * @param operands The operands of the product.
+	 * @param adjoint The adjoint of the product.
+	 */
+	private static void propagateProduct(
+		Map<Node, List<Node>> contributions,
+		Set<Node> activeNodes,
+		List<Node> operands,
+		Node adjoint
+	) {
+		assert operands.size() >= 2;
+		final int size = operands.size();
+
+		// prefixes[i] is the product of the operands before i, suffixes[i] the product of the operands after i
+		Node[] prefixes = new Node[size];
+		Node[] suffixes = new Node[size];
+		for (int i = 1; i < size; i++)
+			prefixes[i] = product(prefixes[i - 1], operands.get(i - 1));
+		for (int i = size - 2; i >= 0; i--)
+			suffixes[i] = product(operands.get(i + 1), suffixes[i + 1]);
+
+		for (int i = 0; i < size; i++) {
+			Node operand = operands.get(i);
+			if (!activeNodes.contains(operand)) continue;
+			Node cofactor = product(prefixes[i], suffixes[i]);
+			contribute(contributions, activeNodes, operand, product(adjoint, cofactor));
+		}
+	}
+
+	/**
+	 * <p>EFFECTS: Adds the contribution to the adjoint of node, if node is active.</p>
+	 * <p>MUTABILITY: This method modifies contributions.</p>
+	 * @param contributions The contributions received by each node.
+	 * @param activeNodes The set of the active nodes.
+	 * @param node The node receiving the contribution.
+	 * @param contribution The contribution.
+	 */
+	private static void contribute(
+		Map<Node, List<Node>> contributions,
+		Set<Node> activeNodes,
+		Node node,
+		Node contribution
+	) {
+		if (!activeNodes.contains(node)) return;
+		contributions.computeIfAbsent(node, k -> new ArrayList<>()).add(contribution);
+	}
+
+	/**
+	 * <p>EFFECTS: Returns the product of lhs and rhs, where null and one are treated as the neutral element.</p>
+	 * @param lhs The left hand side, can be null.
+	 * @param rhs The right hand side, can be null.
+	 * @return The product of lhs and rhs, or null if both are null.
+	 */
+	private static Node product(Node lhs, Node rhs) {
+		if (lhs == null || lhs.equals(NumberNode.ONE)) return rhs;
+		if (rhs == null || rhs.equals(NumberNode.ONE)) return lhs;
+		return new MulNode(lhs, rhs);
+	}
+
+	/**
+	 * <p>EFFECTS: Returns the sum of the terms, without constructing a {@link SumNode} for a single term.</p>
+	 * <p>REQUIREMENTS: terms must be non-null and not empty.</p>
+	 * @param terms The terms to sum.
+	 * @return The sum of the terms.
+	 */
+	private static Node sum(List<Node> terms) {
+		assert terms != null && !terms.isEmpty();
+		if (terms.size() == 1) return terms.get(0);
+		return new SumNode(terms);
+	}
+}
@@ -10,9 +10,9 @@ import java.util.*;
  *     A transformer that simplifies a {@link Node}.
  *     The code in this class implements all the simplification described in the project description.
  * <p>REQUIREMENTS: see {@link Visitor} for the requirements.</p>
- * <p>MUTABILITY: This class has no state and it cannot mutate, respecting the mutability requirements of {@link Visitor}.</p>
+ * <p>MUTABILITY: This class has no state and it cannot mutate, respecting the mutability requirements of {@link StatelessVisitor}.</p>
  */
-public class Simplify implements Visitor<Node> {
+public class Simplify implements StatelessVisitor<Node> {
 	@Override
 	public Node visit(NumberNode node) {
 		return node;
@@ -26,9 +26,8 @@ public class Simplify implements Visitor<Node> {
 	@Override
 	public Node visit(SumNode node) {
 		List<Node> simplified = new ArrayList<>(node.operands().size());
-		for (Node operand : node.operands()) {
-			// Simplify each child node
-			Node s = operand.transform(this);
+		// Simplify each child node
+		for (Node s : ParallelTransform.transformAll(node.operands(), this)) {
 			// Flatten nested sums
 			if (s instanceof SumNode sum) {
 				simplified.addAll(sum.operands());
@@ -99,9 +98,8 @@ public class Simplify implements Visitor<Node> {
 	@Override
 	public Node visit(MulNode node) {
 		List<Node> simplified = new ArrayList<>(node.operands().size());
-		for (Node operand : node.operands()) {
-			// Simplify each child node
-			Node s = operand.transform(this);
+		// Simplify each child node
+		for (Node s : ParallelTransform.transformAll(node.operands(), this)) {
 			// Flatten nested products
 			if (s instanceof MulNode mul) {
 				simplified.addAll(mul.operands());